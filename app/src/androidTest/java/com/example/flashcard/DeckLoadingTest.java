@@ -0,0 +1,110 @@
+package com.example.flashcard;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+import android.view.View;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.flashcard.util.VocabularyDataManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The study and match screens must read their deck through the shared loader: any disk read
+ * or write made by the app's data code on the main looper while they open is a failure.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DeckLoadingTest {
+
+    // A different deck per screen, so neither is served from the other's cache.
+    private static final String STUDY_DECK = "food.json";
+    private static final String MATCH_DECK = "house.json";
+    private static final long LOAD_TIMEOUT_MS = 10_000;
+
+    private final List<Violation> violations = Collections.synchronizedList(new ArrayList<>());
+    private StrictMode.ThreadPolicy original;
+
+    @Before
+    public void setUp() {
+        // Created here, off the main thread, so only the screens' own reads are measured.
+        VocabularyDataManager.getInstance(context());
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            original = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyListener(Runnable::run, violations::add)
+                    .build());
+        });
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> StrictMode.setThreadPolicy(original));
+    }
+
+    @Test
+    public void studyScreenLoadsOffTheMainLooper() throws InterruptedException {
+        try (ActivityScenario<StudyActivity> scenario = ActivityScenario.launch(intent(StudyActivity.class, STUDY_DECK))) {
+            awaitVisible(scenario, R.id.flashcardContainer);
+        }
+        assertNoDeckIoOnMain();
+    }
+
+    @Test
+    public void matchScreenLoadsOffTheMainLooper() throws InterruptedException {
+        try (ActivityScenario<MatchActivity> scenario = ActivityScenario.launch(intent(MatchActivity.class, MATCH_DECK))) {
+            awaitVisible(scenario, R.id.btnReplay);
+        }
+        assertNoDeckIoOnMain();
+    }
+
+    private Context context() {
+        return InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    private Intent intent(Class<? extends Activity> screen, String jsonFileName) {
+        return new Intent(context(), screen).putExtra("JSON_FILE_NAME", jsonFileName);
+    }
+
+    // The screen shows this view only once the loader has called back with the deck.
+    private <A extends Activity> void awaitVisible(ActivityScenario<A> scenario, int viewId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + LOAD_TIMEOUT_MS;
+        boolean[] visible = new boolean[1];
+        while (System.currentTimeMillis() < deadline) {
+            scenario.onActivity(activity -> visible[0] = activity.findViewById(viewId).getVisibility() == View.VISIBLE);
+            if (visible[0]) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("The deck did not load");
+    }
+
+    // Framework code (layout inflation, text to speech) may touch disk; the deck code may not.
+    private void assertNoDeckIoOnMain() {
+        synchronized (violations) {
+            for (Violation violation : violations) {
+                for (StackTraceElement frame : violation.getStackTrace()) {
+                    assertFalse("Deck I/O on the main looper at " + frame,
+                            frame.getClassName().startsWith("com.example.flashcard.util."));
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,10 @@ package com.example.flashcard;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
@@ -16,6 +20,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -23,25 +28,38 @@ import com.example.flashcard.adapter.VocabularySetAdapter;
 import com.example.flashcard.dialog.AddVocabularySetDialog;
 import com.example.flashcard.dialog.AIVocabularyDialog;
 import com.example.flashcard.dialog.EditVocabularySetDialog;
+import com.example.flashcard.dialog.SearchDialog;
+import com.example.flashcard.model.SetChange;
 import com.example.flashcard.model.VocabularySet;
-import com.example.flashcard.model.Word;
+import com.example.flashcard.util.DeckLoader;
 import com.example.flashcard.util.VocabularyDataManager;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.example.flashcard.util.VocabularyStore;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
     private RecyclerView recyclerView;
     private VocabularySetAdapter adapter;
     private List<VocabularySet> vocabularySets;
+    // Bumped by every reload so a slower, older one never overwrites a newer list.
+    private int reloadGeneration;
+    // The set change version the list is up to date with; -1 until the first reload.
+    private long shownVersion = -1;
+    // Changes heard while a reload is reading, applied again on top of what it read.
+    private final List<SetChange> changesDuringReload = new ArrayList<>();
+    private boolean reloading;
+    private final VocabularyStore.ChangeListener setChangeListener = this::applySetChange;
+    // Null until the instance is set up off the main thread.
     private VocabularyDataManager dataManager;
+    private EditText etSearchSets;
+    // Backup and network work: kept off the shared deck loader, so a slow call never holds up
+    // opening a deck. Results are dropped once this screen is gone.
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,7 +71,6 @@ public class MainActivity extends AppCompatActivity {
 
         setContentView(R.layout.activity_main);
 
-        dataManager = new VocabularyDataManager(this);
         recyclerView = findViewById(R.id.recyclerViewSets);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
@@ -104,7 +121,12 @@ public class MainActivity extends AppCompatActivity {
             return windowInsets;
         });
 
-        loadVocabularySets();
+        // Draw the list saved last time right away, from the manifest alone; once the data
+        // manager is set up off the main thread the list is brought up to date.
+        vocabularySets = VocabularyDataManager.readHomeSnapshot(this);
+        if (vocabularySets == null) {
+            vocabularySets = new ArrayList<>();
+        }
 
         adapter = new VocabularySetAdapter(
                 vocabularySets,
@@ -116,6 +138,9 @@ public class MainActivity extends AppCompatActivity {
                 },
                 this::showModeSelectionDialog,
                 set -> {
+                    if (dataManager == null) {
+                        return;
+                    }
                     if (dataManager.isUserCreatedSet(set.getJsonFileName())) {
                         showEditVocabularySetDialog(set);
                     } else {
@@ -124,155 +149,134 @@ public class MainActivity extends AppCompatActivity {
                 }
         );
         recyclerView.setAdapter(adapter);
-    }
+        VocabularyDataManager.getInstance(this, this::onDataManagerReady);
 
-    private void loadVocabularySets() {
-        vocabularySets = new ArrayList<>();
-
-        String[][] allSets = {
-                {"Nhà", "house.json"},
-                {"Thức ăn và đồ uống", "food.json"},
-                {"Diện mạo", "appearance.json"},
-                {"Sức khỏe", "health.json"},
-                {"Thể thao", "sports.json"},
-                {"Du lịch", "travel.json"},
-                {"Môi trường", "environment.json"},
-                {"Công việc", "jobs.json"},
-                {"Giải trí", "entertainment.json"},
-                {"Giáo dục", "education.json"}
-        };
-
-        for (String[] set : allSets) {
-            String title = set[0];
-            String fileName = set[1].trim();
-            String actualFileName = findActualFileName(fileName);
-            if (actualFileName != null) {
-                int wordCount = getWordCountFromJson(actualFileName);
-                if (wordCount > 0) {
-                    vocabularySets.add(new VocabularySet(title, actualFileName, wordCount));
-                }
+        etSearchSets = findViewById(R.id.etSearchSets);
+        etSearchSets.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
             }
-        }
 
-        List<VocabularySet> userSets = dataManager.getUserVocabularySets();
-        for (VocabularySet set : userSets) {
-            List<Word> words = dataManager.getWordsForSet(set.getJsonFileName());
-            set.setWordCount(words.size());
-            vocabularySets.add(set);
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                adapter.filterList(s.toString());
+            }
+        });
+    }
+
+    private void onDataManagerReady(VocabularyDataManager ready) {
+        if (isDestroyed()) {
+            return;
         }
+        dataManager = ready;
+        dataManager.addSetChangeListener(setChangeListener);
+        reloadVocabularySets();
     }
 
+    // New rows are filtered by whatever the user was filtering by before they are shown.
+    private String setQuery() {
+        return etSearchSets != null ? etSearchSets.getText().toString() : "";
+    }
+
+    // Each applied change is saved for the next cold start, off the main thread.
+    private void saveShownSets(long version) {
+        List<VocabularySet> shown = new ArrayList<>(vocabularySets);
+        dataManager.getDeckLoader().run(() -> dataManager.saveHomeSets(shown, version), saved -> {
+        });
+    }
+
+    // Sets added here reach the list through the store's change events, like any other change.
     private void showAIVocabularyDialog() {
-        AIVocabularyDialog dialog = new AIVocabularyDialog(
-                this,
-                (set, words) -> {
-                    loadVocabularySets();
-                    adapter = new VocabularySetAdapter(
-                            vocabularySets,
-                            set1 -> {
-                                Intent intent = new Intent(MainActivity.this, VocabularyListActivity.class);
-                                intent.putExtra("JSON_FILE_NAME", set1.getJsonFileName());
-                                intent.putExtra("CATEGORY_TITLE", set1.getTitle());
-                                startActivity(intent);
-                            },
-                            this::showModeSelectionDialog,
-                            set2 -> {
-                                if (dataManager.isUserCreatedSet(set2.getJsonFileName())) {
-                                    showEditVocabularySetDialog(set2);
-                                } else {
-                                    android.widget.Toast.makeText(this, "Không thể chỉnh sửa bộ từ vựng mặc định!", android.widget.Toast.LENGTH_SHORT).show();
-                                }
-                            }
-                    );
-                    recyclerView.setAdapter(adapter);
-                }
-        );
-        dialog.show();
+        new AIVocabularyDialog(this, dataManager, null).show();
     }
 
     private void showAddVocabularySetDialog() {
-        AddVocabularySetDialog dialog = new AddVocabularySetDialog(
-                this,
-                newSet -> {
-                    loadVocabularySets();
-                    adapter = new VocabularySetAdapter(
-                            vocabularySets,
-                            set1 -> {
-                                Intent intent = new Intent(MainActivity.this, VocabularyListActivity.class);
-                                intent.putExtra("JSON_FILE_NAME", set1.getJsonFileName());
-                                intent.putExtra("CATEGORY_TITLE", set1.getTitle());
-                                startActivity(intent);
-                            },
-                            this::showModeSelectionDialog,
-                            set2 -> {
-                                if (dataManager.isUserCreatedSet(set2.getJsonFileName())) {
-                                    showEditVocabularySetDialog(set2);
-                                } else {
-                                    android.widget.Toast.makeText(this, "Không thể chỉnh sửa bộ từ vựng mặc định!", android.widget.Toast.LENGTH_SHORT).show();
-                                }
-                            }
-                    );
-                    recyclerView.setAdapter(adapter);
-                }
-        );
-        dialog.show();
+        if (dataManager == null) {
+            return;
+        }
+        new AddVocabularySetDialog(this, dataManager, null).show();
     }
 
+    // Every change to the sets arrives as an event while this screen exists, so only a list
+    // that was never brought up to date needs reading; otherwise resuming costs no I/O.
     @Override
     protected void onResume() {
         super.onResume();
-        loadVocabularySets();
-        if (adapter != null && vocabularySets != null) {
-            adapter = new VocabularySetAdapter(
-                    vocabularySets,
-                    set -> {
-                        Intent intent = new Intent(MainActivity.this, VocabularyListActivity.class);
-                        intent.putExtra("JSON_FILE_NAME", set.getJsonFileName());
-                        intent.putExtra("CATEGORY_TITLE", set.getTitle());
-                        startActivity(intent);
-                    },
-                    this::showModeSelectionDialog,
-                    set -> {
-                        if (dataManager.isUserCreatedSet(set.getJsonFileName())) {
-                            showEditVocabularySetDialog(set);
-                        } else {
-                            android.widget.Toast.makeText(this, "Không thể chỉnh sửa bộ từ vựng mặc định!", android.widget.Toast.LENGTH_SHORT).show();
-                        }
-                    }
-            );
-            recyclerView.setAdapter(adapter);
+        if (dataManager != null && shownVersion < 0 && !reloading) {
+            reloadVocabularySets();
         }
     }
 
-    private int getWordCountFromJson(String fileName) {
-        try {
-            InputStream is = getAssets().open(fileName);
-            InputStreamReader reader = new InputStreamReader(is);
-            Type listType = new TypeToken<List<Word>>() {}.getType();
-            List<Word> words = new Gson().fromJson(reader, listType);
-            reader.close();
-            is.close();
-            return words != null ? words.size() : 0;
-        } catch (IOException e) {
-            Log.e("MainActivity", "Error reading word count from " + fileName, e);
-            return 0;
+    @Override
+    protected void onDestroy() {
+        worker.shutdown();
+        if (dataManager != null) {
+            dataManager.removeSetChangeListener(setChangeListener);
         }
+        super.onDestroy();
     }
 
-    private String findActualFileName(String fileName) {
-        String[] possibleNames = {fileName, fileName.trim(), " " + fileName.trim(), fileName.trim() + " "};
-
-        for (String name : possibleNames) {
-            try {
-                InputStream is = getAssets().open(name);
-                is.close();
-                return name;
-            } catch (IOException e) {
+    // Only the row the change touches is redrawn.
+    private void applySetChange(SetChange change) {
+        if (reloading) {
+            changesDuringReload.add(change);
+        }
+        if (change.applyTo(vocabularySets)) {
+            adapter.updateSets(vocabularySets, setQuery());
+            // A reload in progress saves what it shows once it is done.
+            if (!reloading) {
+                saveShownSets(change.getVersion());
             }
         }
-        return null;
+        if (shownVersion >= 0) {
+            shownVersion = Math.max(shownVersion, change.getVersion());
+        }
+    }
+
+    // Counts are read off the main thread and only the rows that changed are redrawn. Changes
+    // that land while it reads may be missing from what it read, so they are applied again.
+    private void reloadVocabularySets() {
+        int generation = ++reloadGeneration;
+        changesDuringReload.clear();
+        reloading = true;
+        dataManager.getDeckLoader().run(() -> {
+            long version = dataManager.getSetChangeVersion();
+            return new LoadedSets(version, dataManager.loadHomeSets());
+        }, loaded -> {
+            if (generation != reloadGeneration || isFinishing()) {
+                return;
+            }
+            reloading = false;
+            List<VocabularySet> sets = loaded.sets;
+            long latest = loaded.version;
+            for (SetChange change : changesDuringReload) {
+                if (change.getVersion() > loaded.version) {
+                    change.applyTo(sets);
+                }
+                latest = Math.max(latest, change.getVersion());
+            }
+            changesDuringReload.clear();
+            shownVersion = latest;
+            vocabularySets = sets;
+            adapter.updateSets(sets, setQuery());
+            saveShownSets(latest);
+        });
     }
 
+    private static final class LoadedSets {
+        // Every change up to this version is in the sets.
+        final long version;
+        final List<VocabularySet> sets;
+
+        LoadedSets(long version, List<VocabularySet> sets) {
+            this.version = version;
+            this.sets = sets;
+        }
+    }
 
     private void showModeSelectionDialog(VocabularySet set) {
         android.view.LayoutInflater inflater = getLayoutInflater();
@@ -313,6 +317,11 @@ public class MainActivity extends AppCompatActivity {
         PopupMenu popupMenu = new PopupMenu(this, anchor);
         popupMenu.getMenu().add(0, 1, 0, "💬 AI Chat");
         popupMenu.getMenu().add(0, 2, 0, "🤖 Tạo bộ từ vựng bằng AI");
+        popupMenu.getMenu().add(0, 3, 0, "🔍 Tìm kiếm từ vựng");
+        popupMenu.getMenu().add(0, 4, 0, "💾 Sao lưu bộ từ vựng");
+        popupMenu.getMenu().add(0, 5, 0, "♻️ Khôi phục bản sao lưu");
+        popupMenu.getMenu().add(0, 6, 0, "🔄 Đồng bộ thiết bị");
+        popupMenu.getMenu().add(0, 7, 0, "📦 Tải gói từ vựng");
         
         popupMenu.setGravity(android.view.Gravity.END | android.view.Gravity.TOP);
         
@@ -321,9 +330,27 @@ public class MainActivity extends AppCompatActivity {
                 Intent intent = new Intent(MainActivity.this, AIChatActivity.class);
                 startActivity(intent);
                 return true;
+            } else if (dataManager == null) {
+                // The rest work on the sets, which the first frame may come before.
+                return true;
             } else if (item.getItemId() == 2) {
                 showAIVocabularyDialog();
                 return true;
+            } else if (item.getItemId() == 3) {
+                showSearchDialog();
+                return true;
+            } else if (item.getItemId() == 4) {
+                backupDecks();
+                return true;
+            } else if (item.getItemId() == 5) {
+                confirmRestoreBackup();
+                return true;
+            } else if (item.getItemId() == 6) {
+                showSyncDialog();
+                return true;
+            } else if (item.getItemId() == 7) {
+                showContentPacksDialog();
+                return true;
             }
             return false;
         });
@@ -346,53 +373,132 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void showEditVocabularySetDialog(VocabularySet set) {
-        EditVocabularySetDialog dialog = new EditVocabularySetDialog(
-                this,
-                set,
-                updatedSet -> {
-                    loadVocabularySets();
-                    adapter = new VocabularySetAdapter(
-                            vocabularySets,
-                            set1 -> {
-                                Intent intent = new Intent(MainActivity.this, VocabularyListActivity.class);
-                                intent.putExtra("JSON_FILE_NAME", set1.getJsonFileName());
-                                intent.putExtra("CATEGORY_TITLE", set1.getTitle());
-                                startActivity(intent);
-                            },
-                            this::showModeSelectionDialog,
-                            set2 -> {
-                                if (dataManager.isUserCreatedSet(set2.getJsonFileName())) {
-                                    showEditVocabularySetDialog(set2);
-                                } else {
-                                    android.widget.Toast.makeText(this, "Không thể chỉnh sửa bộ từ vựng mặc định!", android.widget.Toast.LENGTH_SHORT).show();
-                                }
-                            }
-                    );
-                    recyclerView.setAdapter(adapter);
-                },
-                deletedSet -> {
-                    loadVocabularySets();
-                    adapter = new VocabularySetAdapter(
-                            vocabularySets,
-                            set1 -> {
-                                Intent intent = new Intent(MainActivity.this, VocabularyListActivity.class);
-                                intent.putExtra("JSON_FILE_NAME", set1.getJsonFileName());
-                                intent.putExtra("CATEGORY_TITLE", set1.getTitle());
-                                startActivity(intent);
-                            },
-                            this::showModeSelectionDialog,
-                            set2 -> {
-                                if (dataManager.isUserCreatedSet(set2.getJsonFileName())) {
-                                    showEditVocabularySetDialog(set2);
-                                } else {
-                                    android.widget.Toast.makeText(this, "Không thể chỉnh sửa bộ từ vựng mặc định!", android.widget.Toast.LENGTH_SHORT).show();
-                                }
+    private <T> void runOnWorker(DeckLoader.Task<T> task, DeckLoader.Result<T> result) {
+        if (worker.isShutdown()) {
+            return;
+        }
+        worker.execute(() -> {
+            T value = task.run();
+            mainHandler.post(() -> {
+                if (!isDestroyed()) {
+                    result.onDone(value);
+                }
+            });
+        });
+    }
+
+    private void backupDecks() {
+        runOnWorker(dataManager::backupDecks, result -> android.widget.Toast.makeText(this,
+                result != null
+                        ? "Đã sao lưu " + result.getDecks() + " bộ từ vựng (" + (result.getBytesWritten() + 1023) / 1024 + " KB mới)"
+                        : "Sao lưu thất bại!", android.widget.Toast.LENGTH_SHORT).show());
+    }
+
+    private void confirmRestoreBackup() {
+        runOnWorker(dataManager::hasBackup, hasBackup -> {
+            if (!hasBackup) {
+                android.widget.Toast.makeText(this, "Chưa có bản sao lưu nào!", android.widget.Toast.LENGTH_SHORT).show();
+                return;
+            }
+            showRestoreBackupDialog();
+        });
+    }
+
+    private void showRestoreBackupDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle("Khôi phục bản sao lưu")
+                .setMessage("Các thay đổi sau lần sao lưu gần nhất sẽ bị mất. Bạn có chắc chắn?")
+                .setPositiveButton("Khôi phục", (d, which) -> runOnWorker(
+                        dataManager::restoreLatestBackup, restored -> {
+                            android.widget.Toast.makeText(this, restored ? "Đã khôi phục bản sao lưu"
+                                    : "Khôi phục thất bại!", android.widget.Toast.LENGTH_SHORT).show();
+                            if (restored) {
+                                reloadVocabularySets();
                             }
-                    );
-                    recyclerView.setAdapter(adapter);
+                        }))
+                .setNegativeButton("Hủy", null)
+                .show();
+    }
+
+    private void showSyncDialog() {
+        EditText etServerUrl = new EditText(this);
+        etServerUrl.setHint("http://192.168.1.10:8080/sync");
+        etServerUrl.setSingleLine(true);
+        etServerUrl.setText(dataManager.getSyncServerUrl());
+        new AlertDialog.Builder(this)
+                .setTitle("Đồng bộ thiết bị")
+                .setMessage("Địa chỉ máy chủ đồng bộ:")
+                .setView(etServerUrl)
+                .setPositiveButton("Đồng bộ", (d, which) -> {
+                    String url = etServerUrl.getText().toString().trim();
+                    if (url.isEmpty()) {
+                        android.widget.Toast.makeText(this, "Vui lòng nhập địa chỉ máy chủ!", android.widget.Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    runOnWorker(() -> dataManager.syncNow(url), result -> {
+                        if (result == null) {
+                            android.widget.Toast.makeText(this, "Đồng bộ thất bại!", android.widget.Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        android.widget.Toast.makeText(this, "Đã đồng bộ: gửi " + result.getPushed() + ", nhận "
+                                + result.getPulled() + " thay đổi", android.widget.Toast.LENGTH_SHORT).show();
+                    });
+                })
+                .setNegativeButton("Hủy", null)
+                .show();
+    }
+
+    private void showContentPacksDialog() {
+        EditText etCatalogUrl = new EditText(this);
+        etCatalogUrl.setHint("https://example.com/packs/catalog.json");
+        etCatalogUrl.setSingleLine(true);
+        etCatalogUrl.setText(dataManager.getCatalogUrl());
+        new AlertDialog.Builder(this)
+                .setTitle("Tải gói từ vựng")
+                .setMessage("Địa chỉ danh mục gói từ vựng:")
+                .setView(etCatalogUrl)
+                .setPositiveButton("Cập nhật", (d, which) -> {
+                    String url = etCatalogUrl.getText().toString().trim();
+                    if (url.isEmpty()) {
+                        android.widget.Toast.makeText(this, "Vui lòng nhập địa chỉ danh mục!", android.widget.Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    runOnWorker(() -> dataManager.refreshContentPacks(url), result -> {
+                        if (result == null) {
+                            android.widget.Toast.makeText(this, "Cập nhật gói từ vựng thất bại!", android.widget.Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        if (!result.isCatalogChanged()) {
+                            android.widget.Toast.makeText(this, "Các gói từ vựng đã mới nhất", android.widget.Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        android.widget.Toast.makeText(this, "Đã tải " + result.getPacksDownloaded() + " gói từ vựng"
+                                + (result.getPacksFailed() > 0 ? ", " + result.getPacksFailed() + " gói lỗi" : ""),
+                                android.widget.Toast.LENGTH_SHORT).show();
+                        reloadVocabularySets();
+                    });
+                })
+                .setNegativeButton("Hủy", null)
+                .show();
+    }
+
+    private void showSearchDialog() {
+        SearchDialog dialog = new SearchDialog(
+                this,
+                dataManager,
+                vocabularySets,
+                (set, word) -> {
+                    Intent intent = new Intent(MainActivity.this, VocabularyListActivity.class);
+                    intent.putExtra("JSON_FILE_NAME", set.getJsonFileName());
+                    intent.putExtra("CATEGORY_TITLE", set.getTitle());
+                    intent.putExtra("WORD_ID", word.getId());
+                    startActivity(intent);
                 }
         );
         dialog.show();
     }
+
+    private void showEditVocabularySetDialog(VocabularySet set) {
+        new EditVocabularySetDialog(this, dataManager, set, null, null).show();
+    }
 }
\ No newline at end of file
@@ -4,7 +4,6 @@ import android.animation.ObjectAnimator;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.CycleInterpolator;
@@ -16,28 +15,26 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.core.widget.ContentLoadingProgressBar;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.flashcard.adapter.MatchAdapter;
 import com.example.flashcard.model.MatchCard;
-import com.example.flashcard.model.Word;
+import com.example.flashcard.util.ColumnarDeck;
+import com.example.flashcard.util.DeckLoader;
 import com.example.flashcard.util.VocabularyDataManager;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 
 public class MatchActivity extends AppCompatActivity {
 
-    private List<Word> fullWordList;
+    private ColumnarDeck fullWordList;
+    private final Random random = new Random();
     private List<MatchCard> currentMatchCards;
     private MatchAdapter adapter;
     private RecyclerView recyclerView;
@@ -46,17 +43,14 @@ public class MatchActivity extends AppCompatActivity {
     private final int PAIRS_TO_MATCH = 5;
     private boolean isChecking = false;
     private VocabularyDataManager dataManager;
+    private ContentLoadingProgressBar progressBar;
+    private DeckLoader.Request loadRequest;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_match);
 
-        dataManager = new VocabularyDataManager(this);
-        
-        String jsonFileName = getIntent().getStringExtra("JSON_FILE_NAME");
-        loadWords(jsonFileName);
-
         recyclerView = findViewById(R.id.gridRecyclerView);
         Button btnReplay = findViewById(R.id.btnReplay);
         TextView tvMatchTitle = findViewById(R.id.tvMatchTitle);
@@ -98,46 +92,37 @@ public class MatchActivity extends AppCompatActivity {
             return windowInsets;
         });
 
-        if (fullWordList == null || fullWordList.size() < PAIRS_TO_MATCH) {
-            Toast.makeText(this, "Không đủ từ vựng để chơi (cần ít nhất 5 từ)", Toast.LENGTH_LONG).show();
-            finish();
-            return;
-        }
+        progressBar = findViewById(R.id.progressBar);
+        String jsonFileName = getIntent().getStringExtra("JSON_FILE_NAME");
+        loadWords(jsonFileName, btnReplay);
+    }
 
-        setupNewGame();
-        btnReplay.setOnClickListener(v -> setupNewGame());
+    // The app's data may still be setting up off the main thread; the spinner covers that too.
+    private void loadWords(String fileName, Button btnReplay) {
+        btnReplay.setVisibility(View.INVISIBLE);
+        progressBar.show();
+        VocabularyDataManager.getInstance(this, ready -> {
+            if (isDestroyed()) {
+                return;
+            }
+            dataManager = ready;
+            loadDeck(fileName, btnReplay);
+        });
     }
 
-    private void loadWords(String fileName) {
-        fullWordList = new ArrayList<>();
-        
-        boolean isUserCreated = dataManager.isUserCreatedSet(fileName);
-        
-        if (isUserCreated) {
-            fullWordList = dataManager.getWordsForSet(fileName);
-        } else {
-            try {
-                InputStream is = getAssets().open(fileName);
-                InputStreamReader reader = new InputStreamReader(is);
-                Type listType = new TypeToken<List<Word>>() {}.getType();
-                List<Word> assetWords = new Gson().fromJson(reader, listType);
-                reader.close();
-                is.close();
-                
-                if (assetWords != null) {
-                    fullWordList.addAll(assetWords);
-                }
-            } catch (IOException e) {
-                Log.e("MatchActivity", "Error loading words from assets", e);
+    private void loadDeck(String fileName, Button btnReplay) {
+        loadRequest = dataManager.getDeckLoader().load(fileName, deck -> {
+            progressBar.hide();
+            if (deck.size() < PAIRS_TO_MATCH) {
+                Toast.makeText(this, "Không đủ từ vựng để chơi (cần ít nhất 5 từ)", Toast.LENGTH_LONG).show();
+                finish();
+                return;
             }
-            
-            List<Word> userWords = dataManager.getWordsForSet(fileName);
-            fullWordList.addAll(userWords);
-        }
-        
-        if (fullWordList == null) {
-            fullWordList = new ArrayList<>();
-        }
+            fullWordList = deck;
+            btnReplay.setVisibility(View.VISIBLE);
+            setupNewGame();
+            btnReplay.setOnClickListener(v -> setupNewGame());
+        });
     }
 
     private void setupNewGame() {
@@ -146,13 +131,11 @@ public class MatchActivity extends AppCompatActivity {
         isChecking = false;
         currentMatchCards = new ArrayList<>();
 
-        Collections.shuffle(fullWordList);
-        List<Word> gameWords = fullWordList.subList(0, PAIRS_TO_MATCH);
+        fullWordList.shuffle(random);
 
-        for (int i = 0; i < gameWords.size(); i++) {
-            Word word = gameWords.get(i);
-            currentMatchCards.add(new MatchCard(word.getEnglish(), i));
-            currentMatchCards.add(new MatchCard(word.getVietnamese(), i));
+        for (int i = 0; i < PAIRS_TO_MATCH; i++) {
+            currentMatchCards.add(new MatchCard(fullWordList.getEnglish(i), i));
+            currentMatchCards.add(new MatchCard(fullWordList.getVietnamese(i), i));
         }
 
         Collections.shuffle(currentMatchCards);
@@ -244,4 +227,12 @@ public class MatchActivity extends AppCompatActivity {
                 .setCancelable(false)
                 .show();
     }
+
+    @Override
+    protected void onDestroy() {
+        if (loadRequest != null) {
+            loadRequest.cancel();
+        }
+        super.onDestroy();
+    }
 }
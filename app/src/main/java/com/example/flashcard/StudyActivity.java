@@ -2,7 +2,6 @@ package com.example.flashcard;
 
 import android.os.Bundle;
 import android.speech.tts.TextToSpeech;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageButton;
@@ -12,31 +11,28 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.core.widget.ContentLoadingProgressBar;
 
-import com.example.flashcard.model.Word;
+import com.example.flashcard.util.ColumnarDeck;
+import com.example.flashcard.util.DeckLoader;
 import com.example.flashcard.util.VocabularyDataManager;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+
 import java.util.Locale;
+import java.util.Random;
 
 public class StudyActivity extends AppCompatActivity {
 
-    private List<Word> wordList;
+    private ColumnarDeck wordList;
     private int currentWordIndex = 0;
+    private int backBoundIndex = -1;
     private VocabularyDataManager dataManager;
 
     private TextView tvEnglish, tvVietnamese, tvPronunciation, tvExample, tvMemoryTip;
     private Button btnPrevious, btnNext;
     private ImageButton btnSpeak;
     private View cardFront, cardBack, flashcardContainer;
+    private ContentLoadingProgressBar progressBar;
+    private DeckLoader.Request loadRequest;
 
     private TextToSpeech tts;
     private boolean isCardFlipped = false;
@@ -46,8 +42,6 @@ public class StudyActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_study);
 
-        dataManager = new VocabularyDataManager(this);
-
         View mainContent = findViewById(R.id.mainContent);
         View navigationButtons = findViewById(R.id.navigation_buttons);
         
@@ -79,20 +73,11 @@ public class StudyActivity extends AppCompatActivity {
             return windowInsets;
         });
 
-        String jsonFileName = getIntent().getStringExtra("JSON_FILE_NAME");
-        loadWords(jsonFileName);
-
         initViews();
         setupTextToSpeech();
-        setupClickListeners();
 
-        if (wordList != null && !wordList.isEmpty()) {
-            Collections.shuffle(wordList);
-            displayCurrentWord();
-        } else {
-            Toast.makeText(this, "Không thể tải bộ từ vựng!", Toast.LENGTH_SHORT).show();
-            finish();
-        }
+        String jsonFileName = getIntent().getStringExtra("JSON_FILE_NAME");
+        loadWords(jsonFileName);
     }
 
     private void initViews() {
@@ -107,6 +92,7 @@ public class StudyActivity extends AppCompatActivity {
         cardFront = findViewById(R.id.cardFront);
         cardBack = findViewById(R.id.cardBack);
         flashcardContainer = findViewById(R.id.flashcardContainer);
+        progressBar = findViewById(R.id.progressBar);
     }
 
     private void setupTextToSpeech() {
@@ -133,70 +119,75 @@ public class StudyActivity extends AppCompatActivity {
         flashcardContainer.setOnClickListener(v -> flipCard());
     }
 
+    // The card stays hidden behind the spinner until the app's data is set up and the deck is
+    // read, both off the main thread.
     private void loadWords(String fileName) {
-        wordList = new ArrayList<>();
-        
-        boolean isUserCreated = dataManager.isUserCreatedSet(fileName);
-        
-        if (isUserCreated) {
-            wordList = dataManager.getWordsForSet(fileName);
-        } else {
-            try {
-                InputStream is = getAssets().open(fileName);
-                InputStreamReader reader = new InputStreamReader(is);
-                Type listType = new TypeToken<List<Word>>() {}.getType();
-                List<Word> assetWords = new Gson().fromJson(reader, listType);
-                reader.close();
-                is.close();
-                
-                if (assetWords != null) {
-                    wordList.addAll(assetWords);
-                }
-            } catch (IOException e) {
-                Log.e("StudyActivity", "Error loading words from assets", e);
+        flashcardContainer.setVisibility(View.INVISIBLE);
+        progressBar.show();
+        VocabularyDataManager.getInstance(this, ready -> {
+            if (isDestroyed()) {
+                return;
             }
-            
-            List<Word> userWords = dataManager.getWordsForSet(fileName);
-            wordList.addAll(userWords);
-        }
-        
-        if (wordList == null) {
-            wordList = new ArrayList<>();
-        }
+            dataManager = ready;
+            loadDeck(fileName);
+        });
+    }
+
+    private void loadDeck(String fileName) {
+        loadRequest = dataManager.getDeckLoader().load(fileName, deck -> {
+            progressBar.hide();
+            if (deck.isEmpty()) {
+                Toast.makeText(this, "Không thể tải bộ từ vựng!", Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
+            wordList = deck;
+            wordList.shuffle(new Random());
+            flashcardContainer.setVisibility(View.VISIBLE);
+            setupClickListeners();
+            displayCurrentWord();
+        });
     }
 
     private void displayCurrentWord() {
         if (currentWordIndex >= 0 && currentWordIndex < wordList.size()) {
-            Word word = wordList.get(currentWordIndex);
-            tvEnglish.setText(word.getEnglish());
-            tvVietnamese.setText(word.getVietnamese());
+            int position = currentWordIndex;
+            tvEnglish.setText(wordList.getEnglish(position));
+            tvVietnamese.setText(wordList.getVietnamese(position));
 
-            if (word.getPronunciation() != null && !word.getPronunciation().isEmpty()) {
-                tvPronunciation.setText(word.getPronunciation());
+            if (wordList.hasPronunciation(position)) {
+                tvPronunciation.setText(wordList.getPronunciation(position));
                 tvPronunciation.setVisibility(View.VISIBLE);
             } else {
                 tvPronunciation.setVisibility(View.GONE);
             }
 
-            if (word.getExample() != null && !word.getExample().trim().isEmpty()) {
-                tvExample.setText("📝 " + word.getExample());
-                tvExample.setVisibility(View.VISIBLE);
-            } else {
-                tvExample.setVisibility(View.GONE);
-            }
-
-
-            if (word.getMemoryTip() != null && !word.getMemoryTip().trim().isEmpty()) {
-                tvMemoryTip.setText("💡 " + word.getMemoryTip());
-                tvMemoryTip.setVisibility(View.VISIBLE);
-            } else {
-                tvMemoryTip.setVisibility(View.GONE);
-            }
+            // Example and tip stay compressed until the card is turned over.
+            tvExample.setVisibility(wordList.hasExample(position) ? View.VISIBLE : View.GONE);
+            tvMemoryTip.setVisibility(wordList.hasMemoryTip(position) ? View.VISIBLE : View.GONE);
+            backBoundIndex = -1;
 
             resetCardToFront();
         }
     }
 
+    private void bindCardBack() {
+        if (backBoundIndex == currentWordIndex) {
+            return;
+        }
+        backBoundIndex = currentWordIndex;
+        if (wordList.hasExample(currentWordIndex)) {
+            String example = wordList.getExample(currentWordIndex);
+            tvExample.setText("📝 " + example);
+            tvExample.setVisibility(example.trim().isEmpty() ? View.GONE : View.VISIBLE);
+        }
+        if (wordList.hasMemoryTip(currentWordIndex)) {
+            String memoryTip = wordList.getMemoryTip(currentWordIndex);
+            tvMemoryTip.setText("💡 " + memoryTip);
+            tvMemoryTip.setVisibility(memoryTip.trim().isEmpty() ? View.GONE : View.VISIBLE);
+        }
+    }
+
     private void resetCardToFront() {
         isCardFlipped = false;
         cardFront.clearAnimation();
@@ -217,6 +208,7 @@ public class StudyActivity extends AppCompatActivity {
     }
 
     private void flipToBack() {
+        bindCardBack();
         cardFront.animate()
                 .rotationY(90)
                 .setDuration(150)
@@ -272,6 +264,9 @@ public class StudyActivity extends AppCompatActivity {
 
     @Override
     protected void onDestroy() {
+        if (loadRequest != null) {
+            loadRequest.cancel();
+        }
         if (tts != null) {
             tts.stop();
             tts.shutdown();
@@ -1,16 +1,24 @@
 package com.example.flashcard;
 
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
+import android.provider.OpenableColumns;
 import android.speech.tts.TextToSpeech;
-import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.graphics.drawable.DrawableCompat;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.core.widget.ContentLoadingProgressBar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -20,27 +28,59 @@ import com.example.flashcard.dialog.AddWordDialog;
 import com.example.flashcard.dialog.EditWordDialog;
 import com.example.flashcard.dialog.WordDetailDialog;
 import com.example.flashcard.model.Word;
+import com.example.flashcard.util.CollatedOrder;
+import com.example.flashcard.util.DeckLoader;
+import com.example.flashcard.util.PagedDeck;
 import com.example.flashcard.util.VocabularyDataManager;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.example.flashcard.util.WordImporter;
 
+import com.google.android.material.progressindicator.LinearProgressIndicator;
+
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class VocabularyListActivity extends AppCompatActivity {
 
-    private List<Word> wordList;
+    private static final int MENU_SORT_ADDED = 1;
+    private static final int MENU_SORT_ENGLISH = 2;
+    private static final int MENU_SORT_VIETNAMESE = 3;
+    private static final int MENU_IMPORT = 4;
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 5;
+
+    private PagedDeck wordList;
     private WordAdapter adapter;
     private TextToSpeech tts;
     private VocabularyDataManager dataManager;
     private String jsonFileName;
     private String categoryTitle;
     private RecyclerView recyclerView;
+    private ContentLoadingProgressBar progressBar;
+    private final ExecutorService pageReader = Executors.newSingleThreadExecutor();
+    // The order being read; a newer load or leaving the screen cancels it.
+    private DeckLoader.Request loadRequest;
+    // The set version the rows on screen reflect; -1 until the first load.
+    private long shownVersion = -1;
+    // The latest lookup started per word; only that one is shown, as it read the newest state.
+    private final Map<String, Integer> wordChanges = new HashMap<>();
+    private int wordChangeCount;
+    // Null keeps the order words were added in.
+    private CollatedOrder.Mode sortMode;
+    // The order the list on screen is in.
+    private CollatedOrder.Mode shownMode;
+    // The import streaming in, if any; leaving the screen stops it at its next read.
+    private DeckLoader.Request importRequest;
+    private final AtomicBoolean importCancelled = new AtomicBoolean();
+    private final ActivityResultLauncher<String[]> importPicker =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importWords);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,8 +95,6 @@ public class VocabularyListActivity extends AppCompatActivity {
         
         setContentView(R.layout.activity_vocabulary_list);
 
-        dataManager = new VocabularyDataManager(this);
-        
         jsonFileName = getIntent().getStringExtra("JSON_FILE_NAME");
         categoryTitle = getIntent().getStringExtra("CATEGORY_TITLE");
 
@@ -75,18 +113,20 @@ public class VocabularyListActivity extends AppCompatActivity {
         }
         toolbar.setNavigationOnClickListener(v -> finish());
         
-        loadWords();
-
         recyclerView = findViewById(R.id.recyclerViewWords);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        progressBar = findViewById(R.id.progressBar);
 
-        adapter = new WordAdapter(wordList, this::speakWord, (word, position) -> {
-            showEditWordDialog(word);
-        }, clickedWord -> {
-            showWordDetailDialog(clickedWord);
+        // The spinner covers the app's data setting up off the main thread, then the first read.
+        progressBar.show();
+        VocabularyDataManager.getInstance(this, ready -> {
+            if (isDestroyed()) {
+                return;
+            }
+            dataManager = ready;
+            loadWords();
         });
-        recyclerView.setAdapter(adapter);
-        
+
         Button btnAddWord = findViewById(R.id.btnAddWord);
         btnAddWord.setOnClickListener(v -> showAddWordDialog());
 
@@ -138,70 +178,232 @@ public class VocabularyListActivity extends AppCompatActivity {
         setupTextToSpeech();
     }
 
+    // Only the order is worked out up front, off the main thread; rows are then read a page at
+    // a time as the list scrolls, so a deck of any size opens in about the same time. The same
+    // order read again is diffed against the rows on screen off the main thread too, so the
+    // list keeps its place; a new order starts a fresh list. Until the order arrives the
+    // current list stays on screen, or a spinner on first open.
     private void loadWords() {
-        wordList = new ArrayList<>();
-        
-        boolean isUserCreated = dataManager.isUserCreatedSet(jsonFileName);
-        
-        if (isUserCreated) {
-            wordList = dataManager.getWordsForSet(jsonFileName);
-        } else {
-            try {
-                InputStream is = getAssets().open(jsonFileName);
-                InputStreamReader reader = new InputStreamReader(is);
-                Type listType = new TypeToken<List<Word>>() {}.getType();
-                List<Word> assetWords = new Gson().fromJson(reader, listType);
-                reader.close();
-                is.close();
-                
-                if (assetWords != null) {
-                    wordList.addAll(assetWords);
-                }
-            } catch (IOException e) {
-                Log.e("VocabularyListActivity", "Error loading words from assets", e);
-                Toast.makeText(this, "Lỗi khi tải từ vựng từ assets!", Toast.LENGTH_SHORT).show();
+        if (loadRequest != null) {
+            loadRequest.cancel();
+        }
+        if (wordList == null) {
+            progressBar.show();
+        }
+        CollatedOrder.Mode mode = sortMode;
+        WordAdapter.Update update = wordList != null && mode == shownMode ? adapter.startUpdate() : null;
+        // Opened from search: bring the matched word into view.
+        String wordId = wordList == null ? getIntent().getStringExtra("WORD_ID") : null;
+        loadRequest = dataManager.getDeckLoader().run(() -> {
+            // Read first: a write landing during the read shows up as a newer version later.
+            long version = dataManager.getSetVersion(jsonFileName);
+            PagedDeck.Source source = dataManager.getPagedSource(jsonFileName, mode);
+            if (update != null) {
+                update.calculate(source);
+            }
+            return new LoadedOrder(source, wordId != null ? source.wordIds().indexOf(wordId) : -1, version);
+        }, loaded -> {
+            loadRequest = null;
+            shownVersion = loaded.version;
+            PagedDeck.Source source = loaded.source;
+            int position = loaded.position;
+            if (update != null) {
+                adapter.dispatch(update);
+                return;
+            }
+            progressBar.hide();
+            boolean firstLoad = wordList == null;
+            if (wordList != null) {
+                wordList.close();
+            }
+            shownMode = mode;
+            wordList = new PagedDeck(source, PAGE_SIZE, MAX_PAGES, pageReader, this::runOnUiThread,
+                    (from, count) -> adapter.notifyItemRangeChanged(from, count));
+            adapter = new WordAdapter(wordList, this::speakWord, (clickedWord, clickedPosition) -> {
+                showEditWordDialog(clickedWord);
+            }, clickedWord -> {
+                showWordDetailDialog(clickedWord);
+            });
+            recyclerView.setAdapter(adapter);
+            if (!firstLoad) {
+                return;
+            }
+            if (wordList.size() == 0) {
+                Toast.makeText(this, "Không có từ vựng nào!", Toast.LENGTH_SHORT).show();
+            }
+            if (position >= 0) {
+                ((LinearLayoutManager) recyclerView.getLayoutManager()).scrollToPositionWithOffset(position, 0);
             }
+        });
+    }
+
+    private static final class LoadedOrder {
+        final PagedDeck.Source source;
+        // Where the word opened from search sits, or -1.
+        final int position;
+        final long version;
+
+        LoadedOrder(PagedDeck.Source source, int position, long version) {
+            this.source = source;
+            this.position = position;
+            this.version = version;
         }
-        
-        if (!isUserCreated) {
-            List<Word> userWords = dataManager.getWordsForSet(jsonFileName);
-            wordList.addAll(userWords);
+    }
+
+    // A word added, edited or deleted from this screen becomes one row event; the deck is not
+    // read again. Where it was and now goes are both looked up off the main thread: by ID in
+    // the set's index for added order, or with the collation keys kept for a sorted one.
+    private void showWordChange(String wordId) {
+        if (adapter == null) {
+            return;
         }
+        WordAdapter.WordChange change = adapter.startWordChange(wordId);
+        CollatedOrder.Mode mode = shownMode;
+        int generation = ++wordChangeCount;
+        wordChanges.put(wordId, generation);
+        dataManager.getDeckLoader().run(() -> {
+            long version = dataManager.getSetVersion(jsonFileName);
+            Word word = dataManager.findWord(jsonFileName, wordId);
+            change.calculate(word, word != null ? dataManager.getWordPosition(jsonFileName, mode, wordId) : -1);
+            return version;
+        }, version -> {
+            Integer latest = wordChanges.get(wordId);
+            if (isDestroyed() || latest == null || latest != generation) {
+                return;
+            }
+            wordChanges.remove(wordId);
+            if (mode != shownMode) {
+                // A new order was read meanwhile, and it was read after this change.
+                return;
+            }
+            adapter.applyWordChange(change);
+            // This screen's own write; anything else written meanwhile still reloads on resume.
+            if (version == shownVersion + 1) {
+                shownVersion = version;
+            }
+        });
+    }
 
-        if (wordList == null || wordList.isEmpty()) {
-            Toast.makeText(this, "Không có từ vựng nào!", Toast.LENGTH_SHORT).show();
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(0, MENU_SORT_ADDED, 0, "Sắp xếp theo thứ tự thêm");
+        menu.add(0, MENU_SORT_ENGLISH, 1, "Sắp xếp theo tiếng Anh (A-Z)");
+        menu.add(0, MENU_SORT_VIETNAMESE, 2, "Sắp xếp theo tiếng Việt (A-Z)");
+        menu.add(0, MENU_IMPORT, 3, "Nhập từ tệp (CSV/TSV/Anki)");
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (dataManager == null && (id == MENU_SORT_ADDED || id == MENU_SORT_ENGLISH
+                || id == MENU_SORT_VIETNAMESE || id == MENU_IMPORT)) {
+            return true;
+        }
+        if (id == MENU_SORT_ADDED || id == MENU_SORT_ENGLISH || id == MENU_SORT_VIETNAMESE) {
+            sortMode = id == MENU_SORT_ENGLISH ? CollatedOrder.Mode.ENGLISH
+                    : id == MENU_SORT_VIETNAMESE ? CollatedOrder.Mode.VIETNAMESE : null;
+            loadWords();
+            return true;
         }
+        if (id == MENU_IMPORT) {
+            importPicker.launch(new String[]{"text/*", "application/octet-stream"});
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    // Large exports can take a while, so the import streams on the deck loader's threads while a
+    // bar above the list shows how far it got. Chunks already written stay if it is stopped.
+    private void importWords(Uri uri) {
+        if (uri == null || importRequest != null) {
+            return;
+        }
+        String fileName = null;
+        long size = -1;
+        try (Cursor cursor = getContentResolver().query(uri, null, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int nameColumn = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                int sizeColumn = cursor.getColumnIndex(OpenableColumns.SIZE);
+                fileName = nameColumn >= 0 ? cursor.getString(nameColumn) : null;
+                size = sizeColumn >= 0 && !cursor.isNull(sizeColumn) ? cursor.getLong(sizeColumn) : -1;
+            }
+        }
+        WordImporter.Format format = WordImporter.Format.fromFileName(fileName);
+        long totalBytes = size;
+
+        View importContainer = findViewById(R.id.importContainer);
+        TextView importStatus = findViewById(R.id.tvImportStatus);
+        LinearProgressIndicator importProgress = findViewById(R.id.importProgress);
+        importStatus.setText("Đang nhập từ vựng...");
+        importProgress.setIndeterminate(totalBytes <= 0);
+        importProgress.setProgressCompat(0, false);
+        importContainer.setVisibility(View.VISIBLE);
+
+        importRequest = dataManager.getDeckLoader().run(() -> {
+            try (InputStream in = getContentResolver().openInputStream(uri)) {
+                if (in == null) {
+                    return null;
+                }
+                return dataManager.importWords(jsonFileName, new FilterInputStream(in) {
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        if (importCancelled.get()) {
+                            throw new InterruptedIOException("Import cancelled");
+                        }
+                        return super.read(buffer, offset, length);
+                    }
+                }, totalBytes, format, (read, total, imported) -> runOnUiThread(() -> {
+                    if (total > 0) {
+                        importProgress.setProgressCompat((int) Math.min(100, read * 100 / total), true);
+                    }
+                    importStatus.setText("Đang nhập từ vựng... (" + imported + " từ)");
+                }));
+            } catch (IOException e) {
+                return null;
+            }
+        }, result -> {
+            importRequest = null;
+            importContainer.setVisibility(View.GONE);
+            if (result == null) {
+                Toast.makeText(this, "Không thể đọc tệp!", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Đã nhập " + result.getImported() + " từ, bỏ qua "
+                        + result.getDuplicates() + " từ trùng", Toast.LENGTH_LONG).show();
+            }
+            loadWords();
+        });
     }
 
     private void showAddWordDialog() {
+        if (dataManager == null) {
+            return;
+        }
         AddWordDialog dialog = new AddWordDialog(
             this,
+            dataManager,
             jsonFileName,
             word -> {
-                loadWords();
-                adapter = new WordAdapter(wordList, this::speakWord, (w, position) -> {
-                    showEditWordDialog(w);
-                }, clickedWord -> {
-                    showWordDetailDialog(clickedWord);
-                });
-                recyclerView.setAdapter(adapter);
+                showWordChange(word.getId());
             }
         );
         dialog.show();
     }
     
+    // Words only change elsewhere while this screen is away; reread only if the set's version
+    // moved since the rows on screen were read.
     @Override
     protected void onResume() {
         super.onResume();
-        loadWords();
-        if (adapter != null && wordList != null) {
-            adapter = new WordAdapter(wordList, this::speakWord, (word, position) -> {
-                showEditWordDialog(word);
-            }, clickedWord -> {
-                showWordDetailDialog(clickedWord);
-            });
-            recyclerView.setAdapter(adapter);
+        if (wordList == null || loadRequest != null) {
+            return;
         }
+        loadRequest = dataManager.getDeckLoader().run(() -> dataManager.getSetVersion(jsonFileName), version -> {
+            loadRequest = null;
+            if (version != shownVersion) {
+                loadWords();
+            }
+        });
     }
 
     private void setupTextToSpeech() {
@@ -228,25 +430,14 @@ public class VocabularyListActivity extends AppCompatActivity {
     private void showEditWordDialog(Word word) {
         EditWordDialog dialog = new EditWordDialog(
             this,
+            dataManager,
             jsonFileName,
             word,
             updatedWord -> {
-                loadWords();
-                adapter = new WordAdapter(wordList, this::speakWord, (w, position) -> {
-                    showEditWordDialog(w);
-                }, clickedWord -> {
-                    showWordDetailDialog(clickedWord);
-                });
-                recyclerView.setAdapter(adapter);
+                showWordChange(updatedWord.getId());
             },
-            deletedWord -> {
-                loadWords();
-                adapter = new WordAdapter(wordList, this::speakWord, (w, position) -> {
-                    showEditWordDialog(w);
-                }, clickedWord -> {
-                    showWordDetailDialog(clickedWord);
-                });
-                recyclerView.setAdapter(adapter);
+            deletedWordId -> {
+                showWordChange(deletedWordId);
             }
         );
         dialog.show();
@@ -254,6 +445,17 @@ public class VocabularyListActivity extends AppCompatActivity {
     
     @Override
     protected void onDestroy() {
+        if (loadRequest != null) {
+            loadRequest.cancel();
+        }
+        if (importRequest != null) {
+            importCancelled.set(true);
+            importRequest.cancel();
+        }
+        if (wordList != null) {
+            wordList.close();
+        }
+        pageReader.shutdown();
         if (tts != null) {
             tts.stop();
             tts.shutdown();
@@ -0,0 +1,80 @@
+package com.example.flashcard.adapter;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.flashcard.R;
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+import com.example.flashcard.util.SearchIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapter.ResultViewHolder> {
+
+    private final Map<String, VocabularySet> setsByFile;
+    private final OnHitClickListener listener;
+    private List<SearchIndex.Hit> hits = new ArrayList<>();
+
+    public interface OnHitClickListener {
+        void onHitClick(SearchIndex.Hit hit);
+    }
+
+    public SearchResultAdapter(Map<String, VocabularySet> setsByFile, OnHitClickListener listener) {
+        this.setsByFile = setsByFile;
+        this.listener = listener;
+    }
+
+    public void setHits(List<SearchIndex.Hit> hits) {
+        this.hits = hits;
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public ResultViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_search_result, parent, false);
+        return new ResultViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ResultViewHolder holder, int position) {
+        SearchIndex.Hit hit = hits.get(position);
+        Word word = hit.getWord();
+        VocabularySet set = setsByFile.get(hit.getJsonFileName());
+
+        holder.tvEnglish.setText(word.getEnglish());
+        holder.tvVietnamese.setText(word.getVietnamese());
+        holder.tvDeck.setText(set != null ? set.getTitle() : hit.getJsonFileName());
+
+        holder.itemView.setOnClickListener(v -> {
+            if (listener != null) {
+                listener.onHitClick(hit);
+            }
+        });
+    }
+
+    @Override
+    public int getItemCount() {
+        return hits.size();
+    }
+
+    static class ResultViewHolder extends RecyclerView.ViewHolder {
+        TextView tvEnglish;
+        TextView tvVietnamese;
+        TextView tvDeck;
+
+        public ResultViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvEnglish = itemView.findViewById(R.id.tvEnglish);
+            tvVietnamese = itemView.findViewById(R.id.tvVietnamese);
+            tvDeck = itemView.findViewById(R.id.tvDeck);
+        }
+    }
+}
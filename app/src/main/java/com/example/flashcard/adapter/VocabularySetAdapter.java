@@ -1,23 +1,41 @@
 package com.example.flashcard.adapter;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.flashcard.R;
 import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.util.DeckFilter;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class VocabularySetAdapter extends RecyclerView.Adapter<VocabularySetAdapter.SetViewHolder> {
 
-    private List<VocabularySet> displayedSets;
-    private final List<VocabularySet> allSets;
+    private static final DiffUtil.ItemCallback<VocabularySet> DIFF = new DiffUtil.ItemCallback<VocabularySet>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull VocabularySet oldItem, @NonNull VocabularySet newItem) {
+            return oldItem.getJsonFileName().equals(newItem.getJsonFileName());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull VocabularySet oldItem, @NonNull VocabularySet newItem) {
+            return oldItem.getTitle().equals(newItem.getTitle()) && oldItem.getWordCount() == newItem.getWordCount();
+        }
+    };
+
+    // Both the filtering and the diff run off the main thread.
+    private final AsyncListDiffer<VocabularySet> differ = new AsyncListDiffer<>(this, DIFF);
+    private final DeckFilter filter = new DeckFilter(new Handler(Looper.getMainLooper())::post);
     private final OnItemClickListener listener;
     private final OnPlayButtonClickListener playButtonListener;
     private final OnItemLongClickListener longClickListener;
@@ -35,16 +53,14 @@ public class VocabularySetAdapter extends RecyclerView.Adapter<VocabularySetAdap
     }
 
     public VocabularySetAdapter(List<VocabularySet> vocabularySets, OnItemClickListener listener, OnPlayButtonClickListener playButtonListener) {
-        this.allSets = new ArrayList<>(vocabularySets);
-        this.displayedSets = vocabularySets;
+        setSets(vocabularySets);
         this.listener = listener;
         this.playButtonListener = playButtonListener;
         this.longClickListener = null;
     }
     
     public VocabularySetAdapter(List<VocabularySet> vocabularySets, OnItemClickListener listener, OnPlayButtonClickListener playButtonListener, OnItemLongClickListener longClickListener) {
-        this.allSets = new ArrayList<>(vocabularySets);
-        this.displayedSets = vocabularySets;
+        setSets(vocabularySets);
         this.listener = listener;
         this.playButtonListener = playButtonListener;
         this.longClickListener = longClickListener;
@@ -59,7 +75,7 @@ public class VocabularySetAdapter extends RecyclerView.Adapter<VocabularySetAdap
 
     @Override
     public void onBindViewHolder(@NonNull SetViewHolder holder, int position) {
-        VocabularySet set = displayedSets.get(position);
+        VocabularySet set = differ.getCurrentList().get(position);
         holder.tvSetTitle.setText(set.getTitle());
         
         holder.tvWordCount.setText(set.getWordCount() + " từ");
@@ -87,23 +103,28 @@ public class VocabularySetAdapter extends RecyclerView.Adapter<VocabularySetAdap
 
     @Override
     public int getItemCount() {
-        return displayedSets.size();
+        return differ.getCurrentList().size();
     }
 
 
-    public void filterList(String text) {
-        displayedSets = new ArrayList<>();
-        if (text.isEmpty()) {
-            displayedSets.addAll(allSets);
+    /** Applies only the rows that differ, keeping the query: the list is diffed once, after filtering. */
+    public void updateSets(List<VocabularySet> vocabularySets, String query) {
+        filter.setSets(vocabularySets);
+        if (query.trim().isEmpty()) {
+            differ.submitList(new ArrayList<>(vocabularySets));
         } else {
-            text = text.toLowerCase().trim();
-            for (VocabularySet item : allSets) {
-                if (item.getTitle().toLowerCase().contains(text)) {
-                    displayedSets.add(item);
-                }
-            }
+            filterList(query);
         }
-        notifyDataSetChanged();
+    }
+
+    private void setSets(List<VocabularySet> vocabularySets) {
+        differ.submitList(new ArrayList<>(vocabularySets));
+        filter.setSets(vocabularySets);
+    }
+
+    // Safe to call on every keystroke: results of superseded queries are never shown.
+    public void filterList(String text) {
+        filter.filter(text, (query, result) -> differ.submitList(result));
     }
 
     static class SetViewHolder extends RecyclerView.ViewHolder {
@@ -7,16 +7,27 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.flashcard.R;
 import com.example.flashcard.model.Word;
+import com.example.flashcard.util.PagedDeck;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public class WordAdapter extends RecyclerView.Adapter<WordAdapter.WordViewHolder> {
 
-    private final List<Word> wordList;
+    // Past this many added or removed words a diff costs more than redrawing the list.
+    private static final int MAX_DIFFED_CHANGES = 1000;
+
+    private final PagedDeck wordList;
     private final OnSpeakerClickListener speakerClickListener;
     private final OnItemLongClickListener longClickListener;
     private final OnItemClickListener itemClickListener;
@@ -25,6 +36,7 @@ public class WordAdapter extends RecyclerView.Adapter<WordAdapter.WordViewHolder
         void onSpeakerClick(String word);
     }
     
+    // Both get the word bound to the row, so opening it reads nothing.
     public interface OnItemLongClickListener {
         void onItemLongClick(Word word, int position);
     }
@@ -33,25 +45,28 @@ public class WordAdapter extends RecyclerView.Adapter<WordAdapter.WordViewHolder
         void onItemClick(Word word);
     }
 
-    public WordAdapter(List<Word> wordList, OnSpeakerClickListener listener) {
+    public WordAdapter(PagedDeck wordList, OnSpeakerClickListener listener) {
         this.wordList = wordList;
         this.speakerClickListener = listener;
         this.longClickListener = null;
         this.itemClickListener = null;
+        setHasStableIds(true);
     }
     
-    public WordAdapter(List<Word> wordList, OnSpeakerClickListener listener, OnItemLongClickListener longClickListener) {
+    public WordAdapter(PagedDeck wordList, OnSpeakerClickListener listener, OnItemLongClickListener longClickListener) {
         this.wordList = wordList;
         this.speakerClickListener = listener;
         this.longClickListener = longClickListener;
         this.itemClickListener = null;
+        setHasStableIds(true);
     }
     
-    public WordAdapter(List<Word> wordList, OnSpeakerClickListener listener, OnItemLongClickListener longClickListener, OnItemClickListener itemClickListener) {
+    public WordAdapter(PagedDeck wordList, OnSpeakerClickListener listener, OnItemLongClickListener longClickListener, OnItemClickListener itemClickListener) {
         this.wordList = wordList;
         this.speakerClickListener = listener;
         this.longClickListener = longClickListener;
         this.itemClickListener = itemClickListener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -63,11 +78,16 @@ public class WordAdapter extends RecyclerView.Adapter<WordAdapter.WordViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull WordViewHolder holder, int position) {
-        Word word = wordList.get(position);
+        Word word = wordList.wordAt(position);
+        if (word == null) {
+            bindPlaceholder(holder);
+            return;
+        }
+        String english = word.getEnglish();
         
         holder.tvVietnamese.setText(word.getVietnamese());
         
-        holder.tvEnglish.setText(word.getEnglish());
+        holder.tvEnglish.setText(english);
         
         if (word.getPronunciation() != null && !word.getPronunciation().isEmpty()) {
             holder.tvPronunciation.setText("[" + word.getPronunciation() + "]");
@@ -82,13 +102,13 @@ public class WordAdapter extends RecyclerView.Adapter<WordAdapter.WordViewHolder
         if (holder.speakerButtonContainer != null) {
             holder.speakerButtonContainer.setOnClickListener(v -> {
                 if (speakerClickListener != null) {
-                    speakerClickListener.onSpeakerClick(word.getEnglish());
+                    speakerClickListener.onSpeakerClick(english);
                 }
             });
         } else {
             holder.ivSpeaker.setOnClickListener(v -> {
                 if (speakerClickListener != null) {
-                    speakerClickListener.onSpeakerClick(word.getEnglish());
+                    speakerClickListener.onSpeakerClick(english);
                 }
             });
         }
@@ -101,18 +121,204 @@ public class WordAdapter extends RecyclerView.Adapter<WordAdapter.WordViewHolder
         
         holder.itemView.setOnLongClickListener(v -> {
             if (longClickListener != null) {
-                longClickListener.onItemLongClick(word, position);
+                longClickListener.onItemLongClick(word, holder.getBindingAdapterPosition());
                 return true;
             }
             return false;
         });
     }
 
+    // The row's page is still being read; it is bound again once the page arrives.
+    private void bindPlaceholder(WordViewHolder holder) {
+        holder.tvVietnamese.setText("…");
+        holder.tvEnglish.setText("");
+        holder.tvPronunciation.setVisibility(View.GONE);
+        holder.tvExample.setVisibility(View.GONE);
+        holder.tvMemoryTip.setVisibility(View.GONE);
+        if (holder.speakerButtonContainer != null) {
+            holder.speakerButtonContainer.setOnClickListener(null);
+        } else {
+            holder.ivSpeaker.setOnClickListener(null);
+        }
+        holder.itemView.setOnClickListener(null);
+        holder.itemView.setOnLongClickListener(null);
+    }
+
     @Override
     public int getItemCount() {
         return wordList != null ? wordList.size() : 0;
     }
 
+    // Derived from the word ID, so nothing is kept per row across reloads. 64 bits of FNV-1a
+    // make a clash between two words of one deck vanishingly rare.
+    @Override
+    public long getItemId(int position) {
+        String wordId = wordList.getId(position);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < wordId.length(); i++) {
+            hash ^= wordId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Takes the rows as they are now, so where one word was and now goes can be worked out
+     * off the main thread with {@link WordChange#calculate}.
+     */
+    public WordChange startWordChange(String wordId) {
+        return new WordChange(wordId, wordList, wordList.wordIds(), wordList.revision());
+    }
+
+    /**
+     * Shows one added, edited or deleted word as a single row event. If the rows changed
+     * since the change was started, its old position is looked up again, in O(log n).
+     */
+    public void applyWordChange(WordChange change) {
+        int oldPosition = change.rows == wordList && change.revision == wordList.revision()
+                ? change.oldPosition : wordList.indexOf(change.wordId);
+        applyWordChange(change.word, change.position, oldPosition);
+    }
+
+    // The position is where the store now lists the word, or -1 if it was deleted.
+    private void applyWordChange(Word word, int position, int oldPosition) {
+        if (oldPosition < 0) {
+            if (position >= 0) {
+                wordList.insert(position, word);
+                notifyItemInserted(position);
+            }
+        } else if (position < 0) {
+            wordList.remove(oldPosition);
+            notifyItemRemoved(oldPosition);
+        } else {
+            if (oldPosition != position) {
+                wordList.move(oldPosition, position);
+                notifyItemMoved(oldPosition, position);
+            }
+            wordList.set(position, word);
+            notifyItemChanged(position);
+        }
+    }
+
+    /** Takes what is on screen now; call on the main thread, then {@link Update#calculate} off it. */
+    public Update startUpdate() {
+        return new Update(wordList.wordIds(), wordList.loadedWords(), wordList.revision());
+    }
+
+    /** Moves the list to the update's source with the row events its diff found. */
+    public void dispatch(Update update) {
+        if (update.source == null) {
+            return;
+        }
+        boolean unchanged = update.revision == wordList.revision();
+        wordList.replace(update.source, update.refreshed);
+        if (update.result != null && unchanged) {
+            update.result.dispatchUpdatesTo(this);
+        } else {
+            // Too many changes, or a single-word change landed while the diff ran.
+            notifyDataSetChanged();
+        }
+    }
+
+    /** One word's place before and after an edit. */
+    public static final class WordChange {
+        private final String wordId;
+        private final PagedDeck rows;
+        private final List<String> before;
+        private final int revision;
+        private Word word;
+        private int position = -1;
+        private int oldPosition = -1;
+
+        private WordChange(String wordId, PagedDeck rows, List<String> before, int revision) {
+            this.wordId = wordId;
+            this.rows = rows;
+            this.before = before;
+            this.revision = revision;
+        }
+
+        /** The word as now stored, or null if deleted, and where the store lists it; runs off the main thread. */
+        public void calculate(Word word, int position) {
+            this.word = word;
+            this.position = word != null ? position : -1;
+            this.oldPosition = before.indexOf(wordId);
+        }
+    }
+
+    /** A fresh read of the deck diffed against the rows shown when it was started. */
+    public static final class Update {
+        private final List<String> before;
+        private final Map<String, Word> loaded;
+        private final int revision;
+        private PagedDeck.Source source;
+        private Map<String, Word> refreshed;
+        private DiffUtil.DiffResult result;
+
+        private Update(List<String> before, Map<String, Word> loaded, int revision) {
+            this.before = before;
+            this.loaded = loaded;
+            this.revision = revision;
+        }
+
+        /** Rereads the words in memory and diffs the two orders; runs off the main thread. */
+        public void calculate(PagedDeck.Source next) {
+            List<String> after = next.wordIds();
+            List<String> loadedIds = new ArrayList<>(loaded.keySet());
+            List<Word> reread = next.read(loadedIds);
+            Map<String, Word> fresh = new HashMap<>();
+            Set<String> changed = new HashSet<>();
+            for (int i = 0; i < loadedIds.size(); i++) {
+                Word word = reread.get(i);
+                if (word == null) {
+                    continue;
+                }
+                fresh.put(word.getId(), word);
+                if (!sameText(word, loaded.get(word.getId()))) {
+                    changed.add(word.getId());
+                }
+            }
+            Set<String> beforeIds = new HashSet<>(before);
+            int added = 0;
+            for (String wordId : after) {
+                if (!beforeIds.contains(wordId)) {
+                    added++;
+                }
+            }
+            int removed = before.size() - (after.size() - added);
+            if (added + removed <= MAX_DIFFED_CHANGES) {
+                result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                    @Override
+                    public int getOldListSize() {
+                        return before.size();
+                    }
+
+                    @Override
+                    public int getNewListSize() {
+                        return after.size();
+                    }
+
+                    @Override
+                    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                        return before.get(oldItemPosition).equals(after.get(newItemPosition));
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                        return !changed.contains(after.get(newItemPosition));
+                    }
+                }, false);
+            }
+            refreshed = fresh;
+            source = next;
+        }
+
+        private static boolean sameText(Word a, Word b) {
+            return b != null && Objects.equals(a.getEnglish(), b.getEnglish())
+                    && Objects.equals(a.getVietnamese(), b.getVietnamese())
+                    && Objects.equals(a.getPronunciation(), b.getPronunciation());
+        }
+    }
+
     static class WordViewHolder extends RecyclerView.ViewHolder {
         TextView tvVietnamese;
         TextView tvEnglish;
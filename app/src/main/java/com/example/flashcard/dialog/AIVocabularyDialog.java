@@ -52,10 +52,11 @@ public class AIVocabularyDialog extends Dialog {
         void onVocabularyGenerated(VocabularySet set, List<Word> words);
     }
     
-    public AIVocabularyDialog(@NonNull Context context, OnVocabularyGeneratedListener listener) {
+    public AIVocabularyDialog(@NonNull Context context, VocabularyDataManager dataManager,
+                              OnVocabularyGeneratedListener listener) {
         super(context);
         this.listener = listener;
-        this.dataManager = new VocabularyDataManager(context);
+        this.dataManager = dataManager;
         this.gptApiService = new GPTApiService();
         this.configApiKey = BuildConfig.OPENAI_API_KEY;
     }
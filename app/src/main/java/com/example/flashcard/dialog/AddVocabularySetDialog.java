@@ -24,10 +24,11 @@ public class AddVocabularySetDialog extends Dialog {
         void onVocabularySetAdded(VocabularySet set);
     }
     
-    public AddVocabularySetDialog(@NonNull Context context, OnVocabularySetAddedListener listener) {
+    public AddVocabularySetDialog(@NonNull Context context, VocabularyDataManager dataManager,
+                                  OnVocabularySetAddedListener listener) {
         super(context);
         this.listener = listener;
-        this.dataManager = new VocabularyDataManager(context);
+        this.dataManager = dataManager;
     }
     
     @Override
@@ -3,33 +3,57 @@ package com.example.flashcard.dialog;
 import android.app.Dialog;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 
 import com.example.flashcard.R;
+import com.example.flashcard.model.VocabularySet;
 import com.example.flashcard.model.Word;
+import com.example.flashcard.util.FuzzyIndex;
+import com.example.flashcard.util.SearchIndex;
 import com.example.flashcard.util.VocabularyDataManager;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class AddWordDialog extends Dialog {
     
     private OnWordAddedListener listener;
     private EditText etEnglish, etVietnamese, etPronunciation;
     private String jsonFileName;
     private VocabularyDataManager dataManager;
+    private TextView tvSimilarWords;
+    private SearchIndex index;
+    private final Map<String, String> titles = new HashMap<>();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Bumped on every keystroke so a slower, older lookup never overwrites a newer one.
+    private int lookupGeneration;
     
     public interface OnWordAddedListener {
         void onWordAdded(Word word);
     }
     
-    public AddWordDialog(@NonNull Context context, String jsonFileName, OnWordAddedListener listener) {
+    public AddWordDialog(@NonNull Context context, VocabularyDataManager dataManager, String jsonFileName,
+                         OnWordAddedListener listener) {
         super(context);
         this.jsonFileName = jsonFileName;
         this.listener = listener;
-        this.dataManager = new VocabularyDataManager(context);
+        this.dataManager = dataManager;
     }
     
     @Override
@@ -40,11 +64,44 @@ public class AddWordDialog extends Dialog {
         etEnglish = findViewById(R.id.etEnglish);
         etVietnamese = findViewById(R.id.etVietnamese);
         etPronunciation = findViewById(R.id.etPronunciation);
+        tvSimilarWords = findViewById(R.id.tvSimilarWords);
         Button btnCancel = findViewById(R.id.btnCancel);
         Button btnAdd = findViewById(R.id.btnAdd);
         
         btnCancel.setOnClickListener(v -> dismiss());
         
+        etEnglish.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                showSimilarWords();
+            }
+        });
+        
+        // Suggestions cover this deck and the user's own sets; built off the UI thread.
+        worker.execute(() -> {
+            List<String> jsonFileNames = new ArrayList<>();
+            jsonFileNames.add(jsonFileName);
+            Map<String, String> setTitles = new HashMap<>();
+            for (VocabularySet set : dataManager.getUserVocabularySets()) {
+                jsonFileNames.add(set.getJsonFileName());
+                setTitles.put(set.getJsonFileName(), set.getTitle());
+            }
+            SearchIndex built = dataManager.getSearchIndex(jsonFileNames);
+            mainHandler.post(() -> {
+                titles.putAll(setTitles);
+                index = built;
+                showSimilarWords();
+            });
+        });
+        
         btnAdd.setOnClickListener(v -> {
             String english = etEnglish.getText().toString().trim();
             String vietnamese = etVietnamese.getText().toString().trim();
@@ -61,15 +118,89 @@ public class AddWordDialog extends Dialog {
             }
             
             Word newWord = new Word(english, vietnamese, pronunciation);
-            dataManager.addWordToSet(jsonFileName, newWord);
-            
-            if (listener != null) {
-                listener.onWordAdded(newWord);
-            }
-            
-            Toast.makeText(getContext(), "Đã thêm từ vựng mới!", Toast.LENGTH_SHORT).show();
-            dismiss();
+            btnAdd.setEnabled(false);
+            // The write goes to disk; keep it off the UI thread and close once it is saved.
+            worker.execute(() -> {
+                dataManager.addWordToSet(jsonFileName, newWord);
+                mainHandler.post(() -> {
+                    if (listener != null) {
+                        listener.onWordAdded(newWord);
+                    }
+                    
+                    Toast.makeText(getContext(), "Đã thêm từ vựng mới!", Toast.LENGTH_SHORT).show();
+                    dismiss();
+                });
+            });
+        });
+    }
+    
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Lets a pending add finish; lookups still queued are dropped by the generation check.
+        lookupGeneration++;
+        worker.shutdown();
+    }
+    
+    // Catches both duplicates and misspellings of words the user already has.
+    private void showSimilarWords() {
+        int generation = ++lookupGeneration;
+        String english = etEnglish.getText().toString().trim();
+        SearchIndex current = index;
+        if (current == null || english.isEmpty() || worker.isShutdown()) {
+            tvSimilarWords.setVisibility(View.GONE);
+            return;
+        }
+        worker.execute(() -> {
+            String message = similarWordsMessage(current, english);
+            mainHandler.post(() -> {
+                if (generation != lookupGeneration) {
+                    return;
+                }
+                if (message == null) {
+                    tvSimilarWords.setVisibility(View.GONE);
+                } else {
+                    tvSimilarWords.setText(message);
+                    tvSimilarWords.setVisibility(View.VISIBLE);
+                }
+            });
         });
     }
+    
+    // Runs on the worker; the index allows concurrent reads.
+    private String similarWordsMessage(SearchIndex current, String english) {
+        List<FuzzyIndex.Match> matches = current.closestEnglish(english, 3);
+        if (matches.isEmpty()) {
+            return null;
+        }
+        if (matches.get(0).getDistance() == 0) {
+            // The index spans several sets, so say which one already has the word.
+            String otherSet = null;
+            for (SearchIndex.Hit hit : current.search(english + " ", 20)) {
+                if (hit.getField() != SearchIndex.FIELD_ENGLISH
+                        || !hit.getWord().getEnglish().trim().equalsIgnoreCase(english)) {
+                    continue;
+                }
+                if (hit.getJsonFileName().equals(jsonFileName)) {
+                    return "Từ này đã có trong bộ từ vựng này";
+                }
+                if (otherSet == null) {
+                    otherSet = hit.getJsonFileName();
+                }
+            }
+            if (otherSet != null) {
+                String title = titles.get(otherSet);
+                return title != null ? "Từ này đã có trong bộ \"" + title + "\""
+                        : "Từ này đã có trong một bộ từ vựng khác";
+            }
+        }
+        StringBuilder terms = new StringBuilder();
+        for (FuzzyIndex.Match match : matches) {
+            if (terms.length() > 0) {
+                terms.append(", ");
+            }
+            terms.append(match.getTerm());
+        }
+        return "Từ gần giống đã có: " + terms;
+    }
 }
-
@@ -30,14 +30,15 @@ public class EditVocabularySetDialog extends Dialog {
         void onVocabularySetDeleted(VocabularySet set);
     }
     
-    public EditVocabularySetDialog(@NonNull Context context, VocabularySet vocabularySet, 
+    public EditVocabularySetDialog(@NonNull Context context, VocabularyDataManager dataManager,
+                                   VocabularySet vocabularySet,
                                    OnVocabularySetUpdatedListener listener,
                                    OnVocabularySetDeletedListener deleteListener) {
         super(context);
         this.vocabularySet = vocabularySet;
         this.listener = listener;
         this.deleteListener = deleteListener;
-        this.dataManager = new VocabularyDataManager(context);
+        this.dataManager = dataManager;
     }
     
     @Override
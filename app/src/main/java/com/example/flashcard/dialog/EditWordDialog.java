@@ -28,18 +28,20 @@ public class EditWordDialog extends Dialog {
     }
     
     public interface OnWordDeletedListener {
-        void onWordDeleted(Word word);
+        void onWordDeleted(String wordId);
     }
     
-    public EditWordDialog(@NonNull Context context, String jsonFileName, Word word,
+    // The word as shown in the list; saving and deleting write off the main thread.
+    public EditWordDialog(@NonNull Context context, VocabularyDataManager dataManager, String jsonFileName,
+                         Word word,
                          OnWordUpdatedListener listener,
                          OnWordDeletedListener deleteListener) {
         super(context);
         this.jsonFileName = jsonFileName;
-        this.word = word;
         this.listener = listener;
         this.deleteListener = deleteListener;
-        this.dataManager = new VocabularyDataManager(context);
+        this.dataManager = dataManager;
+        this.word = word;
     }
     
     @Override
@@ -78,30 +80,38 @@ public class EditWordDialog extends Dialog {
             }
             
             Word updatedWord = new Word(english, vietnamese, pronunciation);
-            dataManager.updateWordInSet(jsonFileName, word, updatedWord);
-            
-            if (listener != null) {
-                listener.onWordUpdated(updatedWord);
-            }
-            
-            Toast.makeText(getContext(), "Đã cập nhật từ vựng!", Toast.LENGTH_SHORT).show();
-            dismiss();
+            btnSave.setEnabled(false);
+            dataManager.getDeckLoader().run(() -> dataManager.updateWordInSet(jsonFileName, word.getId(), updatedWord),
+                    updated -> {
+                        if (!updated) {
+                            btnSave.setEnabled(true);
+                            Toast.makeText(getContext(), "Cập nhật thất bại!", Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        if (listener != null) {
+                            listener.onWordUpdated(updatedWord);
+                        }
+                        Toast.makeText(getContext(), "Đã cập nhật từ vựng!", Toast.LENGTH_SHORT).show();
+                        dismiss();
+                    });
         });
         
         btnDelete.setOnClickListener(v -> {
             new android.app.AlertDialog.Builder(getContext())
                 .setTitle("Xác nhận xóa")
                 .setMessage("Bạn có chắc chắn muốn xóa từ vựng '" + word.getEnglish() + "'?")
-                .setPositiveButton("Xóa", (dialog, which) -> {
-                    dataManager.deleteWordFromSet(jsonFileName, word);
-                    
-                    if (deleteListener != null) {
-                        deleteListener.onWordDeleted(word);
-                    }
-                    
-                    Toast.makeText(getContext(), "Đã xóa từ vựng!", Toast.LENGTH_SHORT).show();
-                    dismiss();
-                })
+                .setPositiveButton("Xóa", (dialog, which) -> dataManager.getDeckLoader().run(
+                        () -> dataManager.deleteWordFromSet(jsonFileName, word.getId()), deleted -> {
+                            if (!deleted) {
+                                Toast.makeText(getContext(), "Xóa thất bại!", Toast.LENGTH_SHORT).show();
+                                return;
+                            }
+                            if (deleteListener != null) {
+                                deleteListener.onWordDeleted(word.getId());
+                            }
+                            Toast.makeText(getContext(), "Đã xóa từ vựng!", Toast.LENGTH_SHORT).show();
+                            dismiss();
+                        }))
                 .setNegativeButton("Hủy", null)
                 .show();
         });
@@ -0,0 +1,161 @@
+package com.example.flashcard.dialog;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.flashcard.R;
+import com.example.flashcard.adapter.SearchResultAdapter;
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+import com.example.flashcard.util.FuzzyIndex;
+import com.example.flashcard.util.SearchIndex;
+import com.example.flashcard.util.VocabularyDataManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SearchDialog extends Dialog {
+
+    private static final int MAX_RESULTS = 50;
+
+    private final List<VocabularySet> sets;
+    private final OnResultClickListener listener;
+    private final VocabularyDataManager dataManager;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private SearchIndex index;
+    private EditText etQuery;
+    private TextView tvStatus;
+    private SearchResultAdapter adapter;
+    private String suggestion;
+
+    public interface OnResultClickListener {
+        void onResultClick(VocabularySet set, Word word);
+    }
+
+    public SearchDialog(@NonNull Context context, VocabularyDataManager dataManager, List<VocabularySet> sets,
+                        OnResultClickListener listener) {
+        super(context);
+        this.sets = new ArrayList<>(sets);
+        this.listener = listener;
+        this.dataManager = dataManager;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.dialog_search);
+        if (getWindow() != null) {
+            getWindow().setLayout(android.view.ViewGroup.LayoutParams.MATCH_PARENT,
+                    android.view.ViewGroup.LayoutParams.WRAP_CONTENT);
+        }
+
+        etQuery = findViewById(R.id.etQuery);
+        tvStatus = findViewById(R.id.tvStatus);
+        RecyclerView recyclerView = findViewById(R.id.recyclerViewResults);
+        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+
+        Map<String, VocabularySet> setsByFile = new HashMap<>();
+        List<String> jsonFileNames = new ArrayList<>();
+        for (VocabularySet set : sets) {
+            setsByFile.put(set.getJsonFileName(), set);
+            jsonFileNames.add(set.getJsonFileName());
+        }
+        adapter = new SearchResultAdapter(setsByFile, hit -> {
+            VocabularySet set = setsByFile.get(hit.getJsonFileName());
+            if (set != null && listener != null) {
+                dismiss();
+                listener.onResultClick(set, hit.getWord());
+            }
+        });
+        recyclerView.setAdapter(adapter);
+
+        etQuery.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                runQuery();
+            }
+        });
+
+        tvStatus.setOnClickListener(v -> {
+            if (suggestion != null) {
+                etQuery.setText(suggestion);
+                etQuery.setSelection(suggestion.length());
+            }
+        });
+
+        // The first search reads every deck into the index, so build it off the UI thread.
+        tvStatus.setText("Đang chuẩn bị tìm kiếm...");
+        tvStatus.setVisibility(View.VISIBLE);
+        worker.execute(() -> {
+            SearchIndex built = dataManager.getSearchIndex(jsonFileNames);
+            mainHandler.post(() -> {
+                if (worker.isShutdown()) {
+                    return;
+                }
+                index = built;
+                runQuery();
+            });
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // A build already reading is left to finish, as an interrupt closes the storage
+        // channels it reads through; its result is dropped.
+        worker.shutdown();
+    }
+
+    // Queries take well under a millisecond, so they run on every keystroke.
+    private void runQuery() {
+        if (index == null) {
+            return;
+        }
+        String query = etQuery.getText().toString();
+        List<SearchIndex.Hit> hits = query.trim().isEmpty()
+                ? new ArrayList<>() : index.search(query, MAX_RESULTS);
+        adapter.setHits(hits);
+        suggestion = null;
+        if (query.trim().isEmpty()) {
+            tvStatus.setText("Nhập từ tiếng Anh, tiếng Việt, ví dụ hoặc mẹo ghi nhớ");
+            tvStatus.setVisibility(View.VISIBLE);
+        } else if (hits.isEmpty()) {
+            // Most empty results are typos; offer the nearest headword instead.
+            List<FuzzyIndex.Match> closest = index.closestEnglish(query, 1);
+            if (!closest.isEmpty()) {
+                suggestion = closest.get(0).getTerm();
+                tvStatus.setText("Không tìm thấy. Có phải bạn muốn tìm: " + suggestion + "?");
+            } else {
+                tvStatus.setText("Không tìm thấy từ vựng nào!");
+            }
+            tvStatus.setVisibility(View.VISIBLE);
+        } else {
+            tvStatus.setVisibility(View.GONE);
+        }
+    }
+}
@@ -44,15 +44,18 @@ public class WordDetailDialog extends Dialog {
             tvPronunciation.setVisibility(View.GONE);
         }
         
-        if (word != null && !TextUtils.isEmpty(word.getExample())) {
-            tvExample.setText(word.getExample());
+        // Decoded here, when the dialog is actually shown, and only once per field.
+        String example = word != null ? word.getExample() : null;
+        if (!TextUtils.isEmpty(example)) {
+            tvExample.setText(example);
             tvExample.setVisibility(View.VISIBLE);
         } else {
             tvExample.setVisibility(View.GONE);
         }
         
-        if (word != null && !TextUtils.isEmpty(word.getMemoryTip())) {
-            tvMemoryTip.setText(word.getMemoryTip());
+        String memoryTip = word != null ? word.getMemoryTip() : null;
+        if (!TextUtils.isEmpty(memoryTip)) {
+            tvMemoryTip.setText(memoryTip);
             tvMemoryTip.setVisibility(View.VISIBLE);
         } else {
             tvMemoryTip.setVisibility(View.GONE);
@@ -0,0 +1,226 @@
+package com.example.flashcard.model;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Example sentences and memory tips, kept compressed until something shows them. Text is
+ * stored as UTF-8 and, when long enough to gain, deflated against a preset dictionary of
+ * phrases that recur in generated decks. {@link #getText()} decodes on every call and
+ * caches nothing.
+ *
+ * <p>Layout: a format byte, the UTF-8 length as a varint, then the payload. Bytes written
+ * with one format must always decode the same way, so a new dictionary needs a new format.
+ */
+public final class CompressedText implements Serializable {
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATE_V1 = 1;
+
+    public static final CompressedText EMPTY = new CompressedText(new byte[]{RAW, 0});
+
+    // Below this the deflate block overhead eats the gain.
+    private static final int MIN_COMPRESS_BYTES = 24;
+
+    // Deflate reaches back into the dictionary as if it preceded the text; the most common
+    // phrases go last, where matches are cheapest.
+    private static final byte[] DICTIONARY = (
+            "was were has have had been will would could should can may might must "
+            + "yesterday tomorrow tonight this morning last night next week every weekend "
+            + "because although before after during while when where which who that "
+            + "teacher students friends family parents children mother father brother sister "
+            + "school office hospital restaurant market city country house room "
+            + "important beautiful different difficult interesting expensive delicious "
+            + "I think we should you can they usually she often he never it is very "
+            + "Could you please Don't forget to Remember to It's important to "
+            + "a lot of one of the in front of at the end of for example such as "
+            + "He is She is They are We are It was There is There are I am "
+            + " in the on the at the to the of the for the with the from the and the "
+            + "is a is the are the his her their our my your "
+            + "sẽ đã đang rất nhiều những các mọi cũng còn chỉ thêm nữa "
+            + "trước sau trong ngoài trên dưới giữa bên cạnh "
+            + "hãy tưởng tượng bạn đang Hãy tưởng tượng Tưởng tượng Liên tưởng đến "
+            + "Nghe giống như Nghe như nghe giống đọc là phát âm gần giống âm thanh "
+            + "có nghĩa là nghĩa là chính là tức là giống như như là "
+            + "Mẹo: Nhớ: Hãy nhớ Dễ nhớ để dễ nhớ ghi nhớ từ này chữ đầu tiên "
+            + "người ta mọi người chúng ta trong cuộc sống hàng ngày mỗi ngày "
+            + "không có được của và là để với khi một người bạn nhé!").getBytes(StandardCharsets.UTF_8);
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_COMPRESSION, true);
+        }
+    };
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    private final byte[] data;
+
+    private CompressedText(byte[] data) {
+        this.data = data;
+    }
+
+    public static CompressedText of(String text) {
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        int header = 1 + varintSize(utf8.length);
+        if (utf8.length >= MIN_COMPRESS_BYTES) {
+            byte[] deflated = deflate(utf8);
+            if (deflated.length < utf8.length) {
+                return new CompressedText(withHeader(DEFLATE_V1, utf8.length, deflated, header));
+            }
+        }
+        return new CompressedText(withHeader(RAW, utf8.length, utf8, header));
+    }
+
+    /** Wraps bytes previously returned by {@link #toByteArray()}. */
+    public static CompressedText fromByteArray(byte[] bytes) {
+        if (bytes.length < 2 || (bytes[0] != RAW && bytes[0] != DEFLATE_V1)) {
+            throw new IllegalArgumentException("Unknown text format");
+        }
+        return bytes.length == 2 && bytes[1] == 0 ? EMPTY : new CompressedText(bytes.clone());
+    }
+
+    /** Decodes text stored at {@code offset} by {@link #copyTo}; {@code length} is its stored size. */
+    public static String decode(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return "";
+        }
+        int position = offset + 1;
+        int textLength = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position++];
+            textLength |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        if (bytes[offset] == RAW) {
+            return new String(bytes, position, textLength, StandardCharsets.UTF_8);
+        }
+        byte[] utf8 = new byte[textLength];
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY);
+        inflater.setInput(bytes, position, offset + length - position);
+        try {
+            int read = 0;
+            while (read < textLength) {
+                int n = inflater.inflate(utf8, read, textLength - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != textLength) {
+                throw new IllegalStateException("Truncated text");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt text", e);
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    public String getText() {
+        return decode(data, 0, data.length);
+    }
+
+    public boolean isEmpty() {
+        return data[1] == 0;
+    }
+
+    public boolean isCompressed() {
+        return data[0] == DEFLATE_V1;
+    }
+
+    /** Size of the stored form, header included. */
+    public int size() {
+        return data.length;
+    }
+
+    /** UTF-8 length of the text, known without decoding. */
+    public int textSize() {
+        int textLength = 0;
+        for (int position = 1, shift = 0; ; shift += 7) {
+            byte b = data[position++];
+            textLength |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return textLength;
+            }
+        }
+    }
+
+    public void copyTo(byte[] dest, int offset) {
+        System.arraycopy(data, 0, dest, offset, data.length);
+    }
+
+    public byte[] toByteArray() {
+        return data.clone();
+    }
+
+    private static byte[] deflate(byte[] utf8) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(utf8);
+        deflater.finish();
+        byte[] buffer = new byte[utf8.length + 16];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static byte[] withHeader(byte format, int textLength, byte[] payload, int header) {
+        byte[] bytes = new byte[header + payload.length];
+        bytes[0] = format;
+        int position = 1;
+        int value = textLength;
+        while ((value & ~0x7f) != 0) {
+            bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position] = (byte) value;
+        System.arraycopy(payload, 0, bytes, header, payload.length);
+        return bytes;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof CompressedText && Arrays.equals(data, ((CompressedText) o).data));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(data);
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.flashcard.model;
+
+public class DeckMetadata {
+    private final String jsonFileName;
+    private final int wordCount;
+    private final long lastModified;
+    private final long version;
+    private final long checksum;
+
+    public DeckMetadata(String jsonFileName, int wordCount, long lastModified, long version, long checksum) {
+        this.jsonFileName = jsonFileName;
+        this.wordCount = wordCount;
+        this.lastModified = lastModified;
+        this.version = version;
+        this.checksum = checksum;
+    }
+
+    public String getJsonFileName() {
+        return jsonFileName;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+}
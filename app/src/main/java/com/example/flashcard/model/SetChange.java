@@ -0,0 +1,93 @@
+package com.example.flashcard.model;
+
+import java.util.List;
+
+/**
+ * One change to the user's sets, numbered by the store's change version, which goes up by one
+ * with every change. The title is set for added and renamed sets, the word count for added
+ * sets and count changes.
+ */
+public class SetChange {
+
+    public enum Type {
+        SET_ADDED,
+        SET_REMOVED,
+        SET_RENAMED,
+        WORD_COUNT_CHANGED
+    }
+
+    private final Type type;
+    private final long version;
+    private final String jsonFileName;
+    private final String title;
+    private final int wordCount;
+
+    public SetChange(Type type, long version, String jsonFileName, String title, int wordCount) {
+        this.type = type;
+        this.version = version;
+        this.jsonFileName = jsonFileName;
+        this.title = title;
+        this.wordCount = wordCount;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getJsonFileName() {
+        return jsonFileName;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Applies the change to a list of sets; returns false if the list already had it, so a
+     * change can safely be applied twice. Changed rows are replaced rather than edited, so a
+     * diff against the old list still sees the difference.
+     */
+    public boolean applyTo(List<VocabularySet> sets) {
+        int index = -1;
+        for (int i = 0; i < sets.size(); i++) {
+            if (sets.get(i).getJsonFileName().equals(jsonFileName)) {
+                index = i;
+                break;
+            }
+        }
+        switch (type) {
+            case SET_ADDED:
+                if (index >= 0) {
+                    return false;
+                }
+                sets.add(new VocabularySet(title, jsonFileName, wordCount));
+                return true;
+            case SET_REMOVED:
+                if (index < 0) {
+                    return false;
+                }
+                sets.remove(index);
+                return true;
+            case SET_RENAMED:
+                if (index < 0 || sets.get(index).getTitle().equals(title)) {
+                    return false;
+                }
+                sets.set(index, new VocabularySet(title, jsonFileName, sets.get(index).getWordCount()));
+                return true;
+            default:
+                if (index < 0 || sets.get(index).getWordCount() == wordCount) {
+                    return false;
+                }
+                sets.set(index, new VocabularySet(sets.get(index).getTitle(), jsonFileName, wordCount));
+                return true;
+        }
+    }
+}
@@ -1,56 +1,80 @@
 package com.example.flashcard.model;
 
 import java.io.Serializable;
+import java.util.UUID;
 
+/**
+ * One entry of one deck: a deck-local ID plus its {@link WordContent}. Words with the same
+ * text share one content instance, so a Word costs little more than its ID. Setters never
+ * change a shared content in place; they swap in an edited copy.
+ */
 public class Word implements Serializable {
 
-    private String english;
-    private String vietnamese;
-    private String pronunciation;
-    private String example;
-    private String memoryTip;
+    private String id;
+    private WordContent content;
 
     public Word(String english, String vietnamese, String pronunciation) {
-        this.english = english;
-        this.vietnamese = vietnamese;
-        this.pronunciation = pronunciation;
-        this.example = "";
-        this.memoryTip = "";
+        this(newId(), english, vietnamese, pronunciation, "", "");
     }
 
     public Word(String english, String vietnamese, String pronunciation, String example, String memoryTip) {
-        this.english = english;
-        this.vietnamese = vietnamese;
-        this.pronunciation = pronunciation;
-        this.example = example != null ? example : "";
-        this.memoryTip = memoryTip != null ? memoryTip : "";
+        this(newId(), english, vietnamese, pronunciation, example, memoryTip);
+    }
+
+    public Word(String id, String english, String vietnamese, String pronunciation, String example, String memoryTip) {
+        this(id, new WordContent(english, vietnamese, pronunciation, example, memoryTip));
+    }
+
+    public Word(String id, WordContent content) {
+        this.id = id;
+        this.content = content;
+    }
+
+    public static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public WordContent getContent() {
+        return content;
+    }
+
+    public void setContent(WordContent content) {
+        this.content = content;
     }
 
     public String getEnglish() {
-        return english;
+        return content.getEnglish();
     }
 
     public String getVietnamese() {
-        return vietnamese;
+        return content.getVietnamese();
     }
 
     public String getPronunciation() {
-        return pronunciation;
+        return content.getPronunciation();
     }
 
     public String getExample() {
-        return example != null ? example : "";
+        return content.getExample();
     }
 
     public String getMemoryTip() {
-        return memoryTip != null ? memoryTip : "";
+        return content.getMemoryTip();
     }
 
     public void setExample(String example) {
-        this.example = example;
+        content = content.withExample(example);
     }
 
     public void setMemoryTip(String memoryTip) {
-        this.memoryTip = memoryTip;
+        content = content.withMemoryTip(memoryTip);
     }
 }
@@ -0,0 +1,105 @@
+package com.example.flashcard.model;
+
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The text of a word, without its per-deck ID. Immutable, so one instance can be shared by
+ * every deck that contains the same entry; {@link Word} swaps in a new one when edited.
+ * Examples and memory tips stay {@link CompressedText} until a getter asks for them.
+ */
+public final class WordContent implements Serializable {
+
+    private final String english;
+    private final String vietnamese;
+    private final String pronunciation;
+    private final CompressedText example;
+    private final CompressedText memoryTip;
+    private transient int hash;
+
+    public WordContent(String english, String vietnamese, String pronunciation, String example, String memoryTip) {
+        this(english, vietnamese, pronunciation, CompressedText.of(example), CompressedText.of(memoryTip));
+    }
+
+    public WordContent(String english, String vietnamese, String pronunciation,
+                       CompressedText example, CompressedText memoryTip) {
+        this.english = english;
+        this.vietnamese = vietnamese;
+        this.pronunciation = pronunciation;
+        this.example = example != null ? example : CompressedText.EMPTY;
+        this.memoryTip = memoryTip != null ? memoryTip : CompressedText.EMPTY;
+    }
+
+    public String getEnglish() {
+        return english;
+    }
+
+    public String getVietnamese() {
+        return vietnamese;
+    }
+
+    public String getPronunciation() {
+        return pronunciation;
+    }
+
+    public String getExample() {
+        return example.getText();
+    }
+
+    public String getMemoryTip() {
+        return memoryTip.getText();
+    }
+
+    public CompressedText getCompressedExample() {
+        return example;
+    }
+
+    public CompressedText getCompressedMemoryTip() {
+        return memoryTip;
+    }
+
+    public WordContent withExample(String example) {
+        return new WordContent(english, vietnamese, pronunciation, CompressedText.of(example), memoryTip);
+    }
+
+    public WordContent withMemoryTip(String memoryTip) {
+        return new WordContent(english, vietnamese, pronunciation, example, CompressedText.of(memoryTip));
+    }
+
+    /** Case- and whitespace-insensitive English plus meaning; entries that differ only there collide. */
+    public String key() {
+        return normalize(english) + '\u0000' + normalize(vietnamese);
+    }
+
+    private static String normalize(String text) {
+        return text != null ? text.trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WordContent)) {
+            return false;
+        }
+        WordContent other = (WordContent) o;
+        return Objects.equals(english, other.english)
+                && Objects.equals(vietnamese, other.vietnamese)
+                && Objects.equals(pronunciation, other.pronunciation)
+                && example.equals(other.example)
+                && memoryTip.equals(other.memoryTip);
+    }
+
+    // Hashes the normalized key only, so near-duplicates land in the same bucket.
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = key().hashCode();
+            hash = h;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.flashcard.util;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import com.example.flashcard.model.Word;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader for decks.pack, the binary form of the bundled decks produced by the
+ * compileAssetPack task in app/build.gradle. The pack is stored uncompressed in the APK and
+ * memory-mapped, so counts are header reads and words are decoded straight from the mapping.
+ *
+ * <p>Layout, all integers big-endian:
+ * <pre>
+ * header        magic, format version, deck count, string count, string table offset
+ * directory     per deck: name string, word count, word table offset
+ * word tables   per word: english, vietnamese, pronunciation, example, memoryTip strings
+ * string table  string count + 1 offsets into the data that follows, then UTF-8 data
+ * </pre>
+ * Strings are shared across decks and referenced by index.
+ */
+public class AssetPack {
+
+    public static final String FILE_NAME = "decks.pack";
+
+    static final int MAGIC = 0x46435044;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 20;
+    static final int DIRECTORY_ENTRY_SIZE = 12;
+    static final int FIELD_COUNT = 5;
+
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final int stringOffsets;
+    private final int stringData;
+    private final String[] strings;
+    // Deck name to its directory entry position.
+    private final Map<String, Integer> decks = new HashMap<>();
+
+    public static AssetPack open(AssetManager assets) throws IOException {
+        try (AssetFileDescriptor fd = assets.openFd(FILE_NAME);
+             FileInputStream in = fd.createInputStream()) {
+            // The mapping stays valid after the descriptor is closed.
+            return new AssetPack(in.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength()));
+        }
+    }
+
+    /** Maps a pack installed on disk, such as one from {@link ContentPacks}. */
+    public static AssetPack open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return new AssetPack(in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        }
+    }
+
+    AssetPack(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a deck pack");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported deck pack version " + buffer.getInt(4));
+        }
+        int deckCount = buffer.getInt(8);
+        stringCount = buffer.getInt(12);
+        stringOffsets = buffer.getInt(16);
+        stringData = stringOffsets + (stringCount + 1) * 4;
+        strings = new String[stringCount];
+
+        for (int i = 0; i < deckCount; i++) {
+            int entry = HEADER_SIZE + i * DIRECTORY_ENTRY_SIZE;
+            decks.put(string(buffer.getInt(entry)), entry);
+        }
+    }
+
+    public boolean hasDeck(String deckName) {
+        return decks.containsKey(deckName.trim());
+    }
+
+    /** Returns -1 if the deck is not in the pack. */
+    public int getWordCount(String deckName) {
+        Integer entry = decks.get(deckName.trim());
+        return entry != null ? buffer.getInt(entry + 4) : -1;
+    }
+
+    public Word getWord(String deckName, int index, String id) {
+        Integer entry = decks.get(deckName.trim());
+        if (entry == null || index < 0 || index >= buffer.getInt(entry + 4)) {
+            return null;
+        }
+        return word(buffer.getInt(entry + 8) + index * FIELD_COUNT * 4, id);
+    }
+
+    /** Words of the deck in pack order; each gets idPrefix followed by its index as ID. */
+    public List<Word> getWords(String deckName, String idPrefix) {
+        Integer entry = decks.get(deckName.trim());
+        if (entry == null) {
+            return null;
+        }
+        int count = buffer.getInt(entry + 4);
+        int table = buffer.getInt(entry + 8);
+        List<Word> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            words.add(word(table + i * FIELD_COUNT * 4, idPrefix + i));
+        }
+        return words;
+    }
+
+    /**
+     * Adds the deck's words to the builder in pack order, decoding each string straight into
+     * it: no Word objects, and the text is not kept here as well. False if the deck is not in
+     * the pack.
+     */
+    public boolean appendTo(String deckName, String idPrefix, ColumnarDeck.Builder builder) {
+        Integer entry = decks.get(deckName.trim());
+        if (entry == null) {
+            return false;
+        }
+        int count = buffer.getInt(entry + 4);
+        int table = buffer.getInt(entry + 8);
+        for (int i = 0; i < count; i++) {
+            int position = table + i * FIELD_COUNT * 4;
+            builder.add(idPrefix + i,
+                    decode(buffer.getInt(position)),
+                    decode(buffer.getInt(position + 4)),
+                    decode(buffer.getInt(position + 8)),
+                    decode(buffer.getInt(position + 12)),
+                    decode(buffer.getInt(position + 16)));
+        }
+        return true;
+    }
+
+    private Word word(int position, String id) {
+        return new Word(id,
+                string(buffer.getInt(position)),
+                string(buffer.getInt(position + 4)),
+                string(buffer.getInt(position + 8)),
+                string(buffer.getInt(position + 12)),
+                string(buffer.getInt(position + 16)));
+    }
+
+    // Decoded once and shared; the same text often appears in several decks.
+    private synchronized String string(int index) {
+        if (index < 0 || index >= stringCount) {
+            throw new IllegalStateException("String index out of range: " + index);
+        }
+        String value = strings[index];
+        if (value == null) {
+            value = decode(index);
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    private String decode(int index) {
+        if (index < 0 || index >= stringCount) {
+            throw new IllegalStateException("String index out of range: " + index);
+        }
+        int start = buffer.getInt(stringOffsets + index * 4);
+        int end = buffer.getInt(stringOffsets + (index + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(stringData + start);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Word IDs of one deck sorted by English or Vietnamese text under that language's collation
+ * rules. Each word's {@link CollationKey} is computed once and kept, so sorting compares
+ * precomputed keys instead of running the collator on every comparison, and a single added
+ * or edited word is placed in O(log n) instead of re-sorting the deck.
+ *
+ * <p>Not thread-safe; callers keep one per deck and mode and update it under their own lock.
+ * The order and the index by ID are persistent trees, so a list from {@link #wordIds} never
+ * changes, finds a word in O(log n), and can be read on any thread after the lock is released.
+ */
+public final class CollatedOrder {
+
+    public enum Mode {
+        ENGLISH(Locale.ENGLISH),
+        VIETNAMESE(new Locale("vi", "VN"));
+
+        private final Locale locale;
+
+        Mode(Locale locale) {
+            this.locale = locale;
+        }
+
+        String textOf(Word word) {
+            return this == ENGLISH ? word.getEnglish() : word.getVietnamese();
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final String wordId;
+        final CollationKey key;
+
+        Entry(String wordId, CollationKey key) {
+            this.wordId = wordId;
+            this.key = key;
+        }
+
+        // Equal text falls back to the ID, so every entry has exactly one place.
+        @Override
+        public int compareTo(Entry other) {
+            int byKey = key.compareTo(other.key);
+            return byKey != 0 ? byKey : wordId.compareTo(other.wordId);
+        }
+    }
+
+    private final Mode mode;
+    private final Collator collator;
+    private Treap<Entry, String> entries = Treap.empty(Comparator.naturalOrder());
+    private Treap<String, Entry> byId = Treap.empty(Comparator.naturalOrder());
+
+    public CollatedOrder(Mode mode) {
+        this.mode = mode;
+        this.collator = Collator.getInstance(mode.locale);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /** Adds many words at once: one key each, then one sort. */
+    public void addAll(Iterable<Word> words) {
+        Map<String, Entry> all = new HashMap<>();
+        for (Entry entry : byId.values()) {
+            all.put(entry.wordId, entry);
+        }
+        for (Word word : words) {
+            all.put(word.getId(), new Entry(word.getId(), collator.getCollationKey(mode.textOf(word))));
+        }
+        List<Entry> sorted = new ArrayList<>(all.values());
+        Collections.sort(sorted);
+        List<String> wordIds = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            wordIds.add(entry.wordId);
+        }
+        entries = Treap.ofSorted(Comparator.naturalOrder(), sorted, wordIds);
+        Collections.sort(wordIds);
+        List<Entry> byIdEntries = new ArrayList<>(wordIds.size());
+        for (String wordId : wordIds) {
+            byIdEntries.add(all.get(wordId));
+        }
+        byId = Treap.ofSorted(Comparator.naturalOrder(), wordIds, byIdEntries);
+    }
+
+    /** Places one added or edited word. */
+    public void put(Word word) {
+        remove(word.getId());
+        Entry entry = new Entry(word.getId(), collator.getCollationKey(mode.textOf(word)));
+        entries = entries.put(entry, entry.wordId);
+        byId = byId.put(entry.wordId, entry);
+    }
+
+    public void remove(String wordId) {
+        Entry entry = byId.get(wordId);
+        if (entry != null) {
+            byId = byId.remove(wordId);
+            entries = entries.remove(entry);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Returns the word's position in {@link #wordIds}, or -1. */
+    public int indexOf(String wordId) {
+        Entry entry = byId.get(wordId);
+        return entry != null ? entries.indexOf(entry) : -1;
+    }
+
+    /** The order as it is now, read-only; later changes leave the returned list as it was. */
+    public List<String> wordIds() {
+        Treap<Entry, String> order = entries;
+        Treap<String, Entry> index = byId;
+        List<String> values = order.values();
+        return new AbstractList<String>() {
+            @Override
+            public String get(int position) {
+                return values.get(position);
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+
+            @Override
+            public int indexOf(Object o) {
+                Entry entry = o instanceof String ? index.get((String) o) : null;
+                return entry != null ? order.indexOf(entry) : -1;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return indexOf(o) >= 0;
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return values.iterator();
+            }
+        };
+    }
+}
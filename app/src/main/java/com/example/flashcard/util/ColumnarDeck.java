@@ -0,0 +1,271 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.CompressedText;
+import com.example.flashcard.model.Word;
+import com.example.flashcard.model.WordContent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Read-only deck for the study, match and list screens. All text lives in one char buffer
+ * and each word is a row of offsets into it, so a deck of any size is a handful of arrays
+ * instead of a Word and several Strings per entry. Empty fields take no space.
+ *
+ * <p>Examples and memory tips sit in a separate byte buffer in their {@link CompressedText}
+ * form and are only decoded when a screen asks for one.
+ *
+ * <p>Positions go through an order array; {@link #shuffle} permutes that array and never
+ * moves the text. Strings are only created for the rows actually shown.
+ */
+public final class ColumnarDeck {
+
+    private static final int ID = 0;
+    private static final int ENGLISH = 1;
+    private static final int VIETNAMESE = 2;
+    private static final int PRONUNCIATION = 3;
+    private static final int FIELD_COUNT = 4;
+    private static final int EXAMPLE = 0;
+    private static final int MEMORY_TIP = 1;
+    private static final int NOTE_COUNT = 2;
+
+    private final char[] chars;
+    // Start of every field of every row, plus one trailing end offset.
+    private final int[] offsets;
+    private final byte[] notes;
+    private final int[] noteOffsets;
+    private final int[] order;
+
+    private ColumnarDeck(char[] chars, int[] offsets, byte[] notes, int[] noteOffsets, int[] order) {
+        this.chars = chars;
+        this.offsets = offsets;
+        this.notes = notes;
+        this.noteOffsets = noteOffsets;
+        this.order = order;
+    }
+
+    public static ColumnarDeck of(Iterable<Word> words) {
+        Builder builder = new Builder();
+        for (Word word : words) {
+            builder.add(word);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return order.length;
+    }
+
+    public boolean isEmpty() {
+        return order.length == 0;
+    }
+
+    public String getId(int position) {
+        return field(position, ID);
+    }
+
+    public String getEnglish(int position) {
+        return field(position, ENGLISH);
+    }
+
+    public String getVietnamese(int position) {
+        return field(position, VIETNAMESE);
+    }
+
+    public String getPronunciation(int position) {
+        return field(position, PRONUNCIATION);
+    }
+
+    public String getExample(int position) {
+        return note(position, EXAMPLE);
+    }
+
+    public String getMemoryTip(int position) {
+        return note(position, MEMORY_TIP);
+    }
+
+    public boolean hasPronunciation(int position) {
+        return length(position, PRONUNCIATION) > 0;
+    }
+
+    public boolean hasExample(int position) {
+        return noteLength(position, EXAMPLE) > 0;
+    }
+
+    public boolean hasMemoryTip(int position) {
+        return noteLength(position, MEMORY_TIP) > 0;
+    }
+
+    public Word getWord(int position) {
+        return new Word(getId(position), new WordContent(getEnglish(position), getVietnamese(position),
+                getPronunciation(position), compressedNote(position, EXAMPLE), compressedNote(position, MEMORY_TIP)));
+    }
+
+    /** Returns the position of the word with this ID, or -1. */
+    public int indexOf(String wordId) {
+        for (int position = 0; position < order.length; position++) {
+            if (fieldEquals(position, ID, wordId)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    public void shuffle(Random random) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    /**
+     * A view over the same text showing the words with these IDs in this order. IDs not in
+     * the deck are skipped, and words not listed are left out.
+     */
+    public ColumnarDeck reordered(Iterable<String> wordIds) {
+        int rows = (offsets.length - 1) / FIELD_COUNT;
+        Map<String, Integer> rowsById = new HashMap<>(rows * 2);
+        for (int row = 0; row < rows; row++) {
+            int index = row * FIELD_COUNT + ID;
+            rowsById.put(new String(chars, offsets[index], offsets[index + 1] - offsets[index]), row);
+        }
+        int[] reordered = new int[rows];
+        int count = 0;
+        for (String wordId : wordIds) {
+            Integer row = rowsById.get(wordId);
+            if (row != null && count < rows) {
+                reordered[count++] = row;
+            }
+        }
+        return new ColumnarDeck(chars, offsets, notes, noteOffsets, Arrays.copyOf(reordered, count));
+    }
+
+    /** A view over the same text with its own order, so it can be shuffled independently. */
+    public ColumnarDeck copy() {
+        return new ColumnarDeck(chars, offsets, notes, noteOffsets, order.clone());
+    }
+
+    private String field(int position, int field) {
+        int index = order[position] * FIELD_COUNT + field;
+        int start = offsets[index];
+        return start == offsets[index + 1] ? "" : new String(chars, start, offsets[index + 1] - start);
+    }
+
+    private int length(int position, int field) {
+        int index = order[position] * FIELD_COUNT + field;
+        return offsets[index + 1] - offsets[index];
+    }
+
+    private String note(int position, int note) {
+        int index = order[position] * NOTE_COUNT + note;
+        return CompressedText.decode(notes, noteOffsets[index], noteOffsets[index + 1] - noteOffsets[index]);
+    }
+
+    private int noteLength(int position, int note) {
+        int index = order[position] * NOTE_COUNT + note;
+        return noteOffsets[index + 1] - noteOffsets[index];
+    }
+
+    private CompressedText compressedNote(int position, int note) {
+        int index = order[position] * NOTE_COUNT + note;
+        int start = noteOffsets[index];
+        return start == noteOffsets[index + 1] ? CompressedText.EMPTY
+                : CompressedText.fromByteArray(Arrays.copyOfRange(notes, start, noteOffsets[index + 1]));
+    }
+
+    private boolean fieldEquals(int position, int field, String value) {
+        int index = order[position] * FIELD_COUNT + field;
+        int start = offsets[index];
+        int length = offsets[index + 1] - start;
+        if (value == null || value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static final class Builder {
+        private char[] chars = new char[1024];
+        private int charCount;
+        private int[] offsets = new int[FIELD_COUNT * 64 + 1];
+        private byte[] notes = new byte[1024];
+        private int noteBytes;
+        private int[] noteOffsets = new int[NOTE_COUNT * 64 + 1];
+        private int rows;
+
+        public Builder add(Word word) {
+            WordContent content = word.getContent();
+            return add(word.getId(), content.getEnglish(), content.getVietnamese(), content.getPronunciation(),
+                    content.getCompressedExample(), content.getCompressedMemoryTip());
+        }
+
+        public Builder add(String id, String english, String vietnamese, String pronunciation,
+                           String example, String memoryTip) {
+            return add(id, english, vietnamese, pronunciation,
+                    CompressedText.of(example), CompressedText.of(memoryTip));
+        }
+
+        private Builder add(String id, String english, String vietnamese, String pronunciation,
+                            CompressedText example, CompressedText memoryTip) {
+            int base = rows * FIELD_COUNT;
+            if (base + FIELD_COUNT + 1 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                noteOffsets = Arrays.copyOf(noteOffsets, noteOffsets.length * 2);
+            }
+            append(base + ID, id);
+            append(base + ENGLISH, english);
+            append(base + VIETNAMESE, vietnamese);
+            append(base + PRONUNCIATION, pronunciation);
+            appendNote(rows * NOTE_COUNT + EXAMPLE, example);
+            appendNote(rows * NOTE_COUNT + MEMORY_TIP, memoryTip);
+            rows++;
+            offsets[rows * FIELD_COUNT] = charCount;
+            noteOffsets[rows * NOTE_COUNT] = noteBytes;
+            return this;
+        }
+
+        private void appendNote(int index, CompressedText note) {
+            noteOffsets[index] = noteBytes;
+            if (note.isEmpty()) {
+                return;
+            }
+            int size = note.size();
+            if (noteBytes + size > notes.length) {
+                notes = Arrays.copyOf(notes, Math.max(notes.length * 2, noteBytes + size));
+            }
+            note.copyTo(notes, noteBytes);
+            noteBytes += size;
+        }
+
+        private void append(int index, String value) {
+            offsets[index] = charCount;
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            int length = value.length();
+            if (charCount + length > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+            }
+            value.getChars(0, length, chars, charCount);
+            charCount += length;
+        }
+
+        public ColumnarDeck build() {
+            int[] order = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                order[i] = i;
+            }
+            return new ColumnarDeck(Arrays.copyOf(chars, charCount),
+                    Arrays.copyOf(offsets, rows * FIELD_COUNT + 1), Arrays.copyOf(notes, noteBytes),
+                    Arrays.copyOf(noteOffsets, rows * NOTE_COUNT + 1), order);
+        }
+    }
+}
@@ -0,0 +1,544 @@
+package com.example.flashcard.util;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deck packs downloaded from a content catalog and installed under one directory.
+ *
+ * <p>The catalog lists packs with a version, the SHA-256 of the pack file and the decks it
+ * holds: {@code {"packs": [{"id", "version", "sha256", "url", "decks": [{"file", "title"}]}]}},
+ * pack URLs relative to the catalog. It is fetched with the ETag of the last copy, so an
+ * unchanged catalog costs a 304 and nothing else; a changed one downloads only packs whose
+ * hash differs from the installed copy. Pack files use the {@link AssetPack} layout.
+ *
+ * <p>The installed list is read at startup; a pack file is mapped the first time one of its
+ * decks is asked for, and its words are decoded only when that deck is read.
+ */
+public class ContentPacks {
+
+    /** Fetches a URL, sending If-None-Match when an ETag is given. */
+    public interface Http {
+        /** Returns null if the server answered 304 Not Modified. */
+        Response get(String url, String etag) throws IOException;
+    }
+
+    public interface Response extends Closeable {
+        String getEtag();
+
+        InputStream getBody() throws IOException;
+    }
+
+    public static final class Deck {
+        private final String file;
+        private final String title;
+
+        public Deck(String file, String title) {
+            this.file = file;
+            this.title = title;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    public static final class Pack {
+        private final String id;
+        private final int version;
+        private final String sha256;
+        private final String url;
+        private final List<Deck> decks;
+
+        Pack(String id, int version, String sha256, String url, List<Deck> decks) {
+            this.id = id;
+            this.version = version;
+            this.sha256 = sha256;
+            this.url = url;
+            this.decks = decks;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public List<Deck> getDecks() {
+            return decks;
+        }
+
+        String fileName() {
+            return id + "-" + sha256.substring(0, 16) + ".pack";
+        }
+    }
+
+    public static final class Result {
+        private final boolean catalogChanged;
+        private final int packsDownloaded;
+        private final int packsFailed;
+        private final long bytesDownloaded;
+
+        Result(boolean catalogChanged, int packsDownloaded, int packsFailed, long bytesDownloaded) {
+            this.catalogChanged = catalogChanged;
+            this.packsDownloaded = packsDownloaded;
+            this.packsFailed = packsFailed;
+            this.bytesDownloaded = bytesDownloaded;
+        }
+
+        public boolean isCatalogChanged() {
+            return catalogChanged;
+        }
+
+        public int getPacksDownloaded() {
+            return packsDownloaded;
+        }
+
+        public int getPacksFailed() {
+            return packsFailed;
+        }
+
+        public long getBytesDownloaded() {
+            return bytesDownloaded;
+        }
+    }
+
+    private static final String INSTALLED_FILE = "installed.json";
+    private static final String DOWNLOAD_SUFFIX = ".download";
+
+    private final File dir;
+    private final File installedFile;
+    private final Object refreshLock = new Object();
+
+    private String etag;
+    private List<Pack> installed;
+    // Deck name to the pack holding it; installed packs may not repeat a deck.
+    private Map<String, Pack> deckPacks;
+    private final Map<String, AssetPack> opened = new HashMap<>();
+
+    public ContentPacks(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create pack directory " + dir);
+        }
+        this.dir = dir;
+        installedFile = new File(dir, INSTALLED_FILE);
+        List<Pack> packs = new ArrayList<>();
+        if (installedFile.exists()) {
+            try (JsonReader reader = new JsonReader(new InputStreamReader(
+                    new FileInputStream(installedFile), StandardCharsets.UTF_8))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "etag":
+                            etag = reader.nextString();
+                            break;
+                        case "packs":
+                            packs = readPacks(reader);
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+            }
+        }
+        install(packs);
+    }
+
+    /** Decks of every installed pack, in catalog order. */
+    public synchronized List<Deck> getDecks() {
+        List<Deck> decks = new ArrayList<>();
+        for (Pack pack : installed) {
+            decks.addAll(pack.decks);
+        }
+        return decks;
+    }
+
+    public synchronized boolean hasDeck(String deckName) {
+        return deckPacks.containsKey(deckName.trim());
+    }
+
+    /** The pack holding the deck, mapped on first use; null if no installed pack has it. */
+    public synchronized AssetPack packFor(String deckName) throws IOException {
+        Pack pack = deckPacks.get(deckName.trim());
+        if (pack == null) {
+            return null;
+        }
+        AssetPack assetPack = opened.get(pack.id);
+        if (assetPack == null) {
+            assetPack = AssetPack.open(new File(dir, pack.fileName()));
+            opened.put(pack.id, assetPack);
+        }
+        return assetPack;
+    }
+
+    synchronized int openedCount() {
+        return opened.size();
+    }
+
+    /**
+     * Fetches the catalog and installs every pack that changed. A pack that fails to download
+     * or does not match its hash keeps the installed copy, and the catalog ETag is not kept,
+     * so the next refresh tries it again.
+     */
+    public Result refresh(String catalogUrl, Http http) throws IOException {
+        synchronized (refreshLock) {
+            String knownEtag;
+            List<Pack> current;
+            synchronized (this) {
+                knownEtag = etag;
+                current = installed;
+            }
+
+            List<Pack> catalog;
+            String newEtag;
+            long bytes = 0;
+            try (Response response = http.get(catalogUrl, knownEtag)) {
+                if (response == null) {
+                    return new Result(false, 0, 0, 0);
+                }
+                newEtag = response.getEtag();
+                CountingInputStream body = new CountingInputStream(response.getBody());
+                try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                    catalog = readCatalog(reader);
+                }
+                bytes += body.count;
+            }
+
+            Map<String, Pack> byId = new HashMap<>();
+            for (Pack pack : current) {
+                byId.put(pack.id, pack);
+            }
+            List<Pack> next = new ArrayList<>();
+            int downloaded = 0;
+            int failed = 0;
+            for (Pack pack : catalog) {
+                Pack old = byId.get(pack.id);
+                if (old != null && old.sha256.equals(pack.sha256) && new File(dir, old.fileName()).exists()) {
+                    next.add(pack);
+                    continue;
+                }
+                try {
+                    bytes += download(URI.create(catalogUrl).resolve(pack.url).toString(), pack, http);
+                    next.add(pack);
+                    downloaded++;
+                } catch (IOException | IllegalArgumentException e) {
+                    failed++;
+                    if (old != null) {
+                        next.add(old);
+                    }
+                }
+            }
+
+            String keptEtag = failed == 0 ? newEtag : null;
+            DeckStorage.writeAtomically(installedFile, writer -> {
+                JsonWriter json = new JsonWriter(writer);
+                json.beginObject();
+                if (keptEtag != null) {
+                    json.name("etag").value(keptEtag);
+                }
+                json.name("packs");
+                writePacks(json, next);
+                json.endObject();
+                json.flush();
+            });
+            synchronized (this) {
+                etag = keptEtag;
+                install(next);
+            }
+            deleteUnused(next);
+            return new Result(true, downloaded, failed, bytes);
+        }
+    }
+
+    public static List<Pack> readCatalog(Reader in) throws IOException {
+        return readCatalog(new JsonReader(in));
+    }
+
+    /** Reads {@code {"decks": [{"file", "title"}]}}, the list of decks bundled in the APK. */
+    public static List<Deck> readDeckList(Reader in) throws IOException {
+        List<Deck> decks = new ArrayList<>();
+        JsonReader reader = new JsonReader(in);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("decks".equals(reader.nextName())) {
+                decks = readDecks(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return decks;
+    }
+
+    private static List<Pack> readCatalog(JsonReader reader) throws IOException {
+        List<Pack> packs = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("packs".equals(reader.nextName())) {
+                packs = readPacks(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return packs;
+    }
+
+    // Streams the pack to a temp file while hashing it, and only renames it into place once
+    // the hash and the header check out.
+    private long download(String url, Pack pack, Http http) throws IOException {
+        File temp = new File(dir, pack.fileName() + DOWNLOAD_SUFFIX);
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (Response response = http.get(url, null)) {
+            if (response == null) {
+                throw new IOException("Unexpected 304 for " + url);
+            }
+            try (InputStream in = response.getBody();
+                 FileOutputStream out = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    size += n;
+                }
+                out.getFD().sync();
+            }
+            if (!hex(digest.digest()).equalsIgnoreCase(pack.sha256)) {
+                throw new IOException("Pack " + pack.id + " does not match its hash");
+            }
+            AssetPack assetPack = AssetPack.open(temp);
+            for (Deck deck : pack.decks) {
+                if (!assetPack.hasDeck(deck.file)) {
+                    throw new IOException("Pack " + pack.id + " has no deck " + deck.file);
+                }
+            }
+            if (!temp.renameTo(new File(dir, pack.fileName()))) {
+                throw new IOException("Cannot install pack " + pack.id);
+            }
+            return size;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    // Callers hold the lock or are the constructor.
+    private void install(List<Pack> packs) {
+        Map<String, Pack> decks = new HashMap<>();
+        List<Pack> kept = new ArrayList<>();
+        for (Pack pack : packs) {
+            Pack previous = installed != null ? findPack(installed, pack.id) : null;
+            if (previous != null && !previous.sha256.equals(pack.sha256)) {
+                opened.remove(pack.id);
+            }
+            kept.add(pack);
+            for (Deck deck : pack.decks) {
+                decks.putIfAbsent(deck.file.trim(), pack);
+            }
+        }
+        opened.keySet().retainAll(idsOf(kept));
+        installed = Collections.unmodifiableList(kept);
+        deckPacks = decks;
+    }
+
+    // A replaced pack may still be mapped by a reader; the mapping outlives the file.
+    private void deleteUnused(List<Pack> packs) {
+        Set<String> keep = new HashSet<>();
+        keep.add(INSTALLED_FILE);
+        for (Pack pack : packs) {
+            keep.add(pack.fileName());
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!keep.contains(file.getName())) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static Pack findPack(List<Pack> packs, String id) {
+        for (Pack pack : packs) {
+            if (pack.id.equals(id)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    private static Set<String> idsOf(List<Pack> packs) {
+        Set<String> ids = new HashSet<>();
+        for (Pack pack : packs) {
+            ids.add(pack.id);
+        }
+        return ids;
+    }
+
+    private static List<Pack> readPacks(JsonReader reader) throws IOException {
+        List<Pack> packs = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            int version = 0;
+            String sha256 = null;
+            String url = null;
+            List<Deck> decks = new ArrayList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextString();
+                        break;
+                    case "version":
+                        version = reader.nextInt();
+                        break;
+                    case "sha256":
+                        sha256 = reader.nextString();
+                        break;
+                    case "url":
+                        url = reader.nextString();
+                        break;
+                    case "decks":
+                        decks = readDecks(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            // Both go into file names, so neither may carry a path.
+            if (id == null || sha256 == null || !sha256.matches("[0-9a-fA-F]{64}") || url == null
+                    || !id.matches("[A-Za-z0-9_.-]+")) {
+                throw new IOException("Malformed pack entry " + id);
+            }
+            packs.add(new Pack(id, version, sha256, url, decks));
+        }
+        reader.endArray();
+        return packs;
+    }
+
+    private static List<Deck> readDecks(JsonReader reader) throws IOException {
+        List<Deck> decks = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String file = null;
+            String title = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "file":
+                        file = reader.nextString();
+                        break;
+                    case "title":
+                        title = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            if (file == null) {
+                throw new IOException("Deck without a file name");
+            }
+            decks.add(new Deck(file, title != null ? title : file));
+        }
+        reader.endArray();
+        return decks;
+    }
+
+    private static void writePacks(JsonWriter json, List<Pack> packs) throws IOException {
+        json.beginArray();
+        for (Pack pack : packs) {
+            json.beginObject();
+            json.name("id").value(pack.id);
+            json.name("version").value(pack.version);
+            json.name("sha256").value(pack.sha256);
+            json.name("url").value(pack.url);
+            json.name("decks").beginArray();
+            for (Deck deck : pack.decks) {
+                json.beginObject();
+                json.name("file").value(deck.file);
+                json.name("title").value(deck.title);
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
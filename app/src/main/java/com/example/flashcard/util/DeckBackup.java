@@ -0,0 +1,504 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.DeckMetadata;
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Backs up every stored set to a local archive of content-addressed chunks, writing only the
+ * chunks no earlier backup has written.
+ *
+ * <p>Each set is serialized in its stored form and cut into chunks where a rolling hash of
+ * the last bytes matches a pattern, so an edit only changes the chunks around it and every
+ * other chunk keeps its name. Sets whose version and checksum match the previous backup are
+ * not read at all; their chunk list is carried over.
+ *
+ * <p>Layout under {@code dir}:
+ * <pre>
+ * chunks/ab/abcdef…   chunk bytes, named by their truncated SHA-256
+ * snapshots/N.json    one manifest per backup: the user sets and each set's chunk list
+ * </pre>
+ * A manifest is written last, so a backup that dies midway leaves at most some unused chunks.
+ */
+public class DeckBackup {
+
+    static final int MIN_CHUNK = 2 * 1024;
+    static final int MAX_CHUNK = 64 * 1024;
+    // 13 bits, a cut point every 8 KiB on average past the minimum. The top bits are used
+    // because they depend on the last 64 bytes; the low ones only on the last few.
+    private static final long CUT_MASK = ((1L << 13) - 1) << 51;
+    private static final int HASH_BYTES = 16;
+    private static final String CHUNKS_DIR = "chunks";
+    private static final String SNAPSHOTS_DIR = "snapshots";
+    private static final String MANIFEST_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Fixed so the same bytes cut at the same places on every install.
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x466c617368L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    public static final class Result {
+        private final String snapshot;
+        private final int decks;
+        private final int decksRead;
+        private final int chunksWritten;
+        private final int chunksReused;
+        private final long bytesWritten;
+
+        Result(String snapshot, int decks, int decksRead, int chunksWritten, int chunksReused, long bytesWritten) {
+            this.snapshot = snapshot;
+            this.decks = decks;
+            this.decksRead = decksRead;
+            this.chunksWritten = chunksWritten;
+            this.chunksReused = chunksReused;
+            this.bytesWritten = bytesWritten;
+        }
+
+        public String getSnapshot() {
+            return snapshot;
+        }
+
+        public int getDecks() {
+            return decks;
+        }
+
+        /** Sets that changed since the previous backup and were serialized again. */
+        public int getDecksRead() {
+            return decksRead;
+        }
+
+        public int getChunksWritten() {
+            return chunksWritten;
+        }
+
+        public int getChunksReused() {
+            return chunksReused;
+        }
+
+        /** New chunk bytes plus the manifest. */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+    }
+
+    private final VocabularyStore store;
+    private final File chunksDir;
+    private final File snapshotsDir;
+
+    public DeckBackup(VocabularyStore store, File dir) {
+        this.store = store;
+        this.chunksDir = new File(dir, CHUNKS_DIR);
+        this.snapshotsDir = new File(dir, SNAPSHOTS_DIR);
+        if (!chunksDir.exists() && !chunksDir.mkdirs() || !snapshotsDir.exists() && !snapshotsDir.mkdirs()) {
+            throw new IllegalStateException("Cannot create backup directory " + dir);
+        }
+    }
+
+    public synchronized Result backup() throws IOException {
+        List<String> snapshots = listSnapshots();
+        Map<String, DeckEntry> previous = new HashMap<>();
+        if (!snapshots.isEmpty()) {
+            for (DeckEntry entry : readManifest(snapshots.get(snapshots.size() - 1)).decks) {
+                previous.put(entry.name, entry);
+            }
+        }
+
+        Manifest manifest = new Manifest();
+        manifest.sets = store.getUserVocabularySets();
+        ChunkWriter writer = new ChunkWriter();
+        int decksRead = 0;
+        for (String name : store.getStoredSetNames()) {
+            DeckMetadata metadata = store.getMetadata(name);
+            if (metadata == null) {
+                continue;
+            }
+            DeckEntry entry = previous.get(name);
+            if (entry == null || entry.version != metadata.getVersion() || entry.checksum != metadata.getChecksum()
+                    || !chunksExist(entry.chunks)) {
+                DeckSnapshot snapshot = store.getSnapshot(name);
+                entry = new DeckEntry(name, snapshot.getVersion(), snapshot.checksum(), writer.write(snapshot.getWords()));
+                decksRead++;
+            } else {
+                writer.reused += entry.chunks.size();
+            }
+            manifest.decks.add(entry);
+        }
+
+        long id = System.currentTimeMillis();
+        if (!snapshots.isEmpty()) {
+            id = Math.max(id, Long.parseLong(snapshots.get(snapshots.size() - 1)) + 1);
+        }
+        String name = Long.toString(id);
+        File file = manifestFile(name);
+        DeckStorage.writeAtomically(file, out -> writeManifest(out, manifest));
+        return new Result(name, manifest.decks.size(), decksRead, writer.written, writer.reused,
+                writer.bytes + file.length());
+    }
+
+    /** Snapshot names, oldest first. */
+    public List<String> listSnapshots() {
+        List<Long> ids = new ArrayList<>();
+        String[] names = snapshotsDir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(MANIFEST_SUFFIX)) {
+                    try {
+                        ids.add(Long.parseLong(name.substring(0, name.length() - MANIFEST_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // Not ours.
+                    }
+                }
+            }
+        }
+        Collections.sort(ids);
+        List<String> snapshots = new ArrayList<>();
+        for (long id : ids) {
+            snapshots.add(Long.toString(id));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Puts the store back the way it was at the snapshot: its user sets, and each set's words
+     * streamed from the chunks one set at a time. Sets stored now but absent from the snapshot
+     * are deleted. Every chunk is checked against its name before anything is written.
+     */
+    public synchronized void restore(String snapshot) throws IOException {
+        Manifest manifest = readManifest(snapshot);
+        for (DeckEntry entry : manifest.decks) {
+            for (String chunk : entry.chunks) {
+                readChunk(chunk);
+            }
+        }
+
+        Set<String> kept = new HashSet<>();
+        for (DeckEntry entry : manifest.decks) {
+            kept.add(entry.name);
+        }
+        for (String name : store.getStoredSetNames()) {
+            if (!kept.contains(name)) {
+                store.deleteVocabularySet(name);
+            }
+        }
+        store.saveVocabularySets(manifest.sets);
+        for (DeckEntry entry : manifest.decks) {
+            try (JsonReader reader = new JsonReader(new InputStreamReader(
+                    new SequenceInputStream(new ChunkStream(entry.chunks)), StandardCharsets.UTF_8))) {
+                store.saveWordsForSet(entry.name, JsonCodecs.readList(reader, JsonCodecs.WORD));
+            }
+        }
+    }
+
+    /** Keeps the newest {@code keep} snapshots and deletes chunks none of them use. */
+    public synchronized void prune(int keep) throws IOException {
+        List<String> snapshots = listSnapshots();
+        for (int i = 0; i < snapshots.size() - keep; i++) {
+            Files.deleteIfExists(manifestFile(snapshots.get(i)).toPath());
+        }
+        Set<String> used = new HashSet<>();
+        for (String snapshot : listSnapshots()) {
+            for (DeckEntry entry : readManifest(snapshot).decks) {
+                used.addAll(entry.chunks);
+            }
+        }
+        File[] fanOut = chunksDir.listFiles();
+        if (fanOut == null) {
+            return;
+        }
+        for (File sub : fanOut) {
+            File[] chunks = sub.listFiles();
+            if (chunks == null) {
+                continue;
+            }
+            for (File chunk : chunks) {
+                if (!used.contains(chunk.getName())) {
+                    Files.deleteIfExists(chunk.toPath());
+                }
+            }
+        }
+    }
+
+    private boolean chunksExist(List<String> chunks) {
+        for (String chunk : chunks) {
+            if (!chunkFile(chunk).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] readChunk(String chunk) throws IOException {
+        byte[] bytes = Files.readAllBytes(chunkFile(chunk).toPath());
+        if (!hashOf(bytes, bytes.length).equals(chunk)) {
+            throw new IOException("Backup chunk " + chunk + " is damaged");
+        }
+        return bytes;
+    }
+
+    private File chunkFile(String chunk) {
+        return new File(new File(chunksDir, chunk.substring(0, 2)), chunk);
+    }
+
+    private File manifestFile(String snapshot) {
+        return new File(snapshotsDir, snapshot + MANIFEST_SUFFIX);
+    }
+
+    // Cuts the serialized words into chunks as they are written, so a set is never held
+    // whole as bytes.
+    private final class ChunkWriter extends OutputStream {
+        private final byte[] buffer = new byte[MAX_CHUNK];
+        private int length;
+        private long hash;
+        private List<String> chunks;
+        int written;
+        int reused;
+        long bytes;
+
+        List<String> write(List<Word> words) throws IOException {
+            chunks = new ArrayList<>();
+            Writer out = new OutputStreamWriter(this, StandardCharsets.UTF_8);
+            JsonWriter json = new JsonWriter(out);
+            JsonCodecs.writeList(json, words, JsonCodecs.STORED_WORD);
+            json.flush();
+            cut();
+            return chunks;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            buffer[length++] = (byte) b;
+            hash = (hash << 1) + GEAR[b & 0xff];
+            if (length >= MIN_CHUNK && (hash & CUT_MASK) == 0 || length == MAX_CHUNK) {
+                cut();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        private void cut() throws IOException {
+            if (length == 0) {
+                return;
+            }
+            String name = hashOf(buffer, length);
+            chunks.add(name);
+            File file = chunkFile(name);
+            if (file.exists()) {
+                reused++;
+            } else {
+                writeChunk(file, buffer, length);
+                written++;
+                bytes += length;
+            }
+            length = 0;
+            hash = 0;
+        }
+    }
+
+    private static void writeChunk(File file, byte[] bytes, int length) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(bytes, 0, length);
+            out.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot write " + file);
+        }
+    }
+
+    // Hands SequenceInputStream one verified chunk at a time.
+    private final class ChunkStream implements Enumeration<InputStream> {
+        private final Iterator<String> chunks;
+
+        ChunkStream(List<String> chunks) {
+            this.chunks = chunks.iterator();
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return chunks.hasNext();
+        }
+
+        @Override
+        public InputStream nextElement() {
+            if (!chunks.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return new ByteArrayInputStream(readChunk(chunks.next()));
+            } catch (IOException e) {
+                // Checked by restore before anything was written.
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static String hashOf(byte[] bytes, int length) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+        digest.update(bytes, 0, length);
+        byte[] hash = Arrays.copyOf(digest.digest(), HASH_BYTES);
+        StringBuilder hex = new StringBuilder(HASH_BYTES * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static final class Manifest {
+        List<VocabularySet> sets = new ArrayList<>();
+        final List<DeckEntry> decks = new ArrayList<>();
+    }
+
+    private static final class DeckEntry {
+        final String name;
+        final long version;
+        final long checksum;
+        final List<String> chunks;
+
+        DeckEntry(String name, long version, long checksum, List<String> chunks) {
+            this.name = name;
+            this.version = version;
+            this.checksum = checksum;
+            this.chunks = chunks;
+        }
+    }
+
+    private static void writeManifest(Writer out, Manifest manifest) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("sets");
+        JsonCodecs.writeList(json, manifest.sets, JsonCodecs.VOCABULARY_SET);
+        json.name("decks").beginArray();
+        for (DeckEntry entry : manifest.decks) {
+            json.beginObject();
+            json.name("name").value(entry.name);
+            json.name("version").value(entry.version);
+            json.name("checksum").value(entry.checksum);
+            json.name("chunks").beginArray();
+            for (String chunk : entry.chunks) {
+                json.value(chunk);
+            }
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    private Manifest readManifest(String snapshot) throws IOException {
+        Manifest manifest = new Manifest();
+        try (JsonReader json = new JsonReader(new InputStreamReader(
+                new FileInputStream(manifestFile(snapshot)), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "sets":
+                        manifest.sets = JsonCodecs.readList(json, JsonCodecs.VOCABULARY_SET);
+                        break;
+                    case "decks":
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            manifest.decks.add(readDeckEntry(json));
+                        }
+                        json.endArray();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+        }
+        return manifest;
+    }
+
+    private static DeckEntry readDeckEntry(JsonReader json) throws IOException {
+        String name = null;
+        long version = 0;
+        long checksum = 0;
+        List<String> chunks = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "version":
+                    version = json.nextLong();
+                    break;
+                case "checksum":
+                    checksum = json.nextLong();
+                    break;
+                case "chunks":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        chunks.add(json.nextString());
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        if (name == null) {
+            throw new IOException("Backup manifest entry without a name");
+        }
+        return new DeckEntry(name, version, checksum, chunks);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.VocabularySet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filters deck titles as the user types. Titles are folded once when the decks are set;
+ * each query then runs on a background thread and is dropped if a newer one arrives before
+ * it finishes or is delivered. A query that contains the previous one only rescans the
+ * previous matches.
+ */
+public final class DeckFilter {
+
+    public interface Callback {
+        void onFiltered(String query, List<VocabularySet> result);
+    }
+
+    // Checked this often during a scan, so a stale query stops early.
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+
+    private static final ExecutorService SHARED_WORKER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "deck-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor worker;
+    private final Executor results;
+    private final AtomicLong generation = new AtomicLong();
+
+    // Only touched on the worker.
+    private List<VocabularySet> sets = new ArrayList<>();
+    private String[] keys = new String[0];
+    private String lastQuery;
+    private int[] lastMatches;
+    private int lastMatchCount;
+    private int lastScanned;
+
+    /** Results are handed to {@code results}, typically the main thread. */
+    public DeckFilter(Executor results) {
+        this(SHARED_WORKER, results);
+    }
+
+    DeckFilter(Executor worker, Executor results) {
+        this.worker = worker;
+        this.results = results;
+    }
+
+    public void setSets(List<VocabularySet> vocabularySets) {
+        List<VocabularySet> copy = new ArrayList<>(vocabularySets);
+        generation.incrementAndGet();
+        worker.execute(() -> {
+            String[] folded = new String[copy.size()];
+            for (int i = 0; i < folded.length; i++) {
+                folded[i] = FoldedText.fold(copy.get(i).getTitle());
+            }
+            sets = copy;
+            keys = folded;
+            lastQuery = null;
+        });
+    }
+
+    public void filter(String query, Callback callback) {
+        long current = generation.incrementAndGet();
+        worker.execute(() -> {
+            if (generation.get() != current) {
+                return;
+            }
+            List<VocabularySet> result = match(FoldedText.fold(query).trim(), current);
+            if (result == null) {
+                return;
+            }
+            results.execute(() -> {
+                if (generation.get() == current) {
+                    callback.onFiltered(query, result);
+                }
+            });
+        });
+    }
+
+    // Null if a newer query arrived mid-scan; the narrowing state is left as it was.
+    private List<VocabularySet> match(String query, long current) {
+        int[] candidates = null;
+        int candidateCount = keys.length;
+        if (lastQuery != null && query.contains(lastQuery)) {
+            candidates = lastMatches;
+            candidateCount = lastMatchCount;
+        }
+        int[] matches = new int[candidateCount];
+        int matchCount = 0;
+        for (int c = 0; c < candidateCount; c++) {
+            if (c % CANCEL_CHECK_INTERVAL == 0 && generation.get() != current) {
+                return null;
+            }
+            int index = candidates != null ? candidates[c] : c;
+            if (query.isEmpty() || keys[index].contains(query)) {
+                matches[matchCount++] = index;
+            }
+        }
+        lastQuery = query;
+        lastScanned = candidateCount;
+        lastMatches = matches;
+        lastMatchCount = matchCount;
+
+        List<VocabularySet> result = new ArrayList<>(matchCount);
+        for (int i = 0; i < matchCount; i++) {
+            result.add(sets.get(matches[i]));
+        }
+        return result;
+    }
+
+    // How many titles the last completed query looked at.
+    int lastScanned() {
+        return lastScanned;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Where each word of a stored set lives, in the order the words were added: a byte range in
+ * the set's snapshot file, or the word itself for one the journal added or replaced since.
+ * Lets the word list read one page of a set without parsing the rest.
+ *
+ * <p>Never changed in place, like {@link WordMap}: replaying a journal record returns a new
+ * index sharing all but O(log n) nodes with this one, so a list from {@link #wordIds} stays
+ * as it was while later records are applied.
+ */
+final class DeckIndex {
+
+    static final class Entry {
+        final String wordId;
+        final long offset;
+        final int length;
+        // Set for words from the journal, which are not in the snapshot file.
+        final Word word;
+
+        Entry(String wordId, long offset, int length, Word word) {
+            this.wordId = wordId;
+            this.offset = offset;
+            this.length = length;
+            this.word = word;
+        }
+    }
+
+    private static final Comparator<Long> BY_SEQUENCE = Long::compare;
+
+    /** The snapshot generation and file length the byte ranges belong to. */
+    final long generation;
+    final long deckLength;
+    /** How far into the journal has been applied, in bytes. */
+    final long journalOffset;
+    private final Treap<String, Long> sequences;
+    private final Treap<Long, Entry> entries;
+    private final long nextSequence;
+
+    private DeckIndex(long generation, long deckLength, long journalOffset, Treap<String, Long> sequences,
+                      Treap<Long, Entry> entries, long nextSequence) {
+        this.generation = generation;
+        this.deckLength = deckLength;
+        this.journalOffset = journalOffset;
+        this.sequences = sequences;
+        this.entries = entries;
+        this.nextSequence = nextSequence;
+    }
+
+    /** The snapshot's entries in file order; their IDs must differ. */
+    static DeckIndex of(long generation, long deckLength, List<Entry> ordered) {
+        List<Long> numbers = new ArrayList<>(ordered.size());
+        List<Integer> byId = new ArrayList<>(ordered.size());
+        for (int i = 0; i < ordered.size(); i++) {
+            numbers.add((long) i);
+            byId.add(i);
+        }
+        byId.sort((a, b) -> ordered.get(a).wordId.compareTo(ordered.get(b).wordId));
+        List<String> ids = new ArrayList<>(ordered.size());
+        List<Long> idNumbers = new ArrayList<>(ordered.size());
+        for (int i : byId) {
+            ids.add(ordered.get(i).wordId);
+            idNumbers.add((long) i);
+        }
+        return new DeckIndex(generation, deckLength, 0, Treap.ofSorted(Comparator.<String>naturalOrder(), ids, idNumbers),
+                Treap.ofSorted(BY_SEQUENCE, numbers, ordered), ordered.size());
+    }
+
+    /** This index with the word added at the end, or put in place of the one with its ID. */
+    DeckIndex with(Word word) {
+        Entry entry = new Entry(word.getId(), -1, 0, word);
+        Long sequence = sequences.get(word.getId());
+        if (sequence != null) {
+            return new DeckIndex(generation, deckLength, journalOffset, sequences, entries.put(sequence, entry),
+                    nextSequence);
+        }
+        return new DeckIndex(generation, deckLength, journalOffset, sequences.put(word.getId(), nextSequence),
+                entries.put(nextSequence, entry), nextSequence + 1);
+    }
+
+    DeckIndex without(String wordId) {
+        Long sequence = sequences.get(wordId);
+        if (sequence == null) {
+            return this;
+        }
+        return new DeckIndex(generation, deckLength, journalOffset, sequences.remove(wordId),
+                entries.remove(sequence), nextSequence);
+    }
+
+    DeckIndex withJournalOffset(long offset) {
+        return new DeckIndex(generation, deckLength, offset, sequences, entries, nextSequence);
+    }
+
+    boolean contains(String wordId) {
+        return sequences.containsKey(wordId);
+    }
+
+    Entry get(String wordId) {
+        Long sequence = sequences.get(wordId);
+        return sequence != null ? entries.get(sequence) : null;
+    }
+
+    /** The word's position in added order, or -1. O(log n). */
+    int indexOf(String wordId) {
+        Long sequence = sequences.get(wordId);
+        return sequence != null ? entries.indexOf(sequence) : -1;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /** Word IDs in added order, as a list that later records do not change. */
+    List<String> wordIds() {
+        List<Entry> values = entries.values();
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return values.get(index).wordId;
+            }
+
+            @Override
+            public int size() {
+                return values.size();
+            }
+
+            @Override
+            public int indexOf(Object o) {
+                return o instanceof String ? DeckIndex.this.indexOf((String) o) : -1;
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                Iterator<Entry> iterator = values.iterator();
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return iterator.next().wordId;
+                    }
+                };
+            }
+        };
+    }
+}
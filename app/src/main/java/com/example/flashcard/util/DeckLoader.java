@@ -0,0 +1,174 @@
+package com.example.flashcard.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads decks for the study and match screens on a background executor and hands
+ * them back on the callback executor, which is the main thread in the app. Other screens
+ * {@link #run} their own reads on the same threads, with the same cancel.
+ *
+ * <p>Requests for the same deck while a load is pending share that load; each
+ * caller gets its own {@link ColumnarDeck#copy}, so shuffling one does not touch another. A
+ * write to the deck stops later requests from joining a load that may have read it before
+ * the write.
+ *
+ * <p>{@link Request#cancel} drops the caller's callback, and a load nobody is waiting for is
+ * taken off the queue. A load already reading is left to finish rather than interrupted, as
+ * an interrupt closes the storage channels it reads through.
+ */
+public final class DeckLoader implements VocabularyStore.SnapshotListener {
+
+    /** Reads a deck in the order its words were added. Runs off the main thread. */
+    public interface Source {
+        ColumnarDeck load(String jsonFileName);
+    }
+
+    public interface Callback {
+        void onLoaded(ColumnarDeck deck);
+    }
+
+    /** Work for {@link #run}; runs off the main thread. */
+    public interface Task<T> {
+        T run();
+    }
+
+    public interface Result<T> {
+        void onDone(T result);
+    }
+
+    public final class Request {
+        // Null for a task from run(), which shares nothing with other requests.
+        private final Job job;
+        private final Callback callback;
+        private Future<?> task;
+        private boolean cancelled;
+
+        private Request(Job job, Callback callback) {
+            this.job = job;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            synchronized (jobs) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                if (job == null) {
+                    task.cancel(false);
+                    return;
+                }
+                job.requests.remove(this);
+                if (job.requests.isEmpty() && !job.done) {
+                    job.future.cancel(false);
+                    if (jobs.get(job.jsonFileName) == job) {
+                        jobs.remove(job.jsonFileName);
+                    }
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            synchronized (jobs) {
+                return cancelled;
+            }
+        }
+    }
+
+    private static final class Job {
+        final String jsonFileName;
+        final List<Request> requests = new ArrayList<>();
+        Future<?> future;
+        boolean done;
+
+        Job(String jsonFileName) {
+            this.jsonFileName = jsonFileName;
+        }
+    }
+
+    private final Source source;
+    private final ExecutorService background;
+    private final Executor callbacks;
+    // Loads new requests may still join, by deck.
+    private final Map<String, Job> jobs = new HashMap<>();
+
+    public DeckLoader(Source source, ExecutorService background, Executor callbacks) {
+        this.source = source;
+        this.background = background;
+        this.callbacks = callbacks;
+    }
+
+    public Request load(String jsonFileName, Callback callback) {
+        synchronized (jobs) {
+            Job job = jobs.get(jsonFileName);
+            if (job == null) {
+                Job created = new Job(jsonFileName);
+                jobs.put(jsonFileName, created);
+                job = created;
+                created.future = background.submit(() -> run(created));
+            }
+            Request request = new Request(job, callback);
+            job.requests.add(request);
+            return request;
+        }
+    }
+
+    /**
+     * Runs the task on the loader's threads and hands its result to the callback executor,
+     * unless the request is cancelled first. A task already running is left to finish.
+     */
+    public <T> Request run(Task<T> task, Result<T> result) {
+        Request request = new Request(null, null);
+        synchronized (jobs) {
+            request.task = background.submit(() -> {
+                T value = task.run();
+                callbacks.execute(() -> {
+                    if (!request.isCancelled()) {
+                        result.onDone(value);
+                    }
+                });
+            });
+        }
+        return request;
+    }
+
+    @Override
+    public void onPublished(DeckSnapshot previous, DeckSnapshot next) {
+        synchronized (jobs) {
+            jobs.remove(next.getJsonFileName());
+        }
+    }
+
+    private void run(Job job) {
+        ColumnarDeck deck;
+        try {
+            deck = source.load(job.jsonFileName);
+        } catch (RuntimeException e) {
+            // Screens treat an empty deck as one that could not be loaded.
+            deck = ColumnarDeck.of(Collections.emptyList());
+        }
+        List<Request> waiting;
+        synchronized (jobs) {
+            job.done = true;
+            if (jobs.get(job.jsonFileName) == job) {
+                jobs.remove(job.jsonFileName);
+            }
+            waiting = new ArrayList<>(job.requests);
+        }
+        for (Request request : waiting) {
+            ColumnarDeck copy = deck.copy();
+            callbacks.execute(() -> {
+                if (!request.isCancelled()) {
+                    request.callback.onLoaded(copy);
+                }
+            });
+        }
+    }
+}
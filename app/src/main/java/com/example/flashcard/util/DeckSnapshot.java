@@ -0,0 +1,73 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of one set at a given version. The store publishes a new snapshot on every
+ * write, sharing all unchanged words with the previous one, so a reader holding one never
+ * sees a half-applied change. Words handed out are copies; the store's own are never
+ * changed once published.
+ */
+public final class DeckSnapshot {
+
+    private final String jsonFileName;
+    private final long version;
+    private final long checksum;
+    private final WordMap words;
+    private final Collection<String> changedIds;
+
+    DeckSnapshot(String jsonFileName, long version, long checksum, WordMap words, Collection<String> changedIds) {
+        this.jsonFileName = jsonFileName;
+        this.version = version;
+        this.checksum = checksum;
+        this.words = words;
+        this.changedIds = changedIds != null ? Collections.unmodifiableCollection(changedIds) : null;
+    }
+
+    public String getJsonFileName() {
+        return jsonFileName;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return words.size();
+    }
+
+    public Word getWord(String wordId) {
+        Word word = words.get(wordId);
+        return word != null ? new Word(word.getId(), word.getContent()) : null;
+    }
+
+    public List<Word> getWords() {
+        List<Word> copies = new ArrayList<>(words.size());
+        for (Word word : words.values()) {
+            copies.add(new Word(word.getId(), word.getContent()));
+        }
+        return Collections.unmodifiableList(copies);
+    }
+
+    /**
+     * IDs of the words added, replaced or removed since the version before this one, or null
+     * when the whole set was replaced or read from disk.
+     */
+    public Collection<String> changedIds() {
+        return changedIds;
+    }
+
+    long checksum() {
+        return checksum;
+    }
+
+    // The store's own words; callers in this package only read them.
+    WordMap wordMap() {
+        return words;
+    }
+}
@@ -0,0 +1,1042 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.DeckMetadata;
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps every vocabulary set in its own file under {@code dir}, so reading one set never
+ * loads the others and writing one set never rewrites the others.
+ *
+ * <p>A set is a snapshot file plus an append-only journal of single-word edits. Each edit
+ * appends one short line; once the journal grows past a threshold it is folded back into
+ * a new snapshot on a background thread. Every snapshot is written with an index of where
+ * each word sits in it, so {@link #readWords(String, List)} can read a page of a set by
+ * seeking rather than parsing the whole file.
+ *
+ * <p>Metadata works the same way: each write appends the changed records to a journal next
+ * to metadata.json, which is only rewritten when the journal is folded back in.
+ *
+ * <p>Batches that touch several sets first write their resolved changes to an intent file.
+ * Once that file exists the batch counts as committed; if the process dies before every set
+ * has been rewritten, {@link #recoverBatch} finishes it.
+ */
+public class DeckStorage {
+    private static final String SETS_FILE = "sets.json";
+    private static final String METADATA_FILE = "metadata.json";
+    private static final String METADATA_JOURNAL_FILE = "metadata.journal";
+    private static final String BATCH_FILE = "batch.json";
+    private static final String DECK_SUFFIX = ".deck";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final String OP_ADD = "add";
+    private static final String OP_UPDATE = "update";
+    private static final String OP_DELETE = "delete";
+
+    static final long MIN_COMPACTION_BYTES = 64 * 1024;
+    // Page indexes kept in memory; the word list pages through one set at a time.
+    private static final int MAX_PAGE_INDEXES = 2;
+    // Every fsync this class makes, so tests can count them instead of timing writes.
+    private static final AtomicLong SYNCS = new AtomicLong();
+
+    private final File dir;
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+    private final Map<String, Long> openJournals = new ConcurrentHashMap<>();
+    private final Set<String> pendingCompactions = ConcurrentHashMap.newKeySet();
+    // Each entry is only read or replaced under its set's lock.
+    private final Map<String, DeckIndex> pageIndexes = Collections.synchronizedMap(
+            new LinkedHashMap<String, DeckIndex>(4, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, DeckIndex> eldest) {
+                    return size() > MAX_PAGE_INDEXES;
+                }
+            });
+    private final Object batchLock = new Object();
+    private final Object metadataLock = new Object();
+    private boolean metadataJournalChecked;
+    private boolean metadataCompactionPending;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "deck-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DeckStorage(File dir) {
+        this.dir = dir;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create deck directory " + dir);
+        }
+    }
+
+    static long syncCount() {
+        return SYNCS.get();
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    public List<VocabularySet> readSets() throws IOException {
+        return readListFile(new File(dir, SETS_FILE), JsonCodecs.VOCABULARY_SET);
+    }
+
+    public void writeSets(List<VocabularySet> sets) throws IOException {
+        writeListFile(new File(dir, SETS_FILE), sets, JsonCodecs.VOCABULARY_SET);
+    }
+
+    public List<DeckMetadata> readMetadata() throws IOException {
+        synchronized (metadataLock) {
+            LinkedHashMap<String, DeckMetadata> all = new LinkedHashMap<>();
+            for (DeckMetadata record : readListFile(new File(dir, METADATA_FILE), JsonCodecs.DECK_METADATA)) {
+                all.put(record.getJsonFileName(), record);
+            }
+            replayMetadataJournal(all);
+            return new ArrayList<>(all.values());
+        }
+    }
+
+    public void writeMetadata(List<DeckMetadata> metadata) throws IOException {
+        synchronized (metadataLock) {
+            writeListFile(new File(dir, METADATA_FILE), metadata, JsonCodecs.DECK_METADATA);
+            deleteFile(new File(dir, METADATA_JOURNAL_FILE));
+        }
+    }
+
+    /**
+     * Records changed and removed entries without rewriting the rest. Not synced: metadata
+     * is derived from the words, which are, and a record lost to a power cut is rebuilt from
+     * them on the next load.
+     */
+    public void appendMetadata(Collection<DeckMetadata> updated, Collection<String> removed) throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (String jsonFileName : removed) {
+            records.append(metadataRecord(OP_DELETE, jsonFileName, null)).append('\n');
+        }
+        for (DeckMetadata metadata : updated) {
+            records.append(metadataRecord(OP_ADD, null, metadata)).append('\n');
+        }
+        if (records.length() == 0) {
+            return;
+        }
+        File journal = new File(dir, METADATA_JOURNAL_FILE);
+        synchronized (metadataLock) {
+            if (!metadataJournalChecked) {
+                // Appending after a torn record would hide everything written from then on.
+                if (journal.exists() && endsTorn(journal)) {
+                    writeMetadata(readMetadata());
+                }
+                metadataJournalChecked = true;
+            }
+            try (FileOutputStream out = new FileOutputStream(journal, true)) {
+                out.write(records.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            long threshold = Math.max(MIN_COMPACTION_BYTES, new File(dir, METADATA_FILE).length());
+            if (journal.length() > threshold && !metadataCompactionPending) {
+                metadataCompactionPending = true;
+                compactor.execute(this::compactMetadata);
+            }
+        }
+    }
+
+    private void compactMetadata() {
+        synchronized (metadataLock) {
+            metadataCompactionPending = false;
+            try {
+                writeMetadata(readMetadata());
+            } catch (IOException e) {
+                // The journal is still intact; the next append will retry.
+            }
+        }
+    }
+
+    public boolean hasWords(String jsonFileName) {
+        return deckFile(jsonFileName).exists() || journalFile(jsonFileName).exists();
+    }
+
+    public List<Word> readWords(String jsonFileName) throws IOException {
+        synchronized (lockFor(jsonFileName)) {
+            Snapshot snapshot = readSnapshot(jsonFileName);
+            boolean torn = replayJournal(jsonFileName, snapshot);
+            if (torn || snapshot.assignedIds) {
+                // Either a crash cut the last record short, or the set predates word IDs.
+                // Persist the repaired set so later appends and IDs line up with it.
+                writeSnapshot(jsonFileName, snapshot.generation + 1, snapshot.words());
+            }
+            return snapshot.words();
+        }
+    }
+
+    /** The set's word IDs in added order, read from its index and journal. */
+    public List<String> readWordIds(String jsonFileName) throws IOException {
+        synchronized (lockFor(jsonFileName)) {
+            return pageIndex(jsonFileName).wordIds();
+        }
+    }
+
+    /** Where the word sits in {@link #readWordIds}, or -1. */
+    public int indexOfWord(String jsonFileName, String wordId) throws IOException {
+        synchronized (lockFor(jsonFileName)) {
+            return pageIndex(jsonFileName).indexOf(wordId);
+        }
+    }
+
+    /**
+     * The words with these IDs in the same order, null for one the set does not have. Each is
+     * read from its own byte range of the snapshot, or from the journal, without parsing the
+     * rest of the set.
+     */
+    public List<Word> readWords(String jsonFileName, List<String> wordIds) throws IOException {
+        synchronized (lockFor(jsonFileName)) {
+            DeckIndex index = pageIndex(jsonFileName);
+            List<Word> words = new ArrayList<>(wordIds.size());
+            RandomAccessFile deck = null;
+            try {
+                for (String wordId : wordIds) {
+                    DeckIndex.Entry entry = index.get(wordId);
+                    if (entry == null) {
+                        words.add(null);
+                    } else if (entry.word != null) {
+                        words.add(new Word(entry.word.getId(), entry.word.getContent()));
+                    } else {
+                        if (deck == null) {
+                            deck = new RandomAccessFile(deckFile(jsonFileName), "r");
+                        }
+                        byte[] bytes = new byte[entry.length];
+                        deck.seek(entry.offset);
+                        deck.readFully(bytes);
+                        try (JsonReader reader = new JsonReader(new StringReader(new String(bytes, StandardCharsets.UTF_8)))) {
+                            words.add(JsonCodecs.STORED_WORD.read(reader));
+                        }
+                    }
+                }
+            } finally {
+                if (deck != null) {
+                    deck.close();
+                }
+            }
+            return words;
+        }
+    }
+
+    public void writeWords(String jsonFileName, List<Word> words) throws IOException {
+        synchronized (lockFor(jsonFileName)) {
+            writeSnapshot(jsonFileName, readGeneration(jsonFileName) + 1, words);
+        }
+    }
+
+    public void appendAdd(String jsonFileName, Word word) throws IOException {
+        append(jsonFileName, record(OP_ADD, null, word));
+    }
+
+    // Many adds in one append and one sync, for bulk imports.
+    public void appendAdds(String jsonFileName, List<Word> words) throws IOException {
+        if (words.isEmpty()) {
+            return;
+        }
+        StringBuilder records = new StringBuilder();
+        for (Word word : words) {
+            if (records.length() > 0) {
+                records.append('\n');
+            }
+            records.append(record(OP_ADD, null, word));
+        }
+        append(jsonFileName, records.toString());
+    }
+
+    public void appendUpdate(String jsonFileName, String wordId, Word newWord) throws IOException {
+        append(jsonFileName, record(OP_UPDATE, wordId, newWord));
+    }
+
+    public void appendDelete(String jsonFileName, String wordId) throws IOException {
+        append(jsonFileName, record(OP_DELETE, wordId, null));
+    }
+
+    public void deleteWords(String jsonFileName) {
+        synchronized (lockFor(jsonFileName)) {
+            openJournals.remove(jsonFileName);
+            pageIndexes.remove(jsonFileName);
+            deleteFile(journalFile(jsonFileName));
+            deleteFile(deckFile(jsonFileName));
+            deleteFile(indexFile(jsonFileName));
+        }
+    }
+
+    public void compact(String jsonFileName) throws IOException {
+        synchronized (lockFor(jsonFileName)) {
+            if (!journalFile(jsonFileName).exists()) {
+                return;
+            }
+            Snapshot snapshot = readSnapshot(jsonFileName);
+            replayJournal(jsonFileName, snapshot);
+            writeSnapshot(jsonFileName, snapshot.generation + 1, snapshot.words());
+        }
+    }
+
+    /**
+     * Writes the outcome of a batch: sets holds the new words of every touched set and
+     * deleted the sets the batch removed. Throws only if the batch could not be committed;
+     * once the intent is on disk a failed set write is left for {@link #recoverBatch}.
+     */
+    public void commitBatch(WordBatch resolved, Map<String, LinkedHashMap<String, Word>> sets,
+                            Set<String> deleted) throws IOException {
+        synchronized (batchLock) {
+            // Never overwrite the intent of a batch that has not been finished yet.
+            recoverBatch();
+            File intent = new File(dir, BATCH_FILE);
+            writeAtomically(intent, writer -> {
+                JsonWriter json = new JsonWriter(writer);
+                resolved.write(json);
+                json.flush();
+            });
+            try {
+                writeBatchResult(sets, deleted);
+                deleteFile(intent);
+            } catch (IOException e) {
+                // Committed; recoverBatch finishes it before the next batch or on the next start.
+            }
+        }
+    }
+
+    public void recoverBatch() throws IOException {
+        synchronized (batchLock) {
+            File intent = new File(dir, BATCH_FILE);
+            if (!intent.exists()) {
+                return;
+            }
+            WordBatch batch;
+            try (JsonReader reader = new JsonReader(
+                    new InputStreamReader(new FileInputStream(intent), StandardCharsets.UTF_8))) {
+                batch = WordBatch.read(reader);
+            }
+
+            Map<String, LinkedHashMap<String, Word>> sets = new LinkedHashMap<>();
+            for (String jsonFileName : batch.touchedSets()) {
+                LinkedHashMap<String, Word> words = new LinkedHashMap<>();
+                for (Word word : readWords(jsonFileName)) {
+                    words.put(word.getId(), word);
+                }
+                sets.put(jsonFileName, words);
+            }
+            Set<String> deleted = new HashSet<>();
+            batch.apply(sets, deleted);
+            writeBatchResult(sets, deleted);
+
+            if (!deleted.isEmpty()) {
+                List<DeckMetadata> metadata = new ArrayList<>();
+                for (DeckMetadata record : readMetadata()) {
+                    if (!deleted.contains(record.getJsonFileName())) {
+                        metadata.add(record);
+                    }
+                }
+                writeMetadata(metadata);
+            }
+            deleteFile(intent);
+        }
+    }
+
+    private void writeBatchResult(Map<String, LinkedHashMap<String, Word>> sets, Set<String> deleted) throws IOException {
+        for (Map.Entry<String, LinkedHashMap<String, Word>> entry : sets.entrySet()) {
+            if (deleted.contains(entry.getKey())) {
+                deleteWords(entry.getKey());
+            } else {
+                writeWords(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+            }
+        }
+        if (!deleted.isEmpty()) {
+            List<VocabularySet> remaining = new ArrayList<>();
+            for (VocabularySet set : readSets()) {
+                if (!deleted.contains(set.getJsonFileName())) {
+                    remaining.add(set);
+                }
+            }
+            writeSets(remaining);
+        }
+    }
+
+    long journalLength(String jsonFileName) {
+        return journalFile(jsonFileName).length();
+    }
+
+    File deckFile(String jsonFileName) {
+        return new File(dir, encode(jsonFileName) + DECK_SUFFIX);
+    }
+
+    File journalFile(String jsonFileName) {
+        return new File(dir, encode(jsonFileName) + JOURNAL_SUFFIX);
+    }
+
+    File indexFile(String jsonFileName) {
+        return new File(dir, encode(jsonFileName) + INDEX_SUFFIX);
+    }
+
+    private Object lockFor(String jsonFileName) {
+        return locks.computeIfAbsent(jsonFileName, key -> new Object());
+    }
+
+    private static String record(String op, String wordId, Word word) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter json = new JsonWriter(line);
+        json.beginObject();
+        json.name("op").value(op);
+        if (wordId != null) {
+            json.name("id").value(wordId);
+        }
+        if (word != null) {
+            json.name("word");
+            JsonCodecs.STORED_WORD.write(json, word);
+        }
+        json.endObject();
+        json.flush();
+        return line.toString();
+    }
+
+    private void append(String jsonFileName, String record) throws IOException {
+        byte[] line = (record + "\n").getBytes(StandardCharsets.UTF_8);
+        long journalLength;
+        synchronized (lockFor(jsonFileName)) {
+            File journal = openJournal(jsonFileName);
+            try (FileOutputStream out = new FileOutputStream(journal, true)) {
+                out.write(line);
+                out.getFD().sync();
+                SYNCS.incrementAndGet();
+            }
+            journalLength = journal.length();
+        }
+        long threshold = Math.max(MIN_COMPACTION_BYTES, deckFile(jsonFileName).length() / 4);
+        if (journalLength > threshold) {
+            scheduleCompaction(jsonFileName);
+        }
+    }
+
+    // The journal's header names the snapshot generation it applies to. A journal left
+    // behind by a compaction that crashed before deleting it is stale and must not be
+    // appended to, or the new records would be skipped on replay.
+    private File openJournal(String jsonFileName) throws IOException {
+        File journal = journalFile(jsonFileName);
+        if (openJournals.containsKey(jsonFileName) && journal.exists()) {
+            return journal;
+        }
+
+        long generation = readGeneration(jsonFileName);
+        if (journal.exists() && endsTorn(journal)) {
+            Snapshot snapshot = readSnapshot(jsonFileName);
+            replayJournal(jsonFileName, snapshot);
+            generation = snapshot.generation + 1;
+            writeSnapshot(jsonFileName, generation, snapshot.words());
+        }
+
+        Long journalGeneration = journal.exists() ? readJournalGeneration(journal) : null;
+        if (journalGeneration == null || journalGeneration != generation) {
+            String header = "{\"generation\":" + generation + "}\n";
+            writeAtomically(journal, writer -> writer.write(header));
+            pageIndexes.remove(jsonFileName);
+        }
+        openJournals.put(jsonFileName, generation);
+        return journal;
+    }
+
+    private static boolean endsTorn(File journal) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(journal, "r")) {
+            long length = file.length();
+            if (length == 0) {
+                return false;
+            }
+            file.seek(length - 1);
+            return file.read() != '\n';
+        }
+    }
+
+    private void scheduleCompaction(String jsonFileName) {
+        if (!pendingCompactions.add(jsonFileName)) {
+            return;
+        }
+        compactor.execute(() -> {
+            pendingCompactions.remove(jsonFileName);
+            try {
+                compact(jsonFileName);
+            } catch (IOException e) {
+                // The journal is still intact; the next append will retry.
+            }
+        });
+    }
+
+    private Snapshot readSnapshot(String jsonFileName) throws IOException {
+        Snapshot snapshot = new Snapshot();
+        File file = deckFile(jsonFileName);
+        if (!file.exists()) {
+            return snapshot;
+        }
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                // Snapshots written before journaling are a bare array.
+                snapshot.load(JsonCodecs.readList(reader, JsonCodecs.STORED_WORD));
+                return snapshot;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("generation".equals(name)) {
+                    snapshot.generation = reader.nextLong();
+                } else if ("words".equals(name)) {
+                    snapshot.load(JsonCodecs.readList(reader, JsonCodecs.STORED_WORD));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return snapshot;
+    }
+
+    private long readGeneration(String jsonFileName) throws IOException {
+        File file = deckFile(jsonFileName);
+        if (!file.exists()) {
+            return 0;
+        }
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return 0;
+            }
+            reader.beginObject();
+            if (reader.hasNext() && "generation".equals(reader.nextName())) {
+                return reader.nextLong();
+            }
+            return 0;
+        }
+    }
+
+    // Writes each word separately, counting bytes as it goes, so the index can record where
+    // every word starts. The file is the same JSON a single writer would produce. Returns the
+    // new index, or null if a word has no ID to index it by.
+    private DeckIndex writeSnapshot(String jsonFileName, long generation, List<Word> words) throws IOException {
+        List<DeckIndex.Entry> entries = new ArrayList<>(words.size());
+        long[] deckLength = new long[1];
+        writeAtomically(deckFile(jsonFileName), writer -> {
+            String head = "{\"generation\":" + generation + ",\"words\":[";
+            writer.write(head);
+            long offset = utf8Length(head);
+            for (int i = 0; i < words.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                    offset++;
+                }
+                String json = wordJson(words.get(i));
+                int length = utf8Length(json);
+                entries.add(new DeckIndex.Entry(words.get(i).getId(), offset, length, null));
+                writer.write(json);
+                offset += length;
+            }
+            writer.write("]}");
+            deckLength[0] = offset + 2;
+        });
+        openJournals.remove(jsonFileName);
+        pageIndexes.remove(jsonFileName);
+        deleteFile(journalFile(jsonFileName));
+        for (DeckIndex.Entry entry : entries) {
+            if (entry.wordId == null) {
+                deleteFile(indexFile(jsonFileName));
+                return null;
+            }
+        }
+        try {
+            writeIndex(jsonFileName, generation, deckLength[0], entries);
+        } catch (IOException e) {
+            // Only derived data; the next page read rebuilds it.
+            deleteFile(indexFile(jsonFileName));
+        }
+        return DeckIndex.of(generation, deckLength[0], entries);
+    }
+
+    private void writeIndex(String jsonFileName, long generation, long deckLength, List<DeckIndex.Entry> entries)
+            throws IOException {
+        writeAtomically(indexFile(jsonFileName), writer -> {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("generation").value(generation);
+            json.name("deckLength").value(deckLength);
+            json.name("entries").beginArray();
+            for (DeckIndex.Entry entry : entries) {
+                json.beginArray().value(entry.wordId).value(entry.offset).value(entry.length).endArray();
+            }
+            json.endArray();
+            json.endObject();
+            json.flush();
+        });
+    }
+
+    // Null if there is no index, or it belongs to another snapshot than the one on disk.
+    private DeckIndex readIndex(String jsonFileName, long generation, long deckLength) {
+        File file = indexFile(jsonFileName);
+        if (!file.exists()) {
+            return null;
+        }
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            long indexGeneration = -1;
+            long indexDeckLength = -1;
+            List<DeckIndex.Entry> entries = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "generation":
+                        indexGeneration = reader.nextLong();
+                        break;
+                    case "deckLength":
+                        indexDeckLength = reader.nextLong();
+                        break;
+                    case "entries":
+                        if (indexGeneration != generation || indexDeckLength != deckLength) {
+                            return null;
+                        }
+                        entries = new ArrayList<>();
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            reader.beginArray();
+                            entries.add(new DeckIndex.Entry(reader.nextString(), reader.nextLong(), reader.nextInt(), null));
+                            reader.endArray();
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            return entries != null ? DeckIndex.of(generation, deckLength, entries) : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Caller holds the set's lock. The index of the snapshot on disk with the journal applied,
+    // kept between calls: a call after an append only reads the records appended since.
+    private DeckIndex pageIndex(String jsonFileName) throws IOException {
+        File deck = deckFile(jsonFileName);
+        long generation = readGeneration(jsonFileName);
+        long deckLength = deck.exists() ? deck.length() : 0;
+        DeckIndex index = pageIndexes.get(jsonFileName);
+        if (index == null || index.generation != generation || index.deckLength != deckLength) {
+            index = deck.exists() ? readIndex(jsonFileName, generation, deckLength)
+                    : DeckIndex.of(generation, 0, Collections.emptyList());
+        }
+        if (index != null) {
+            index = replayJournal(jsonFileName, index);
+        }
+        if (index == null) {
+            // Written before snapshots had an index, cut short by a crash, or journaled before
+            // words had IDs: fold everything into a new snapshot once, which writes the index.
+            Snapshot snapshot = readSnapshot(jsonFileName);
+            replayJournal(jsonFileName, snapshot);
+            index = writeSnapshot(jsonFileName, snapshot.generation + 1, snapshot.words());
+            if (index == null) {
+                throw new IOException("Cannot index " + jsonFileName);
+            }
+        }
+        pageIndexes.put(jsonFileName, index);
+        return index;
+    }
+
+    // Applies the journal records past the index's offset. A journal for another generation is
+    // stale and skipped, as on a full read; a torn last record is left for a later call. Returns
+    // null for a record that names its word by text rather than ID.
+    private DeckIndex replayJournal(String jsonFileName, DeckIndex index) throws IOException {
+        File journal = journalFile(jsonFileName);
+        if (!journal.exists() || journal.length() <= index.journalOffset) {
+            return index;
+        }
+        byte[] tail;
+        try (RandomAccessFile file = new RandomAccessFile(journal, "r")) {
+            tail = new byte[(int) (file.length() - index.journalOffset)];
+            file.seek(index.journalOffset);
+            file.readFully(tail);
+        }
+        long base = index.journalOffset;
+        int start = 0;
+        for (int i = 0; i < tail.length; i++) {
+            if (tail[i] != '\n') {
+                continue;
+            }
+            String line = new String(tail, start, i - start, StandardCharsets.UTF_8);
+            boolean header = base + start == 0;
+            start = i + 1;
+            if (header) {
+                Long generation = parseGeneration(line);
+                if (generation == null || generation != index.generation) {
+                    return index;
+                }
+            } else {
+                JournalRecord record;
+                try {
+                    record = JournalRecord.parse(line);
+                } catch (IOException | RuntimeException e) {
+                    break;
+                }
+                index = record.applyTo(index);
+                if (index == null) {
+                    return null;
+                }
+            }
+            index = index.withJournalOffset(base + start);
+        }
+        return index;
+    }
+
+    private Long readJournalGeneration(File journal) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8))) {
+            StringBuilder header = new StringBuilder();
+            if (!readLine(reader, header)) {
+                return null;
+            }
+            return parseGeneration(header.toString());
+        }
+    }
+
+    // Applies the journal to the snapshot in place, one line at a time. Returns true when
+    // the last record is incomplete, which only happens when the process died mid-append.
+    private boolean replayJournal(String jsonFileName, Snapshot snapshot) throws IOException {
+        File journal = journalFile(jsonFileName);
+        if (!journal.exists()) {
+            return false;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8))) {
+            StringBuilder line = new StringBuilder();
+            if (!readLine(reader, line)) {
+                return line.length() > 0;
+            }
+            Long generation = parseGeneration(line.toString());
+            if (generation == null) {
+                return true;
+            }
+            if (generation != snapshot.generation) {
+                return false;
+            }
+
+            while (true) {
+                line.setLength(0);
+                if (!readLine(reader, line)) {
+                    return line.length() > 0;
+                }
+                JournalRecord record;
+                try {
+                    record = JournalRecord.parse(line.toString());
+                } catch (IOException | RuntimeException e) {
+                    return true;
+                }
+                record.applyTo(snapshot);
+            }
+        }
+    }
+
+    // Caller holds metadataLock. Stops at a torn last record.
+    private void replayMetadataJournal(Map<String, DeckMetadata> all) throws IOException {
+        File journal = new File(dir, METADATA_JOURNAL_FILE);
+        if (!journal.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8))) {
+            StringBuilder line = new StringBuilder();
+            while (readLine(reader, line)) {
+                try (JsonReader json = new JsonReader(new StringReader(line.toString()))) {
+                    String op = null;
+                    String id = null;
+                    DeckMetadata metadata = null;
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        switch (json.nextName()) {
+                            case "op":
+                                op = json.nextString();
+                                break;
+                            case "id":
+                                id = json.nextString();
+                                break;
+                            case "metadata":
+                                metadata = JsonCodecs.DECK_METADATA.read(json);
+                                break;
+                            default:
+                                json.skipValue();
+                                break;
+                        }
+                    }
+                    json.endObject();
+                    if (OP_DELETE.equals(op) && id != null) {
+                        all.remove(id);
+                    } else if (OP_ADD.equals(op) && metadata != null) {
+                        all.put(metadata.getJsonFileName(), metadata);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    return;
+                }
+                line.setLength(0);
+            }
+        }
+    }
+
+    private static String metadataRecord(String op, String jsonFileName, DeckMetadata metadata) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter json = new JsonWriter(line);
+        json.beginObject();
+        json.name("op").value(op);
+        if (jsonFileName != null) {
+            json.name("id").value(jsonFileName);
+        }
+        if (metadata != null) {
+            json.name("metadata");
+            JsonCodecs.DECK_METADATA.write(json, metadata);
+        }
+        json.endObject();
+        json.flush();
+        return line.toString();
+    }
+
+    // Reads up to the next '\n' into line. Returns false if the stream ended first.
+    private static boolean readLine(Reader reader, StringBuilder line) throws IOException {
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                return true;
+            }
+            line.append((char) c);
+        }
+        return false;
+    }
+
+    private static Long parseGeneration(String header) {
+        try (JsonReader reader = new JsonReader(new StringReader(header))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("generation".equals(reader.nextName())) {
+                    return reader.nextLong();
+                }
+                reader.skipValue();
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static class JournalRecord {
+        String op;
+        String id;
+        String english;
+        String vietnamese;
+        Word word;
+
+        static JournalRecord parse(String line) throws IOException {
+            JournalRecord record = new JournalRecord();
+            try (JsonReader reader = new JsonReader(new StringReader(line))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "op":
+                            record.op = reader.nextString();
+                            break;
+                        case "id":
+                            record.id = reader.nextString();
+                            break;
+                        case "english":
+                            record.english = reader.nextString();
+                            break;
+                        case "vietnamese":
+                            record.vietnamese = reader.nextString();
+                            break;
+                        case "word":
+                            record.word = JsonCodecs.STORED_WORD.read(reader);
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+            }
+            if (record.op == null) {
+                throw new IOException("Journal record without op");
+            }
+            return record;
+        }
+
+        void applyTo(Snapshot snapshot) {
+            if (OP_ADD.equals(op)) {
+                snapshot.put(word);
+            } else if (OP_UPDATE.equals(op)) {
+                String target = resolveId(snapshot);
+                if (target != null && snapshot.words.containsKey(target)) {
+                    word.setId(target);
+                    snapshot.words.put(target, word);
+                }
+            } else if (OP_DELETE.equals(op)) {
+                String target = resolveId(snapshot);
+                if (target != null) {
+                    snapshot.words.remove(target);
+                }
+            }
+        }
+
+        DeckIndex applyTo(DeckIndex index) {
+            if (OP_ADD.equals(op)) {
+                return word != null && word.getId() != null ? index.with(word) : null;
+            }
+            if (id == null) {
+                return null;
+            }
+            if (OP_UPDATE.equals(op)) {
+                if (word == null || !index.contains(id)) {
+                    return index;
+                }
+                word.setId(id);
+                return index.with(word);
+            }
+            return OP_DELETE.equals(op) ? index.without(id) : index;
+        }
+
+        // Records written before word IDs existed identify the word by its text.
+        private String resolveId(Snapshot snapshot) {
+            if (id != null) {
+                return id;
+            }
+            for (Word candidate : snapshot.words.values()) {
+                if (candidate.getEnglish().equals(english) && candidate.getVietnamese().equals(vietnamese)) {
+                    return candidate.getId();
+                }
+            }
+            return null;
+        }
+    }
+
+    private static <T> List<T> readListFile(File file, TypeAdapter<T> adapter) throws IOException {
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return JsonCodecs.readList(reader, adapter);
+        }
+    }
+
+    private static <T> void writeListFile(File file, List<T> items, TypeAdapter<T> adapter) throws IOException {
+        writeAtomically(file, writer -> {
+            JsonWriter json = new JsonWriter(writer);
+            JsonCodecs.writeList(json, items, adapter);
+            json.flush();
+        });
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static class Snapshot {
+        long generation;
+        boolean assignedIds;
+        final LinkedHashMap<String, Word> words = new LinkedHashMap<>();
+
+        void load(List<Word> loaded) {
+            if (loaded != null) {
+                for (Word word : loaded) {
+                    put(word);
+                }
+            }
+        }
+
+        void put(Word word) {
+            if (word.getId() == null) {
+                word.setId(Word.newId());
+                assignedIds = true;
+            }
+            words.put(word.getId(), word);
+        }
+
+        List<Word> words() {
+            return new ArrayList<>(words.values());
+        }
+    }
+
+    private static String wordJson(Word word) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        JsonCodecs.STORED_WORD.write(json, word);
+        json.flush();
+        return out.toString();
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    interface Content {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    // Write to a sibling temp file, fsync it, then rename over the target so a crash
+    // mid-write leaves either the old or the new file, never a torn one.
+    static void writeAtomically(File target, Content content) throws IOException {
+        File temp = new File(target.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            content.writeTo(writer);
+            writer.flush();
+            out.getFD().sync();
+            SYNCS.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + target);
+        }
+    }
+
+    // Set names are user controlled (and some bundled ones carry stray spaces),
+    // so encode them to a safe, reversible file name.
+    private static String encode(String jsonFileName) {
+        try {
+            return URLEncoder.encode(jsonFileName, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
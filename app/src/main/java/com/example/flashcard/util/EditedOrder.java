@@ -0,0 +1,176 @@
+package com.example.flashcard.util;
+
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of word IDs as read, with single rows inserted, removed and moved since. The list it
+ * started from is never copied: removed rows are kept as a set of its positions and inserted
+ * rows in a tree of their own, so an edit or looking up a row's position is O(log n), given a
+ * starting list whose {@code indexOf} is.
+ *
+ * <p>Never changed in place, like {@link DeckIndex}: each edit returns a new order sharing all
+ * but O(log n) nodes with this one, so a list handed out earlier can be read on any thread.
+ */
+final class EditedOrder extends AbstractList<String> implements RandomAccess {
+
+    // Row i of the starting list sits at key i * GAP; an inserted row takes a key between its
+    // neighbours' that is never a multiple of GAP, so the two kinds never collide.
+    private static final long GAP = 1L << 32;
+
+    private final List<String> base;
+    private final Treap<Integer, Boolean> removed;
+    private final Treap<Long, String> added;
+    private final Treap<String, Long> addedKeys;
+
+    private EditedOrder(List<String> base, Treap<Integer, Boolean> removed, Treap<Long, String> added,
+                        Treap<String, Long> addedKeys) {
+        this.base = base;
+        this.removed = removed;
+        this.added = added;
+        this.addedKeys = addedKeys;
+    }
+
+    /** The list as given; it must not change afterwards. */
+    static EditedOrder of(List<String> base) {
+        return new EditedOrder(base, Treap.empty(Comparator.<Integer>naturalOrder()),
+                Treap.empty(Comparator.<Long>naturalOrder()), Treap.empty(Comparator.<String>naturalOrder()));
+    }
+
+    @Override
+    public int size() {
+        return base.size() - removed.size() + added.size();
+    }
+
+    @Override
+    public String get(int index) {
+        if (removed.size() == 0 && added.size() == 0) {
+            return base.get(index);
+        }
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+        long key = keyAt(index);
+        return isBaseKey(key) ? base.get((int) (key / GAP)) : added.get(key);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof String)) {
+            return -1;
+        }
+        Long key = addedKeys.get((String) o);
+        if (key != null) {
+            return added.indexOf(key) + shownBase(baseRowsBelow(key));
+        }
+        int row = base.indexOf(o);
+        if (row < 0 || removed.containsKey(row)) {
+            return -1;
+        }
+        return rowsBelow(row);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    EditedOrder with(int index, String wordId) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+        int size = size();
+        long lower = index > 0 ? keyAt(index - 1) : (size > 0 ? keyAt(0) : 0) - GAP;
+        long upper = index < size ? keyAt(index) : (size > 0 ? keyAt(size - 1) : 0) + GAP;
+        long key = lower + (upper - lower) / 2;
+        if (isBaseKey(key)) {
+            key++;
+        }
+        if (key <= lower || key >= upper) {
+            // Inserted many times at the same spot; spread that gap's rows out and try again.
+            return respaced(Math.floorDiv(lower, GAP)).with(index, wordId);
+        }
+        return new EditedOrder(base, removed, added.put(key, wordId), addedKeys.put(wordId, key));
+    }
+
+    EditedOrder without(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+        long key = keyAt(index);
+        if (isBaseKey(key)) {
+            return new EditedOrder(base, removed.put((int) (key / GAP), Boolean.TRUE), added, addedKeys);
+        }
+        return new EditedOrder(base, removed, added.remove(key), addedKeys.remove(added.get(key)));
+    }
+
+    EditedOrder moved(int from, int to) {
+        String wordId = get(from);
+        return without(from).with(to, wordId);
+    }
+
+    private static boolean isBaseKey(long key) {
+        return Math.floorMod(key, GAP) == 0;
+    }
+
+    // Rows of the starting list before this one that are still shown.
+    private int shownBase(int row) {
+        return row - removed.countBelow(row);
+    }
+
+    // Rows of the starting list whose key sorts before this one.
+    private int baseRowsBelow(long key) {
+        return (int) Math.min(base.size(), Math.max(0, Math.floorDiv(key - 1, GAP) + 1));
+    }
+
+    // All rows before row i of the starting list.
+    private int rowsBelow(int row) {
+        return shownBase(row) + added.countBelow(row * GAP);
+    }
+
+    // The key of the row at this position: a binary search over the starting list for the gap
+    // it falls in, then a lookup among the inserted rows if it is not that list's row.
+    private long keyAt(int index) {
+        int first = added.countBelow(0L);
+        if (index < first) {
+            return added.keyAt(index);
+        }
+        int low = 0;
+        int high = base.size();
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (rowsBelow(mid) <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        boolean shown = low < base.size() && !removed.containsKey(low);
+        if (shown && rowsBelow(low) == index) {
+            return low * GAP;
+        }
+        return added.keyAt(index - shownBase(low) - (shown ? 1 : 0));
+    }
+
+    // Gives the inserted rows between row gap and row gap + 1 of the starting list evenly
+    // spaced keys; their order is kept.
+    private EditedOrder respaced(long gap) {
+        int from = added.countBelow(gap * GAP);
+        int to = added.countBelow((gap + 1) * GAP);
+        long step = GAP / (to - from + 1);
+        Treap<Long, String> nextAdded = added;
+        Treap<String, Long> nextKeys = addedKeys;
+        for (int i = from; i < to; i++) {
+            nextAdded = nextAdded.remove(added.keyAt(i));
+        }
+        for (int i = from; i < to; i++) {
+            long key = gap * GAP + (i - from + 1) * step;
+            String wordId = added.valueAt(i);
+            nextAdded = nextAdded.put(key, wordId);
+            nextKeys = nextKeys.put(wordId, key);
+        }
+        return new EditedOrder(base, removed, nextAdded, nextKeys);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.flashcard.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Lower-cased text with Vietnamese tone marks and other diacritics removed, so a query typed
+ * without them ("suc khoe") still matches the title ("Sức khỏe").
+ */
+public final class FoldedText {
+
+    private FoldedText() {
+    }
+
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            // Đ is its own letter, not D plus a mark, so NFD leaves it alone.
+            folded.append(c == 'đ' ? 'd' : c);
+        }
+        return folded.toString();
+    }
+}
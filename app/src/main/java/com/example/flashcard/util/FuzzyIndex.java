@@ -0,0 +1,279 @@
+package com.example.flashcard.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Typo-tolerant lookup over a set of terms, such as every English headword. Each term is
+ * split into padded trigrams; a query only runs the edit-distance check against terms of a
+ * similar length that share enough trigrams with it to possibly be within reach, so a
+ * lookup touches a few postings lists instead of every term.
+ *
+ * <p>Terms are reference counted, so the same headword in several decks is one entry that
+ * disappears only when the last copy does. Ids of removed terms are kept and reused if the
+ * term comes back, which keeps every postings list append-only.
+ */
+public final class FuzzyIndex {
+
+    public static final class Match {
+        private final String term;
+        private final int distance;
+
+        Match(String term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<String, IntList> grams = new HashMap<>();
+    private String[] terms = new String[256];
+    private int[] refs = new int[256];
+    private int[] letterMasks = new int[256];
+    private int termCount;
+    private int liveTerms;
+    private int[] shared = new int[256];
+
+    public synchronized void add(String text) {
+        String term = normalize(text);
+        if (term.isEmpty()) {
+            return;
+        }
+        Integer id = ids.get(term);
+        if (id == null) {
+            if (termCount == terms.length) {
+                terms = Arrays.copyOf(terms, termCount * 2);
+                refs = Arrays.copyOf(refs, termCount * 2);
+                letterMasks = Arrays.copyOf(letterMasks, termCount * 2);
+                shared = new int[termCount * 2];
+            }
+            id = termCount++;
+            terms[id] = term;
+            letterMasks[id] = letters(term);
+            ids.put(term, id);
+            for (String gram : trigrams(term)) {
+                String key = key(gram, term.length());
+                IntList postings = grams.get(key);
+                if (postings == null) {
+                    postings = new IntList();
+                    grams.put(key, postings);
+                }
+                postings.add(id);
+            }
+        }
+        if (refs[id]++ == 0) {
+            liveTerms++;
+        }
+    }
+
+    public synchronized void remove(String text) {
+        Integer id = ids.get(normalize(text));
+        if (id != null && refs[id] > 0 && --refs[id] == 0) {
+            liveTerms--;
+        }
+    }
+
+    public synchronized int size() {
+        return liveTerms;
+    }
+
+    /**
+     * Up to {@code limit} terms closest to the query by edit distance, nearest first,
+     * within a distance that grows with the query's length. An exact match comes first; ties
+     * go to the term sharing more trigrams with the query.
+     */
+    public synchronized List<Match> closest(String query, int limit) {
+        String target = normalize(query);
+        List<Match> matches = new ArrayList<>();
+        if (target.isEmpty() || limit <= 0) {
+            return matches;
+        }
+        int maxDistance = target.length() <= 4 ? 1 : target.length() <= 8 ? 2 : 3;
+        Set<String> queryGrams = trigrams(target);
+        // One edit changes at most four trigrams (a swap touches two letters).
+        int needed = Math.max(1, queryGrams.size() - 4 * maxDistance);
+
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        int minLength = Math.max(1, target.length() - maxDistance);
+        for (String gram : queryGrams) {
+            for (int length = minLength; length <= target.length() + maxDistance; length++) {
+                IntList postings = grams.get(key(gram, length));
+                if (postings == null) {
+                    continue;
+                }
+                for (int i = 0; i < postings.size; i++) {
+                    int id = postings.values[i];
+                    if (shared[id]++ == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = id;
+                    }
+                }
+            }
+        }
+
+        // Most shared trigrams first: each missing one means a quarter of an edit at least, so
+        // once the results are full, the remaining candidates can only tie or do worse.
+        int maxShared = queryGrams.size();
+        int[] bucketStarts = new int[maxShared + 2];
+        for (int t = 0; t < touchedCount; t++) {
+            bucketStarts[maxShared - shared[touched[t]] + 1]++;
+        }
+        for (int b = 1; b < bucketStarts.length; b++) {
+            bucketStarts[b] += bucketStarts[b - 1];
+        }
+        int[] ordered = new int[touchedCount];
+        int[] next = Arrays.copyOf(bucketStarts, bucketStarts.length);
+        for (int t = 0; t < touchedCount; t++) {
+            int id = touched[t];
+            ordered[next[maxShared - shared[id]]++] = id;
+            shared[id] = 0;
+        }
+
+        int targetLetters = letters(target);
+        int[] bestIds = new int[limit];
+        int[] bestDistances = new int[limit];
+        int found = 0;
+        for (int count = maxShared; count >= needed; count--) {
+            int lowerBound = (maxShared - count + 3) / 4;
+            if (found == limit && lowerBound >= bestDistances[found - 1]) {
+                break;
+            }
+            for (int t = bucketStarts[maxShared - count]; t < bucketStarts[maxShared - count + 1]; t++) {
+                int id = ordered[t];
+                if (refs[id] == 0) {
+                    continue;
+                }
+                int bound = found == limit ? bestDistances[found - 1] - 1 : maxDistance;
+                if (bound < lowerBound) {
+                    break;
+                }
+                // Each edit adds at most one letter the other side lacks, and drops at most one.
+                int missing = Math.max(Integer.bitCount(targetLetters & ~letterMasks[id]),
+                        Integer.bitCount(letterMasks[id] & ~targetLetters));
+                if (missing > bound) {
+                    continue;
+                }
+                int distance = distance(target, terms[id], bound);
+                if (distance > bound) {
+                    continue;
+                }
+                int i = found < limit ? found++ : found - 1;
+                while (i > 0 && bestDistances[i - 1] > distance) {
+                    bestIds[i] = bestIds[i - 1];
+                    bestDistances[i] = bestDistances[i - 1];
+                    i--;
+                }
+                bestIds[i] = id;
+                bestDistances[i] = distance;
+            }
+        }
+        for (int i = 0; i < found; i++) {
+            matches.add(new Match(terms[bestIds[i]], bestDistances[i]));
+        }
+        return matches;
+    }
+
+    // Edit distance counting a swap of two neighbouring letters as one edit (the optimal
+    // string alignment variant of Damerau-Levenshtein), or bound + 1 as soon as it is known
+    // to exceed bound. Only the diagonal band within bound of each row is filled in.
+    static int distance(String a, String b, int bound) {
+        int n = a.length();
+        int m = b.length();
+        int over = bound + 1;
+        if (Math.abs(n - m) > bound) {
+            return over;
+        }
+        int[] beforePrevious = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, over);
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - bound);
+            int to = Math.min(m, i + bound);
+            current[0] = Math.min(i, over);
+            current[from - 1] = from == 1 ? current[0] : over;
+            int rowMin = current[from - 1];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, beforePrevious[j - 2] + 1);
+                }
+                current[j] = Math.min(value, over);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < m) {
+                current[to + 1] = over;
+            }
+            if (rowMin > bound) {
+                return over;
+            }
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+    // One bit per letter a-z, and one for everything else.
+    private static int letters(String term) {
+        int mask = 0;
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            mask |= c >= 'a' && c <= 'z' ? 1 << (c - 'a') : 1 << 26;
+        }
+        return mask;
+    }
+
+    // Postings are split by term length, so a lookup never counts trigrams of terms too
+    // long or too short to be within reach.
+    private static String key(String gram, int length) {
+        return gram + (char) length;
+    }
+
+    // Padded so the first and last letters count as much as the middle ones.
+    private static Set<String> trigrams(String term) {
+        String padded = "  " + term + " ";
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class IntList {
+        int[] values = new int[2];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -47,7 +47,7 @@ public class GPTApiService {
                 .readTimeout(60, TimeUnit.SECONDS)
                 .writeTimeout(60, TimeUnit.SECONDS)
                 .build();
-        this.gson = new Gson();
+        this.gson = JsonCodecs.GSON;
     }
     
     public void setApiKey(String apiKey) {
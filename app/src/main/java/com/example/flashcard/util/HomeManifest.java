@@ -0,0 +1,85 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.VocabularySet;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The home screen's last known list of sets with titles and word counts, kept in one small
+ * file so the first frame can be drawn from it without touching any deck. Its size follows
+ * the number of sets, not the number of words.
+ */
+public class HomeManifest {
+
+    private final File file;
+    // What the file holds, so an unchanged list is not written again.
+    private List<VocabularySet> saved;
+
+    public HomeManifest(File file) {
+        this.file = file;
+    }
+
+    /** Returns null if there is no manifest yet or it cannot be read. */
+    public synchronized List<VocabularySet> read() {
+        if (!file.exists()) {
+            return null;
+        }
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            saved = JsonCodecs.readList(reader, JsonCodecs.VOCABULARY_SET);
+            return copy(saved);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Returns false if the list matches the one already saved. */
+    public synchronized boolean write(List<VocabularySet> sets) throws IOException {
+        if (saved == null) {
+            read();
+        }
+        if (sameSets(saved, sets)) {
+            return false;
+        }
+        DeckStorage.writeAtomically(file, writer -> {
+            JsonWriter json = new JsonWriter(writer);
+            JsonCodecs.writeList(json, sets, JsonCodecs.VOCABULARY_SET);
+            json.flush();
+        });
+        saved = copy(sets);
+        return true;
+    }
+
+    // Callers may change word counts on the sets they get.
+    private static List<VocabularySet> copy(List<VocabularySet> sets) {
+        List<VocabularySet> copy = new ArrayList<>(sets.size());
+        for (VocabularySet set : sets) {
+            copy.add(new VocabularySet(set.getTitle(), set.getJsonFileName(), set.getWordCount()));
+        }
+        return copy;
+    }
+
+    static boolean sameSets(List<VocabularySet> a, List<VocabularySet> b) {
+        if (a == null || b == null || a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            VocabularySet x = a.get(i);
+            VocabularySet y = b.get(i);
+            if (!Objects.equals(x.getJsonFileName(), y.getJsonFileName()) || !Objects.equals(x.getTitle(), y.getTitle())
+                    || x.getWordCount() != y.getWordCount()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
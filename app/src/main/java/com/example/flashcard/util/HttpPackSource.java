@@ -0,0 +1,63 @@
+package com.example.flashcard.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/** Fetches {@link ContentPacks} catalogs and pack files over HTTP. */
+public class HttpPackSource implements ContentPacks.Http {
+    private static final int NOT_MODIFIED = 304;
+
+    private final OkHttpClient client;
+
+    public HttpPackSource() {
+        this.client = new OkHttpClient.Builder()
+                .connectTimeout(15, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public ContentPacks.Response get(String url, String etag) throws IOException {
+        Request.Builder request;
+        try {
+            request = new Request.Builder().url(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid content URL: " + url, e);
+        }
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        Response response = client.newCall(request.build()).execute();
+        if (response.code() == NOT_MODIFIED) {
+            response.close();
+            return null;
+        }
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            response.close();
+            throw new IOException("Content server returned " + response.code() + " for " + url);
+        }
+        return new ContentPacks.Response() {
+            @Override
+            public String getEtag() {
+                return response.header("ETag");
+            }
+
+            @Override
+            public InputStream getBody() {
+                return body.byteStream();
+            }
+
+            @Override
+            public void close() {
+                response.close();
+            }
+        };
+    }
+}
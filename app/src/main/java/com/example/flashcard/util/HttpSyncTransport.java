@@ -0,0 +1,48 @@
+package com.example.flashcard.util;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/** Posts {@link SyncClient} requests to a sync server over HTTP. */
+public class HttpSyncTransport implements SyncClient.Transport {
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final OkHttpClient client;
+    private final String url;
+
+    public HttpSyncTransport(String url) {
+        this.url = url;
+        this.client = new OkHttpClient.Builder()
+                .connectTimeout(15, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public String exchange(String request) throws IOException {
+        Request httpRequest;
+        try {
+            httpRequest = new Request.Builder()
+                    .url(url)
+                    .post(RequestBody.create(request, JSON))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid sync server URL: " + url, e);
+        }
+        try (Response response = client.newCall(httpRequest).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Sync server returned " + response.code());
+            }
+            return body.string();
+        }
+    }
+}
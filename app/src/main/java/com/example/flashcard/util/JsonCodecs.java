@@ -0,0 +1,326 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.ChatMessage;
+import com.example.flashcard.model.CompressedText;
+import com.example.flashcard.model.DeckMetadata;
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+import com.example.flashcard.model.WordContent;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Hand-written streaming codecs for the stored models. They read and write field by field
+ * straight from the stream, so no reflective adapters are built and no document is
+ * materialized as a String. {@link #GSON} is the one shared instance with all of them
+ * registered.
+ */
+public final class JsonCodecs {
+
+    public static final TypeAdapter<Word> WORD = new WordAdapter(false);
+    // Our own files: examples and tips that deflate well are kept as base64 "…Z" fields.
+    static final TypeAdapter<Word> STORED_WORD = new WordAdapter(true);
+    public static final TypeAdapter<VocabularySet> VOCABULARY_SET = new VocabularySetAdapter();
+    public static final TypeAdapter<DeckMetadata> DECK_METADATA = new DeckMetadataAdapter();
+    public static final TypeAdapter<ChatMessage> CHAT_MESSAGE = new ChatMessageAdapter();
+
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Word.class, WORD)
+            .registerTypeAdapter(VocabularySet.class, VOCABULARY_SET)
+            .registerTypeAdapter(DeckMetadata.class, DECK_METADATA)
+            .registerTypeAdapter(ChatMessage.class, CHAT_MESSAGE)
+            .create();
+
+    private JsonCodecs() {
+    }
+
+    public static <T> List<T> readList(JsonReader reader, TypeAdapter<T> adapter) throws IOException {
+        List<T> items = new ArrayList<>();
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return items;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            T item = adapter.read(reader);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        reader.endArray();
+        return items;
+    }
+
+    public static <T> void writeList(JsonWriter writer, Iterable<T> items, TypeAdapter<T> adapter) throws IOException {
+        writer.beginArray();
+        for (T item : items) {
+            adapter.write(writer, item);
+        }
+        writer.endArray();
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static CompressedText nextCompressedText(JsonReader reader) throws IOException {
+        String encoded = nextString(reader);
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            return CompressedText.fromByteArray(Base64.getDecoder().decode(encoded));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad compressed text at " + reader.getPath(), e);
+        }
+    }
+
+    private static boolean isNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    private static class WordAdapter extends TypeAdapter<Word> {
+        private final boolean compact;
+
+        WordAdapter(boolean compact) {
+            this.compact = compact;
+        }
+
+        @Override
+        public void write(JsonWriter out, Word word) throws IOException {
+            if (word == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if (word.getId() != null) {
+                out.name("id").value(word.getId());
+            }
+            out.name("english").value(word.getEnglish());
+            out.name("vietnamese").value(word.getVietnamese());
+            out.name("pronunciation").value(word.getPronunciation());
+            writeText(out, "example", word.getContent().getCompressedExample());
+            writeText(out, "memoryTip", word.getContent().getCompressedMemoryTip());
+            out.endObject();
+        }
+
+        private void writeText(JsonWriter out, String name, CompressedText text) throws IOException {
+            if (text.isEmpty()) {
+                return;
+            }
+            // Base64 costs a third on top of the deflated size; only use it when still smaller.
+            if (compact && text.isCompressed() && (text.size() + 2) / 3 * 4 < text.textSize()) {
+                out.name(name + "Z").value(Base64.getEncoder().encodeToString(text.toByteArray()));
+            } else {
+                out.name(name).value(text.getText());
+            }
+        }
+
+        @Override
+        public Word read(JsonReader in) throws IOException {
+            if (isNull(in)) {
+                return null;
+            }
+            String id = null;
+            String english = null;
+            String vietnamese = null;
+            String pronunciation = null;
+            CompressedText example = null;
+            CompressedText memoryTip = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        id = nextString(in);
+                        break;
+                    case "english":
+                        english = nextString(in);
+                        break;
+                    case "vietnamese":
+                        vietnamese = nextString(in);
+                        break;
+                    case "pronunciation":
+                        pronunciation = nextString(in);
+                        break;
+                    case "example":
+                        example = CompressedText.of(nextString(in));
+                        break;
+                    case "exampleZ":
+                        example = nextCompressedText(in);
+                        break;
+                    case "memoryTip":
+                        memoryTip = CompressedText.of(nextString(in));
+                        break;
+                    case "memoryTipZ":
+                        memoryTip = nextCompressedText(in);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new Word(id, new WordContent(english, vietnamese, pronunciation, example, memoryTip));
+        }
+    }
+
+    private static class VocabularySetAdapter extends TypeAdapter<VocabularySet> {
+        @Override
+        public void write(JsonWriter out, VocabularySet set) throws IOException {
+            if (set == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("title").value(set.getTitle());
+            out.name("jsonFileName").value(set.getJsonFileName());
+            out.name("wordCount").value(set.getWordCount());
+            out.endObject();
+        }
+
+        @Override
+        public VocabularySet read(JsonReader in) throws IOException {
+            if (isNull(in)) {
+                return null;
+            }
+            String title = null;
+            String jsonFileName = null;
+            int wordCount = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "title":
+                        title = nextString(in);
+                        break;
+                    case "jsonFileName":
+                        jsonFileName = nextString(in);
+                        break;
+                    case "wordCount":
+                        wordCount = in.nextInt();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new VocabularySet(title, jsonFileName, wordCount);
+        }
+    }
+
+    private static class DeckMetadataAdapter extends TypeAdapter<DeckMetadata> {
+        @Override
+        public void write(JsonWriter out, DeckMetadata metadata) throws IOException {
+            if (metadata == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("jsonFileName").value(metadata.getJsonFileName());
+            out.name("wordCount").value(metadata.getWordCount());
+            out.name("lastModified").value(metadata.getLastModified());
+            out.name("version").value(metadata.getVersion());
+            out.name("checksum").value(metadata.getChecksum());
+            out.endObject();
+        }
+
+        @Override
+        public DeckMetadata read(JsonReader in) throws IOException {
+            if (isNull(in)) {
+                return null;
+            }
+            String jsonFileName = null;
+            int wordCount = 0;
+            long lastModified = 0;
+            long version = 0;
+            long checksum = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "jsonFileName":
+                        jsonFileName = nextString(in);
+                        break;
+                    case "wordCount":
+                        wordCount = in.nextInt();
+                        break;
+                    case "lastModified":
+                        lastModified = in.nextLong();
+                        break;
+                    case "version":
+                        version = in.nextLong();
+                        break;
+                    case "checksum":
+                        checksum = in.nextLong();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new DeckMetadata(jsonFileName, wordCount, lastModified, version, checksum);
+        }
+    }
+
+    private static class ChatMessageAdapter extends TypeAdapter<ChatMessage> {
+        @Override
+        public void write(JsonWriter out, ChatMessage message) throws IOException {
+            if (message == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("sender").value(message.getSender() != null ? message.getSender().name() : null);
+            out.name("content").value(message.getContent());
+            out.name("timestamp").value(message.getTimestamp());
+            out.endObject();
+        }
+
+        @Override
+        public ChatMessage read(JsonReader in) throws IOException {
+            if (isNull(in)) {
+                return null;
+            }
+            ChatMessage.Sender sender = null;
+            String content = null;
+            long timestamp = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "sender":
+                        String name = nextString(in);
+                        sender = name != null ? ChatMessage.Sender.valueOf(name) : null;
+                        break;
+                    case "content":
+                        content = nextString(in);
+                        break;
+                    case "timestamp":
+                        timestamp = in.nextLong();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return new ChatMessage(sender, content, timestamp);
+        }
+    }
+}
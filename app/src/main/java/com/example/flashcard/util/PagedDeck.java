@@ -0,0 +1,230 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * A deck read in fixed-size pages for the word list. The order of word IDs is known up front,
+ * but only a bounded window of words is kept; asking for a row whose word is not in memory
+ * queues that row's page and returns null, and the listener hears when it arrives.
+ *
+ * <p>Pages are read newest request first, and a queued page that has fallen outside the
+ * window around the latest request is dropped unread. A fling or a jump across a large deck
+ * therefore reads the pages it lands on, not every page it passed.
+ *
+ * <p>Words are kept by ID, so a single added, edited or deleted word is applied in place with
+ * {@link #insert}, {@link #set}, {@link #move} and {@link #remove} without reading the deck
+ * again. The order itself is never changed in place; each edit makes a new order sharing all
+ * but O(log n) of the old one, so an edit never copies the IDs and a list from
+ * {@link #wordIds} can be diffed on another thread.
+ *
+ * <p>Not thread-safe: call from the main thread, which is where the listener is called too.
+ */
+public final class PagedDeck {
+
+    /** The deck in one fixed order. Reads run on the background executor. */
+    public interface Source {
+        /** Word IDs in list order; only read from, never changed. */
+        List<String> wordIds();
+
+        /** The words with these IDs in the same order, null for one deleted since. */
+        List<Word> read(List<String> wordIds);
+    }
+
+    public interface Listener {
+        void onPageLoaded(int from, int count);
+    }
+
+    private final int pageSize;
+    private final int maxPages;
+    private final Executor background;
+    private final Executor callbacks;
+    private final Listener listener;
+    private Source source;
+    private EditedOrder order;
+    // Access order, so the first entry is the word used longest ago.
+    private final LinkedHashMap<String, Word> words = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Integer> queued = new HashSet<>();
+    private final Deque<Integer> pending = new ArrayDeque<>();
+    private int latestPage;
+    private boolean reading;
+    private boolean closed;
+    // Bumped by every change to the order, so a page read before one is announced as a change
+    // to the whole list rather than to rows that may have moved.
+    private int revision;
+    // Bumped by replace(); pages read from an older source are dropped.
+    private int generation;
+
+    public PagedDeck(Source source, int pageSize, int maxPages, Executor background, Executor callbacks,
+                     Listener listener) {
+        this.source = source;
+        this.order = EditedOrder.of(source.wordIds());
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.background = background;
+        this.callbacks = callbacks;
+        this.listener = listener;
+    }
+
+    public int size() {
+        return order.size();
+    }
+
+    public String getId(int position) {
+        return order.get(position);
+    }
+
+    /** The word in this row, or null while its page is being read. */
+    public Word wordAt(int position) {
+        Word word = words.get(order.get(position));
+        if (word == null) {
+            request(position / pageSize);
+        }
+        return word;
+    }
+
+    /** O(log n) when the source's list finds an ID in O(log n), as the stored orders do. */
+    public int indexOf(String wordId) {
+        return order.indexOf(wordId);
+    }
+
+    /** The current order; later edits do not change the returned list. */
+    public List<String> wordIds() {
+        return order;
+    }
+
+    /** The words in memory, by ID. */
+    public Map<String, Word> loadedWords() {
+        return new HashMap<>(words);
+    }
+
+    /** Counts changes to the order; a diff taken against an older revision no longer applies. */
+    public int revision() {
+        return revision;
+    }
+
+    public void set(int position, Word word) {
+        words.put(order.get(position), word);
+    }
+
+    public void insert(int position, Word word) {
+        changeOrder(order.with(position, word.getId()));
+        words.put(word.getId(), word);
+        trim();
+    }
+
+    public void remove(int position) {
+        words.remove(order.get(position));
+        changeOrder(order.without(position));
+    }
+
+    public void move(int from, int to) {
+        changeOrder(order.moved(from, to));
+    }
+
+    /**
+     * Switches to a fresh read of the deck, keeping the given words so rows on screen are not
+     * blanked while their pages are read again.
+     */
+    public void replace(Source source, Map<String, Word> loaded) {
+        this.source = source;
+        changeOrder(EditedOrder.of(source.wordIds()));
+        generation++;
+        words.clear();
+        words.putAll(loaded);
+        queued.clear();
+        pending.clear();
+        trim();
+    }
+
+    /** Stops reading; pages that arrive later are dropped. */
+    public void close() {
+        closed = true;
+        pending.clear();
+    }
+
+    private void changeOrder(EditedOrder next) {
+        order = next;
+        revision++;
+    }
+
+    private void trim() {
+        while (words.size() > pageSize * maxPages) {
+            words.remove(words.keySet().iterator().next());
+        }
+    }
+
+    private void request(int page) {
+        latestPage = page;
+        if (queued.add(page) || pending.remove((Integer) page)) {
+            pending.addFirst(page);
+        }
+        readNext();
+    }
+
+    private void readNext() {
+        if (reading || closed) {
+            return;
+        }
+        Integer page;
+        while ((page = pending.pollFirst()) != null && Math.abs(page - latestPage) > maxPages / 2) {
+            queued.remove(page);
+        }
+        if (page == null) {
+            return;
+        }
+        int from = page * pageSize;
+        if (from >= order.size()) {
+            queued.remove(page);
+            readNext();
+            return;
+        }
+        reading = true;
+        List<String> ids = new ArrayList<>(order.subList(from, Math.min(from + pageSize, order.size())));
+        Source readFrom = source;
+        int readGeneration = generation;
+        int readRevision = revision;
+        int loadedPage = page;
+        background.execute(() -> {
+            List<Word> read;
+            try {
+                read = readFrom.read(ids);
+            } catch (RuntimeException e) {
+                // Left unloaded; the row asks for it again when it is next bound.
+                read = null;
+            }
+            List<Word> result = read;
+            callbacks.execute(() -> {
+                reading = false;
+                queued.remove(loadedPage);
+                if (closed) {
+                    return;
+                }
+                if (result != null && readGeneration == generation) {
+                    for (int i = 0; i < ids.size(); i++) {
+                        Word word = result.get(i);
+                        // A word deleted since the order was taken keeps its row until the next load.
+                        words.put(ids.get(i), word != null ? word : new Word(ids.get(i), "", "", "", "", ""));
+                    }
+                    trim();
+                    if (readRevision == revision) {
+                        listener.onPageLoaded(from, ids.size());
+                    } else {
+                        listener.onPageLoaded(0, order.size());
+                    }
+                }
+                readNext();
+            });
+        });
+    }
+}
@@ -0,0 +1,692 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+import com.example.flashcard.model.WordContent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the English, Vietnamese, example and memory-tip text of
+ * every word in every deck. Each term has one postings list per field: the words containing
+ * it, sorted by document number, with the token positions of every occurrence, so phrases
+ * are matched without going back to the words.
+ *
+ * <p>Kept current by {@link #sync}, which is handed each snapshot a write publishes and only
+ * re-tokenizes the words that write changed. New documents always get the next number, so
+ * their postings are appended; once deleted documents leave most numbers unused, the live
+ * ones are renumbered in the same order and the arrays shrink back.
+ *
+ * <p>Queries walk the fields in rank order and stop as soon as nothing later can make the
+ * top results, so a very common term costs about as much as a rare one.
+ */
+public final class SearchIndex implements VocabularyStore.SnapshotListener {
+
+    public static final int FIELD_ENGLISH = 0;
+    public static final int FIELD_VIETNAMESE = 1;
+    public static final int FIELD_EXAMPLE = 2;
+    public static final int FIELD_MEMORY_TIP = 3;
+    private static final int FIELD_COUNT = 4;
+
+    // The last query token also matches longer terms, up to this many of them.
+    private static final int MAX_PREFIX_TERMS = 64;
+    // Renumbering only pays off once at least this many document numbers are unused.
+    private static final int MIN_UNUSED_DOCS = 1024;
+
+    public static final class Hit {
+        private final String jsonFileName;
+        private final Word word;
+        private final int field;
+
+        Hit(String jsonFileName, Word word, int field) {
+            this.jsonFileName = jsonFileName;
+            this.word = word;
+            this.field = field;
+        }
+
+        public String getJsonFileName() {
+            return jsonFileName;
+        }
+
+        public Word getWord() {
+            return word;
+        }
+
+        /** The field that matched best, one of the FIELD_ constants. */
+        public int getField() {
+            return field;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings[]> terms = new TreeMap<>();
+    private final Map<String, Map<String, Integer>> docIds = new HashMap<>();
+    private final Map<String, DeckSnapshot> synced = new HashMap<>();
+    private final FuzzyIndex headwords = new FuzzyIndex();
+    private Word[] docWords = new Word[256];
+    // The content each document was indexed with; Word setters may swap it later.
+    private WordContent[] docContents = new WordContent[256];
+    private String[] docSets = new String[256];
+    private int docCount;
+    private int liveDocs;
+
+    /** Adds words that never change, such as a bundled deck. */
+    public void addDeck(String jsonFileName, Iterable<Word> words) {
+        lock.writeLock().lock();
+        try {
+            for (Word word : words) {
+                addDoc(jsonFileName, word);
+            }
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Forgets every word of the set, so it can be added again from scratch. */
+    public void removeDeck(String jsonFileName) {
+        lock.writeLock().lock();
+        try {
+            Map<String, Integer> ids = docIds.get(jsonFileName);
+            if (ids != null) {
+                for (String wordId : new ArrayList<>(ids.keySet())) {
+                    removeDoc(jsonFileName, wordId);
+                }
+            }
+            synced.remove(jsonFileName);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Brings the set's user words up to this snapshot; older snapshots are ignored. */
+    public void sync(DeckSnapshot next) {
+        lock.writeLock().lock();
+        try {
+            String set = next.getJsonFileName();
+            DeckSnapshot previous = synced.get(set);
+            if (previous != null && previous.getVersion() >= next.getVersion()) {
+                return;
+            }
+            Map<String, Word> after = next.wordMap();
+            if (previous != null && previous.getVersion() == next.getVersion() - 1 && next.changedIds() != null) {
+                for (String wordId : next.changedIds()) {
+                    Word word = after.get(wordId);
+                    if (word != null) {
+                        addDoc(set, word);
+                    } else {
+                        removeDoc(set, wordId);
+                    }
+                }
+            } else {
+                // A missed version or a whole-set write: compare everything once.
+                if (previous != null) {
+                    for (String wordId : previous.wordMap().keySet()) {
+                        if (!after.containsKey(wordId)) {
+                            removeDoc(set, wordId);
+                        }
+                    }
+                }
+                for (Word word : after.values()) {
+                    Map<String, Integer> ids = docIds.get(set);
+                    Integer doc = ids != null ? ids.get(word.getId()) : null;
+                    if (doc == null || docWords[doc] != word) {
+                        addDoc(set, word);
+                    }
+                }
+            }
+            synced.put(set, next);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onPublished(DeckSnapshot previous, DeckSnapshot next) {
+        sync(next);
+    }
+
+    // Document numbers in use or waiting to be renumbered away; for tests.
+    int slotCount() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** English headwords closest to a possibly misspelled one, for "did you mean". */
+    public List<FuzzyIndex.Match> closestEnglish(String query, int limit) {
+        return headwords.closest(query, limit);
+    }
+
+    /**
+     * Words containing every token of the query, best first: a phrase beats scattered tokens
+     * in the same field, which beat tokens spread over several fields; English beats
+     * Vietnamese beats example beats memory tip. The last token also matches as a prefix
+     * unless the query ends with a space.
+     */
+    public List<Hit> search(String query, int limit) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(query, tokens);
+        if (tokens.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        boolean prefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+
+        lock.readLock().lock();
+        try {
+            // groups[token][field] holds the lists of every term the token matches.
+            Postings[][][] groups = new Postings[tokens.size()][][];
+            for (int g = 0; g < tokens.size(); g++) {
+                String token = tokens.get(g);
+                groups[g] = byField(g == tokens.size() - 1 && prefix ? prefixed(token) : exact(token));
+                if (groups[g] == null) {
+                    return new ArrayList<>();
+                }
+            }
+
+            TopHits top = new TopHits(limit);
+            for (int field = 0; field < FIELD_COUNT && !top.isFullAt(score(field, true)); field++) {
+                Postings[][] lists = new Postings[groups.length][];
+                for (int g = 0; g < groups.length; g++) {
+                    lists[g] = groups[g][field];
+                }
+                collect(lists, field, top);
+            }
+            if (!top.isFullAt(0) && groups.length > 1) {
+                collectSpread(groups, top);
+            }
+            return top.toHits(this);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Documents that have every token in this one field.
+    private void collect(Postings[][] lists, int field, TopHits top) {
+        int driver = smallest(lists);
+        if (driver < 0) {
+            return;
+        }
+        int[][] entries = entriesFor(lists);
+        BitSet seen = lists[driver].length > 1 ? new BitSet(docCount) : null;
+        int best = score(field, true);
+        for (Postings postings : lists[driver]) {
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if (seen != null) {
+                    if (seen.get(doc)) {
+                        continue;
+                    }
+                    seen.set(doc);
+                }
+                if (locate(lists, doc, entries)) {
+                    top.offer(score(field, isPhrase(lists, entries)), doc);
+                    if (top.isFullAt(best)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // Documents that have every token, but not all of them in any one field.
+    private void collectSpread(Postings[][][] groups, TopHits top) {
+        Postings[][] lists = new Postings[groups.length][];
+        int[][] fields = new int[groups.length][];
+        for (int g = 0; g < groups.length; g++) {
+            List<Postings> all = new ArrayList<>();
+            List<Integer> fieldOf = new ArrayList<>();
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                for (Postings postings : groups[g][field]) {
+                    all.add(postings);
+                    fieldOf.add(field);
+                }
+            }
+            lists[g] = all.toArray(new Postings[0]);
+            fields[g] = new int[fieldOf.size()];
+            for (int k = 0; k < fields[g].length; k++) {
+                fields[g][k] = fieldOf.get(k);
+            }
+        }
+        int driver = smallest(lists);
+        int[][] entries = entriesFor(lists);
+        BitSet seen = new BitSet(docCount);
+        for (Postings postings : lists[driver]) {
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if (seen.get(doc)) {
+                    continue;
+                }
+                seen.set(doc);
+                if (locate(lists, doc, entries) && !inOneField(fields, entries)) {
+                    int first = FIELD_MEMORY_TIP;
+                    for (int k = 0; k < entries[0].length; k++) {
+                        if (entries[0][k] >= 0) {
+                            first = Math.min(first, fields[0][k]);
+                        }
+                    }
+                    top.offer(FIELD_MEMORY_TIP - first, doc);
+                }
+            }
+        }
+    }
+
+    private static boolean inOneField(int[][] fields, int[][] entries) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            boolean all = true;
+            for (int g = 0; g < entries.length && all; g++) {
+                all = false;
+                for (int k = 0; k < entries[g].length; k++) {
+                    if (entries[g][k] >= 0 && fields[g][k] == field) {
+                        all = true;
+                        break;
+                    }
+                }
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The low two bits give the field back; spread matches score 0 to 3, below both of these.
+    private static int score(int field, boolean phrase) {
+        return (phrase ? 8 : 4) + (FIELD_MEMORY_TIP - field);
+    }
+
+    // Index of the token with the fewest postings, or -1 if some token has none.
+    private static int smallest(Postings[][] lists) {
+        int driver = -1;
+        long driverSize = Long.MAX_VALUE;
+        for (int g = 0; g < lists.length; g++) {
+            long size = 0;
+            for (Postings postings : lists[g]) {
+                size += postings.size;
+            }
+            if (size == 0) {
+                return -1;
+            }
+            if (size < driverSize) {
+                driverSize = size;
+                driver = g;
+            }
+        }
+        return driver;
+    }
+
+    private static int[][] entriesFor(Postings[][] lists) {
+        int[][] entries = new int[lists.length][];
+        for (int g = 0; g < lists.length; g++) {
+            entries[g] = new int[lists[g].length];
+        }
+        return entries;
+    }
+
+    // Fills entries[token][list] with the document's index in that list, or -1. False if
+    // some token is missing from the document altogether.
+    private static boolean locate(Postings[][] lists, int doc, int[][] entries) {
+        for (int g = 0; g < lists.length; g++) {
+            boolean found = false;
+            for (int k = 0; k < lists[g].length; k++) {
+                entries[g][k] = lists[g][k].indexOf(doc);
+                found |= entries[g][k] >= 0;
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPhrase(Postings[][] lists, int[][] entries) {
+        for (int k = 0; k < lists[0].length; k++) {
+            int index = entries[0][k];
+            if (index < 0) {
+                continue;
+            }
+            Postings first = lists[0][k];
+            for (int p = first.starts[index]; p < first.end(index); p++) {
+                int start = first.positions[p];
+                boolean phrase = true;
+                for (int g = 1; g < lists.length && phrase; g++) {
+                    phrase = hasPosition(lists[g], entries[g], start + g);
+                }
+                if (phrase) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasPosition(Postings[] lists, int[] entries, int position) {
+        for (int k = 0; k < lists.length; k++) {
+            if (entries[k] >= 0 && lists[k].hasPosition(entries[k], position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Postings[][] byField(List<Postings[]> matches) {
+        if (matches.isEmpty()) {
+            return null;
+        }
+        Postings[][] byField = new Postings[FIELD_COUNT][];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            List<Postings> lists = new ArrayList<>();
+            for (Postings[] match : matches) {
+                if (match[field] != null) {
+                    lists.add(match[field]);
+                }
+            }
+            byField[field] = lists.toArray(new Postings[0]);
+        }
+        return byField;
+    }
+
+    private List<Postings[]> exact(String token) {
+        List<Postings[]> matches = new ArrayList<>();
+        Postings[] postings = terms.get(token);
+        if (postings != null) {
+            matches.add(postings);
+        }
+        return matches;
+    }
+
+    private List<Postings[]> prefixed(String token) {
+        List<Postings[]> matches = new ArrayList<>();
+        for (Postings[] postings : terms.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+            matches.add(postings);
+            if (matches.size() == MAX_PREFIX_TERMS) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    // Caller holds the write lock.
+    private void addDoc(String set, Word word) {
+        Map<String, Integer> ids = docIds.get(set);
+        if (ids == null) {
+            ids = new HashMap<>();
+            docIds.put(set, ids);
+        }
+        removeDoc(set, word.getId());
+        if (docCount == docWords.length) {
+            docWords = Arrays.copyOf(docWords, docCount * 2);
+            docContents = Arrays.copyOf(docContents, docCount * 2);
+            docSets = Arrays.copyOf(docSets, docCount * 2);
+        }
+        int doc = docCount++;
+        docWords[doc] = word;
+        docContents[doc] = word.getContent();
+        docSets[doc] = set;
+        ids.put(word.getId(), doc);
+        liveDocs++;
+        headwords.add(word.getContent().getEnglish());
+
+        List<Map<String, IntList>> fields = termsOf(word.getContent());
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            for (Map.Entry<String, IntList> term : fields.get(field).entrySet()) {
+                Postings[] postings = terms.get(term.getKey());
+                if (postings == null) {
+                    postings = new Postings[FIELD_COUNT];
+                    terms.put(term.getKey(), postings);
+                }
+                if (postings[field] == null) {
+                    postings[field] = new Postings();
+                }
+                postings[field].append(doc, term.getValue());
+            }
+        }
+    }
+
+    // Caller holds the write lock. The slot stays empty until compactIfSparse().
+    private void removeDoc(String set, String wordId) {
+        Map<String, Integer> ids = docIds.get(set);
+        Integer doc = ids != null ? ids.remove(wordId) : null;
+        if (doc == null) {
+            return;
+        }
+        List<Map<String, IntList>> fields = termsOf(docContents[doc]);
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            for (String term : fields.get(field).keySet()) {
+                Postings[] postings = terms.get(term);
+                if (postings == null || postings[field] == null || !postings[field].remove(doc)) {
+                    continue;
+                }
+                if (postings[field].size == 0) {
+                    postings[field] = null;
+                    if (isUnused(postings)) {
+                        terms.remove(term);
+                    }
+                }
+            }
+        }
+        headwords.remove(docContents[doc].getEnglish());
+        docWords[doc] = null;
+        docContents[doc] = null;
+        docSets[doc] = null;
+        liveDocs--;
+    }
+
+    // Caller holds the write lock. Renumbering keeps the live documents in the same order,
+    // so every postings list stays sorted and ties between hits still break the same way.
+    private void compactIfSparse() {
+        int unused = docCount - liveDocs;
+        if (unused < MIN_UNUSED_DOCS || unused < liveDocs) {
+            return;
+        }
+        int[] renumbered = new int[docCount];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (docWords[doc] == null) {
+                continue;
+            }
+            renumbered[doc] = next;
+            docWords[next] = docWords[doc];
+            docContents[next] = docContents[doc];
+            docSets[next] = docSets[doc];
+            next++;
+        }
+        int capacity = Math.max(256, Integer.highestOneBit(Math.max(1, next)) * 2);
+        docWords = Arrays.copyOf(docWords, capacity);
+        docContents = Arrays.copyOf(docContents, capacity);
+        docSets = Arrays.copyOf(docSets, capacity);
+        Arrays.fill(docWords, next, capacity, null);
+        Arrays.fill(docContents, next, capacity, null);
+        Arrays.fill(docSets, next, capacity, null);
+        docCount = next;
+        for (Postings[] postings : terms.values()) {
+            for (Postings field : postings) {
+                if (field != null) {
+                    for (int i = 0; i < field.size; i++) {
+                        field.docs[i] = renumbered[field.docs[i]];
+                    }
+                }
+            }
+        }
+        for (Map<String, Integer> ids : docIds.values()) {
+            ids.replaceAll((wordId, doc) -> renumbered[doc]);
+        }
+    }
+
+    private static boolean isUnused(Postings[] postings) {
+        for (Postings field : postings) {
+            if (field != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Map<String, IntList>> termsOf(WordContent content) {
+        String[] texts = {content.getEnglish(), content.getVietnamese(), content.getExample(), content.getMemoryTip()};
+        List<Map<String, IntList>> fields = new ArrayList<>(FIELD_COUNT);
+        List<String> tokens = new ArrayList<>();
+        for (String text : texts) {
+            Map<String, IntList> terms = new LinkedHashMap<>();
+            tokens.clear();
+            if (text != null) {
+                tokenize(text, tokens);
+            }
+            for (int i = 0; i < tokens.size(); i++) {
+                IntList positions = terms.get(tokens.get(i));
+                if (positions == null) {
+                    positions = new IntList();
+                    terms.put(tokens.get(i), positions);
+                }
+                positions.add(i);
+            }
+            fields.add(terms);
+        }
+        return fields;
+    }
+
+    /** Lower-cased runs of letters, digits and combining marks. */
+    static void tokenize(String text, List<String> tokens) {
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) || Character.getType(c) == Character.NON_SPACING_MARK) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[2];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    // Documents in ascending order; each with its positions, ascending, in one shared array.
+    private static final class Postings {
+        int[] docs = new int[1];
+        int[] starts = new int[1];
+        int[] positions = new int[1];
+        int size;
+        int positionCount;
+
+        void append(int doc, IntList occurrences) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+            }
+            if (positionCount + occurrences.size > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, positionCount + occurrences.size));
+            }
+            docs[size] = doc;
+            starts[size] = positionCount;
+            size++;
+            System.arraycopy(occurrences.values, 0, positions, positionCount, occurrences.size);
+            positionCount += occurrences.size;
+        }
+
+        int indexOf(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc);
+        }
+
+        int end(int index) {
+            return index + 1 < size ? starts[index + 1] : positionCount;
+        }
+
+        boolean hasPosition(int index, int position) {
+            return Arrays.binarySearch(positions, starts[index], end(index), position) >= 0;
+        }
+
+        boolean remove(int doc) {
+            int index = indexOf(doc);
+            if (index < 0) {
+                return false;
+            }
+            int start = starts[index];
+            int end = end(index);
+            int removed = end - start;
+            System.arraycopy(positions, end, positions, start, positionCount - end);
+            positionCount -= removed;
+            System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+            System.arraycopy(starts, index + 1, starts, index, size - index - 1);
+            size--;
+            for (int i = index; i < size; i++) {
+                starts[i] -= removed;
+            }
+            return true;
+        }
+    }
+
+    // The best hits so far, highest score first; earlier offers win ties.
+    private static final class TopHits {
+        final int[] scores;
+        final int[] docs;
+        int size;
+
+        TopHits(int limit) {
+            scores = new int[limit];
+            docs = new int[limit];
+        }
+
+        void offer(int score, int doc) {
+            if (size == scores.length && score <= scores[size - 1]) {
+                return;
+            }
+            int i = size < scores.length ? size++ : size - 1;
+            while (i > 0 && scores[i - 1] < score) {
+                scores[i] = scores[i - 1];
+                docs[i] = docs[i - 1];
+                i--;
+            }
+            scores[i] = score;
+            docs[i] = doc;
+        }
+
+        boolean isFullAt(int score) {
+            return size == scores.length && scores[size - 1] >= score;
+        }
+
+        List<Hit> toHits(SearchIndex index) {
+            List<Hit> hits = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int field = FIELD_MEMORY_TIP - (scores[i] & 3);
+                Word word = index.docWords[docs[i]];
+                hits.add(new Hit(index.docSets[docs[i]], new Word(word.getId(), word.getContent()), field));
+            }
+            return hits;
+        }
+    }
+}
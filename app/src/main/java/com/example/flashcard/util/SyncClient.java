@@ -0,0 +1,500 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps this device's sets in step with a sync server by exchanging only the changes made
+ * since the last sync.
+ *
+ * <p>Every local write after the first sync is diffed against the previous snapshot and
+ * appended to an outbox as {@link SyncOp}s stamped with a Lamport clock. A sync pushes the
+ * outbox and, in the same exchange, pulls every op the server sequenced after the per-set
+ * sequence numbers this device last saw. The server keeps one winner per word, so ops that
+ * lost a conflict come back as the winning op and are applied like any other.
+ *
+ * <p>Request: {@code {"device", "clock", "since": {set: seq}, "ops": [...]}}.
+ * Response: {@code {"clock", "heads": {set: seq}, "ops": [...]}}, with ops the device just
+ * pushed and the server accepted left out.
+ */
+public class SyncClient implements VocabularyStore.SnapshotListener {
+
+    /** Carries one request to the server and returns its response. */
+    public interface Transport {
+        String exchange(String request) throws IOException;
+    }
+
+    public static final class Result {
+        private final int pushed;
+        private final int pulled;
+        private final long bytesSent;
+        private final long bytesReceived;
+
+        Result(int pushed, int pulled, long bytesSent, long bytesReceived) {
+            this.pushed = pushed;
+            this.pulled = pulled;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+        }
+
+        public int getPushed() {
+            return pushed;
+        }
+
+        public int getPulled() {
+            return pulled;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+    }
+
+    private static final String STATE_FILE = "state.json";
+    private static final String OUTBOX_FILE = "outbox.log";
+
+    private final VocabularyStore store;
+    private final File stateFile;
+    private final File outboxFile;
+    private final Object syncLock = new Object();
+    private final Object outboxLock = new Object();
+    // Remote ops are written through the store like local ones; this keeps them out of the outbox.
+    private final ThreadLocal<Boolean> applyingRemote = new ThreadLocal<>();
+
+    private String device;
+    private long clock;
+    // Null until the first sync; nothing is recorded before then.
+    private Map<String, Long> since;
+    // User set titles as of the last sync, to spot renamed, new and deleted sets.
+    private Map<String, String> titles = new HashMap<>();
+    private final List<SyncOp> outbox = new ArrayList<>();
+
+    public SyncClient(VocabularyStore store, File dir) throws IOException {
+        this.store = store;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create sync directory " + dir);
+        }
+        stateFile = new File(dir, STATE_FILE);
+        outboxFile = new File(dir, OUTBOX_FILE);
+        readState();
+        readOutbox();
+    }
+
+    @Override
+    public void onPublished(DeckSnapshot previous, DeckSnapshot next) {
+        if (Boolean.TRUE.equals(applyingRemote.get())) {
+            return;
+        }
+        synchronized (outboxLock) {
+            if (since == null) {
+                return;
+            }
+            String set = next.getJsonFileName();
+            Map<String, Word> before = previous != null ? previous.wordMap() : Collections.emptyMap();
+            Map<String, Word> after = next.wordMap();
+            List<SyncOp> ops = new ArrayList<>();
+            if (previous != null && next.changedIds() != null) {
+                for (String wordId : next.changedIds()) {
+                    Word word = after.get(wordId);
+                    ops.add(word != null ? SyncOp.put(set, word, ++clock, device)
+                            : SyncOp.delete(set, wordId, ++clock, device));
+                }
+            } else {
+                for (Word word : after.values()) {
+                    if (before.get(word.getId()) != word) {
+                        ops.add(SyncOp.put(set, word, ++clock, device));
+                    }
+                }
+                for (String wordId : before.keySet()) {
+                    if (!after.containsKey(wordId)) {
+                        ops.add(SyncOp.delete(set, wordId, ++clock, device));
+                    }
+                }
+            }
+            try {
+                appendToOutbox(ops);
+            } catch (IOException e) {
+                // The write itself has already been published; send everything again next
+                // time rather than lose it.
+                since = null;
+                stateFile.delete();
+            }
+        }
+    }
+
+    public boolean hasSynced() {
+        synchronized (outboxLock) {
+            return since != null;
+        }
+    }
+
+    public int pendingCount() {
+        synchronized (outboxLock) {
+            return outbox.size();
+        }
+    }
+
+    /**
+     * Pushes the outbox and pulls what changed on the server. The first sync, or one after
+     * the outbox could not be written, pushes every stored set in full.
+     *
+     * <p>The store is only read and written outside the outbox lock: writers hold a set's
+     * stripe when they reach {@link #onPublished}.
+     */
+    public Result sync(Transport transport) throws IOException {
+        synchronized (syncLock) {
+            Map<String, List<Word>> full = null;
+            synchronized (outboxLock) {
+                if (since == null) {
+                    full = new LinkedHashMap<>();
+                }
+            }
+            if (full != null) {
+                for (String set : store.getStoredSetNames()) {
+                    full.put(set, store.getSnapshot(set).getWords());
+                }
+            }
+            Map<String, String> currentTitles = currentTitles();
+
+            List<SyncOp> pushed;
+            Map<String, Long> sinceSnapshot;
+            synchronized (outboxLock) {
+                if (full != null) {
+                    // Anything recorded meanwhile is part of the full state already.
+                    outbox.clear();
+                    writeOutbox();
+                    since = new HashMap<>();
+                    titles = new HashMap<>();
+                    appendToOutbox(fullState(full));
+                }
+                appendToOutbox(titleChanges(currentTitles));
+                pushed = new ArrayList<>(outbox);
+                sinceSnapshot = new HashMap<>(since);
+            }
+
+            String request = writeRequest(coalesce(pushed), sinceSnapshot);
+            String response = transport.exchange(request);
+
+            Map<String, Long> heads = new HashMap<>();
+            List<SyncOp> pulled = new ArrayList<>();
+            long serverClock = readResponse(response, heads, pulled);
+
+            List<SyncOp> later;
+            synchronized (outboxLock) {
+                clock = Math.max(clock, serverClock);
+                later = new ArrayList<>(outbox.subList(pushed.size(), outbox.size()));
+            }
+            // Edits made while the exchange was in flight stay queued and win locally.
+            applyRemote(pulled, later);
+
+            synchronized (outboxLock) {
+                if (since != null) {
+                    since.putAll(heads);
+                    later = new ArrayList<>(outbox.subList(pushed.size(), outbox.size()));
+                    outbox.clear();
+                    outbox.addAll(later);
+                    writeOutbox();
+                    writeState();
+                }
+                // Otherwise the outbox failed during the exchange and a full resync is pending.
+            }
+            return new Result(pushed.size(), pulled.size(), request.getBytes(StandardCharsets.UTF_8).length,
+                    response.getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+
+    private void applyRemote(List<SyncOp> pulled, List<SyncOp> later) throws IOException {
+        Map<String, SyncOp> local = new HashMap<>();
+        for (SyncOp op : later) {
+            local.put(slot(op), op);
+        }
+        applyingRemote.set(true);
+        try {
+            for (SyncOp op : pulled) {
+                SyncOp mine = local.get(slot(op));
+                if (mine != null && mine.beats(op)) {
+                    continue;
+                }
+                switch (op.getType()) {
+                    case SyncOp.PUT:
+                        store.addWordToSet(op.getSet(), op.getWord());
+                        break;
+                    case SyncOp.DELETE:
+                        store.deleteWordFromSet(op.getSet(), op.getWordId());
+                        break;
+                    case SyncOp.TITLE:
+                        applyTitle(op);
+                        titles.put(op.getSet(), op.getTitle());
+                        break;
+                    case SyncOp.DROP:
+                        store.deleteVocabularySet(op.getSet());
+                        titles.remove(op.getSet());
+                        // Words written here since the request went out survive the drop.
+                        for (SyncOp pending : later) {
+                            if (pending.getSet().equals(op.getSet()) && SyncOp.PUT.equals(pending.getType())
+                                    && pending.beats(op)) {
+                                store.addWordToSet(pending.getSet(), pending.getWord());
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            applyingRemote.remove();
+        }
+    }
+
+    private void applyTitle(SyncOp op) throws IOException {
+        for (VocabularySet set : store.getUserVocabularySets()) {
+            if (set.getJsonFileName().equals(op.getSet())) {
+                store.updateVocabularySet(new VocabularySet(op.getTitle(), op.getSet(), set.getWordCount()));
+                return;
+            }
+        }
+        store.addVocabularySet(new VocabularySet(op.getTitle(), op.getSet(), 0));
+    }
+
+    // Every stored word, for a device the server has not seen yet.
+    private List<SyncOp> fullState(Map<String, List<Word>> sets) {
+        List<SyncOp> ops = new ArrayList<>();
+        for (Map.Entry<String, List<Word>> set : sets.entrySet()) {
+            for (Word word : set.getValue()) {
+                ops.add(SyncOp.put(set.getKey(), word, ++clock, device));
+            }
+        }
+        return ops;
+    }
+
+    private List<SyncOp> titleChanges(Map<String, String> current) {
+        List<SyncOp> ops = new ArrayList<>();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (!entry.getValue().equals(titles.get(entry.getKey()))) {
+                ops.add(SyncOp.title(entry.getKey(), entry.getValue(), ++clock, device));
+            }
+        }
+        for (String set : titles.keySet()) {
+            if (!current.containsKey(set)) {
+                ops.add(SyncOp.drop(set, ++clock, device));
+            }
+        }
+        titles = current;
+        return ops;
+    }
+
+    private Map<String, String> currentTitles() throws IOException {
+        Map<String, String> current = new HashMap<>();
+        for (VocabularySet set : store.getUserVocabularySets()) {
+            current.put(set.getJsonFileName(), set.getTitle() != null ? set.getTitle() : "");
+        }
+        return current;
+    }
+
+    // Only the last op per word, or per set title, needs to travel.
+    private static List<SyncOp> coalesce(List<SyncOp> ops) {
+        LinkedHashMap<String, SyncOp> last = new LinkedHashMap<>();
+        for (SyncOp op : ops) {
+            String slot = slot(op);
+            last.remove(slot);
+            last.put(slot, op);
+        }
+        return new ArrayList<>(last.values());
+    }
+
+    static String slot(SyncOp op) {
+        return op.getSet() + '\n' + (op.isWordOp() ? op.getWordId() : "");
+    }
+
+    private String writeRequest(List<SyncOp> ops, Map<String, Long> sinceSnapshot) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("device").value(device);
+        json.name("clock").value(clock);
+        json.name("since").beginObject();
+        for (Map.Entry<String, Long> entry : sinceSnapshot.entrySet()) {
+            json.name(entry.getKey()).value(entry.getValue());
+        }
+        json.endObject();
+        json.name("ops").beginArray();
+        for (SyncOp op : ops) {
+            op.write(json);
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        return out.toString();
+    }
+
+    private static long readResponse(String response, Map<String, Long> heads, List<SyncOp> ops) throws IOException {
+        long serverClock = 0;
+        JsonReader json = new JsonReader(new StringReader(response));
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "clock":
+                    serverClock = json.nextLong();
+                    break;
+                case "heads":
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        heads.put(json.nextName(), json.nextLong());
+                    }
+                    json.endObject();
+                    break;
+                case "ops":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        ops.add(SyncOp.read(json));
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return serverClock;
+    }
+
+    private void appendToOutbox(List<SyncOp> ops) throws IOException {
+        if (ops.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (SyncOp op : ops) {
+            StringWriter line = new StringWriter();
+            JsonWriter json = new JsonWriter(line);
+            op.write(json);
+            json.flush();
+            lines.append(line).append('\n');
+        }
+        try (FileOutputStream out = new FileOutputStream(outboxFile, true)) {
+            out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        outbox.addAll(ops);
+    }
+
+    private void writeOutbox() throws IOException {
+        DeckStorage.writeAtomically(outboxFile, writer -> {
+            for (SyncOp op : outbox) {
+                JsonWriter json = new JsonWriter(writer);
+                op.write(json);
+                json.flush();
+                writer.write('\n');
+            }
+        });
+    }
+
+    // A crash can cut the last line short; everything before it is kept.
+    private void readOutbox() throws IOException {
+        if (!outboxFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(outboxFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    SyncOp op = SyncOp.read(new JsonReader(new StringReader(line)));
+                    outbox.add(op);
+                    clock = Math.max(clock, op.getClock());
+                } catch (IOException | IllegalStateException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void writeState() throws IOException {
+        DeckStorage.writeAtomically(stateFile, writer -> {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("device").value(device);
+            json.name("clock").value(clock);
+            json.name("since").beginObject();
+            for (Map.Entry<String, Long> entry : since.entrySet()) {
+                json.name(entry.getKey()).value(entry.getValue());
+            }
+            json.endObject();
+            json.name("titles").beginObject();
+            for (Map.Entry<String, String> entry : titles.entrySet()) {
+                json.name(entry.getKey()).value(entry.getValue());
+            }
+            json.endObject();
+            json.endObject();
+            json.flush();
+        });
+    }
+
+    private void readState() throws IOException {
+        device = UUID.randomUUID().toString();
+        if (!stateFile.exists()) {
+            return;
+        }
+        try (JsonReader json = new JsonReader(
+                new InputStreamReader(new FileInputStream(stateFile), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "device":
+                        device = json.nextString();
+                        break;
+                    case "clock":
+                        clock = Math.max(clock, json.nextLong());
+                        break;
+                    case "since":
+                        since = new HashMap<>();
+                        json.beginObject();
+                        while (json.hasNext()) {
+                            since.put(json.nextName(), json.nextLong());
+                        }
+                        json.endObject();
+                        break;
+                    case "titles":
+                        json.beginObject();
+                        while (json.hasNext()) {
+                            String set = json.nextName();
+                            titles.put(set, json.peek() == JsonToken.NULL ? "" : json.nextString());
+                        }
+                        json.endObject();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * One change in the sync protocol: a word put or deleted, or a user set titled or dropped.
+ * Concurrent changes to the same word (or the same set's title) are settled by the
+ * greater (clock, device) pair, so every replica picks the same winner.
+ */
+public final class SyncOp {
+
+    public static final String PUT = "put";
+    public static final String DELETE = "delete";
+    public static final String TITLE = "title";
+    // Deletes the user set and every word older than the drop.
+    public static final String DROP = "drop";
+
+    private final String type;
+    private final String set;
+    private final String wordId;
+    private final Word word;
+    private final String title;
+    private final long clock;
+    private final String device;
+    // Assigned by the server; 0 until then.
+    private long seq;
+
+    private SyncOp(String type, String set, String wordId, Word word, String title, long clock, String device) {
+        this.type = type;
+        this.set = set;
+        this.wordId = wordId;
+        this.word = word;
+        this.title = title;
+        this.clock = clock;
+        this.device = device;
+    }
+
+    public static SyncOp put(String set, Word word, long clock, String device) {
+        return new SyncOp(PUT, set, word.getId(), word, null, clock, device);
+    }
+
+    public static SyncOp delete(String set, String wordId, long clock, String device) {
+        return new SyncOp(DELETE, set, wordId, null, null, clock, device);
+    }
+
+    public static SyncOp title(String set, String title, long clock, String device) {
+        return new SyncOp(TITLE, set, null, null, title, clock, device);
+    }
+
+    public static SyncOp drop(String set, long clock, String device) {
+        return new SyncOp(DROP, set, null, null, null, clock, device);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getSet() {
+        return set;
+    }
+
+    /** Null for title and drop ops, which share one slot per set. */
+    public String getWordId() {
+        return wordId;
+    }
+
+    public Word getWord() {
+        return word;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getClock() {
+        return clock;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public boolean isWordOp() {
+        return wordId != null;
+    }
+
+    /** True if this op wins over {@code other} for the same slot. */
+    public boolean beats(SyncOp other) {
+        return other == null || clock > other.clock || clock == other.clock && device.compareTo(other.device) > 0;
+    }
+
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("op").value(type);
+        out.name("set").value(set);
+        if (wordId != null) {
+            out.name("id").value(wordId);
+        }
+        if (word != null) {
+            out.name("word");
+            JsonCodecs.WORD.write(out, word);
+        }
+        if (title != null) {
+            out.name("title").value(title);
+        }
+        out.name("clock").value(clock);
+        out.name("device").value(device);
+        if (seq > 0) {
+            out.name("seq").value(seq);
+        }
+        out.endObject();
+    }
+
+    public static SyncOp read(JsonReader in) throws IOException {
+        String type = null;
+        String set = null;
+        String wordId = null;
+        Word word = null;
+        String title = null;
+        long clock = 0;
+        String device = "";
+        long seq = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "op":
+                    type = in.nextString();
+                    break;
+                case "set":
+                    set = in.nextString();
+                    break;
+                case "id":
+                    wordId = in.nextString();
+                    break;
+                case "word":
+                    word = JsonCodecs.WORD.read(in);
+                    break;
+                case "title":
+                    title = in.nextString();
+                    break;
+                case "clock":
+                    clock = in.nextLong();
+                    break;
+                case "device":
+                    device = in.nextString();
+                    break;
+                case "seq":
+                    seq = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        if (type == null || set == null || (PUT.equals(type) || DELETE.equals(type)) && wordId == null
+                || PUT.equals(type) && word == null) {
+            throw new IOException("Malformed sync op");
+        }
+        if (word != null) {
+            word.setId(wordId);
+        }
+        SyncOp op = new SyncOp(type, set, wordId, word, title, clock, device);
+        op.seq = seq;
+        return op;
+    }
+}
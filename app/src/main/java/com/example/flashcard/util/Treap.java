@@ -0,0 +1,318 @@
+package com.example.flashcard.util;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A sorted map that is never changed in place: {@link #put} and {@link #remove} return a new
+ * tree sharing all but the O(log n) nodes on the changed path with this one, so a reader
+ * holding this tree keeps seeing exactly what it had. Every node knows its subtree size, so
+ * the position of a key and the key at a position are O(log n) too.
+ */
+final class Treap<K, V> {
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int priority;
+        // Only set while a tree is being built by ofSorted(); fixed once it is handed out.
+        Node<K, V> left;
+        Node<K, V> right;
+        int size;
+
+        Node(K key, V value, int priority, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+    }
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private Treap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    static <K, V> Treap<K, V> empty(Comparator<? super K> comparator) {
+        return new Treap<>(comparator, null);
+    }
+
+    /** A tree of these entries, whose keys must already be in ascending order. O(n). */
+    static <K, V> Treap<K, V> ofSorted(Comparator<? super K> comparator, List<K> keys, List<V> values) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // The right spine of the tree so far; each node goes below the first higher priority.
+        Deque<Node<K, V>> spine = new ArrayDeque<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Node<K, V> node = new Node<>(keys.get(i), values.get(i), random.nextInt(), null, null);
+            Node<K, V> last = null;
+            while (!spine.isEmpty() && spine.peekLast().priority < node.priority) {
+                last = spine.pollLast();
+            }
+            node.left = last;
+            if (!spine.isEmpty()) {
+                spine.peekLast().right = node;
+            }
+            spine.addLast(node);
+        }
+        Node<K, V> root = spine.peekFirst();
+        fixSizes(root);
+        return new Treap<>(comparator, root);
+    }
+
+    int size() {
+        return sizeOf(root);
+    }
+
+    V get(K key) {
+        Node<K, V> node = find(key);
+        return node != null ? node.value : null;
+    }
+
+    boolean containsKey(K key) {
+        return find(key) != null;
+    }
+
+    /** This tree with the key mapped to the value, replacing any earlier value. */
+    Treap<K, V> put(K key, V value) {
+        return new Treap<>(comparator, insert(root, key, value));
+    }
+
+    /** This tree without the key; this same tree if the key is absent. */
+    Treap<K, V> remove(K key) {
+        if (find(key) == null) {
+            return this;
+        }
+        return new Treap<>(comparator, delete(root, key));
+    }
+
+    /** The key's position in ascending order, or -1. */
+    int indexOf(K key) {
+        int index = 0;
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = comparator.compare(key, node.key);
+            if (c == 0) {
+                return index + sizeOf(node.left);
+            } else if (c < 0) {
+                node = node.left;
+            } else {
+                index += sizeOf(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /** How many keys sort before this one, whether or not it is in the tree. */
+    int countBelow(K key) {
+        int count = 0;
+        Node<K, V> node = root;
+        while (node != null) {
+            if (comparator.compare(key, node.key) <= 0) {
+                node = node.left;
+            } else {
+                count += sizeOf(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return count;
+    }
+
+    K keyAt(int index) {
+        return nodeAt(index).key;
+    }
+
+    V valueAt(int index) {
+        return nodeAt(index).value;
+    }
+
+    /** The keys in ascending order, as a list over this tree that never changes. */
+    List<K> keys() {
+        return new AbstractList<K>() {
+            @Override
+            public K get(int index) {
+                return keyAt(index);
+            }
+
+            @Override
+            public int size() {
+                return Treap.this.size();
+            }
+
+            @Override
+            public Iterator<K> iterator() {
+                Iterator<Node<K, V>> nodes = nodes();
+                return new Iterator<K>() {
+                    @Override
+                    public boolean hasNext() {
+                        return nodes.hasNext();
+                    }
+
+                    @Override
+                    public K next() {
+                        return nodes.next().key;
+                    }
+                };
+            }
+        };
+    }
+
+    /** The values in key order, as a list over this tree that never changes. */
+    List<V> values() {
+        return new AbstractList<V>() {
+            @Override
+            public V get(int index) {
+                return valueAt(index);
+            }
+
+            @Override
+            public int size() {
+                return Treap.this.size();
+            }
+
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<Node<K, V>> nodes = nodes();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return nodes.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return nodes.next().value;
+                    }
+                };
+            }
+        };
+    }
+
+    private Node<K, V> find(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = comparator.compare(key, node.key);
+            if (c == 0) {
+                return node;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private Node<K, V> nodeAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+        Node<K, V> node = root;
+        while (true) {
+            int left = sizeOf(node.left);
+            if (index < left) {
+                node = node.left;
+            } else if (index == left) {
+                return node;
+            } else {
+                index -= left + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, ThreadLocalRandom.current().nextInt(), null, null);
+        }
+        int c = comparator.compare(key, node.key);
+        if (c == 0) {
+            return new Node<>(key, value, node.priority, node.left, node.right);
+        }
+        if (c < 0) {
+            Node<K, V> left = insert(node.left, key, value);
+            if (left.priority > node.priority) {
+                // Rotate right: the new left child becomes this subtree's root.
+                return new Node<>(left.key, left.value, left.priority, left.left,
+                        new Node<>(node.key, node.value, node.priority, left.right, node.right));
+            }
+            return new Node<>(node.key, node.value, node.priority, left, node.right);
+        }
+        Node<K, V> right = insert(node.right, key, value);
+        if (right.priority > node.priority) {
+            return new Node<>(right.key, right.value, right.priority,
+                    new Node<>(node.key, node.value, node.priority, node.left, right.left), right.right);
+        }
+        return new Node<>(node.key, node.value, node.priority, node.left, right);
+    }
+
+    private Node<K, V> delete(Node<K, V> node, K key) {
+        int c = comparator.compare(key, node.key);
+        if (c == 0) {
+            return merge(node.left, node.right);
+        }
+        if (c < 0) {
+            return new Node<>(node.key, node.value, node.priority, delete(node.left, key), node.right);
+        }
+        return new Node<>(node.key, node.value, node.priority, node.left, delete(node.right, key));
+    }
+
+    // Every key of a sorts before every key of b.
+    private static <K, V> Node<K, V> merge(Node<K, V> a, Node<K, V> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            return new Node<>(a.key, a.value, a.priority, a.left, merge(a.right, b));
+        }
+        return new Node<>(b.key, b.value, b.priority, merge(a, b.left), b.right);
+    }
+
+    private Iterator<Node<K, V>> nodes() {
+        Deque<Node<K, V>> path = new ArrayDeque<>();
+        for (Node<K, V> node = root; node != null; node = node.left) {
+            path.push(node);
+        }
+        return new Iterator<Node<K, V>>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Node<K, V> next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<K, V> node = path.pop();
+                for (Node<K, V> next = node.right; next != null; next = next.left) {
+                    path.push(next);
+                }
+                return node;
+            }
+        };
+    }
+
+    private static int fixSizes(Node<?, ?> node) {
+        if (node == null) {
+            return 0;
+        }
+        node.size = 1 + fixSizes(node.left) + fixSizes(node.right);
+        return node.size;
+    }
+
+    private static int sizeOf(Node<?, ?> node) {
+        return node != null ? node.size : 0;
+    }
+}
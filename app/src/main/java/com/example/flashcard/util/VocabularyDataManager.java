@@ -1,113 +1,1054 @@
 package com.example.flashcard.util;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
+import com.example.flashcard.BuildConfig;
+import com.example.flashcard.model.DeckMetadata;
+import com.example.flashcard.model.SetChange;
 import com.example.flashcard.model.VocabularySet;
 import com.example.flashcard.model.Word;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
-import java.lang.reflect.Type;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class VocabularyDataManager {
+    private static final String TAG = "VocabularyDataManager";
     private static final String PREFS_NAME = "flashcard_prefs";
     private static final String KEY_VOCABULARY_SETS = "vocabulary_sets";
     private static final String KEY_WORDS_PREFIX = "words_";
-    
+    private static final String KEY_STORAGE_MIGRATED = "per_set_storage_migrated";
+    private static final String DECKS_DIR = "decks";
+    private static final String ASSET_ID_PREFIX = "asset:";
+    private static final String BACKUPS_DIR = "backups";
+    private static final int BACKUPS_KEPT = 7;
+    private static final String SYNC_DIR = "sync";
+    private static final String KEY_SYNC_SERVER_URL = "sync_server_url";
+    private static final String PACKS_DIR = "packs";
+    private static final String BUNDLED_CATALOG = "catalog.json";
+    private static final String KEY_CATALOG_URL = "content_catalog_url";
+    private static final int BACKGROUND_THREADS = 2;
+    private static final String HOME_MANIFEST_FILE = "home_manifest.json";
+    // Decks and sorted orders kept for reopening; a screen seldom needs more than the last few.
+    private static final int MAX_CACHED_DECKS = 4;
+    private static final int MAX_CACHED_ORDERS = 4;
+
+    private static volatile VocabularyDataManager instance;
+    // Setting up the instance and loading decks share these threads.
+    private static final ExecutorService BACKGROUND = Executors.newFixedThreadPool(BACKGROUND_THREADS);
+
+    private final Context appContext;
     private final SharedPreferences prefs;
-    private final Gson gson;
-    
-    public VocabularyDataManager(Context context) {
+    private final DeckStorage storage;
+    private final VocabularyStore store;
+    private final DeckBackup backup;
+    private final SyncClient syncClient;
+    private final ContentPacks contentPacks;
+    private final HomeManifest homeManifest;
+    // Change version of the last list saved by saveHomeSets; guarded by homeManifest.
+    private long homeManifestVersion = -1;
+    private List<ContentPacks.Deck> bundledDecks;
+    private DeckLoader deckLoader;
+    private final Map<String, List<Word>> assetCache = Collections.synchronizedMap(lruMap(MAX_CACHED_DECKS));
+    private final Map<String, CachedDeck> deckCache = Collections.synchronizedMap(lruMap(MAX_CACHED_DECKS));
+    // Guarded by itself.
+    private final Map<String, CachedOrder> orderCache = lruMap(MAX_CACHED_ORDERS);
+    private AssetPack assetPack;
+    private boolean assetPackOpened;
+    private SearchIndex searchIndex;
+    private final Set<String> indexedDecks = new HashSet<>();
+    private final List<VocabularyStore.ChangeListener> setChangeListeners = new CopyOnWriteArrayList<>();
+
+    public interface OnReadyListener {
+        void onReady(VocabularyDataManager dataManager);
+    }
+
+    /**
+     * Hands the instance to the listener on the main thread. Setting it up reads preferences,
+     * sync state and installed packs and may finish an interrupted batch, so the first call
+     * does that on a background thread; screens the app opens first should use this.
+     */
+    public static void getInstance(Context context, OnReadyListener listener) {
+        Context appContext = context.getApplicationContext();
+        Handler mainThread = new Handler(Looper.getMainLooper());
+        VocabularyDataManager ready = instance;
+        if (ready != null) {
+            mainThread.post(() -> listener.onReady(ready));
+            return;
+        }
+        BACKGROUND.execute(() -> {
+            VocabularyDataManager created = getInstance(appContext);
+            mainThread.post(() -> listener.onReady(created));
+        });
+    }
+
+    /** Blocks on the first call while the instance is set up; see the other getInstance. */
+    public static VocabularyDataManager getInstance(Context context) {
+        if (instance == null) {
+            synchronized (VocabularyDataManager.class) {
+                if (instance == null) {
+                    instance = new VocabularyDataManager(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private VocabularyDataManager(Context context) {
+        appContext = context;
         prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
+        storage = new DeckStorage(new File(context.getFilesDir(), DECKS_DIR));
+        migrateFromPreferences();
+        try {
+            storage.recoverBatch();
+        } catch (IOException e) {
+            Log.e(TAG, "Error finishing interrupted batch, will retry on next launch", e);
+        }
+        store = new VocabularyStore(storage);
+        Handler mainThread = new Handler(Looper.getMainLooper());
+        store.addChangeListener(change -> {
+            SetChange shown = shownChange(change);
+            if (shown == null) {
+                return;
+            }
+            mainThread.post(() -> {
+                for (VocabularyStore.ChangeListener listener : setChangeListeners) {
+                    listener.onChanged(shown);
+                }
+            });
+        });
+        store.addSnapshotListener(this::updateOrders);
+        backup = new DeckBackup(store, new File(context.getFilesDir(), BACKUPS_DIR));
+        SyncClient sync = null;
+        try {
+            sync = new SyncClient(store, new File(context.getFilesDir(), SYNC_DIR));
+            store.addSnapshotListener(sync);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading sync state, sync is off until next launch", e);
+        }
+        syncClient = sync;
+        ContentPacks packs = null;
+        try {
+            packs = new ContentPacks(new File(context.getFilesDir(), PACKS_DIR));
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error reading installed content packs", e);
+        }
+        contentPacks = packs;
+        homeManifest = new HomeManifest(new File(context.getFilesDir(), HOME_MANIFEST_FILE));
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+                    clearCaches();
+                }
+            }
+
+            @Override
+            public void onLowMemory() {
+                clearCaches();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+        });
+    }
+
+    // Least recently used first, dropped once there are more than max entries.
+    private static <V> Map<String, V> lruMap(int max) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > max;
+            }
+        };
+    }
+
+    // Everything here is rebuilt on demand; the store keeps the user's words either way.
+    private void clearCaches() {
+        assetCache.clear();
+        deckCache.clear();
+        synchronized (orderCache) {
+            orderCache.clear();
+        }
+    }
+
+    /**
+     * The home list as last saved by {@link #saveHomeSets}, read from one small file; null before
+     * the first load. Needs no instance, so the first frame can be drawn before one is set up.
+     */
+    public static List<VocabularySet> readHomeSnapshot(Context context) {
+        return new HomeManifest(new File(context.getFilesDir(), HOME_MANIFEST_FILE)).read();
+    }
+
+    /** Hears every change to the user's sets on the main thread, until removed. */
+    public void addSetChangeListener(VocabularyStore.ChangeListener listener) {
+        setChangeListeners.add(listener);
+    }
+
+    public void removeSetChangeListener(VocabularyStore.ChangeListener listener) {
+        setChangeListeners.remove(listener);
+    }
+
+    // A bundled set shows its pack's words plus the ones the user added; the store only
+    // counts the latter. Records that only cache a pack's count are not rows at all.
+    private SetChange shownChange(SetChange change) {
+        if (change.getType() != SetChange.Type.WORD_COUNT_CHANGED) {
+            return change;
+        }
+        String jsonFileName = change.getJsonFileName();
+        if (jsonFileName.startsWith(ASSET_ID_PREFIX)) {
+            return null;
+        }
+        if (isUserCreatedSet(jsonFileName)) {
+            return change;
+        }
+        return new SetChange(change.getType(), change.getVersion(), jsonFileName, null,
+                Math.max(0, getAssetWordCount(jsonFileName)) + change.getWordCount());
+    }
+
+    /** Read before {@link #loadHomeSets}: the list it returns has every change up to this version. */
+    public long getSetChangeVersion() {
+        return store.getChangeVersion();
+    }
+
+    /** Bundled, downloaded and user sets with current counts; saves them as the next snapshot. */
+    public List<VocabularySet> loadHomeSets() {
+        long version = getSetChangeVersion();
+        List<VocabularySet> sets = getContentSets();
+        for (VocabularySet set : getUserVocabularySets()) {
+            set.setWordCount(getWordCount(set.getJsonFileName()));
+            sets.add(set);
+        }
+        saveHomeSets(sets, version);
+        return sets;
+    }
+
+    /**
+     * Saves the home list as shown after the change with this version, so the next cold start
+     * draws it. Call off the main thread; a list older than one already saved is dropped.
+     */
+    public boolean saveHomeSets(List<VocabularySet> sets, long version) {
+        synchronized (homeManifest) {
+            if (version < homeManifestVersion) {
+                return false;
+            }
+            homeManifestVersion = version;
+            try {
+                return homeManifest.write(sets);
+            } catch (IOException e) {
+                Log.e(TAG, "Error saving home manifest", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Every bundled and downloaded deck with its word count, in catalog order, counting the
+     * words the user added to it. Counts come from pack headers and metadata; no words are
+     * decoded here.
+     */
+    public List<VocabularySet> getContentSets() {
+        List<VocabularySet> sets = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        List<ContentPacks.Deck> decks = new ArrayList<>(bundledDecks());
+        if (contentPacks != null) {
+            decks.addAll(contentPacks.getDecks());
+        }
+        for (ContentPacks.Deck deck : decks) {
+            if (!seen.add(deck.getFile().trim())) {
+                continue;
+            }
+            int wordCount = getAssetWordCount(deck.getFile());
+            if (wordCount > 0) {
+                sets.add(new VocabularySet(deck.getTitle(), deck.getFile(), wordCount + getWordCount(deck.getFile())));
+            }
+        }
+        return sets;
+    }
+
+    public String getCatalogUrl() {
+        return prefs.getString(KEY_CATALOG_URL, "");
+    }
+
+    // Costs one 304 when nothing changed; otherwise downloads only the packs that did.
+    public ContentPacks.Result refreshContentPacks(String catalogUrl) {
+        prefs.edit().putString(KEY_CATALOG_URL, catalogUrl).apply();
+        if (contentPacks == null) {
+            return null;
+        }
+        try {
+            ContentPacks.Result result = contentPacks.refresh(catalogUrl, new HttpPackSource());
+            if (result.getPacksDownloaded() > 0) {
+                for (ContentPacks.Deck deck : contentPacks.getDecks()) {
+                    forgetAssetWords(deck.getFile());
+                }
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error refreshing content packs from " + catalogUrl, e);
+            return null;
+        }
+    }
+
+    // A replaced pack may have different words under the same deck name.
+    private synchronized void forgetAssetWords(String deckName) {
+        assetCache.remove(deckName);
+        deckCache.remove(deckName);
+        synchronized (orderCache) {
+            orderCache.keySet().removeIf(key -> key.endsWith(":" + deckName));
+        }
+        if (indexedDecks.remove(deckName) && searchIndex != null) {
+            searchIndex.removeDeck(deckName);
+        }
+    }
+
+    private synchronized List<ContentPacks.Deck> bundledDecks() {
+        if (bundledDecks != null) {
+            return bundledDecks;
+        }
+        List<ContentPacks.Deck> decks;
+        try (InputStreamReader reader = new InputStreamReader(
+                appContext.getAssets().open(BUNDLED_CATALOG), StandardCharsets.UTF_8)) {
+            decks = ContentPacks.readDeckList(reader);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error reading bundled deck list", e);
+            return new ArrayList<>();
+        }
+        // Some bundled files carry stray spaces in their names, and user words added to
+        // those decks are stored under the exact name.
+        Map<String, String> assetNames = new HashMap<>();
+        try {
+            String[] names = appContext.getAssets().list("");
+            if (names != null) {
+                for (String name : names) {
+                    assetNames.put(name.trim(), name);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error listing bundled decks", e);
+        }
+        List<ContentPacks.Deck> resolved = new ArrayList<>();
+        for (ContentPacks.Deck deck : decks) {
+            String file = assetNames.get(deck.getFile().trim());
+            resolved.add(file != null ? new ContentPacks.Deck(file, deck.getTitle()) : deck);
+        }
+        bundledDecks = resolved;
+        return resolved;
     }
 
     public List<VocabularySet> getUserVocabularySets() {
-        String json = prefs.getString(KEY_VOCABULARY_SETS, "[]");
-        Type type = new TypeToken<List<VocabularySet>>() {}.getType();
-        List<VocabularySet> sets = gson.fromJson(json, type);
-        return sets != null ? sets : new ArrayList<>();
+        try {
+            return store.getUserVocabularySets();
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading vocabulary sets", e);
+            return new ArrayList<>();
+        }
     }
-    
+
     public void addVocabularySet(VocabularySet set) {
-        List<VocabularySet> sets = getUserVocabularySets();
-        sets.add(set);
-        saveVocabularySets(sets);
+        try {
+            store.addVocabularySet(set);
+        } catch (IOException e) {
+            Log.e(TAG, "Error adding vocabulary set", e);
+        }
     }
-    
+
     public void saveVocabularySets(List<VocabularySet> sets) {
-        String json = gson.toJson(sets);
-        prefs.edit().putString(KEY_VOCABULARY_SETS, json).apply();
+        try {
+            store.saveVocabularySets(sets);
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving vocabulary sets", e);
+        }
     }
-    
+
     public List<Word> getWordsForSet(String jsonFileName) {
-        String key = KEY_WORDS_PREFIX + jsonFileName;
-        String json = prefs.getString(key, "[]");
-        Type type = new TypeToken<List<Word>>() {}.getType();
-        List<Word> words = gson.fromJson(json, type);
-        return words != null ? words : new ArrayList<>();
+        try {
+            return store.getWordsForSet(jsonFileName);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading words for " + jsonFileName, e);
+            return new ArrayList<>();
+        }
+    }
+
+    public List<Word> getAssetWords(String assetFileName) {
+        return new ArrayList<>(cachedAssetWords(assetFileName));
+    }
+
+    // Words from a pack are decoded on each call rather than kept: the pack is mapped, so
+    // that is cheap, and holding them would keep the deck in memory twice. Only decks parsed
+    // from JSON, in builds without a pack, are cached.
+    private List<Word> cachedAssetWords(String assetFileName) {
+        List<Word> words = assetCache.get(assetFileName);
+        if (words != null) {
+            return words;
+        }
+        AssetPack pack = packFor(assetFileName);
+        words = pack != null ? pack.getWords(assetFileName, assetIdPrefix(assetFileName)) : null;
+        boolean parsed = words == null;
+        if (parsed) {
+            words = readAsset(assetFileName);
+        }
+        if (words == null) {
+            return new ArrayList<>();
+        }
+        for (Word word : words) {
+            WordTable.shared().intern(word);
+        }
+        if (parsed) {
+            assetCache.put(assetFileName, words);
+        }
+        return words;
+    }
+
+    public int getWordCount(String jsonFileName) {
+        try {
+            DeckMetadata metadata = store.getMetadata(jsonFileName);
+            return metadata != null ? metadata.getWordCount() : 0;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading metadata for " + jsonFileName, e);
+            return 0;
+        }
     }
-    
+
+    /**
+     * Goes up with every write to the user's words in the set, so a screen can tell whether
+     * what it shows is still current without reading them. Kept with the metadata.
+     */
+    public long getSetVersion(String jsonFileName) {
+        try {
+            DeckMetadata metadata = store.getMetadata(jsonFileName);
+            return metadata != null ? metadata.getVersion() : 0;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading metadata for " + jsonFileName, e);
+            return -1;
+        }
+    }
+
+    // Counts come from the pack header. Builds without a pack parse the JSON once per
+    // app version and read the count from the metadata file after that.
+    public int getAssetWordCount(String assetFileName) {
+        AssetPack pack = packFor(assetFileName);
+        if (pack != null && pack.hasDeck(assetFileName)) {
+            return pack.getWordCount(assetFileName);
+        }
+        String key = ASSET_ID_PREFIX + assetFileName;
+        try {
+            DeckMetadata metadata = store.getMetadata(key);
+            if (metadata != null && metadata.getVersion() == BuildConfig.VERSION_CODE) {
+                return metadata.getWordCount();
+            }
+            int wordCount = getAssetWords(assetFileName).size();
+            if (wordCount > 0) {
+                store.putMetadata(new DeckMetadata(key, wordCount, System.currentTimeMillis(),
+                        BuildConfig.VERSION_CODE, 0));
+            }
+            return wordCount;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading metadata for " + assetFileName, e);
+            return getAssetWords(assetFileName).size();
+        }
+    }
+
+    /** One word, read through the set's index rather than the whole set. Call off the UI thread. */
+    public Word findWord(String jsonFileName, String wordId) {
+        if (wordId == null) {
+            return null;
+        }
+        if (wordId.startsWith(ASSET_ID_PREFIX)) {
+            int separator = wordId.lastIndexOf('#');
+            if (separator < 0) {
+                return null;
+            }
+            int index;
+            try {
+                index = Integer.parseInt(wordId.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (index < 0) {
+                return null;
+            }
+            List<Word> words = assetCache.get(jsonFileName);
+            if (words != null) {
+                return index < words.size() ? words.get(index) : null;
+            }
+            AssetPack pack = packFor(jsonFileName);
+            return pack != null ? pack.getWord(jsonFileName, index, wordId) : null;
+        }
+        try {
+            return storage.readWords(jsonFileName, Collections.singletonList(wordId)).get(0);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading words for " + jsonFileName, e);
+            return null;
+        }
+    }
+
+    // Bundled sets are the asset words plus whatever the user added to them;
+    // user-created sets have no asset.
+    public List<Word> getDeckWords(String jsonFileName) {
+        if (isUserCreatedSet(jsonFileName)) {
+            return getWordsForSet(jsonFileName);
+        }
+        List<Word> words = getAssetWords(jsonFileName);
+        words.addAll(getWordsForSet(jsonFileName));
+        return words;
+    }
+
+    /**
+     * The words of {@link #getDeckWords} in columnar form. Built once per set version; each
+     * call returns its own view, so callers may shuffle it.
+     */
+    public ColumnarDeck getColumnarDeck(String jsonFileName) {
+        DeckSnapshot snapshot;
+        try {
+            snapshot = store.getSnapshot(jsonFileName);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading words for " + jsonFileName, e);
+            return ColumnarDeck.of(getDeckWords(jsonFileName));
+        }
+        return columnarDeck(jsonFileName, snapshot);
+    }
+
+    /** Loads {@link #getColumnarDeck} off the main thread. */
+    public synchronized DeckLoader getDeckLoader() {
+        if (deckLoader == null) {
+            Handler mainThread = new Handler(Looper.getMainLooper());
+            deckLoader = new DeckLoader(
+                    this::getColumnarDeck,
+                    BACKGROUND, mainThread::post);
+            store.addSnapshotListener(deckLoader);
+        }
+        return deckLoader;
+    }
+
+    private ColumnarDeck columnarDeck(String jsonFileName, DeckSnapshot snapshot) {
+        CachedDeck cached = deckCache.get(jsonFileName);
+        if (cached == null || cached.version != snapshot.getVersion()) {
+            ColumnarDeck.Builder builder = new ColumnarDeck.Builder();
+            if (!isUserCreatedSet(jsonFileName)) {
+                // Straight from the pack into the columns when there is one.
+                AssetPack pack = packFor(jsonFileName);
+                if (pack == null || !pack.appendTo(jsonFileName, assetIdPrefix(jsonFileName), builder)) {
+                    for (Word word : cachedAssetWords(jsonFileName)) {
+                        builder.add(word);
+                    }
+                }
+            }
+            for (Word word : snapshot.wordMap().values()) {
+                builder.add(word);
+            }
+            cached = new CachedDeck(snapshot.getVersion(), builder.build());
+            deckCache.put(jsonFileName, cached);
+        }
+        return cached.deck.copy();
+    }
+
+    // The set's latest snapshot and its sorted order, read together. The set is loaded and
+    // looked up before the orderCache lock is taken: updateOrders() takes that lock under a
+    // stripe, so nothing that may wait for a stripe or the sets lock can run while holding it.
+    private SortedIds sortedIds(String jsonFileName, CollatedOrder.Mode mode) throws IOException {
+        store.getSnapshot(jsonFileName);
+        boolean userSet = isUserCreatedSet(jsonFileName);
+        synchronized (orderCache) {
+            DeckSnapshot snapshot = store.getSnapshot(jsonFileName);
+            return new SortedIds(snapshot, currentOrder(jsonFileName, mode, snapshot, userSet).wordIds());
+        }
+    }
+
+    private static final class SortedIds {
+        final DeckSnapshot snapshot;
+        final List<String> wordIds;
+
+        SortedIds(DeckSnapshot snapshot, List<String> wordIds) {
+            this.snapshot = snapshot;
+            this.wordIds = wordIds;
+        }
+    }
+
+    // Call holding the orderCache lock, with the set's latest snapshot read under it. Only
+    // the first call for a set and mode builds the order; writes keep it current after that.
+    private CollatedOrder currentOrder(String jsonFileName, CollatedOrder.Mode mode, DeckSnapshot snapshot,
+                                       boolean userSet) {
+        String key = mode + ":" + jsonFileName;
+        CachedOrder cached = orderCache.get(key);
+        // Older only when a write has published but not yet reached updateOrders().
+        if (cached == null || cached.version < snapshot.getVersion()) {
+            CollatedOrder order = new CollatedOrder(mode);
+            if (!userSet) {
+                order.addAll(cachedAssetWords(jsonFileName));
+            }
+            order.addAll(snapshot.wordMap().values());
+            cached = new CachedOrder(snapshot.getVersion(), order);
+            orderCache.put(key, cached);
+        }
+        return cached.order;
+    }
+
+    // Called under the set's stripe for every write: re-places just the words it changed.
+    private void updateOrders(DeckSnapshot previous, DeckSnapshot next) {
+        synchronized (orderCache) {
+            for (CollatedOrder.Mode mode : CollatedOrder.Mode.values()) {
+                String key = mode + ":" + next.getJsonFileName();
+                CachedOrder cached = orderCache.get(key);
+                if (cached == null || cached.version >= next.getVersion()) {
+                    continue;
+                }
+                if (next.changedIds() == null || cached.version != next.getVersion() - 1) {
+                    orderCache.remove(key);
+                    continue;
+                }
+                for (String wordId : next.changedIds()) {
+                    Word word = next.wordMap().get(wordId);
+                    if (word != null) {
+                        cached.order.put(word);
+                    } else {
+                        cached.order.remove(wordId);
+                    }
+                }
+                cached.version = next.getVersion();
+            }
+        }
+    }
+
+    /**
+     * The deck in added or sorted order for {@link PagedDeck}. The user's words are paged
+     * from storage through each set's on-disk index, so a page reads only its own words and
+     * added order never parses the set; bundled words come straight from the pack. A sorted
+     * order needs every word's text, so the first one for a set computes a collation key per
+     * word, and after a write only the changed words are re-placed. Call off the UI thread.
+     */
+    public PagedDeck.Source getPagedSource(String jsonFileName, CollatedOrder.Mode mode) {
+        List<String> wordIds;
+        try {
+            wordIds = mode != null ? sortedIds(jsonFileName, mode).wordIds : addedOrder(jsonFileName);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading words for " + jsonFileName, e);
+            Map<String, Word> words = new LinkedHashMap<>();
+            for (Word word : getDeckWords(jsonFileName)) {
+                words.put(word.getId(), word);
+            }
+            return pagedSource(new ArrayList<>(words.keySet()), ids -> {
+                List<Word> page = new ArrayList<>(ids.size());
+                for (String wordId : ids) {
+                    page.add(words.get(wordId));
+                }
+                return page;
+            });
+        }
+        return pagedSource(wordIds, ids -> readPage(jsonFileName, ids));
+    }
+
+    // Bundled words from the pack, the user's from storage in one pass over the set's file.
+    private List<Word> readPage(String jsonFileName, List<String> wordIds) {
+        List<Word> page = new ArrayList<>(Collections.nCopies(wordIds.size(), (Word) null));
+        List<String> storedIds = new ArrayList<>();
+        List<Integer> storedPositions = new ArrayList<>();
+        for (int i = 0; i < wordIds.size(); i++) {
+            String wordId = wordIds.get(i);
+            if (wordId.startsWith(ASSET_ID_PREFIX)) {
+                page.set(i, findWord(jsonFileName, wordId));
+            } else {
+                storedIds.add(wordId);
+                storedPositions.add(i);
+            }
+        }
+        if (!storedIds.isEmpty()) {
+            try {
+                List<Word> stored = storage.readWords(jsonFileName, storedIds);
+                for (int i = 0; i < stored.size(); i++) {
+                    page.set(storedPositions.get(i), stored.get(i));
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading words for " + jsonFileName, e);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Where the word now sits in {@link #getPagedSource} for this order, or -1 if the set no
+     * longer has it. Placing one sorted word reuses the kept collation keys.
+     */
+    public int getWordPosition(String jsonFileName, CollatedOrder.Mode mode, String wordId) {
+        try {
+            if (mode == null) {
+                return addedOrder(jsonFileName).indexOf(wordId);
+            }
+            store.getSnapshot(jsonFileName);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading words for " + jsonFileName, e);
+            return -1;
+        }
+        boolean userSet = isUserCreatedSet(jsonFileName);
+        synchronized (orderCache) {
+            // Already loaded above, so this takes no lock.
+            try {
+                return currentOrder(jsonFileName, mode, store.getSnapshot(jsonFileName), userSet).indexOf(wordId);
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading words for " + jsonFileName, e);
+                return -1;
+            }
+        }
+    }
+
+    // The user's IDs come from the set's index on disk, not its parsed words.
+    private AddedOrder addedOrder(String jsonFileName) throws IOException {
+        int assetCount = isUserCreatedSet(jsonFileName) ? 0 : Math.max(0, getAssetWordCount(jsonFileName));
+        return new AddedOrder(assetIdPrefix(jsonFileName), assetCount, storage.readWordIds(jsonFileName));
+    }
+
+    // Bundled words first, then the user's in the order they were added. Bundled IDs are
+    // made when asked for rather than held, as a pack can list a hundred thousand words.
+    private static final class AddedOrder extends AbstractList<String> implements RandomAccess {
+        private final String assetPrefix;
+        private final int assetCount;
+        private final List<String> userIds;
+
+        AddedOrder(String assetPrefix, int assetCount, List<String> userIds) {
+            this.assetPrefix = assetPrefix;
+            this.assetCount = assetCount;
+            this.userIds = userIds;
+        }
+
+        @Override
+        public String get(int index) {
+            return index < assetCount ? assetPrefix + index : userIds.get(index - assetCount);
+        }
+
+        @Override
+        public int size() {
+            return assetCount + userIds.size();
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            String wordId = (String) o;
+            if (wordId.startsWith(assetPrefix)) {
+                try {
+                    int index = Integer.parseInt(wordId.substring(assetPrefix.length()));
+                    return index >= 0 && index < assetCount ? index : -1;
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+            int index = userIds.indexOf(wordId);
+            return index >= 0 ? assetCount + index : -1;
+        }
+    }
+
+    private interface PageReader {
+        List<Word> read(List<String> wordIds);
+    }
+
+    private static PagedDeck.Source pagedSource(List<String> wordIds, PageReader reader) {
+        return new PagedDeck.Source() {
+            @Override
+            public List<String> wordIds() {
+                return wordIds;
+            }
+
+            @Override
+            public List<Word> read(List<String> ids) {
+                return reader.read(ids);
+            }
+        };
+    }
+
+    private static class CachedOrder {
+        // The set version the order reflects; guarded by the orderCache lock.
+        long version;
+        final CollatedOrder order;
+
+        CachedOrder(long version, CollatedOrder order) {
+            this.version = version;
+            this.order = order;
+        }
+    }
+
+    private static class CachedDeck {
+        final long version;
+        final ColumnarDeck deck;
+
+        CachedDeck(long version, ColumnarDeck deck) {
+            this.version = version;
+            this.deck = deck;
+        }
+    }
+
+    /**
+     * The index behind global search and word suggestions, covering these decks. The first
+     * call for a deck reads it in full, so call off the UI thread; after that every write
+     * keeps the index current.
+     */
+    public synchronized SearchIndex getSearchIndex(Collection<String> jsonFileNames) {
+        if (searchIndex == null) {
+            searchIndex = new SearchIndex();
+            store.addSnapshotListener(searchIndex);
+        }
+        for (String jsonFileName : jsonFileNames) {
+            if (!indexedDecks.add(jsonFileName)) {
+                continue;
+            }
+            if (!isUserCreatedSet(jsonFileName)) {
+                searchIndex.addDeck(jsonFileName, cachedAssetWords(jsonFileName));
+            }
+            try {
+                searchIndex.sync(store.getSnapshot(jsonFileName));
+            } catch (IOException e) {
+                Log.e(TAG, "Error indexing words for " + jsonFileName, e);
+            }
+        }
+        return searchIndex;
+    }
+
     public void addWordToSet(String jsonFileName, Word word) {
-        List<Word> words = getWordsForSet(jsonFileName);
-        words.add(word);
-        saveWordsForSet(jsonFileName, words);
+        try {
+            store.addWordToSet(jsonFileName, word);
+        } catch (IOException e) {
+            Log.e(TAG, "Error adding word to " + jsonFileName, e);
+        }
+    }
+
+    /**
+     * Streams words from a CSV, TSV or Anki export into the set, skipping words the deck
+     * already has. Chunks are committed as they are read; returns null if reading or writing
+     * failed or the thread was interrupted, in which case the chunks before it stay imported.
+     */
+    public WordImporter.Result importWords(String jsonFileName, InputStream in, long totalBytes,
+                                           WordImporter.Format format, WordImporter.ProgressListener listener) {
+        try {
+            return new WordImporter(format, getDeckWords(jsonFileName))
+                    .importFrom(in, totalBytes, chunk -> store.addWordsToSet(jsonFileName, chunk), listener);
+        } catch (IOException e) {
+            Log.e(TAG, "Error importing words into " + jsonFileName, e);
+            return null;
+        }
+    }
+
+    // Writes only the chunks that changed since the last backup, then drops the oldest ones.
+    public DeckBackup.Result backupDecks() {
+        try {
+            DeckBackup.Result result = backup.backup();
+            backup.prune(BACKUPS_KEPT);
+            return result;
+        } catch (IOException e) {
+            Log.e(TAG, "Error backing up vocabulary sets", e);
+            return null;
+        }
+    }
+
+    public boolean hasBackup() {
+        return !backup.listSnapshots().isEmpty();
+    }
+
+    public boolean restoreLatestBackup() {
+        List<String> snapshots = backup.listSnapshots();
+        if (snapshots.isEmpty()) {
+            return false;
+        }
+        try {
+            backup.restore(snapshots.get(snapshots.size() - 1));
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error restoring vocabulary sets", e);
+            return false;
+        }
     }
-    
+
+    public String getSyncServerUrl() {
+        return prefs.getString(KEY_SYNC_SERVER_URL, "");
+    }
+
+    // Exchanges only the changes since the last sync; the first one sends every set.
+    public SyncClient.Result syncNow(String serverUrl) {
+        prefs.edit().putString(KEY_SYNC_SERVER_URL, serverUrl).apply();
+        if (syncClient == null) {
+            return null;
+        }
+        try {
+            return syncClient.sync(new HttpSyncTransport(serverUrl));
+        } catch (IOException e) {
+            Log.e(TAG, "Error syncing with " + serverUrl, e);
+            return null;
+        }
+    }
+
     public void saveWordsForSet(String jsonFileName, List<Word> words) {
-        String key = KEY_WORDS_PREFIX + jsonFileName;
-        String json = gson.toJson(words);
-        prefs.edit().putString(key, json).apply();
+        try {
+            store.saveWordsForSet(jsonFileName, words);
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving words for " + jsonFileName, e);
+        }
     }
 
     public void deleteVocabularySet(String jsonFileName) {
-        List<VocabularySet> sets = getUserVocabularySets();
-        sets.removeIf(set -> set.getJsonFileName().equals(jsonFileName));
-        saveVocabularySets(sets);
-        
-        String key = KEY_WORDS_PREFIX + jsonFileName;
-        prefs.edit().remove(key).apply();
+        try {
+            store.deleteVocabularySet(jsonFileName);
+        } catch (IOException e) {
+            Log.e(TAG, "Error deleting vocabulary set " + jsonFileName, e);
+        }
     }
 
     public boolean isUserCreatedSet(String jsonFileName) {
-        List<VocabularySet> sets = getUserVocabularySets();
-        return sets.stream().anyMatch(set -> set.getJsonFileName().equals(jsonFileName));
+        try {
+            return store.isUserCreatedSet(jsonFileName);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading vocabulary sets", e);
+            return false;
+        }
     }
 
     public void updateVocabularySet(VocabularySet updatedSet) {
-        List<VocabularySet> sets = getUserVocabularySets();
-        for (int i = 0; i < sets.size(); i++) {
-            if (sets.get(i).getJsonFileName().equals(updatedSet.getJsonFileName())) {
-                sets.set(i, updatedSet);
-                break;
+        try {
+            store.updateVocabularySet(updatedSet);
+        } catch (IOException e) {
+            Log.e(TAG, "Error updating vocabulary set", e);
+        }
+    }
+
+    // Returns false if nothing was changed.
+    public boolean commitBatch(WordBatch batch) {
+        try {
+            store.commit(batch);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error committing batch", e);
+            return false;
+        }
+    }
+
+    // Both return false if the write failed; call off the UI thread.
+    public boolean deleteWordFromSet(String jsonFileName, String wordId) {
+        try {
+            store.deleteWordFromSet(jsonFileName, wordId);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error deleting word from " + jsonFileName, e);
+            return false;
+        }
+    }
+
+    public boolean updateWordInSet(String jsonFileName, String wordId, Word newWord) {
+        try {
+            store.updateWordInSet(jsonFileName, wordId, newWord);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error updating word in " + jsonFileName, e);
+            return false;
+        }
+    }
+
+    private List<Word> readAsset(String assetFileName) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                appContext.getAssets().open(assetFileName), StandardCharsets.UTF_8))) {
+            List<Word> words = JsonCodecs.readList(reader, JsonCodecs.WORD);
+            String prefix = assetIdPrefix(assetFileName);
+            for (int i = 0; i < words.size(); i++) {
+                words.get(i).setId(prefix + i);
             }
+            return words;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error loading words from asset " + assetFileName, e);
+            return null;
+        }
+    }
+
+    // Bundled words never change, so their position makes a stable ID.
+    private static String assetIdPrefix(String assetFileName) {
+        return ASSET_ID_PREFIX + assetFileName.trim() + "#";
+    }
+
+    // Bundled decks win over a downloaded deck of the same name.
+    private AssetPack packFor(String deckName) {
+        AssetPack bundled = assetPack();
+        if (bundled != null && bundled.hasDeck(deckName) || contentPacks == null
+                || !contentPacks.hasDeck(deckName)) {
+            return bundled;
+        }
+        try {
+            return contentPacks.packFor(deckName);
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening content pack for " + deckName, e);
+            return null;
         }
-        saveVocabularySets(sets);
     }
 
-    public void deleteWordFromSet(String jsonFileName, Word wordToDelete) {
-        List<Word> words = getWordsForSet(jsonFileName);
-        words.removeIf(word -> 
-            word.getEnglish().equals(wordToDelete.getEnglish()) && 
-            word.getVietnamese().equals(wordToDelete.getVietnamese())
-        );
-        saveWordsForSet(jsonFileName, words);
+    private synchronized AssetPack assetPack() {
+        if (!assetPackOpened) {
+            assetPackOpened = true;
+            try {
+                assetPack = AssetPack.open(appContext.getAssets());
+            } catch (IOException e) {
+                Log.w(TAG, "No deck pack, reading bundled decks from JSON", e);
+            }
+        }
+        return assetPack;
     }
 
-    public void updateWordInSet(String jsonFileName, Word oldWord, Word newWord) {
-        List<Word> words = getWordsForSet(jsonFileName);
-        for (int i = 0; i < words.size(); i++) {
-            Word word = words.get(i);
-            if (word.getEnglish().equals(oldWord.getEnglish()) && 
-                word.getVietnamese().equals(oldWord.getVietnamese())) {
-                words.set(i, newWord);
-                break;
+    // Older builds kept every set inside flashcard_prefs. Move them to per-set files once,
+    // and only drop the prefs copies after every file has been written.
+    private void migrateFromPreferences() {
+        if (prefs.getBoolean(KEY_STORAGE_MIGRATED, false)) {
+            return;
+        }
+
+        List<String> migratedKeys = new ArrayList<>();
+
+        try {
+            for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+                String key = entry.getKey();
+                if (!key.startsWith(KEY_WORDS_PREFIX) || !(entry.getValue() instanceof String)) {
+                    continue;
+                }
+                String jsonFileName = key.substring(KEY_WORDS_PREFIX.length());
+                List<Word> words = JsonCodecs.readList(
+                        new JsonReader(new StringReader((String) entry.getValue())), JsonCodecs.WORD);
+                storage.writeWords(jsonFileName, words);
+                migratedKeys.add(key);
+            }
+
+            String setsJson = prefs.getString(KEY_VOCABULARY_SETS, null);
+            if (setsJson != null) {
+                List<VocabularySet> sets = JsonCodecs.readList(
+                        new JsonReader(new StringReader(setsJson)), JsonCodecs.VOCABULARY_SET);
+                storage.writeSets(sets);
+                migratedKeys.add(KEY_VOCABULARY_SETS);
             }
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error migrating vocabulary data, will retry on next launch", e);
+            return;
         }
-        saveWordsForSet(jsonFileName, words);
+
+        SharedPreferences.Editor editor = prefs.edit();
+        for (String key : migratedKeys) {
+            editor.remove(key);
+        }
+        editor.putBoolean(KEY_STORAGE_MIGRATED, true);
+        editor.commit();
     }
 }
-
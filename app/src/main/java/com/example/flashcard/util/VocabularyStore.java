@@ -0,0 +1,613 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.DeckMetadata;
+import com.example.flashcard.model.SetChange;
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-through cache over {@link DeckStorage}. Each set is parsed at most once per process;
+ * every write goes to disk and to the cached copy, so the cache never has to be reloaded.
+ *
+ * <p>Every write also updates the set's {@link DeckMetadata}, so word counts can be shown
+ * without loading any words.
+ *
+ * <p>Safe for concurrent writers. Each set has a version that goes up by one with every
+ * write. A writer builds the next {@link DeckSnapshot} from the current one without locking,
+ * then takes the set's lock stripe only to check that nobody committed in between, persist
+ * and publish. On a conflict it rebuilds from the newer snapshot and tries again. Readers
+ * never lock. Snapshots share their words, so adding, editing or deleting one word costs
+ * O(log n) rather than a copy of the set.
+ */
+public class VocabularyStore {
+
+    /**
+     * Told about every snapshot a write publishes, while the set's stripe is still held. The
+     * words that changed are {@link DeckSnapshot#changedIds}; only a null there calls for
+     * looking at the whole set.
+     */
+    public interface SnapshotListener {
+        // previous is null when the set had not been loaded before the write.
+        void onPublished(DeckSnapshot previous, DeckSnapshot next);
+    }
+
+    /**
+     * Told when a user set is added, removed or renamed, or the stored word count of any set
+     * changes, once the change can be read back. Called on the writing thread, possibly under the store's locks.
+     */
+    public interface ChangeListener {
+        void onChanged(SetChange change);
+    }
+
+    private static final int LOCK_STRIPES = 32;
+
+    private final DeckStorage storage;
+    private final WordTable wordTable = WordTable.shared();
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+    private final Object setsLock = new Object();
+    private final Object metadataLock = new Object();
+    private final Map<String, DeckSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final List<SnapshotListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong changeVersion = new AtomicLong();
+    // Both maps are replaced, never modified, so readers can use them without locking.
+    private volatile Map<String, VocabularySet> setCache;
+    private volatile Map<String, DeckMetadata> metadataCache;
+
+    public VocabularyStore(DeckStorage storage) {
+        this.storage = storage;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    public List<VocabularySet> getUserVocabularySets() throws IOException {
+        List<VocabularySet> sets = new ArrayList<>();
+        for (VocabularySet set : sets().values()) {
+            sets.add(copyOf(set));
+        }
+        return sets;
+    }
+
+    public boolean isUserCreatedSet(String jsonFileName) throws IOException {
+        return sets().containsKey(jsonFileName);
+    }
+
+    public void addVocabularySet(VocabularySet set) throws IOException {
+        synchronized (setsLock) {
+            LinkedHashMap<String, VocabularySet> sets = new LinkedHashMap<>(sets());
+            sets.put(set.getJsonFileName(), copyOf(set));
+            writeSets(sets);
+        }
+    }
+
+    public void saveVocabularySets(List<VocabularySet> updated) throws IOException {
+        LinkedHashMap<String, VocabularySet> sets = new LinkedHashMap<>();
+        for (VocabularySet set : updated) {
+            sets.put(set.getJsonFileName(), copyOf(set));
+        }
+        synchronized (setsLock) {
+            writeSets(sets);
+        }
+    }
+
+    public void updateVocabularySet(VocabularySet updatedSet) throws IOException {
+        synchronized (setsLock) {
+            if (!sets().containsKey(updatedSet.getJsonFileName())) {
+                return;
+            }
+            LinkedHashMap<String, VocabularySet> sets = new LinkedHashMap<>(sets());
+            sets.put(updatedSet.getJsonFileName(), copyOf(updatedSet));
+            writeSets(sets);
+        }
+    }
+
+    public void deleteVocabularySet(String jsonFileName) throws IOException {
+        synchronized (setsLock) {
+            LinkedHashMap<String, VocabularySet> sets = new LinkedHashMap<>(sets());
+            sets.remove(jsonFileName);
+            writeSets(sets);
+        }
+
+        synchronized (stripe(jsonFileName)) {
+            DeckSnapshot current = snapshots.get(jsonFileName);
+            DeckMetadata metadata = metadata().get(jsonFileName);
+            long version = current != null ? current.getVersion() : metadata != null ? metadata.getVersion() : 0;
+            storage.deleteWords(jsonFileName);
+            // Kept as an empty set rather than dropped, so a set recreated under the same
+            // name never reuses a version a writer may still be holding.
+            publish(current, new DeckSnapshot(jsonFileName, version + 1, 0, WordMap.EMPTY, null));
+            replaceMetadata(Collections.emptyList(), Collections.singleton(jsonFileName));
+        }
+    }
+
+    public void addSnapshotListener(SnapshotListener listener) {
+        listeners.add(listener);
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /** The version of the latest {@link SetChange}; everything up to it can be read back. */
+    public long getChangeVersion() {
+        return changeVersion.get();
+    }
+
+    /** Every set that has words stored: the user sets plus bundled sets the user added to. */
+    public Set<String> getStoredSetNames() throws IOException {
+        Set<String> names = new LinkedHashSet<>(sets().keySet());
+        names.addAll(metadata().keySet());
+        return names;
+    }
+
+    public DeckSnapshot getSnapshot(String jsonFileName) throws IOException {
+        DeckSnapshot snapshot = snapshots.get(jsonFileName);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (stripe(jsonFileName)) {
+            snapshot = snapshots.get(jsonFileName);
+            if (snapshot == null) {
+                snapshot = load(jsonFileName);
+                snapshots.put(jsonFileName, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    public List<Word> getWordsForSet(String jsonFileName) throws IOException {
+        return new ArrayList<>(getSnapshot(jsonFileName).getWords());
+    }
+
+    public Word getWord(String jsonFileName, String wordId) throws IOException {
+        return getSnapshot(jsonFileName).getWord(wordId);
+    }
+
+    // Sets written before metadata existed get their record when they are first loaded;
+    // after that every write keeps it current.
+    public DeckMetadata getMetadata(String jsonFileName) throws IOException {
+        DeckMetadata metadata = metadata().get(jsonFileName);
+        if (metadata == null && storage.hasWords(jsonFileName)) {
+            getSnapshot(jsonFileName);
+            metadata = metadata().get(jsonFileName);
+        }
+        return metadata;
+    }
+
+    public void putMetadata(DeckMetadata metadata) throws IOException {
+        replaceMetadata(Collections.singletonList(metadata), Collections.emptySet());
+    }
+
+    public void saveWordsForSet(String jsonFileName, List<Word> words) throws IOException {
+        WordMap indexed = index(words);
+        long checksum = checksumOf(indexed.values());
+        mutate(jsonFileName, current -> new Change(indexed, checksum, null,
+                () -> storage.writeWords(jsonFileName, new ArrayList<>(indexed.values()))));
+    }
+
+    /**
+     * Replaces the words of the set only if it is still at expectedVersion, as read from
+     * {@link #getSnapshot}. Returns false, without writing anything, if another write got
+     * there first.
+     */
+    public boolean compareAndSetWords(String jsonFileName, long expectedVersion, List<Word> words) throws IOException {
+        WordMap indexed = index(words);
+        long checksum = checksumOf(indexed.values());
+        synchronized (stripe(jsonFileName)) {
+            DeckSnapshot current = getSnapshot(jsonFileName);
+            if (current.getVersion() != expectedVersion) {
+                return false;
+            }
+            commitChange(jsonFileName, current, new Change(indexed, checksum, null,
+                    () -> storage.writeWords(jsonFileName, new ArrayList<>(indexed.values()))));
+            return true;
+        }
+    }
+
+    public void addWordToSet(String jsonFileName, Word word) throws IOException {
+        if (word.getId() == null) {
+            word.setId(Word.newId());
+        }
+        Word stored = stored(word);
+        mutate(jsonFileName, current -> {
+            Word replaced = current.wordMap().get(stored.getId());
+            long checksum = current.checksum() + checksumOf(stored) - (replaced != null ? checksumOf(replaced) : 0);
+            return new Change(current.wordMap().with(stored), checksum, Collections.singleton(stored.getId()),
+                    () -> storage.appendAdd(jsonFileName, stored));
+        });
+    }
+
+    /**
+     * Adds many words with a single journal append, one new version and one notification.
+     * Meant for chunks of a bulk import; words with an ID already in the set replace it.
+     */
+    public void addWordsToSet(String jsonFileName, List<Word> added) throws IOException {
+        if (added.isEmpty()) {
+            return;
+        }
+        List<Word> copy = new ArrayList<>(added.size());
+        Set<String> changed = new LinkedHashSet<>();
+        for (Word word : added) {
+            if (word.getId() == null) {
+                word.setId(Word.newId());
+            }
+            copy.add(stored(word));
+            changed.add(word.getId());
+        }
+        mutate(jsonFileName, current -> {
+            WordMap words = current.wordMap();
+            long checksum = current.checksum();
+            for (Word word : copy) {
+                Word replaced = words.get(word.getId());
+                words = words.with(word);
+                checksum += checksumOf(word) - (replaced != null ? checksumOf(replaced) : 0);
+            }
+            return new Change(words, checksum, changed, () -> storage.appendAdds(jsonFileName, copy));
+        });
+    }
+
+    public void updateWordInSet(String jsonFileName, String wordId, Word newWord) throws IOException {
+        newWord.setId(wordId);
+        Word stored = stored(newWord);
+        mutate(jsonFileName, current -> {
+            Word oldWord = current.wordMap().get(wordId);
+            if (oldWord == null) {
+                return null;
+            }
+            long checksum = current.checksum() + checksumOf(stored) - checksumOf(oldWord);
+            return new Change(current.wordMap().with(stored), checksum, Collections.singleton(wordId),
+                    () -> storage.appendUpdate(jsonFileName, wordId, stored));
+        });
+    }
+
+    public void deleteWordFromSet(String jsonFileName, String wordId) throws IOException {
+        mutate(jsonFileName, current -> {
+            Word oldWord = current.wordMap().get(wordId);
+            if (oldWord == null) {
+                return null;
+            }
+            long checksum = current.checksum() - checksumOf(oldWord);
+            return new Change(current.wordMap().without(wordId), checksum, Collections.singleton(wordId),
+                    () -> storage.appendDelete(jsonFileName, wordId));
+        });
+    }
+
+    /**
+     * Applies every change in the batch or none of them. Each touched set is written once,
+     * however many changes the batch makes to it, and its version goes up by one.
+     */
+    public void commit(WordBatch batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> names = new ArrayList<>(batch.touchedSets());
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        for (String name : names) {
+            stripeIndexes.add(stripeIndex(name));
+        }
+        synchronized (setsLock) {
+            Map<String, VocabularySet> userSets = sets();
+            withStripes(new ArrayList<>(stripeIndexes), 0, () -> commitLocked(batch, names, userSets));
+        }
+    }
+
+    // Stripes are always taken in index order, so two batches can never deadlock.
+    private void withStripes(List<Integer> indexes, int next, Persist action) throws IOException {
+        if (next == indexes.size()) {
+            action.run();
+            return;
+        }
+        synchronized (stripes[indexes.get(next)]) {
+            withStripes(indexes, next + 1, action);
+        }
+    }
+
+    private void commitLocked(WordBatch batch, List<String> names, Map<String, VocabularySet> userSets) throws IOException {
+        Map<String, DeckSnapshot> current = new HashMap<>();
+        Map<String, LinkedHashMap<String, Word>> words = new LinkedHashMap<>();
+        for (String name : names) {
+            DeckSnapshot snapshot = getSnapshot(name);
+            current.put(name, snapshot);
+            words.put(name, new LinkedHashMap<>(snapshot.wordMap()));
+        }
+        Set<String> deleted = new HashSet<>();
+        WordBatch resolved = batch.apply(words, deleted);
+        for (String name : names) {
+            Map<String, Word> before = current.get(name).wordMap();
+            words.get(name).replaceAll((id, word) -> word == before.get(id) ? word : stored(word));
+        }
+        storage.commitBatch(resolved, words, deleted);
+
+        if (!Collections.disjoint(userSets.keySet(), deleted)) {
+            LinkedHashMap<String, VocabularySet> remaining = new LinkedHashMap<>(userSets);
+            remaining.keySet().removeAll(deleted);
+            setCache = Collections.unmodifiableMap(remaining);
+            announceSetChanges(userSets, remaining);
+        }
+        List<DeckMetadata> updated = new ArrayList<>();
+        for (String name : names) {
+            DeckSnapshot previous = current.get(name);
+            LinkedHashMap<String, Word> next = words.get(name);
+            DeckSnapshot snapshot = new DeckSnapshot(name, previous.getVersion() + 1, checksumOf(next.values()),
+                    WordMap.of(next.values()), deleted.contains(name) ? null : changedIds(previous.wordMap(), next));
+            publish(previous, snapshot);
+            if (!deleted.contains(name)) {
+                updated.add(new DeckMetadata(name, snapshot.size(), System.currentTimeMillis(),
+                        snapshot.getVersion(), snapshot.checksum()));
+            }
+        }
+        replaceMetadata(updated, deleted);
+    }
+
+    private interface Edit {
+        // Returns null when there is nothing to change.
+        Change apply(DeckSnapshot current) throws IOException;
+    }
+
+    private interface Persist {
+        void run() throws IOException;
+    }
+
+    private static final class Change {
+        final WordMap words;
+        final long checksum;
+        // Null when the whole set is replaced.
+        final Collection<String> changedIds;
+        final Persist persist;
+
+        Change(WordMap words, long checksum, Collection<String> changedIds, Persist persist) {
+            this.words = words;
+            this.checksum = checksum;
+            this.changedIds = changedIds;
+            this.persist = persist;
+        }
+    }
+
+    private void mutate(String jsonFileName, Edit edit) throws IOException {
+        while (true) {
+            DeckSnapshot current = getSnapshot(jsonFileName);
+            Change change = edit.apply(current);
+            if (change == null) {
+                return;
+            }
+            synchronized (stripe(jsonFileName)) {
+                if (snapshots.get(jsonFileName) != current) {
+                    continue;
+                }
+                commitChange(jsonFileName, current, change);
+                return;
+            }
+        }
+    }
+
+    // Caller holds the set's stripe.
+    private void commitChange(String jsonFileName, DeckSnapshot current, Change change) throws IOException {
+        change.persist.run();
+        DeckSnapshot next = new DeckSnapshot(jsonFileName, current.getVersion() + 1, change.checksum, change.words,
+                change.changedIds);
+        publish(current, next);
+        putMetadata(new DeckMetadata(jsonFileName, next.size(), System.currentTimeMillis(),
+                next.getVersion(), next.checksum()));
+    }
+
+    // Caller holds the set's stripe.
+    private void publish(DeckSnapshot previous, DeckSnapshot next) {
+        snapshots.put(next.getJsonFileName(), next);
+        for (SnapshotListener listener : listeners) {
+            listener.onPublished(previous, next);
+        }
+    }
+
+    // Caller holds the set's stripe.
+    private DeckSnapshot load(String jsonFileName) throws IOException {
+        LinkedHashMap<String, Word> words = new LinkedHashMap<>();
+        for (Word word : storage.readWords(jsonFileName)) {
+            words.put(word.getId(), wordTable.intern(word));
+        }
+        long checksum = checksumOf(words.values());
+        DeckMetadata metadata = metadata().get(jsonFileName);
+        long version = metadata != null ? metadata.getVersion() : 0;
+
+        // The journal append and the metadata write are separate files; if the process died
+        // between them, the words on disk win. Sets from before metadata get their first record.
+        boolean stale = metadata != null
+                ? metadata.getWordCount() != words.size() || metadata.getChecksum() != checksum
+                : !words.isEmpty();
+        if (stale) {
+            version++;
+            putMetadata(new DeckMetadata(jsonFileName, words.size(), System.currentTimeMillis(), version, checksum));
+        }
+        return new DeckSnapshot(jsonFileName, version, checksum, WordMap.of(words.values()), null);
+    }
+
+    private Object stripe(String jsonFileName) {
+        return stripes[stripeIndex(jsonFileName)];
+    }
+
+    private static int stripeIndex(String jsonFileName) {
+        return (jsonFileName.hashCode() & 0x7fffffff) % LOCK_STRIPES;
+    }
+
+    private WordMap index(List<Word> words) {
+        LinkedHashMap<String, Word> indexed = new LinkedHashMap<>();
+        for (Word word : words) {
+            if (word.getId() == null) {
+                word.setId(Word.newId());
+            }
+            indexed.put(word.getId(), stored(word));
+        }
+        return WordMap.of(indexed.values());
+    }
+
+    // The store keeps its own copy of every word, so the caller's object can change freely.
+    private Word stored(Word word) {
+        return new Word(word.getId(), wordTable.intern(word.getContent()));
+    }
+
+    private static List<String> changedIds(Map<String, Word> before, Map<String, Word> after) {
+        List<String> changed = new ArrayList<>();
+        for (Word word : after.values()) {
+            if (before.get(word.getId()) != word) {
+                changed.add(word.getId());
+            }
+        }
+        for (String wordId : before.keySet()) {
+            if (!after.containsKey(wordId)) {
+                changed.add(wordId);
+            }
+        }
+        return changed;
+    }
+
+    private Map<String, DeckMetadata> metadata() throws IOException {
+        Map<String, DeckMetadata> metadata = metadataCache;
+        if (metadata == null) {
+            synchronized (metadataLock) {
+                if (metadataCache == null) {
+                    LinkedHashMap<String, DeckMetadata> all = new LinkedHashMap<>();
+                    for (DeckMetadata record : storage.readMetadata()) {
+                        all.put(record.getJsonFileName(), record);
+                    }
+                    metadataCache = Collections.unmodifiableMap(all);
+                }
+                metadata = metadataCache;
+            }
+        }
+        return metadata;
+    }
+
+    private void replaceMetadata(Collection<DeckMetadata> updated, Set<String> removed) throws IOException {
+        synchronized (metadataLock) {
+            Map<String, DeckMetadata> previous = metadata();
+            Set<String> gone = new HashSet<>(removed);
+            gone.retainAll(previous.keySet());
+            if (updated.isEmpty() && gone.isEmpty()) {
+                return;
+            }
+            LinkedHashMap<String, DeckMetadata> all = new LinkedHashMap<>(previous);
+            all.keySet().removeAll(gone);
+            for (DeckMetadata metadata : updated) {
+                all.put(metadata.getJsonFileName(), metadata);
+            }
+            storage.appendMetadata(updated, gone);
+            metadataCache = Collections.unmodifiableMap(all);
+            // Word counts on screen come from metadata, so they are announced once it is
+            // written: for bundled sets the user added to as well as their own.
+            for (DeckMetadata metadata : updated) {
+                DeckMetadata old = previous.get(metadata.getJsonFileName());
+                if (old == null || old.getWordCount() != metadata.getWordCount()) {
+                    announce(SetChange.Type.WORD_COUNT_CHANGED, metadata.getJsonFileName(), null, metadata.getWordCount());
+                }
+            }
+        }
+    }
+
+    private static long checksumOf(Collection<Word> words) {
+        long checksum = 0;
+        for (Word word : words) {
+            checksum += checksumOf(word);
+        }
+        return checksum;
+    }
+
+    // Summed per-word hashes: order independent, and a single edit adjusts the total
+    // without rehashing the rest of the set. Examples and tips are hashed in stored form so
+    // loading a set decodes none of them.
+    static long checksumOf(Word word) {
+        long hash = 0xcbf29ce484222325L;
+        String[] fields = {word.getId(), word.getEnglish(), word.getVietnamese(), word.getPronunciation()};
+        for (String field : fields) {
+            hash = hash(hash, field != null ? field.getBytes(StandardCharsets.UTF_8) : null);
+        }
+        hash = hash(hash, word.getContent().getCompressedExample().toByteArray());
+        hash = hash(hash, word.getContent().getCompressedMemoryTip().toByteArray());
+        return hash;
+    }
+
+    private static long hash(long hash, byte[] field) {
+        if (field != null) {
+            for (byte b : field) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+        }
+        hash ^= 0xff;
+        return hash * 0x100000001b3L;
+    }
+
+    private Map<String, VocabularySet> sets() throws IOException {
+        Map<String, VocabularySet> sets = setCache;
+        if (sets == null) {
+            synchronized (setsLock) {
+                if (setCache == null) {
+                    LinkedHashMap<String, VocabularySet> loaded = new LinkedHashMap<>();
+                    for (VocabularySet set : storage.readSets()) {
+                        loaded.put(set.getJsonFileName(), set);
+                    }
+                    setCache = Collections.unmodifiableMap(loaded);
+                }
+                sets = setCache;
+            }
+        }
+        return sets;
+    }
+
+    // Caller holds setsLock.
+    private void writeSets(LinkedHashMap<String, VocabularySet> sets) throws IOException {
+        Map<String, VocabularySet> previous = setCache;
+        storage.writeSets(new ArrayList<>(sets.values()));
+        setCache = Collections.unmodifiableMap(sets);
+        // Nobody can have shown sets that were never read.
+        if (previous != null) {
+            announceSetChanges(previous, sets);
+        }
+    }
+
+    private void announceSetChanges(Map<String, VocabularySet> before, Map<String, VocabularySet> after) throws IOException {
+        for (String jsonFileName : before.keySet()) {
+            if (!after.containsKey(jsonFileName)) {
+                announce(SetChange.Type.SET_REMOVED, jsonFileName, null, 0);
+            }
+        }
+        for (VocabularySet set : after.values()) {
+            VocabularySet old = before.get(set.getJsonFileName());
+            if (old == null) {
+                DeckMetadata metadata = metadata().get(set.getJsonFileName());
+                announce(SetChange.Type.SET_ADDED, set.getJsonFileName(), set.getTitle(),
+                        metadata != null ? metadata.getWordCount() : 0);
+            } else if (!Objects.equals(old.getTitle(), set.getTitle())) {
+                announce(SetChange.Type.SET_RENAMED, set.getJsonFileName(), set.getTitle(), 0);
+            }
+        }
+    }
+
+    private void announce(SetChange.Type type, String jsonFileName, String title, int wordCount) {
+        SetChange change = new SetChange(type, changeVersion.incrementAndGet(), jsonFileName, title, wordCount);
+        for (ChangeListener listener : changeListeners) {
+            listener.onChanged(change);
+        }
+    }
+
+    private static VocabularySet copyOf(VocabularySet set) {
+        return new VocabularySet(set.getTitle(), set.getJsonFileName(), set.getWordCount());
+    }
+}
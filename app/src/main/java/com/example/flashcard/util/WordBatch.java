@@ -0,0 +1,211 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Word and set changes that {@link VocabularyStore#commit} applies together: either every
+ * change lands or none does, with one write per touched set.
+ *
+ * <p>Changes apply in the order they were added and name words by ID. Once a batch has been
+ * applied, {@link #apply} hands back an equivalent batch with moves spelled out as deletes
+ * and adds; applying that one again over a partly updated state gives the same result,
+ * which is what lets {@link DeckStorage} finish a commit that was interrupted part-way.
+ */
+public class WordBatch {
+    private static final String OP_ADD = "add";
+    private static final String OP_DELETE = "delete";
+    private static final String OP_MOVE = "move";
+    private static final String OP_DELETE_SET = "deleteSet";
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    public WordBatch addWords(String jsonFileName, Collection<Word> words) {
+        List<Word> added = new ArrayList<>();
+        for (Word word : words) {
+            if (word.getId() == null) {
+                word.setId(Word.newId());
+            }
+            added.add(word);
+        }
+        operations.add(new Operation(OP_ADD, jsonFileName, null, null, added));
+        return this;
+    }
+
+    public WordBatch deleteWords(String jsonFileName, Collection<String> wordIds) {
+        operations.add(new Operation(OP_DELETE, jsonFileName, null, new ArrayList<>(wordIds), null));
+        return this;
+    }
+
+    // Words keep their IDs; IDs not in the source set are skipped.
+    public WordBatch moveWords(String fromFileName, String toFileName, Collection<String> wordIds) {
+        operations.add(new Operation(OP_MOVE, fromFileName, toFileName, new ArrayList<>(wordIds), null));
+        return this;
+    }
+
+    public WordBatch deleteSets(Collection<String> jsonFileNames) {
+        for (String jsonFileName : jsonFileNames) {
+            operations.add(new Operation(OP_DELETE_SET, jsonFileName, null, null, null));
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    Set<String> touchedSets() {
+        Set<String> sets = new LinkedHashSet<>();
+        for (Operation operation : operations) {
+            sets.add(operation.set);
+            if (operation.target != null) {
+                sets.add(operation.target);
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * Applies the batch to the words of every touched set, keyed by set name. Sets the batch
+     * leaves deleted end up in deleted, and are removed from it again if a later change in
+     * the batch adds words back. Returns the batch with every move resolved against sets.
+     */
+    WordBatch apply(Map<String, LinkedHashMap<String, Word>> sets, Set<String> deleted) {
+        WordBatch resolved = new WordBatch();
+        for (Operation operation : operations) {
+            LinkedHashMap<String, Word> words = sets.get(operation.set);
+            switch (operation.op) {
+                case OP_ADD:
+                    for (Word word : operation.words) {
+                        words.put(word.getId(), word);
+                    }
+                    deleted.remove(operation.set);
+                    break;
+                case OP_DELETE:
+                    for (String id : operation.ids) {
+                        words.remove(id);
+                    }
+                    break;
+                case OP_MOVE:
+                    LinkedHashMap<String, Word> target = sets.get(operation.target);
+                    List<String> movedIds = new ArrayList<>();
+                    List<Word> moved = new ArrayList<>();
+                    for (String id : operation.ids) {
+                        Word word = words.remove(id);
+                        if (word != null) {
+                            target.put(id, word);
+                            movedIds.add(id);
+                            moved.add(word);
+                        }
+                    }
+                    deleted.remove(operation.target);
+                    resolved.operations.add(new Operation(OP_DELETE, operation.set, null, movedIds, null));
+                    resolved.operations.add(new Operation(OP_ADD, operation.target, null, null, moved));
+                    continue;
+                case OP_DELETE_SET:
+                    words.clear();
+                    deleted.add(operation.set);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown batch operation " + operation.op);
+            }
+            resolved.operations.add(operation);
+        }
+        return resolved;
+    }
+
+    void write(JsonWriter out) throws IOException {
+        out.beginArray();
+        for (Operation operation : operations) {
+            out.beginObject();
+            out.name("op").value(operation.op);
+            out.name("set").value(operation.set);
+            if (operation.target != null) {
+                out.name("to").value(operation.target);
+            }
+            if (operation.ids != null) {
+                out.name("ids").beginArray();
+                for (String id : operation.ids) {
+                    out.value(id);
+                }
+                out.endArray();
+            }
+            if (operation.words != null) {
+                out.name("words");
+                JsonCodecs.writeList(out, operation.words, JsonCodecs.STORED_WORD);
+            }
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    static WordBatch read(JsonReader in) throws IOException {
+        WordBatch batch = new WordBatch();
+        in.beginArray();
+        while (in.hasNext()) {
+            String op = null;
+            String set = null;
+            String target = null;
+            List<String> ids = null;
+            List<Word> words = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "op":
+                        op = in.nextString();
+                        break;
+                    case "set":
+                        set = in.nextString();
+                        break;
+                    case "to":
+                        target = in.nextString();
+                        break;
+                    case "ids":
+                        ids = new ArrayList<>();
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            ids.add(in.nextString());
+                        }
+                        in.endArray();
+                        break;
+                    case "words":
+                        words = JsonCodecs.readList(in, JsonCodecs.STORED_WORD);
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            batch.operations.add(new Operation(op, set, target, ids, words));
+        }
+        in.endArray();
+        return batch;
+    }
+
+    private static class Operation {
+        final String op;
+        final String set;
+        final String target;
+        final List<String> ids;
+        final List<Word> words;
+
+        Operation(String op, String set, String target, List<String> ids, List<Word> words) {
+            this.op = op;
+            this.set = set;
+            this.target = target;
+            this.ids = ids;
+            this.words = words;
+        }
+    }
+}
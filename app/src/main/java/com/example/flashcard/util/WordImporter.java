@@ -0,0 +1,460 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reads CSV, TSV and Anki plain-text exports one record at a time and hands the words to a
+ * {@link Sink} in fixed-size chunks, so memory stays flat however large the file is. Rows
+ * whose English and Vietnamese match a word already in the deck, or an earlier row, are
+ * skipped.
+ *
+ * <p>Columns are English, Vietnamese, pronunciation, example and memory tip, in that order,
+ * unless a header row or an Anki {@code #columns:} line names them. Fields may be quoted with
+ * double quotes, and quoted fields may span lines.
+ */
+public final class WordImporter {
+
+    public enum Format {
+        CSV(','),
+        TSV('\t'),
+        // Tab-separated unless a "#separator:" header says otherwise.
+        ANKI('\t');
+
+        final char separator;
+
+        Format(char separator) {
+            this.separator = separator;
+        }
+
+        public static Format fromFileName(String fileName) {
+            String name = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".tsv") || name.endsWith(".tab")) {
+                return TSV;
+            }
+            return ANKI;
+        }
+    }
+
+    public interface Sink {
+        void write(List<Word> chunk) throws IOException;
+    }
+
+    public interface ProgressListener {
+        void onProgress(long bytesRead, long totalBytes, int imported);
+    }
+
+    public static final class Result {
+        private final int imported;
+        private final int duplicates;
+        private final int skipped;
+
+        Result(int imported, int duplicates, int skipped) {
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.skipped = skipped;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        /** Rows without both an English and a Vietnamese field. */
+        public int getSkipped() {
+            return skipped;
+        }
+    }
+
+    static final int CHUNK_SIZE = 2_000;
+    private static final int BUFFER_CHARS = 16 * 1024;
+
+    private static final int ENGLISH = 0;
+    private static final int VIETNAMESE = 1;
+    private static final int PRONUNCIATION = 2;
+    private static final int EXAMPLE = 3;
+    private static final int MEMORY_TIP = 4;
+
+    private final Format format;
+    private final Set<String> seen = new HashSet<>();
+    private char separator;
+    private boolean html;
+    // Column index for each field, or -1.
+    private int[] columns = {0, 1, 2, 3, 4};
+    // Anki's guid, notetype, deck and tags columns, which hold no word text.
+    private final Set<Integer> metadataColumns = new HashSet<>();
+
+    /** Rows already in {@code existing} count as duplicates. */
+    public WordImporter(Format format, Iterable<Word> existing) {
+        this.format = format;
+        this.separator = format.separator;
+        for (Word word : existing) {
+            seen.add(key(word.getEnglish(), word.getVietnamese()));
+        }
+    }
+
+    /**
+     * Imports everything in {@code in}, reporting progress after every chunk. Stops with an
+     * {@link InterruptedIOException} if the thread is interrupted; chunks already written
+     * stay written.
+     */
+    public Result importFrom(InputStream in, long totalBytes, Sink sink, ProgressListener progress) throws IOException {
+        CountingInputStream counting = new CountingInputStream(in);
+        CharSource reader = new CharSource(new InputStreamReader(counting, StandardCharsets.UTF_8));
+        if (reader.peek() == '\uFEFF') {
+            reader.read();
+        }
+
+        List<Word> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<String> cells = new ArrayList<>();
+        int imported = 0;
+        int duplicates = 0;
+        int skipped = 0;
+        boolean first = true;
+        while (readRecord(reader, cells)) {
+            if (format == Format.ANKI && first && cells.get(0).startsWith("#")) {
+                readAnkiHeader(String.join(String.valueOf(separator), cells));
+                continue;
+            }
+            if (first) {
+                first = false;
+                if (readHeaderRow(cells, false)) {
+                    continue;
+                }
+            }
+            String english = cell(cells, ENGLISH);
+            String vietnamese = cell(cells, VIETNAMESE);
+            if (english.isEmpty() || vietnamese.isEmpty()) {
+                if (!isBlank(cells)) {
+                    skipped++;
+                }
+                continue;
+            }
+            if (!seen.add(key(english, vietnamese))) {
+                duplicates++;
+                continue;
+            }
+            chunk.add(new Word(english, vietnamese, cell(cells, PRONUNCIATION), cell(cells, EXAMPLE),
+                    cell(cells, MEMORY_TIP)));
+            if (chunk.size() == CHUNK_SIZE) {
+                imported += flush(chunk, sink);
+                progress.onProgress(counting.count, totalBytes, imported);
+            }
+        }
+        imported += flush(chunk, sink);
+        progress.onProgress(counting.count, totalBytes, imported);
+        return new Result(imported, duplicates, skipped);
+    }
+
+    private static int flush(List<Word> chunk, Sink sink) throws IOException {
+        if (Thread.interrupted()) {
+            throw new InterruptedIOException("Import cancelled");
+        }
+        int size = chunk.size();
+        if (size > 0) {
+            sink.write(new ArrayList<>(chunk));
+            chunk.clear();
+        }
+        return size;
+    }
+
+    // One record into cells; false at the end of input. Quoted fields may hold separators,
+    // doubled quotes and line breaks.
+    private boolean readRecord(CharSource reader, List<String> cells) throws IOException {
+        cells.clear();
+        StringBuilder cell = new StringBuilder();
+        int c = reader.read();
+        if (c == -1) {
+            return false;
+        }
+        boolean quoted = false;
+        boolean atCellStart = true;
+        while (c != -1) {
+            char ch = (char) c;
+            if (quoted) {
+                if (ch == '"') {
+                    int next = reader.read();
+                    if (next == '"') {
+                        cell.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    cell.append(ch);
+                }
+            } else if (ch == '"' && atCellStart) {
+                quoted = true;
+                atCellStart = false;
+            } else if (ch == separator) {
+                cells.add(clean(cell));
+                cell.setLength(0);
+                atCellStart = true;
+            } else if (ch == '\n' || ch == '\r') {
+                if (ch == '\r' && reader.peek() == '\n') {
+                    reader.read();
+                }
+                break;
+            } else {
+                cell.append(ch);
+                atCellStart = false;
+            }
+            c = reader.read();
+        }
+        cells.add(clean(cell));
+        return true;
+    }
+
+    // Anki exports start with lines such as "#separator:tab", "#html:true", "#deck column:1"
+    // and "#columns:Deck	Front	Back".
+    private void readAnkiHeader(String line) {
+        int colon = line.indexOf(':');
+        if (colon < 0) {
+            return;
+        }
+        String name = line.substring(1, colon).trim().toLowerCase(Locale.ROOT);
+        String value = line.substring(colon + 1).trim();
+        if (name.endsWith(" column")) {
+            try {
+                metadataColumns.add(Integer.parseInt(value) - 1);
+            } catch (NumberFormatException e) {
+                return;
+            }
+            int[] mapped = new int[columns.length];
+            for (int field = 0, column = 0; field < mapped.length; field++, column++) {
+                while (metadataColumns.contains(column)) {
+                    column++;
+                }
+                mapped[field] = column;
+            }
+            columns = mapped;
+            return;
+        }
+        switch (name) {
+            case "separator":
+                separator = separatorNamed(value);
+                break;
+            case "html":
+                html = value.equalsIgnoreCase("true");
+                break;
+            case "columns":
+                List<String> names = new ArrayList<>();
+                for (String column : value.split(String.valueOf(separator))) {
+                    names.add(column.trim());
+                }
+                readHeaderRow(names, true);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static char separatorNamed(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "comma":
+                return ',';
+            case "semicolon":
+                return ';';
+            case "space":
+                return ' ';
+            case "pipe":
+                return '|';
+            case "tab":
+                return '\t';
+            default:
+                return value.isEmpty() ? '\t' : value.charAt(0);
+        }
+    }
+
+    // True if the row names the columns; the mapping then follows it. Unless lenient, every
+    // non-empty cell must be a known name, so a row like "word,từ" still counts as data.
+    private boolean readHeaderRow(List<String> names, boolean lenient) {
+        int[] mapped = {-1, -1, -1, -1, -1};
+        boolean any = false;
+        for (int i = 0; i < names.size(); i++) {
+            int field = fieldNamed(names.get(i));
+            if (field >= 0 && mapped[field] < 0) {
+                mapped[field] = i;
+                any = true;
+            } else if (field < 0 && !names.get(i).isEmpty() && !lenient) {
+                return false;
+            }
+        }
+        if (!any) {
+            return false;
+        }
+        if (mapped[ENGLISH] < 0 || mapped[VIETNAMESE] < 0) {
+            // Front/back style decks: the first two unnamed columns.
+            for (int i = 0, next = ENGLISH; i < names.size() && next <= VIETNAMESE; i++) {
+                if (!isMapped(mapped, i) && !metadataColumns.contains(i) && !isAnkiMetadata(names.get(i))) {
+                    if (mapped[next] < 0) {
+                        mapped[next] = i;
+                    }
+                    next++;
+                }
+            }
+        }
+        columns = mapped;
+        return true;
+    }
+
+    private static boolean isMapped(int[] mapped, int column) {
+        for (int index : mapped) {
+            if (index == column) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAnkiMetadata(String name) {
+        String folded = FoldedText.fold(name);
+        return folded.equals("guid") || folded.equals("notetype") || folded.equals("deck") || folded.equals("tags");
+    }
+
+    private static int fieldNamed(String name) {
+        String folded = FoldedText.fold(name).replaceAll("[^a-z]", "");
+        switch (folded) {
+            case "english":
+            case "tienganh":
+            case "front":
+            case "word":
+            case "term":
+                return ENGLISH;
+            case "vietnamese":
+            case "tiengviet":
+            case "nghia":
+            case "back":
+            case "meaning":
+            case "definition":
+                return VIETNAMESE;
+            case "pronunciation":
+            case "phienam":
+            case "ipa":
+                return PRONUNCIATION;
+            case "example":
+            case "vidu":
+                return EXAMPLE;
+            case "memorytip":
+            case "tip":
+            case "meoghinho":
+            case "mnemonic":
+                return MEMORY_TIP;
+            default:
+                return -1;
+        }
+    }
+
+    private String cell(List<String> cells, int field) {
+        int column = columns[field];
+        if (column < 0 || column >= cells.size()) {
+            return "";
+        }
+        String value = cells.get(column);
+        return html ? stripHtml(value) : value;
+    }
+
+    private static String clean(StringBuilder cell) {
+        return cell.toString().trim();
+    }
+
+    private static boolean isBlank(List<String> cells) {
+        for (String cell : cells) {
+            if (!cell.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String stripHtml(String value) {
+        if (value.indexOf('<') < 0 && value.indexOf('&') < 0) {
+            return value;
+        }
+        String text = value.replaceAll("(?i)<br\\s*/?>", " ").replaceAll("<[^>]*>", "");
+        text = text.replace("&nbsp;", " ").replace("&lt;", "<").replace("&gt;", ">")
+                .replace("&quot;", "\"").replace("&#39;", "'").replace("&amp;", "&");
+        return text.trim();
+    }
+
+    private static String key(String english, String vietnamese) {
+        return english.trim().toLowerCase(Locale.ROOT) + '\t' + vietnamese.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // An unsynchronized buffered reader; records are parsed a char at a time.
+    private static final class CharSource {
+        private final Reader in;
+        private final char[] buffer = new char[BUFFER_CHARS];
+        private int position;
+        private int limit;
+
+        CharSource(Reader in) {
+            this.in = in;
+        }
+
+        int read() throws IOException {
+            int c = peek();
+            if (c != -1) {
+                position++;
+            }
+            return c;
+        }
+
+        int peek() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
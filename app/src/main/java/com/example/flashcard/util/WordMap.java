@@ -0,0 +1,143 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One set's words by ID, in the order they were added, as a map that is never changed in
+ * place. {@link #with} and {@link #without} return a new map sharing almost everything with
+ * this one, so a snapshot keeps its words while later edits cost O(log n) each instead of a
+ * copy of the deck.
+ *
+ * <p>Two trees back it: word ID to an ever-growing sequence number, and sequence number to
+ * word. Replacing a word keeps its number, and so its place.
+ */
+final class WordMap extends AbstractMap<String, Word> {
+
+    private static final Comparator<Long> BY_SEQUENCE = Long::compare;
+
+    static final WordMap EMPTY = new WordMap(Treap.empty(Comparator.<String>naturalOrder()),
+            Treap.empty(BY_SEQUENCE), 0);
+
+    private final Treap<String, Long> sequences;
+    private final Treap<Long, Word> words;
+    private final long nextSequence;
+
+    private WordMap(Treap<String, Long> sequences, Treap<Long, Word> words, long nextSequence) {
+        this.sequences = sequences;
+        this.words = words;
+        this.nextSequence = nextSequence;
+    }
+
+    /** The words in this order; their IDs must differ. */
+    static WordMap of(Collection<Word> ordered) {
+        List<Word> values = new ArrayList<>(ordered);
+        List<Long> numbers = new ArrayList<>(values.size());
+        List<Integer> byId = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            numbers.add((long) i);
+            byId.add(i);
+        }
+        byId.sort((a, b) -> values.get(a).getId().compareTo(values.get(b).getId()));
+        List<String> ids = new ArrayList<>(values.size());
+        List<Long> idNumbers = new ArrayList<>(values.size());
+        for (int i : byId) {
+            ids.add(values.get(i).getId());
+            idNumbers.add((long) i);
+        }
+        return new WordMap(Treap.ofSorted(Comparator.<String>naturalOrder(), ids, idNumbers),
+                Treap.ofSorted(BY_SEQUENCE, numbers, values), values.size());
+    }
+
+    /** This map with the word added at the end, or put in place of the one with its ID. */
+    WordMap with(Word word) {
+        Long sequence = sequences.get(word.getId());
+        if (sequence != null) {
+            return new WordMap(sequences, words.put(sequence, word), nextSequence);
+        }
+        return new WordMap(sequences.put(word.getId(), nextSequence), words.put(nextSequence, word),
+                nextSequence + 1);
+    }
+
+    WordMap without(String wordId) {
+        Long sequence = sequences.get(wordId);
+        if (sequence == null) {
+            return this;
+        }
+        return new WordMap(sequences.remove(wordId), words.remove(sequence), nextSequence);
+    }
+
+    /** The word's position in added order, or -1. */
+    int indexOf(String wordId) {
+        Long sequence = sequences.get(wordId);
+        return sequence != null ? words.indexOf(sequence) : -1;
+    }
+
+    Word wordAt(int position) {
+        return words.valueAt(position);
+    }
+
+    /** The words in added order, as a list that later edits do not change. */
+    List<Word> words() {
+        return words.values();
+    }
+
+    @Override
+    public Word get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        Long sequence = sequences.get((String) key);
+        return sequence != null ? words.get(sequence) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && sequences.containsKey((String) key);
+    }
+
+    @Override
+    public int size() {
+        return words.size();
+    }
+
+    @Override
+    public Collection<Word> values() {
+        return words.values();
+    }
+
+    @Override
+    public Set<Entry<String, Word>> entrySet() {
+        return new AbstractSet<Entry<String, Word>>() {
+            @Override
+            public Iterator<Entry<String, Word>> iterator() {
+                Iterator<Word> values = words.values().iterator();
+                return new Iterator<Entry<String, Word>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return values.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Word> next() {
+                        Word word = values.next();
+                        return new SimpleImmutableEntry<>(word.getId(), word);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return words.size();
+            }
+        };
+    }
+}
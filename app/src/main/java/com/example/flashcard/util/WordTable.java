@@ -0,0 +1,46 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+import com.example.flashcard.model.WordContent;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Process-wide table of word contents. Every deck loaded through the store or from the
+ * bundled assets points into it, so an entry that appears in several decks is held in
+ * memory once. Contents no deck references any more are dropped by the garbage collector.
+ */
+public final class WordTable {
+
+    private static final WordTable SHARED = new WordTable();
+
+    private final Map<WordContent, WeakReference<WordContent>> contents = new WeakHashMap<>();
+
+    WordTable() {
+    }
+
+    public static WordTable shared() {
+        return SHARED;
+    }
+
+    public synchronized WordContent intern(WordContent content) {
+        WeakReference<WordContent> existing = contents.get(content);
+        WordContent shared = existing != null ? existing.get() : null;
+        if (shared == null) {
+            contents.put(content, new WeakReference<>(content));
+            shared = content;
+        }
+        return shared;
+    }
+
+    public Word intern(Word word) {
+        word.setContent(intern(word.getContent()));
+        return word;
+    }
+
+    public synchronized int size() {
+        return contents.size();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.flashcard.model;
+
+import com.example.flashcard.util.Benchmark;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class CompressedTextTest {
+
+    // Shaped like generateVocabulary output: an English example and a Vietnamese tip per word.
+    static final String[][] GENERATED = {
+            {"The goalkeeper made an incredible save in the last minute of the match.",
+                    "Goal (khung thành) + keeper (người giữ) = người giữ khung thành. Hãy tưởng tượng thủ môn đứng chắn trước cầu môn!"},
+            {"She always checks the weather forecast before going hiking in the mountains.",
+                    "Fore (trước) + cast (ném ra) - dự báo là \"ném\" thông tin ra trước khi chuyện xảy ra."},
+            {"My grandmother grows tomatoes and herbs in her small backyard garden.",
+                    "Nghe giống \"ga-đần\" - hãy tưởng tượng một khu vườn nhỏ cạnh nhà ga đầy hoa."},
+            {"The students were excited about the field trip to the science museum.",
+                    "Mu-zi-ầm: tưởng tượng bạn nghe tiếng nhạc \"mu-zic\" vang lên trong bảo tàng."},
+            {"He apologized to his teammates for missing the penalty kick.",
+                    "Penalty nghe giống \"phê-nồ-ti\" - bị phạt nên phê bình cả đội. Nhớ: phạt đền!"},
+            {"Regular exercise can improve both your physical and mental health.",
+                    "Exercise bắt đầu bằng \"ex\" như \"xịt\" mồ hôi khi tập thể dục. Tập đều đặn mỗi ngày nhé!"},
+            {"The chef recommended the grilled salmon with lemon butter sauce.",
+                    "Chef đọc là \"sép\" - giống như \"sếp\" trong nhà bếp. Đầu bếp chính là sếp của căn bếp!"},
+            {"We should reduce plastic waste to protect the ocean and marine life.",
+                    "Waste nghe như \"guết\" - hãy tưởng tượng bạn \"quét\" rác thải nhựa khỏi bãi biển."},
+            {"The architect designed a modern building with large glass windows.",
+                    "Archi (chính) + tect (xây dựng) = người xây dựng chính, tức là kiến trúc sư."},
+            {"Could you please turn down the music? The baby is sleeping.",
+                    "Turn down = vặn xuống. Tưởng tượng bạn vặn nút âm lượng xuống thấp để em bé ngủ ngon."},
+            {"The detective found an important clue hidden under the carpet.",
+                    "Clue đọc là \"cờ-lu\" - như cái \"cờ\" nhỏ đánh dấu manh mối trong truyện trinh thám."},
+            {"Our flight was delayed for three hours because of the storm.",
+                    "Delay nghe như \"đi lê\" - đi lê thê chậm chạp nên bị trễ giờ. Nhớ: trì hoãn."},
+            {"Many tourists visit Ha Long Bay to admire its limestone islands.",
+                    "Tourist = tour (chuyến đi) + ist (người). Người đi tour chính là khách du lịch."},
+            {"The nurse gently cleaned the wound and put on a fresh bandage.",
+                    "Wound đọc là \"wun\" - khác với wound (quá khứ của wind). Vết thương cần được băng cẩn thận."},
+            {"He was nervous before his first job interview at the bank.",
+                    "Inter (giữa) + view (nhìn) = hai người nhìn nhau trao đổi, chính là buổi phỏng vấn."},
+            {"The film's soundtrack became more famous than the movie itself.",
+                    "Sound (âm thanh) + track (đường ray) - nhạc chạy song song với phim như đường ray vậy."},
+            {"Remember to recycle your glass bottles in the green bin.",
+                    "Re (lại) + cycle (vòng) = đưa trở lại vòng tuần hoàn. Tái chế để bảo vệ môi trường!"},
+            {"The referee showed a red card to the defender after the foul.",
+                    "Referee nghe giống \"ref-phơ-ri\" - người \"phơi\" thẻ phạt ra trước mặt cầu thủ. Trọng tài!"},
+            {"Vegetables such as broccoli and spinach are rich in vitamins.",
+                    "Vegetable - hãy nhớ chữ \"veg\" như \"vẹt\" màu xanh lá, giống màu của rau củ."},
+            {"The volunteers planted two hundred trees along the riverbank.",
+                    "Volunteer: vô-lần-tia - vô số lần tình nguyện giúp đỡ người khác mà không cần trả công."},
+            {"I usually take the bus to work, but today I rode my bicycle.",
+                    "Bi (hai) + cycle (bánh xe) = xe có hai bánh, chính là xe đạp."},
+            {"The museum guide explained the history of each painting in detail.",
+                    "Guide nghe như \"gai\" - người hướng dẫn dẫn bạn đi qua những con đường đầy gai."},
+            {"She felt dizzy after spinning around on the playground.",
+                    "Dizzy đọc là \"đi-zi\" - đi zích zắc nên bị chóng mặt. Dễ nhớ phải không nào?"},
+            {"The company plans to hire more engineers next year.",
+                    "Hire nghe giống \"hai-ơ\" - thuê thêm hai người nữa. Hire = thuê, tuyển dụng."},
+            {"He keeps his passport and tickets in a waterproof bag.",
+                    "Pass (đi qua) + port (cảng) = giấy tờ giúp bạn đi qua cửa khẩu. Hộ chiếu!"},
+            {"Drinking enough water helps prevent headaches in hot weather.",
+                    "Head (đầu) + ache (đau) = đau đầu. Ache đọc là \"ây-k\" như tiếng kêu \"ây\" khi đau."},
+            {"The audience applauded loudly at the end of the concert.",
+                    "Audi (nghe) + ence (những người) = những người nghe, tức là khán giả."},
+            {"Please fasten your seat belt before the plane takes off.",
+                    "Fasten đọc là \"phát-sần\", chữ t câm. Thắt nhanh (fast) dây an toàn trước khi cất cánh!"},
+            {"Our teacher gave us a lot of homework over the weekend.",
+                    "Home (nhà) + work (công việc) = công việc làm ở nhà, chính là bài tập về nhà."},
+            {"The pharmacist told me to take the medicine twice a day after meals.",
+                    "Pharmacy nghe giống \"pha-ma-xi\" - nơi pha thuốc. Pharmacist là dược sĩ ở hiệu thuốc."},
+    };
+
+    @Test
+    public void roundTripsEveryShape() {
+        String[] samples = {"", "a", "Short tip.", GENERATED[0][0], GENERATED[0][1],
+                "Tiếng Việt có dấu: ă â đ ê ô ơ ư – “ngoặc kép” 😀", repeat("lặp lại ", 500)};
+        for (String sample : samples) {
+            CompressedText text = CompressedText.of(sample);
+            assertEquals(sample, text.getText());
+            assertEquals(sample.getBytes(StandardCharsets.UTF_8).length, text.textSize());
+            assertEquals(text, CompressedText.fromByteArray(text.toByteArray()));
+            byte[] padded = new byte[text.size() + 6];
+            text.copyTo(padded, 3);
+            assertEquals(sample, CompressedText.decode(padded, 3, text.size()));
+        }
+        assertSame(CompressedText.EMPTY, CompressedText.of(null));
+        assertTrue(CompressedText.of(repeat("lặp lại ", 500)).isCompressed());
+        assertFalse(CompressedText.of("Short tip.").isCompressed());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownFormat() {
+        CompressedText.fromByteArray(new byte[]{9, 1, 65});
+    }
+
+    // The ratio is fixed by the dictionary, so it is asserted: on this sample about 1.26x for
+    // examples and 1.54x for tips against their UTF-8 size.
+    @Test
+    public void compressesGeneratedFields() {
+        int[] minimumPercent = {120, 145};
+        for (int field = 0; field < 2; field++) {
+            long utf8 = 0;
+            long stored = 0;
+            for (String[] generated : GENERATED) {
+                String text = generated[field];
+                utf8 += text.getBytes(StandardCharsets.UTF_8).length;
+                stored += CompressedText.of(text).size();
+            }
+            assertTrue("field " + field + ": " + utf8 + " B -> " + stored + " B",
+                    utf8 * 100 >= stored * minimumPercent[field]);
+        }
+    }
+
+    // Prints the decode cost per field and the String payload it replaces.
+    @Test
+    @Category(Benchmark.class)
+    public void reportsDecodeLatency() {
+        String[] names = {"example", "memoryTip"};
+        for (int field = 0; field < 2; field++) {
+            long heap = 0;
+            CompressedText[] texts = new CompressedText[GENERATED.length];
+            for (int i = 0; i < GENERATED.length; i++) {
+                String text = GENERATED[i][field];
+                texts[i] = CompressedText.of(text);
+                heap += stringBytes(text);
+            }
+
+            int rounds = 2_000;
+            for (int r = 0; r < rounds; r++) {
+                for (CompressedText text : texts) {
+                    text.getText();
+                }
+            }
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (CompressedText text : texts) {
+                    text.getText();
+                }
+            }
+            long perDecode = (System.nanoTime() - start) / ((long) rounds * texts.length);
+
+            System.out.println(names[field] + ": " + GENERATED.length + " texts, String payload " + heap
+                    + " B, decode " + perDecode + " ns/text");
+        }
+    }
+
+    // Compact strings: one byte per char when every char fits Latin-1, two otherwise.
+    private static long stringBytes(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xff) {
+                return text.length() * 2L;
+            }
+        }
+        return text.length();
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AssetPackTest {
+
+    @Test
+    public void readsCountsAndWordsInPlace() throws IOException {
+        Map<String, List<String[]>> decks = new LinkedHashMap<>();
+        decks.put("food.json", Arrays.asList(
+                new String[]{"Apple", "Quả táo", "/ˈæp.əl/", "", ""},
+                new String[]{"Bread", "Bánh mì", "/bred/", "Fresh bread.", "Bread - bánh"}));
+        decks.put("jobs.json", Arrays.<String[]>asList(
+                new String[]{"Baker", "Thợ làm bánh", "/ˈbeɪ.kər/", "", ""}));
+
+        AssetPack pack = new AssetPack(ByteBuffer.wrap(pack(decks)));
+
+        assertEquals(2, pack.getWordCount("food.json"));
+        assertEquals(1, pack.getWordCount(" jobs.json"));
+        assertEquals(-1, pack.getWordCount("house.json"));
+        assertFalse(pack.hasDeck("house.json"));
+
+        List<Word> food = pack.getWords("food.json", "asset:food.json#");
+        assertEquals(2, food.size());
+        assertEquals("asset:food.json#1", food.get(1).getId());
+        assertEquals("Bánh mì", food.get(1).getVietnamese());
+        assertEquals("Bread - bánh", food.get(1).getMemoryTip());
+        assertEquals("", food.get(0).getExample());
+
+        Word baker = pack.getWord("jobs.json", 0, "asset:jobs.json#0");
+        assertEquals("Baker", baker.getEnglish());
+        assertNull(pack.getWord("jobs.json", 1, "asset:jobs.json#1"));
+    }
+
+    @Test
+    public void buildsColumnsWithoutWordObjects() throws IOException {
+        Map<String, List<String[]>> decks = new LinkedHashMap<>();
+        decks.put("food.json", Arrays.asList(
+                new String[]{"Apple", "Quả táo", "/ˈæp.əl/", "", ""},
+                new String[]{"Bread", "Bánh mì", "/bred/", "Fresh bread.", "Bread - bánh"}));
+        AssetPack pack = new AssetPack(ByteBuffer.wrap(pack(decks)));
+
+        ColumnarDeck.Builder builder = new ColumnarDeck.Builder();
+        assertTrue(pack.appendTo("food.json", "asset:food.json#", builder));
+        assertFalse(pack.appendTo("house.json", "asset:house.json#", builder));
+        ColumnarDeck deck = builder.build();
+
+        assertEquals(2, deck.size());
+        assertEquals("asset:food.json#1", deck.getId(1));
+        assertEquals("Bánh mì", deck.getVietnamese(1));
+        assertEquals("Fresh bread.", deck.getExample(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        new AssetPack(ByteBuffer.wrap("[{\"english\":\"Apple\"}]".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Same layout the compileAssetPack Gradle task writes.
+    static byte[] pack(Map<String, List<String[]>> decks) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        List<Integer> names = new ArrayList<>();
+        List<List<int[]>> tables = new ArrayList<>();
+        for (Map.Entry<String, List<String[]>> deck : decks.entrySet()) {
+            names.add(intern(strings, deck.getKey()));
+            List<int[]> table = new ArrayList<>();
+            for (String[] word : deck.getValue()) {
+                int[] row = new int[AssetPack.FIELD_COUNT];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = intern(strings, word[i]);
+                }
+                table.add(row);
+            }
+            tables.add(table);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int position = AssetPack.HEADER_SIZE + decks.size() * AssetPack.DIRECTORY_ENTRY_SIZE;
+        int[] tableOffsets = new int[tables.size()];
+        for (int i = 0; i < tables.size(); i++) {
+            tableOffsets[i] = position;
+            position += tables.get(i).size() * AssetPack.FIELD_COUNT * 4;
+        }
+        out.writeInt(AssetPack.MAGIC);
+        out.writeInt(AssetPack.FORMAT_VERSION);
+        out.writeInt(decks.size());
+        out.writeInt(strings.size());
+        out.writeInt(position);
+        for (int i = 0; i < tables.size(); i++) {
+            out.writeInt(names.get(i));
+            out.writeInt(tables.get(i).size());
+            out.writeInt(tableOffsets[i]);
+        }
+        for (List<int[]> table : tables) {
+            for (int[] row : table) {
+                for (int index : row) {
+                    out.writeInt(index);
+                }
+            }
+        }
+        List<byte[]> encoded = new ArrayList<>();
+        for (String value : strings.keySet()) {
+            encoded.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] value : encoded) {
+            offset += value.length;
+            out.writeInt(offset);
+        }
+        for (byte[] value : encoded) {
+            out.write(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int intern(Map<String, Integer> strings, String value) {
+        Integer index = strings.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.put(value, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.flashcard.util;
+
+/**
+ * JUnit category for timing runs that print figures rather than assert them. The unit test
+ * task leaves them out; run them with {@code ./gradlew testDebugUnitTest -Pbenchmarks}.
+ */
+public interface Benchmark {
+}
@@ -0,0 +1,142 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CollatedOrderTest {
+
+    @Test
+    public void sortsVietnameseByItsAlphabet() {
+        CollatedOrder order = new CollatedOrder(CollatedOrder.Mode.VIETNAMESE);
+        order.addAll(Arrays.asList(
+                new Word("4", "", "em", "", "", ""),
+                new Word("3", "", "đi", "", "", ""),
+                new Word("2", "", "dù", "", "", ""),
+                new Word("1", "", "ăn", "", "", ""),
+                new Word("0", "", "an", "", "", "")));
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4"), order.wordIds());
+    }
+
+    @Test
+    public void placesAddedEditedAndRemovedWords() {
+        CollatedOrder order = new CollatedOrder(CollatedOrder.Mode.ENGLISH);
+        order.addAll(Arrays.asList(
+                new Word("c", "Cherry", "", "", "", ""),
+                new Word("a", "apple", "", "", "", "")));
+
+        List<String> before = order.wordIds();
+        order.put(new Word("b", "Banana", "", "", "", ""));
+        assertEquals(Arrays.asList("a", "b", "c"), order.wordIds());
+        // An order handed out earlier is left as it was, for a reader on another thread.
+        assertEquals(Arrays.asList("a", "c"), before);
+
+        order.put(new Word("a", "Zucchini", "", "", "", ""));
+        assertEquals(Arrays.asList("b", "c", "a"), order.wordIds());
+        assertEquals(2, order.indexOf("a"));
+
+        order.remove("c");
+        order.remove("missing");
+        assertEquals(Arrays.asList("b", "a"), order.wordIds());
+        assertEquals(-1, order.indexOf("c"));
+    }
+
+    @Test
+    public void reorderedDeckFollowsTheIds() {
+        ColumnarDeck deck = ColumnarDeck.of(Arrays.asList(
+                new Word("1", "One", "Một", "", "", ""),
+                new Word("2", "Two", "Hai", "", "", ""),
+                new Word("3", "Three", "Ba", "", "", "")));
+        ColumnarDeck sorted = deck.reordered(Arrays.asList("3", "gone", "1", "2"));
+        assertEquals(3, sorted.size());
+        assertEquals("Ba", sorted.getVietnamese(0));
+        assertEquals("Two", sorted.getEnglish(2));
+        assertEquals("One", deck.getEnglish(0));
+    }
+
+    // Cached keys and single inserts must land every word where the collator itself puts it.
+    @Test
+    public void matchesTheCollatorAcrossManyWordsAndInserts() {
+        List<Word> words = randomWords(20_000);
+        CollatedOrder order = new CollatedOrder(CollatedOrder.Mode.VIETNAMESE);
+        order.addAll(words.subList(0, 19_000));
+        for (Word word : words.subList(19_000, words.size())) {
+            order.put(word);
+        }
+
+        Collator collator = Collator.getInstance(new Locale("vi", "VN"));
+        List<Word> expected = new ArrayList<>(words);
+        expected.sort((a, b) -> {
+            int byText = collator.compare(a.getVietnamese(), b.getVietnamese());
+            return byText != 0 ? byText : a.getId().compareTo(b.getId());
+        });
+        List<String> expectedIds = new ArrayList<>();
+        for (Word word : expected) {
+            expectedIds.add(word.getId());
+        }
+        assertEquals(expectedIds, new ArrayList<>(order.wordIds()));
+        assertEquals(12_345, order.wordIds().indexOf(expectedIds.get(12_345)));
+    }
+
+    // Compares sorting with a Collator comparator against cached keys, and one binary insert
+    // against re-sorting.
+    @Test
+    @Category(Benchmark.class)
+    public void reportsSortAndInsertCost() {
+        List<Word> words = randomWords(20_000);
+        Collator collator = Collator.getInstance(new Locale("vi", "VN"));
+
+        long comparator = 0;
+        long keyed = 0;
+        long insert = 0;
+        int rounds = 5;
+        for (int round = 0; round <= rounds; round++) {
+            List<Word> copy = new ArrayList<>(words);
+            long start = System.nanoTime();
+            copy.sort((a, b) -> collator.compare(a.getVietnamese(), b.getVietnamese()));
+            long comparatorTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            CollatedOrder order = new CollatedOrder(CollatedOrder.Mode.VIETNAMESE);
+            order.addAll(words);
+            long keyedTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            order.put(new Word("new", "", "giữa chừng", "", "", ""));
+            long insertTime = System.nanoTime() - start;
+
+            if (round > 0) {
+                comparator += comparatorTime;
+                keyed += keyedTime;
+                insert += insertTime;
+            }
+            assertEquals(words.size() + 1, order.size());
+        }
+        System.out.println("sort 20k words: Collator comparator=" + comparator / rounds / 1000 + "us, cached keys="
+                + keyed / rounds / 1000 + "us; one insert=" + insert / rounds / 1000 + "us");
+    }
+
+    private static List<Word> randomWords(int count) {
+        Random random = new Random(3);
+        String letters = "aăâbcdđeêghiklmnoôơpqrstuưvxy";
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int c = 0, length = 3 + random.nextInt(10); c < length; c++) {
+                text.append(letters.charAt(random.nextInt(letters.length())));
+            }
+            words.add(new Word("w" + i, "", text.toString(), "", "", ""));
+        }
+        return words;
+    }
+}
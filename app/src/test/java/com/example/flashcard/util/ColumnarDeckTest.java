@@ -0,0 +1,134 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ColumnarDeckTest {
+
+    @Test
+    public void readsBackWhatWasAdded() {
+        List<Word> words = new ArrayList<>();
+        words.add(new Word("w1", "apple", "quả táo", "/ˈæp.əl/", "An apple a day.", ""));
+        words.add(new Word("w2", "cat", "con mèo", "", "", "Cat - mèo"));
+        ColumnarDeck deck = ColumnarDeck.of(words);
+
+        assertEquals(2, deck.size());
+        assertEquals("w1", deck.getId(0));
+        assertEquals("quả táo", deck.getVietnamese(0));
+        assertEquals("An apple a day.", deck.getExample(0));
+        assertTrue(deck.hasPronunciation(0));
+        assertFalse(deck.hasPronunciation(1));
+        assertEquals("", deck.getPronunciation(1));
+        assertEquals("Cat - mèo", deck.getMemoryTip(1));
+        assertEquals(1, deck.indexOf("w2"));
+        assertEquals(-1, deck.indexOf("w3"));
+        assertEquals("cat", deck.getWord(1).getEnglish());
+    }
+
+    @Test
+    public void shuffledCopiesKeepEveryRowAndLeaveTheOriginal() {
+        ColumnarDeck deck = ColumnarDeck.of(words(100));
+        ColumnarDeck shuffled = deck.copy();
+        shuffled.shuffle(new Random(7));
+
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < shuffled.size(); i++) {
+            assertTrue(ids.add(shuffled.getId(i)));
+            assertEquals(shuffled.getId(i).replace("id", "word"), shuffled.getEnglish(i));
+        }
+        assertEquals(100, ids.size());
+        assertEquals("id0", deck.getId(0));
+        assertEquals("id99", deck.getId(99));
+    }
+
+    // Prints retained heap and collector activity for a 100k-word deck held as a list of
+    // words and as a columnar deck, each shuffled and scrolled through; too noisy to assert.
+    @Test
+    @Category(Benchmark.class)
+    public void reportsHeapAndGcForLargeDeck() {
+        int count = 100_000;
+        Random random = new Random(42);
+
+        long heapBefore = usedHeap();
+        long gcBefore = gcCount();
+        List<Word> list = words(count);
+        Collections.shuffle(list, random);
+        long listChars = 0;
+        for (int pass = 0; pass < 5; pass++) {
+            for (Word word : list) {
+                listChars += bind(word.getEnglish(), word.getVietnamese(), word.getPronunciation());
+            }
+        }
+        long listGc = gcCount() - gcBefore;
+        long listBytes = usedHeap() - heapBefore;
+        assertEquals(count, list.size());
+        list = null;
+
+        // Built straight from the fields, as a pack or snapshot feeds it, without a Word per row.
+        heapBefore = usedHeap();
+        gcBefore = gcCount();
+        ColumnarDeck.Builder builder = new ColumnarDeck.Builder();
+        for (int i = 0; i < count; i++) {
+            builder.add("id" + i, "word" + i, "từ " + i, "/wɜːd/", "Example sentence " + i + ".",
+                    i % 3 == 0 ? "tip " + i : "");
+        }
+        ColumnarDeck deck = builder.build();
+        builder = null;
+        deck.shuffle(random);
+        long deckChars = 0;
+        for (int pass = 0; pass < 5; pass++) {
+            for (int i = 0; i < deck.size(); i++) {
+                deckChars += bind(deck.getEnglish(i), deck.getVietnamese(i), deck.getPronunciation(i));
+            }
+        }
+        long deckGc = gcCount() - gcBefore;
+        long deckBytes = usedHeap() - heapBefore;
+
+        System.out.println("100k words: List<Word> ~" + listBytes / count + " B/word, " + listGc
+                + " GCs; ColumnarDeck ~" + deckBytes / count + " B/word, " + deckGc + " GCs");
+        assertEquals(count, deck.size());
+        assertEquals(listChars, deckChars);
+    }
+
+    private static int bind(String english, String vietnamese, String pronunciation) {
+        return english.length() + vietnamese.length() + pronunciation.length();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static List<Word> words(int count) {
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            words.add(new Word("id" + i, "word" + i, "từ " + i, "/wɜːd/", "Example sentence " + i + ".",
+                    i % 3 == 0 ? "tip " + i : ""));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.flashcard.util;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class ContentPacksTest {
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer http;
+    private String catalogUrl;
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("packs").toFile();
+        http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Static file server: the ETag is the content hash, and a matching If-None-Match gets 304.
+        http.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = files.get(path);
+            String etag = body != null ? "\"" + sha256(body) + "\"" : null;
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            requests.add(path + (etag != null && etag.equals(ifNoneMatch) ? " 304" : ""));
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (etag.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        http.start();
+        catalogUrl = "http://127.0.0.1:" + http.getAddress().getPort() + "/content/catalog.json";
+    }
+
+    @After
+    public void tearDown() {
+        http.stop(0);
+        delete(dir);
+    }
+
+    @Test
+    public void unchangedCatalogCostsOneNotModified() throws IOException {
+        publish(pack("ielts", 1, "ielts_travel.json", "Journey"), pack("toeic", 1, "toeic_office.json", "Desk"));
+        ContentPacks packs = new ContentPacks(dir);
+
+        ContentPacks.Result first = packs.refresh(catalogUrl, ContentPacksTest::get);
+        assertEquals(2, first.getPacksDownloaded());
+        assertEquals(2, packs.getDecks().size());
+
+        requests.clear();
+        ContentPacks.Result second = packs.refresh(catalogUrl, ContentPacksTest::get);
+        assertFalse(second.isCatalogChanged());
+        assertEquals(0, second.getBytesDownloaded());
+        assertEquals(Collections.singletonList("/content/catalog.json 304"), requests);
+
+        // A new version of one pack downloads only that pack.
+        requests.clear();
+        publish(pack("ielts", 2, "ielts_travel.json", "Voyage"), pack("toeic", 1, "toeic_office.json", "Desk"));
+        ContentPacks.Result third = packs.refresh(catalogUrl, ContentPacksTest::get);
+        assertEquals(1, third.getPacksDownloaded());
+        assertEquals(Arrays.asList("/content/catalog.json", "/content/ielts-2.pack"), requests);
+        assertEquals("Voyage", packs.packFor("ielts_travel.json").getWord("ielts_travel.json", 0, "x").getEnglish());
+        assertEquals(2, dir.list((d, name) -> name.endsWith(".pack")).length);
+    }
+
+    @Test
+    public void packWithWrongHashKeepsInstalledCopy() throws IOException {
+        publish(pack("ielts", 1, "ielts_travel.json", "Journey"));
+        ContentPacks packs = new ContentPacks(dir);
+        packs.refresh(catalogUrl, ContentPacksTest::get);
+
+        publish(pack("ielts", 2, "ielts_travel.json", "Voyage"));
+        files.put("/content/ielts-2.pack", pack("ielts", 2, "ielts_travel.json", "Tampered").bytes);
+        ContentPacks.Result result = packs.refresh(catalogUrl, ContentPacksTest::get);
+        assertEquals(1, result.getPacksFailed());
+        assertEquals("Journey", packs.packFor("ielts_travel.json").getWord("ielts_travel.json", 0, "x").getEnglish());
+
+        // The catalog ETag was not kept, so the next refresh tries again.
+        publish(pack("ielts", 2, "ielts_travel.json", "Voyage"));
+        assertEquals(1, packs.refresh(catalogUrl, ContentPacksTest::get).getPacksDownloaded());
+        assertEquals("Voyage", packs.packFor("ielts_travel.json").getWord("ielts_travel.json", 0, "x").getEnglish());
+    }
+
+    @Test
+    public void packsOpenOnlyWhenADeckIsRead() throws IOException {
+        publish(pack("ielts", 1, "ielts_travel.json", "Journey"), pack("toeic", 1, "toeic_office.json", "Desk"));
+        new ContentPacks(dir).refresh(catalogUrl, ContentPacksTest::get);
+
+        ContentPacks restarted = new ContentPacks(dir);
+        assertEquals("Tiêu đề ielts", restarted.getDecks().get(0).getTitle());
+        assertTrue(restarted.hasDeck("toeic_office.json"));
+        assertEquals(0, restarted.openedCount());
+
+        assertEquals(1, restarted.packFor("toeic_office.json").getWordCount("toeic_office.json"));
+        assertEquals(1, restarted.openedCount());
+        assertNull(restarted.packFor("house.json"));
+    }
+
+    @Test
+    public void catalogWithABadHashIsRefusedBeforeAnyDownload() throws IOException {
+        publish(pack("ielts", 1, "ielts_travel.json", "Journey"));
+        String catalog = new String(files.get("/content/catalog.json"), StandardCharsets.UTF_8);
+        files.put("/content/catalog.json", catalog.replaceAll("\"sha256\": \"[0-9a-f]+\"",
+                "\"sha256\": \"../../outside/0123456789abcdef\"").getBytes(StandardCharsets.UTF_8));
+        requests.clear();
+
+        try {
+            new ContentPacks(dir).refresh(catalogUrl, ContentPacksTest::get);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(Collections.singletonList("/content/catalog.json"), requests);
+        assertFalse(new File(dir.getParentFile(), "outside").exists());
+    }
+
+    private static final class Published {
+        final String id;
+        final int version;
+        final String deck;
+        final byte[] bytes;
+
+        Published(String id, int version, String deck, byte[] bytes) {
+            this.id = id;
+            this.version = version;
+            this.deck = deck;
+            this.bytes = bytes;
+        }
+    }
+
+    private static Published pack(String id, int version, String deck, String english) throws IOException {
+        Map<String, List<String[]>> decks = new LinkedHashMap<>();
+        decks.put(deck, Collections.singletonList(new String[]{english, "nghĩa", "", "", ""}));
+        return new Published(id, version, deck, AssetPackTest.pack(decks));
+    }
+
+    private void publish(Published... packs) {
+        StringBuilder catalog = new StringBuilder("{\"packs\": [");
+        for (int i = 0; i < packs.length; i++) {
+            Published pack = packs[i];
+            String name = pack.id + "-" + pack.version + ".pack";
+            files.put("/content/" + name, pack.bytes);
+            catalog.append(i > 0 ? "," : "")
+                    .append("{\"id\": \"").append(pack.id).append("\", \"version\": ").append(pack.version)
+                    .append(", \"sha256\": \"").append(sha256(pack.bytes)).append("\", \"url\": \"").append(name)
+                    .append("\", \"decks\": [{\"file\": \"").append(pack.deck)
+                    .append("\", \"title\": \"Tiêu đề ").append(pack.id).append("\"}]}");
+        }
+        files.put("/content/catalog.json", catalog.append("]}").toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ContentPacks.Response get(String url, String etag) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        int status = connection.getResponseCode();
+        if (status == 304) {
+            connection.disconnect();
+            return null;
+        }
+        if (status != 200) {
+            throw new IOException("HTTP " + status + " for " + url);
+        }
+        InputStream body = connection.getInputStream();
+        return new ContentPacks.Response() {
+            @Override
+            public String getEtag() {
+                return connection.getHeaderField("ETag");
+            }
+
+            @Override
+            public InputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public void close() throws IOException {
+                body.close();
+            }
+        };
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return ContentPacks.hex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DeckBackupTest {
+
+    private File root;
+    private VocabularyStore store;
+    private DeckBackup backup;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("backup").toFile();
+        store = new VocabularyStore(new DeckStorage(new File(root, "decks")));
+        backup = new DeckBackup(store, new File(root, "backups"));
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    @Test
+    public void restoresSetsAndWords() throws IOException {
+        store.addVocabularySet(new VocabularySet("Động vật", "user_1.json", 0));
+        store.saveWordsForSet("user_1.json", words(300, 0));
+        store.addWordToSet("Food.json", new Word("Rice", "Cơm", "/raɪs/", "Rice with fish sauce.", ""));
+        String first = backup.backup().getSnapshot();
+
+        store.deleteWordFromSet("user_1.json", store.getWordsForSet("user_1.json").get(0).getId());
+        store.addVocabularySet(new VocabularySet("Tạm", "user_2.json", 0));
+        store.addWordToSet("user_2.json", new Word("Temp", "Tạm", ""));
+
+        backup.restore(first);
+        assertEquals(1, store.getUserVocabularySets().size());
+        assertEquals("Động vật", store.getUserVocabularySets().get(0).getTitle());
+        assertEquals(300, store.getWordsForSet("user_1.json").size());
+        assertEquals("word0-0", store.getWordsForSet("user_1.json").get(0).getEnglish());
+        assertEquals("Rice with fish sauce.", store.getWordsForSet("Food.json").get(0).getExample());
+        assertTrue(store.getWordsForSet("user_2.json").isEmpty());
+
+        VocabularyStore reopened = new VocabularyStore(new DeckStorage(new File(root, "decks")));
+        assertEquals(300, reopened.getWordsForSet("user_1.json").size());
+    }
+
+    @Test
+    public void writesOnlyWhatChanged() throws IOException {
+        store.saveWordsForSet("a.json", words(2_000, 0));
+        store.saveWordsForSet("b.json", words(2_000, 1));
+        DeckBackup.Result first = backup.backup();
+        assertEquals(2, first.getDecksRead());
+
+        DeckBackup.Result unchanged = backup.backup();
+        assertEquals(0, unchanged.getDecksRead());
+        assertEquals(0, unchanged.getChunksWritten());
+
+        Word word = store.getWordsForSet("a.json").get(1_000);
+        store.updateWordInSet("a.json", word.getId(), new Word("changed", "đã đổi", ""));
+        DeckBackup.Result edited = backup.backup();
+        assertEquals(1, edited.getDecksRead());
+        assertTrue(edited.getChunksWritten() <= 2);
+        assertTrue(edited.getChunksReused() > edited.getChunksWritten());
+    }
+
+    @Test
+    public void refusesDamagedChunks() throws IOException {
+        store.saveWordsForSet("a.json", words(100, 0));
+        String snapshot = backup.backup().getSnapshot();
+        File chunk = firstChunk(new File(root, "backups/chunks"));
+        try (RandomAccessFile file = new RandomAccessFile(chunk, "rw")) {
+            file.seek(10);
+            file.write('#');
+        }
+        store.saveWordsForSet("a.json", words(5, 0));
+
+        try {
+            backup.restore(snapshot);
+            fail();
+        } catch (IOException expected) {
+            assertEquals(5, store.getWordsForSet("a.json").size());
+        }
+    }
+
+    @Test
+    public void pruneKeepsChunksStillInUse() throws IOException {
+        store.saveWordsForSet("a.json", words(1_000, 0));
+        backup.backup();
+        store.saveWordsForSet("a.json", words(1_000, 2));
+        String latest = backup.backup().getSnapshot();
+
+        backup.prune(1);
+        assertEquals(1, backup.listSnapshots().size());
+        store.saveWordsForSet("a.json", new ArrayList<>());
+        backup.restore(latest);
+        assertEquals("word0-2", store.getWordsForSet("a.json").get(0).getEnglish());
+    }
+
+    @Test
+    public void dailyBackupAfterAFewEditsWritesOnlyTheirChunks() throws IOException {
+        int decks = 100;
+        int perDeck = 2_000;
+        for (int d = 0; d < decks; d++) {
+            store.saveWordsForSet("deck" + d + ".json", words(perDeck, d));
+        }
+        DeckBackup.Result full = backup.backup();
+
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            String deck = "deck" + random.nextInt(decks) + ".json";
+            List<Word> words = store.getWordsForSet(deck);
+            Word word = words.get(random.nextInt(words.size()));
+            switch (i % 3) {
+                case 0:
+                    store.updateWordInSet(deck, word.getId(), new Word("edited" + i, "đã sửa", ""));
+                    break;
+                case 1:
+                    store.deleteWordFromSet(deck, word.getId());
+                    break;
+                default:
+                    store.addWordToSet(deck, new Word("added" + i, "mới thêm", "", "A fresh example.", ""));
+                    break;
+            }
+        }
+        DeckBackup.Result daily = backup.backup();
+
+        assertEquals(decks, full.getDecksRead());
+        assertTrue(daily.getDecksRead() <= 20);
+        assertTrue(daily.getChunksWritten() * 10 < daily.getChunksReused());
+        assertTrue(daily.getBytesWritten() * 10 < full.getBytesWritten());
+    }
+
+    private static List<Word> words(int count, int seed) {
+        Random random = new Random(seed);
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            words.add(new Word("word" + i + "-" + seed, "nghĩa " + random.nextInt(10_000), "/wɜːd/",
+                    "Example sentence number " + i + " for the word.", i % 4 == 0 ? "Mẹo ghi nhớ " + i : ""));
+        }
+        return words;
+    }
+
+    private static File firstChunk(File dir) {
+        for (File sub : dir.listFiles()) {
+            File[] chunks = sub.listFiles();
+            if (chunks != null && chunks.length > 0) {
+                return chunks[0];
+            }
+        }
+        throw new AssertionError("No chunks");
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.VocabularySet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeckFilterTest {
+
+    private final List<Runnable> queued = new ArrayList<>();
+    private final List<String> delivered = new ArrayList<>();
+    private List<VocabularySet> lastResult;
+
+    @Test
+    public void foldsVietnameseDiacritics() {
+        assertEquals("suc khoe", FoldedText.fold("Sức khỏe"));
+        assertEquals("dien mao", FoldedText.fold("Diện mạo"));
+        assertEquals("do uong", FoldedText.fold("ĐỒ UỐNG"));
+        assertEquals("", FoldedText.fold(null));
+    }
+
+    @Test
+    public void matchesWithoutDiacriticsAndNarrows() {
+        DeckFilter filter = new DeckFilter(Runnable::run, Runnable::run);
+        filter.setSets(Arrays.asList(
+                new VocabularySet("Sức khỏe", "health.json"),
+                new VocabularySet("Thức ăn và đồ uống", "food.json"),
+                new VocabularySet("Thể thao", "sports.json"),
+                new VocabularySet("Du lịch", "travel.json")));
+
+        filter.filter("th", this::record);
+        assertEquals(2, lastResult.size());
+        assertEquals(4, filter.lastScanned());
+
+        filter.filter("the", this::record);
+        assertEquals(1, lastResult.size());
+        assertEquals("sports.json", lastResult.get(0).getJsonFileName());
+        assertEquals(2, filter.lastScanned());
+
+        filter.filter("suc khoe", this::record);
+        assertEquals("health.json", lastResult.get(0).getJsonFileName());
+        assertEquals(4, filter.lastScanned());
+
+        filter.filter("  ", this::record);
+        assertEquals(4, lastResult.size());
+    }
+
+    @Test
+    public void dropsStaleQueries() {
+        DeckFilter filter = new DeckFilter(queued::add, Runnable::run);
+        filter.setSets(Arrays.asList(new VocabularySet("Nhà", "house.json"), new VocabularySet("Nghề", "jobs.json")));
+        filter.filter("n", this::record);
+        filter.filter("nh", this::record);
+        for (Runnable runnable : queued) {
+            runnable.run();
+        }
+        assertEquals(Arrays.asList("nh"), delivered);
+        assertEquals("house.json", lastResult.get(0).getJsonFileName());
+    }
+
+    // Smooth typing over thousands of decks rests on each keystroke rescanning only what the
+    // one before matched, so that is what is asserted rather than a time.
+    @Test
+    public void typingScansOnlyThePreviousMatchesForManyDecks() {
+        List<VocabularySet> sets = new ArrayList<>();
+        String[] words = {"Sức khỏe", "Thể thao", "Du lịch", "Môi trường", "Giáo dục", "Công việc", "Giải trí"};
+        for (int i = 0; i < 20_000; i++) {
+            sets.add(new VocabularySet(words[i % words.length] + " " + i, "set" + i + ".json"));
+        }
+        DeckFilter filter = new DeckFilter(Runnable::run, Runnable::run);
+        filter.setSets(sets);
+        String typed = "moi truong 1";
+        filter.filter(typed.substring(0, 1), this::record);
+        assertEquals(sets.size(), filter.lastScanned());
+        for (int i = 2; i <= typed.length(); i++) {
+            int previousMatches = lastResult.size();
+            filter.filter(typed.substring(0, i), this::record);
+            assertEquals(previousMatches, filter.lastScanned());
+        }
+        assertTrue(lastResult.size() > 0);
+        assertTrue(lastResult.size() < sets.size() / 7);
+    }
+
+    private void record(String query, List<VocabularySet> result) {
+        delivered.add(query);
+        lastResult = result;
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DeckLoaderTest {
+
+    private File dir;
+    private VocabularyStore store;
+    private ExecutorService background;
+    // Stands in for the main looper: one named thread that only runs callbacks.
+    private ExecutorService main;
+    private final List<String> loadThreads = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger loads = new AtomicInteger();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("loader").toFile();
+        store = new VocabularyStore(new DeckStorage(dir));
+        background = Executors.newFixedThreadPool(2);
+        main = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "main"));
+    }
+
+    @After
+    public void tearDown() {
+        background.shutdownNow();
+        main.shutdownNow();
+        delete(dir);
+    }
+
+    private DeckLoader loader() {
+        DeckLoader loader = new DeckLoader(jsonFileName -> {
+            loadThreads.add(Thread.currentThread().getName());
+            loads.incrementAndGet();
+            try {
+                gate.await();
+                return ColumnarDeck.of(store.getWordsForSet(jsonFileName));
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, background, main);
+        store.addSnapshotListener(loader);
+        return loader;
+    }
+
+    @Test
+    public void readsOffTheMainThreadAndCallsBackOnIt() throws Exception {
+        store.saveWordsForSet("a.json", words(3));
+        List<String> callbackThreads = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+
+        // Requested from the main thread, as an Activity would.
+        main.submit(() -> loader().load("a.json", deck -> {
+            callbackThreads.add(Thread.currentThread().getName());
+            assertEquals(3, deck.size());
+            done.countDown();
+        })).get();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, loadThreads.size());
+        assertNotEquals("main", loadThreads.get(0));
+        assertEquals(Collections.singletonList("main"), callbackThreads);
+    }
+
+    @Test
+    public void concurrentRequestsShareOneLoad() throws Exception {
+        store.saveWordsForSet("a.json", words(10));
+        DeckLoader loader = loader();
+        gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<ColumnarDeck> decks = Collections.synchronizedList(new ArrayList<>());
+
+        loader.load("a.json", deck -> {
+            decks.add(deck);
+            done.countDown();
+        });
+        loader.load("a.json", deck -> {
+            decks.add(deck);
+            done.countDown();
+        });
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        // Each caller may shuffle its own copy.
+        assertNotSame(decks.get(0), decks.get(1));
+    }
+
+    @Test
+    public void writeStartsAFreshLoad() throws Exception {
+        store.saveWordsForSet("a.json", words(10));
+        DeckLoader loader = loader();
+        gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+
+        loader.load("a.json", deck -> done.countDown());
+        store.addWordToSet("a.json", new Word("New", "Mới", ""));
+        loader.load("a.json", deck -> {
+            sizes.add(deck.size());
+            done.countDown();
+        });
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+        assertEquals(Collections.singletonList(11), sizes);
+    }
+
+    @Test
+    public void cancelledRequestIsNotCalledBack() throws Exception {
+        store.saveWordsForSet("a.json", words(10));
+        DeckLoader loader = loader();
+        gate = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+
+        DeckLoader.Request cancelled = loader.load("a.json", deck -> calls.incrementAndGet());
+        loader.load("a.json", deck -> done.countDown());
+        cancelled.cancel();
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        main.submit(() -> { }).get();
+        assertEquals(0, calls.get());
+        assertTrue(cancelled.isCancelled());
+    }
+
+    @Test
+    public void cancelledTaskIsNotCalledBack() throws Exception {
+        DeckLoader loader = loader();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+
+        DeckLoader.Request cancelled = loader.run(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "old";
+        }, results::add);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        cancelled.cancel();
+        loader.run(() -> "new", result -> {
+            results.add(result);
+            done.countDown();
+        });
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        background.submit(() -> { }).get();
+        main.submit(() -> { }).get();
+        assertEquals(Collections.singletonList("new"), results);
+    }
+
+    private static List<Word> words(int count) {
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            words.add(new Word("word" + i, "nghĩa " + i, ""));
+        }
+        return words;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
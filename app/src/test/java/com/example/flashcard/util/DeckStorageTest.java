@@ -0,0 +1,240 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.DeckMetadata;
+import com.example.flashcard.model.Word;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeckStorageTest {
+
+    private static final String SET = "user_1.json";
+
+    private File dir;
+    private DeckStorage storage;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("decks").toFile();
+        storage = new DeckStorage(dir);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void replaysJournalOnTopOfSnapshot() throws IOException {
+        List<Word> initial = words(3);
+        storage.writeWords(SET, initial);
+
+        Word added = new Word("new", "mới", "/njuː/");
+        storage.appendAdd(SET, added);
+        storage.appendUpdate(SET, initial.get(0).getId(), new Word("first", "đầu tiên", ""));
+        storage.appendDelete(SET, initial.get(1).getId());
+
+        List<Word> words = new DeckStorage(dir).readWords(SET);
+        assertEquals(3, words.size());
+        assertEquals("first", words.get(0).getEnglish());
+        assertEquals(initial.get(0).getId(), words.get(0).getId());
+        assertEquals("word2", words.get(1).getEnglish());
+        assertEquals(added.getId(), words.get(2).getId());
+    }
+
+    @Test
+    public void metadataEditsAppendWithoutRewritingTheFile() throws IOException {
+        List<DeckMetadata> all = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            all.add(new DeckMetadata("set" + i + ".json", i, 0, 1, i));
+        }
+        storage.writeMetadata(all);
+        File file = new File(dir, "metadata.json");
+        long written = file.length();
+
+        storage.appendMetadata(Collections.singletonList(new DeckMetadata("set3.json", 4, 0, 2, 9)),
+                Collections.emptySet());
+        storage.appendMetadata(Collections.emptyList(), Collections.singleton("set7.json"));
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "metadata.journal"), true)) {
+            out.write("{\"op\":\"add\",\"metad".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(written, file.length());
+        List<DeckMetadata> read = new DeckStorage(dir).readMetadata();
+        assertEquals(49, read.size());
+        assertEquals(4, read.get(3).getWordCount());
+        assertEquals(2, read.get(3).getVersion());
+        assertEquals("set8.json", read.get(7).getJsonFileName());
+
+        // A torn record is folded away before anything is appended after it.
+        DeckStorage reopened = new DeckStorage(dir);
+        reopened.appendMetadata(Collections.singletonList(new DeckMetadata("new.json", 1, 0, 1, 1)),
+                Collections.emptySet());
+        assertEquals(50, new DeckStorage(dir).readMetadata().size());
+    }
+
+    @Test
+    public void readsPagesByIdWithoutTheWholeSet() throws IOException {
+        List<Word> initial = words(5);
+        initial.add(new Word("phở", "món phở", "/fɜː/"));
+        storage.writeWords(SET, initial);
+        assertTrue(storage.indexFile(SET).exists());
+        String first = initial.get(0).getId();
+
+        List<Word> page = storage.readWords(SET, Arrays.asList(initial.get(5).getId(), "absent", first));
+        assertEquals("phở", page.get(0).getEnglish());
+        assertNull(page.get(1));
+        assertEquals("word0", page.get(2).getEnglish());
+
+        // Edits after the index was read apply on the next call, from the journal alone.
+        List<String> before = storage.readWordIds(SET);
+        Word added = new Word("new", "mới", "");
+        storage.appendAdd(SET, added);
+        storage.appendUpdate(SET, first, new Word("first", "đầu tiên", ""));
+        storage.appendDelete(SET, initial.get(1).getId());
+
+        List<String> ids = storage.readWordIds(SET);
+        assertEquals(6, before.size());
+        assertEquals(6, ids.size());
+        assertEquals(added.getId(), ids.get(5));
+        assertEquals(4, storage.indexOfWord(SET, initial.get(5).getId()));
+        assertEquals(-1, storage.indexOfWord(SET, initial.get(1).getId()));
+        assertEquals("first", storage.readWords(SET, Collections.singletonList(first)).get(0).getEnglish());
+
+        // Another instance sees the same, and so does one after compaction.
+        assertEquals(ids, new DeckStorage(dir).readWordIds(SET));
+        storage.compact(SET);
+        assertEquals(ids, storage.readWordIds(SET));
+        assertEquals("mới", storage.readWords(SET, Collections.singletonList(added.getId())).get(0).getVietnamese());
+    }
+
+    @Test
+    public void indexesSnapshotsWrittenBeforeIndexes() throws IOException {
+        Files.write(storage.deckFile(SET).toPath(),
+                "[{\"english\":\"old\",\"vietnamese\":\"cũ\"}]".getBytes(StandardCharsets.UTF_8));
+
+        List<String> ids = storage.readWordIds(SET);
+
+        assertEquals(1, ids.size());
+        assertEquals("old", storage.readWords(SET, ids).get(0).getEnglish());
+        assertEquals(ids.get(0), new DeckStorage(dir).readWords(SET).get(0).getId());
+    }
+
+    @Test
+    public void deleteRemovesOnlyTheIdentifiedDuplicate() throws IOException {
+        Word first = new Word("same", "giống", "");
+        Word second = new Word("same", "giống", "");
+        List<Word> initial = new ArrayList<>();
+        initial.add(first);
+        initial.add(second);
+        storage.writeWords(SET, initial);
+
+        storage.appendDelete(SET, first.getId());
+
+        List<Word> words = new DeckStorage(dir).readWords(SET);
+        assertEquals(1, words.size());
+        assertEquals(second.getId(), words.get(0).getId());
+    }
+
+    @Test
+    public void assignsAndPersistsIdsForLegacySnapshots() throws IOException {
+        Files.write(storage.deckFile(SET).toPath(),
+                "[{\"english\":\"old\",\"vietnamese\":\"cũ\"}]".getBytes(StandardCharsets.UTF_8));
+
+        String id = storage.readWords(SET).get(0).getId();
+
+        assertNotNull(id);
+        assertEquals(id, new DeckStorage(dir).readWords(SET).get(0).getId());
+    }
+
+    @Test
+    public void compactionFoldsJournalIntoSnapshot() throws IOException {
+        storage.writeWords(SET, words(2));
+        storage.appendAdd(SET, new Word("new", "mới", ""));
+
+        storage.compact(SET);
+
+        assertFalse(storage.journalFile(SET).exists());
+        assertEquals(3, storage.readWords(SET).size());
+    }
+
+    @Test
+    public void dropsTornTrailingRecord() throws IOException {
+        storage.writeWords(SET, words(2));
+        storage.appendAdd(SET, new Word("kept", "giữ", ""));
+        try (FileOutputStream out = new FileOutputStream(storage.journalFile(SET), true)) {
+            out.write("{\"op\":\"add\",\"word\":{\"eng".getBytes(StandardCharsets.UTF_8));
+        }
+
+        DeckStorage reopened = new DeckStorage(dir);
+        reopened.appendAdd(SET, new Word("after", "sau", ""));
+
+        List<Word> words = reopened.readWords(SET);
+        assertEquals(4, words.size());
+        assertEquals("kept", words.get(2).getEnglish());
+        assertEquals("after", words.get(3).getEnglish());
+    }
+
+    @Test
+    public void ignoresJournalFromOlderSnapshot() throws IOException {
+        storage.writeWords(SET, words(2));
+        storage.appendAdd(SET, new Word("new", "mới", ""));
+        byte[] staleJournal = Files.readAllBytes(storage.journalFile(SET).toPath());
+
+        storage.compact(SET);
+        Files.write(storage.journalFile(SET).toPath(), staleJournal);
+
+        assertEquals(3, new DeckStorage(dir).readWords(SET).size());
+    }
+
+    @Test
+    public void bytesWrittenPerEditDoNotGrowWithDeckSize() throws IOException {
+        long small = bytesPerEdit(10);
+        long medium = bytesPerEdit(1_000);
+        long large = bytesPerEdit(100_000);
+        assertTrue("10 words: " + small + " B", small < 256);
+        assertTrue("1k words: " + medium + " B", medium <= small + 8);
+        assertTrue("100k words: " + large + " B", large <= small + 8);
+    }
+
+    private long bytesPerEdit(int size) throws IOException {
+        String set = "size_" + size + ".json";
+        List<Word> words = words(size);
+        storage.writeWords(set, words);
+        storage.appendAdd(set, new Word("warmup", "khởi động", ""));
+
+        int edits = 100;
+        long before = storage.journalLength(set);
+        for (int i = 0; i < edits; i++) {
+            storage.appendUpdate(set, words.get(i % size).getId(), new Word("edit" + i, "sửa" + i, ""));
+        }
+        return (storage.journalLength(set) - before) / edits;
+    }
+
+    private static List<Word> words(int count) {
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            words.add(new Word("word" + i, "từ" + i, ""));
+        }
+        return words;
+    }
+}
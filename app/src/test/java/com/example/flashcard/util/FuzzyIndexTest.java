@@ -0,0 +1,135 @@
+package com.example.flashcard.util;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FuzzyIndexTest {
+
+    @Test
+    public void findsCommonMisspellings() {
+        FuzzyIndex index = new FuzzyIndex();
+        for (String term : new String[]{"Apple", "Apply", "Receive", "Necessary", "Bus stop", "Environment"}) {
+            index.add(term);
+        }
+
+        assertEquals("receive", index.closest("recieve", 1).get(0).getTerm());
+        assertEquals("necessary", index.closest("neccesary", 1).get(0).getTerm());
+        assertEquals("environment", index.closest("enviroment", 1).get(0).getTerm());
+        assertEquals("bus stop", index.closest("bus stpo", 1).get(0).getTerm());
+
+        List<FuzzyIndex.Match> matches = index.closest("appel", 5);
+        assertEquals(2, matches.size());
+        assertEquals("apple", matches.get(0).getTerm());
+        assertEquals(1, matches.get(0).getDistance());
+
+        assertEquals(0, index.closest(" APPLE ", 1).get(0).getDistance());
+        assertTrue(index.closest("banana", 3).isEmpty());
+    }
+
+    @Test
+    public void followsAddsAndRemoves() {
+        FuzzyIndex index = new FuzzyIndex();
+        index.add("cat");
+        index.add("Cat");
+        assertEquals(1, index.size());
+
+        index.remove("cat");
+        assertEquals("cat", index.closest("cta", 1).get(0).getTerm());
+        index.remove("CAT");
+        assertTrue(index.closest("cta", 1).isEmpty());
+        assertEquals(0, index.size());
+
+        index.add("cat");
+        assertEquals("cat", index.closest("cat", 1).get(0).getTerm());
+    }
+
+    @Test
+    public void distanceStopsAtBound() {
+        assertEquals(3, FuzzyIndex.distance("kitten", "sitting", 5));
+        assertEquals(2, FuzzyIndex.distance("kitten", "sitting", 1));
+        assertEquals(0, FuzzyIndex.distance("", "", 0));
+        assertEquals(1, FuzzyIndex.distance("form", "from", 3));
+
+        Random random = new Random(1);
+        for (int i = 0; i < 5_000; i++) {
+            String a = randomWord(random);
+            String b = randomWord(random);
+            int bound = random.nextInt(4);
+            assertEquals(a + " / " + b, Math.min(fullDistance(a, b), bound + 1), FuzzyIndex.distance(a, b, bound));
+        }
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = random.nextInt(7);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(3)));
+        }
+        return word.toString();
+    }
+
+    // The textbook table, filled in completely.
+    private static int fullDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                    continue;
+                }
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    // Lookup latency over 200k distinct headwords, after a warm-up pass.
+    @Test
+    public void lookupStaysWithinBudgetAt200kTerms() {
+        Random random = new Random(7);
+        String letters = "etaoinshrdlucmfwypvbgkjqxz";
+        String[] terms = new String[200_000];
+        FuzzyIndex index = new FuzzyIndex();
+        for (int i = 0; i < terms.length; i++) {
+            StringBuilder term = new StringBuilder();
+            int length = 4 + random.nextInt(9);
+            for (int c = 0; c < length; c++) {
+                // Skewed towards common letters, like real words.
+                term.append(letters.charAt((int) (letters.length() * Math.pow(random.nextDouble(), 2))));
+            }
+            terms[i] = term.toString();
+            index.add(terms[i]);
+        }
+
+        String[] queries = new String[500];
+        for (int i = 0; i < queries.length; i++) {
+            char[] chars = terms[random.nextInt(terms.length)].toCharArray();
+            int at = random.nextInt(chars.length);
+            chars[at] = letters.charAt(random.nextInt(letters.length()));
+            queries[i] = new String(chars);
+        }
+        for (String query : queries) {
+            index.closest(query, 5);
+        }
+        long total = 0;
+        int found = 0;
+        for (String query : queries) {
+            long t = System.nanoTime();
+            found += index.closest(query, 5).isEmpty() ? 0 : 1;
+            total += System.nanoTime() - t;
+        }
+        assertEquals(queries.length, found);
+        // The budget is 5 ms a keystroke on a phone; twice that on average leaves room for a
+        // slow or busy CI machine while still catching a lookup that scans every term.
+        assertTrue("average lookup " + total / queries.length / 1000 + "us",
+                total / queries.length < 10_000_000L);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.VocabularySet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HomeManifestTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("home", ".json");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void writesOnlyWhenTheListChanges() throws IOException {
+        HomeManifest manifest = new HomeManifest(file);
+        assertNull(manifest.read());
+
+        List<VocabularySet> sets = new ArrayList<>(Arrays.asList(
+                new VocabularySet("Nhà", "house.json", 120),
+                new VocabularySet("Động vật", "user_1.json", 3)));
+        assertTrue(manifest.write(sets));
+        assertFalse(manifest.write(sets));
+
+        // A fresh instance compares against the file, not against nothing.
+        HomeManifest reopened = new HomeManifest(file);
+        List<VocabularySet> read = reopened.read();
+        assertEquals(2, read.size());
+        assertEquals("Động vật", read.get(1).getTitle());
+        assertEquals(3, read.get(1).getWordCount());
+        assertFalse(reopened.write(sets));
+
+        read.get(1).setWordCount(4);
+        assertTrue(reopened.write(read));
+        assertEquals(4, new HomeManifest(file).read().get(1).getWordCount());
+    }
+
+    @Test
+    public void damagedFileReadsAsMissing() throws IOException {
+        Files.write(file.toPath(), "[{\"title\": \"Nh".getBytes(StandardCharsets.UTF_8));
+        assertNull(new HomeManifest(file).read());
+    }
+}
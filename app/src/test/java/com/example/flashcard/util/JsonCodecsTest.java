@@ -0,0 +1,189 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.ChatMessage;
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonCodecsTest {
+
+    @Test
+    public void wordRoundTrips() throws IOException {
+        Word word = new Word("apple", "quả táo", "/ˈæp.əl/", "An apple a day.", "A-pple \"đỏ\"");
+        Word copy = JsonCodecs.GSON.fromJson(JsonCodecs.GSON.toJson(word), Word.class);
+
+        assertEquals(word.getId(), copy.getId());
+        assertEquals(word.getEnglish(), copy.getEnglish());
+        assertEquals(word.getVietnamese(), copy.getVietnamese());
+        assertEquals(word.getPronunciation(), copy.getPronunciation());
+        assertEquals(word.getExample(), copy.getExample());
+        assertEquals(word.getMemoryTip(), copy.getMemoryTip());
+    }
+
+    @Test
+    public void readsWhatTheReflectivePathWrote() throws IOException {
+        List<Word> words = words(20);
+        String json = new Gson().toJson(flat(words));
+
+        List<Word> copy = JsonCodecs.readList(new JsonReader(new StringReader(json)), JsonCodecs.WORD);
+        assertEquals(words.size(), copy.size());
+        for (int i = 0; i < words.size(); i++) {
+            assertEquals(words.get(i).getId(), copy.get(i).getId());
+            assertEquals(words.get(i).getEnglish(), copy.get(i).getEnglish());
+            assertEquals(words.get(i).getMemoryTip(), copy.get(i).getMemoryTip());
+        }
+    }
+
+    @Test
+    public void missingOptionalFieldsBecomeEmpty() throws IOException {
+        String json = "[{\"english\":\"cat\",\"vietnamese\":\"con mèo\",\"pronunciation\":\"/kæt/\",\"extra\":[1,2]}]";
+
+        List<Word> words = JsonCodecs.readList(new JsonReader(new StringReader(json)), JsonCodecs.WORD);
+        assertEquals(1, words.size());
+        assertNull(words.get(0).getId());
+        assertEquals("", words.get(0).getExample());
+        assertEquals("", words.get(0).getMemoryTip());
+    }
+
+    @Test
+    public void storedWordsKeepLongTextCompressed() throws IOException {
+        String tip = "Hãy tưởng tượng bạn đang nghe giống như âm thanh của mọi người trong cuộc sống hàng ngày, "
+                + "hãy tưởng tượng bạn đang nghe giống như âm thanh của mọi người trong cuộc sống hàng ngày.";
+        Word word = new Word("noise", "tiếng ồn", "/nɔɪz/", "Short one.", tip);
+
+        StringWriter stored = new StringWriter();
+        JsonCodecs.STORED_WORD.write(new JsonWriter(stored), word);
+        assertTrue(stored.toString().contains("\"memoryTipZ\""));
+        assertTrue(stored.toString().contains("\"example\":\"Short one.\""));
+        assertFalse(JsonCodecs.GSON.toJson(word).contains("memoryTipZ"));
+
+        Word copy = JsonCodecs.WORD.read(new JsonReader(new StringReader(stored.toString())));
+        assertEquals(tip, copy.getMemoryTip());
+        assertEquals("Short one.", copy.getExample());
+        assertEquals(word.getContent(), copy.getContent());
+    }
+
+    @Test
+    public void setsAndMessagesRoundTrip() throws IOException {
+        List<VocabularySet> sets = Arrays.asList(
+                new VocabularySet("Động vật", "user_1.json", 12),
+                new VocabularySet("Trái cây", "user_2.json", 0));
+        StringWriter out = new StringWriter();
+        JsonCodecs.writeList(new JsonWriter(out), sets, JsonCodecs.VOCABULARY_SET);
+        List<VocabularySet> setCopy = JsonCodecs.readList(
+                new JsonReader(new StringReader(out.toString())), JsonCodecs.VOCABULARY_SET);
+        assertEquals(2, setCopy.size());
+        assertEquals("Động vật", setCopy.get(0).getTitle());
+        assertEquals("user_2.json", setCopy.get(1).getJsonFileName());
+        assertEquals(12, setCopy.get(0).getWordCount());
+
+        ChatMessage message = new ChatMessage(ChatMessage.Sender.AI, "Xin chào", 42L);
+        ChatMessage messageCopy = JsonCodecs.GSON.fromJson(JsonCodecs.GSON.toJson(message), ChatMessage.class);
+        assertEquals(ChatMessage.Sender.AI, messageCopy.getSender());
+        assertEquals("Xin chào", messageCopy.getContent());
+        assertEquals(42L, messageCopy.getTimestamp());
+    }
+
+    // Prints both paths; timings are left to a benchmark run rather than asserted.
+    @Test
+    @Category(Benchmark.class)
+    public void benchmarkAgainstReflectivePath() throws IOException {
+        List<Word> words = words(5_000);
+        List<FlatWord> flatWords = flat(words);
+        String json = new Gson().toJson(flatWords);
+        Type type = new TypeToken<List<FlatWord>>() {}.getType();
+
+        for (int i = 0; i < 5; i++) {
+            reflectiveRead(json, type);
+            codecRead(json);
+        }
+
+        int rounds = 20;
+        long reflective = 0;
+        long codec = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            reflectiveRead(json, type);
+            reflective += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            codecRead(json);
+            codec += System.nanoTime() - start;
+        }
+
+        long reflectiveWrite = 0;
+        long codecWrite = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            new Gson().toJson(flatWords, type);
+            reflectiveWrite += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            StringWriter out = new StringWriter();
+            JsonCodecs.writeList(new JsonWriter(out), words, JsonCodecs.WORD);
+            codecWrite += System.nanoTime() - start;
+        }
+
+        System.out.println("read 5k words: reflective=" + reflective / rounds / 1000 + "us, codec="
+                + codec / rounds / 1000 + "us; write: reflective=" + reflectiveWrite / rounds / 1000
+                + "us, codec=" + codecWrite / rounds / 1000 + "us");
+        assertEquals(words.size(), codecRead(json).size());
+    }
+
+    // The field layout Word had when the reflective path was in use.
+    private static class FlatWord {
+        String id;
+        String english;
+        String vietnamese;
+        String pronunciation;
+        String example;
+        String memoryTip;
+    }
+
+    private static List<FlatWord> flat(List<Word> words) {
+        List<FlatWord> flat = new ArrayList<>();
+        for (Word word : words) {
+            FlatWord copy = new FlatWord();
+            copy.id = word.getId();
+            copy.english = word.getEnglish();
+            copy.vietnamese = word.getVietnamese();
+            copy.pronunciation = word.getPronunciation();
+            copy.example = word.getExample();
+            copy.memoryTip = word.getMemoryTip();
+            flat.add(copy);
+        }
+        return flat;
+    }
+
+    private static List<FlatWord> reflectiveRead(String json, Type type) {
+        return new Gson().fromJson(json, type);
+    }
+
+    private static List<Word> codecRead(String json) throws IOException {
+        return JsonCodecs.readList(new JsonReader(new StringReader(json)), JsonCodecs.WORD);
+    }
+
+    private static List<Word> words(int count) {
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            words.add(new Word("word" + i, "từ" + i, "/wɜːd/", "Example " + i, i % 2 == 0 ? "tip " + i : ""));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PagedDeckTest {
+
+    // Runs nothing until asked, so each test decides when a page read finishes.
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final List<Integer> reads = new ArrayList<>();
+    private final List<Integer> loaded = new ArrayList<>();
+
+    private PagedDeck deck(int size, int maxPages) {
+        return new PagedDeck(source(size, ""), 10, maxPages, tasks::add, Runnable::run, (from, count) -> loaded.add(from));
+    }
+
+    private PagedDeck.Source source(int size, String suffix) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ids.add("id" + i);
+        }
+        return new PagedDeck.Source() {
+            @Override
+            public List<String> wordIds() {
+                return ids;
+            }
+
+            @Override
+            public List<Word> read(List<String> wordIds) {
+                reads.add(Integer.parseInt(wordIds.get(0).substring(2)));
+                List<Word> words = new ArrayList<>();
+                for (String wordId : wordIds) {
+                    words.add(new Word(wordId, "word" + wordId.substring(2) + suffix, "nghĩa", "", "", ""));
+                }
+                return words;
+            }
+        };
+    }
+
+    private void runAll() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void rowIsNullUntilItsPageArrives() {
+        PagedDeck deck = deck(25, 4);
+        assertNull(deck.wordAt(23));
+        runAll();
+
+        assertEquals(Collections.singletonList(20), loaded);
+        assertEquals("word23", deck.wordAt(23).getEnglish());
+        assertEquals("word20", deck.wordAt(20).getEnglish());
+    }
+
+    @Test
+    public void keepsOnlyTheWindowOfPages() {
+        PagedDeck deck = deck(1000, 3);
+        for (int page = 0; page < 5; page++) {
+            deck.wordAt(page * 10);
+            runAll();
+        }
+        assertEquals(5, reads.size());
+
+        assertNotNull(deck.wordAt(40));
+        assertNotNull(deck.wordAt(20));
+        // The oldest pages were let go and are read again.
+        assertNull(deck.wordAt(0));
+        runAll();
+        assertEquals(6, reads.size());
+    }
+
+    @Test
+    public void jumpReadsOnlyTheTargetPage() {
+        PagedDeck deck = deck(100_000, 4);
+        deck.wordAt(0);
+        // A fast-scroll drag passes many pages before it lands.
+        for (int position = 10; position < 90_000; position += 1000) {
+            deck.wordAt(position);
+        }
+        deck.wordAt(90_005);
+        runAll();
+
+        assertEquals(0, (int) reads.get(0));
+        assertEquals(90_000, (int) reads.get(1));
+        assertEquals(2, reads.size());
+    }
+
+    @Test
+    public void editsApplyWithoutReadingAgain() {
+        PagedDeck deck = deck(30, 4);
+        deck.wordAt(0);
+        runAll();
+        List<String> before = deck.wordIds();
+
+        deck.insert(1, new Word("new", "New", "Mới", "", "", ""));
+        deck.remove(deck.indexOf("id3"));
+        deck.set(0, new Word("id0", "Edited", "Đã sửa", "", "", ""));
+        deck.move(0, 2);
+
+        assertEquals(1, reads.size());
+        assertEquals(30, deck.size());
+        assertEquals("New", deck.wordAt(0).getEnglish());
+        assertEquals("Edited", deck.wordAt(2).getEnglish());
+        assertEquals("word4", deck.wordAt(4).getEnglish());
+        // A list handed out earlier is left as it was, for a diff running elsewhere.
+        assertEquals("id3", before.get(3));
+    }
+
+    @Test
+    public void editsMatchAListEditedTheSameWay() {
+        PagedDeck deck = deck(200, 4);
+        List<String> expected = new ArrayList<>(deck.wordIds());
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            int op = random.nextInt(4);
+            if (op == 0 || expected.isEmpty()) {
+                // Every fourth insert lands next to the last one, which runs out of spare keys.
+                int position = i % 4 == 0 ? Math.min(expected.size(), 100) : random.nextInt(expected.size() + 1);
+                deck.insert(position, new Word("new" + i, "New", "Mới", "", "", ""));
+                expected.add(position, "new" + i);
+            } else if (op == 1) {
+                int position = random.nextInt(expected.size());
+                deck.remove(position);
+                expected.remove(position);
+            } else {
+                int from = random.nextInt(expected.size());
+                int to = random.nextInt(expected.size());
+                deck.move(from, to);
+                expected.add(to, expected.remove(from));
+            }
+        }
+        assertEquals(expected, new ArrayList<>(deck.wordIds()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i, deck.indexOf(expected.get(i)));
+        }
+        assertEquals(-1, deck.indexOf("missing"));
+    }
+
+    @Test
+    public void pageReadBeforeReplaceIsDropped() {
+        PagedDeck deck = deck(30, 4);
+        deck.wordAt(0);
+        deck.replace(source(30, " (mới)"), Collections.emptyMap());
+        runAll();
+        assertTrue(loaded.isEmpty());
+
+        assertNull(deck.wordAt(0));
+        runAll();
+        assertEquals("word0 (mới)", deck.wordAt(0).getEnglish());
+    }
+
+    @Test
+    public void closedDeckDropsLatePages() {
+        PagedDeck deck = deck(50, 4);
+        deck.wordAt(0);
+        deck.close();
+        runAll();
+        assertTrue(loaded.isEmpty());
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+
+    private File dir;
+    private VocabularyStore store;
+    private SearchIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("search").toFile();
+        store = new VocabularyStore(new DeckStorage(dir));
+        index = new SearchIndex();
+        store.addSnapshotListener(index);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void findsAcrossDecksAndFieldsBestFirst() {
+        index.addDeck("food.json", Arrays.asList(
+                new Word("asset:food.json#0", "Apple", "Quả táo", "/ˈæp.əl/", "", ""),
+                new Word("asset:food.json#1", "Pie", "Bánh nướng", "/paɪ/", "She baked an apple pie.", "")));
+        index.addDeck("jobs.json", Collections.singletonList(
+                new Word("asset:jobs.json#0", "Farmer", "Nông dân", "/ˈfɑː.mər/", "", "Trồng táo và lúa.")));
+
+        List<SearchIndex.Hit> hits = index.search("apple", 10);
+        assertEquals(2, hits.size());
+        assertEquals("Apple", hits.get(0).getWord().getEnglish());
+        assertEquals(SearchIndex.FIELD_ENGLISH, hits.get(0).getField());
+        assertEquals(SearchIndex.FIELD_EXAMPLE, hits.get(1).getField());
+
+        hits = index.search("táo", 10);
+        assertEquals(2, hits.size());
+        assertEquals("food.json", hits.get(0).getJsonFileName());
+        assertEquals("jobs.json", hits.get(1).getJsonFileName());
+        assertEquals(SearchIndex.FIELD_MEMORY_TIP, hits.get(1).getField());
+
+        assertEquals(1, index.search("apple pie", 10).size());
+        assertEquals(1, index.search("pie apple ", 10).size());
+        assertEquals("Pie", index.search("baked an app", 10).get(0).getWord().getEnglish());
+        assertTrue(index.search("appl ", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void phraseBeatsScatteredTokens() {
+        index.addDeck("a.json", Arrays.asList(
+                new Word("1", "Bus", "Xe buýt", "", "Take the red bus to the station.", ""),
+                new Word("2", "Bus stop", "Trạm xe buýt", "", "Wait at the bus stop.", "")));
+
+        List<SearchIndex.Hit> hits = index.search("the bus", 10);
+        assertEquals(2, hits.size());
+        assertEquals("2", hits.get(0).getWord().getId());
+    }
+
+    @Test
+    public void followsEveryKindOfWrite() throws IOException {
+        Word cat = new Word("Cat", "Con mèo", "/kæt/");
+        store.addWordToSet("pets.json", cat);
+        store.addWordToSet("pets.json", new Word("Dog", "Con chó", "/dɒɡ/"));
+        assertEquals(1, index.search("cat", 10).size());
+
+        store.updateWordInSet("pets.json", cat.getId(), new Word("Kitten", "Mèo con", "/ˈkɪt.ən/"));
+        assertTrue(index.search("cat", 10).isEmpty());
+        assertEquals(cat.getId(), index.search("kitten", 10).get(0).getWord().getId());
+        assertEquals("kitten", index.closestEnglish("kiten", 1).get(0).getTerm());
+        assertTrue(index.closestEnglish("cat", 1).isEmpty());
+
+        store.deleteWordFromSet("pets.json", cat.getId());
+        assertTrue(index.search("kitten", 10).isEmpty());
+        assertEquals(1, index.size());
+
+        List<Word> farm = new ArrayList<>();
+        farm.add(new Word("Cow", "Con bò", "/kaʊ/"));
+        farm.add(new Word("Horse", "Con ngựa", "/hɔːs/"));
+        store.commit(new WordBatch().addWords("farm.json", farm));
+        assertEquals(3, index.search("con", 10).size());
+
+        store.commit(new WordBatch().moveWords("farm.json", "pets.json",
+                Collections.singletonList(farm.get(0).getId())));
+        assertEquals("pets.json", index.search("cow", 10).get(0).getJsonFileName());
+
+        store.deleteVocabularySet("pets.json");
+        assertEquals(1, index.size());
+        assertEquals("farm.json", index.search("con", 10).get(0).getJsonFileName());
+    }
+
+    @Test
+    public void rewrittenWordsDoNotGrowTheIndex() throws IOException {
+        index.addDeck("a.json", Collections.singletonList(new Word("keep", "Keep", "Giữ", "", "", "")));
+        for (int i = 0; i < 5000; i++) {
+            index.addDeck("b.json", Collections.singletonList(new Word("same", "Draft " + i, "Nháp", "", "", "")));
+        }
+        assertEquals(2, index.size());
+        assertTrue(index.slotCount() < 2100);
+        assertEquals("Draft 4999", index.search("draft", 10).get(0).getWord().getEnglish());
+        assertEquals("keep", index.search("giữ", 10).get(0).getWord().getId());
+
+        Word word = new Word("Edited", "Đã sửa", "");
+        store.addWordToSet("c.json", word);
+        store.updateWordInSet("c.json", word.getId(), new Word("Edited twice", "Sửa lại", ""));
+        assertEquals(1, index.search("twice", 10).size());
+        assertEquals(1, index.search("draft", 10).size());
+    }
+
+    @Test
+    public void staleSnapshotsAreIgnored() throws IOException {
+        store.addWordToSet("a.json", new Word("One", "Một", ""));
+        DeckSnapshot old = store.getSnapshot("a.json");
+        store.addWordToSet("a.json", new Word("Two", "Hai", ""));
+
+        index.sync(old);
+        assertEquals(1, index.search("two", 10).size());
+    }
+
+    // Median query latency over 500k words, after a warm-up pass.
+    @Test
+    public void queryLatencyStaysWithinBudgetAt500kWords() {
+        Random random = new Random(42);
+        String[] english = new String[20_000];
+        for (int i = 0; i < english.length; i++) {
+            english[i] = "term" + Integer.toString(i, 36);
+        }
+        String[] common = {"the", "a", "to", "in", "my", "is", "every", "day", "we", "she", "likes", "her"};
+        String[] vietnamese = {"người", "nhà", "ăn", "học", "đi", "chơi", "xe", "bạn", "trường", "nước"};
+
+        int decks = 500;
+        int perDeck = 1_000;
+        for (int d = 0; d < decks; d++) {
+            List<Word> words = new ArrayList<>(perDeck);
+            for (int i = 0; i < perDeck; i++) {
+                String term = english[random.nextInt(english.length)];
+                StringBuilder example = new StringBuilder();
+                for (int t = 0; t < 6; t++) {
+                    example.append(t == 3 ? term : common[random.nextInt(common.length)]).append(' ');
+                }
+                words.add(new Word("d" + d + "w" + i, term, vietnamese[random.nextInt(vietnamese.length)] + " "
+                        + vietnamese[random.nextInt(vietnamese.length)], "", example.toString(), ""));
+            }
+            index.addDeck("deck" + d + ".json", words);
+        }
+        assertEquals(decks * perDeck, index.size());
+
+        String[] queries = {"term1a", "term1", "người nhà", "the", "she likes", "ter", "every day term2"};
+        for (int i = 0; i < 20; i++) {
+            for (String query : queries) {
+                index.search(query, 50);
+            }
+        }
+        for (String query : queries) {
+            long[] times = new long[51];
+            for (int i = 0; i < times.length; i++) {
+                long t = System.nanoTime();
+                assertFalse(index.search(query, 50).isEmpty());
+                times[i] = System.nanoTime() - t;
+            }
+            Arrays.sort(times);
+            long median = times[times.length / 2];
+            // The bar is a few ms a query on a phone; 10 ms leaves room for a slow or busy CI
+            // machine while still catching a query that walks every posting.
+            assertTrue("median \"" + query + "\" " + median / 1000 + "us", median < 10_000_000L);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SyncClientTest {
+
+    private final SyncServer server = new SyncServer();
+    private final List<File> dirs = new ArrayList<>();
+    private SyncClient.Transport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        String url = server.start();
+        transport = request -> post(url, request);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        for (File dir : dirs) {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void devicesConverge() throws IOException {
+        Device phone = new Device();
+        Device tablet = new Device();
+        phone.sync();
+        tablet.sync();
+
+        phone.store.addVocabularySet(new VocabularySet("Động vật", "user_1.json", 0));
+        Word cat = new Word("Cat", "Con mèo", "/kæt/");
+        Word dog = new Word("Dog", "Con chó", "/dɒɡ/");
+        phone.store.addWordToSet("user_1.json", cat);
+        phone.store.addWordToSet("user_1.json", dog);
+        phone.store.addWordToSet("Food.json", new Word("Rice", "Cơm", ""));
+        assertEquals(4, phone.sync().getPushed());
+
+        tablet.sync();
+        assertEquals("Động vật", tablet.store.getUserVocabularySets().get(0).getTitle());
+        assertEquals(2, tablet.store.getWordsForSet("user_1.json").size());
+        assertEquals("Cơm", tablet.store.getWordsForSet("Food.json").get(0).getVietnamese());
+
+        tablet.store.updateWordInSet("user_1.json", cat.getId(), new Word("Kitten", "Mèo con", ""));
+        tablet.store.deleteWordFromSet("user_1.json", dog.getId());
+        tablet.store.updateVocabularySet(new VocabularySet("Thú cưng", "user_1.json", 1));
+        tablet.sync();
+        SyncClient.Result pulled = phone.sync();
+
+        assertEquals(0, pulled.getPushed());
+        assertEquals(3, pulled.getPulled());
+        assertEquals(1, phone.store.getWordsForSet("user_1.json").size());
+        assertEquals("Kitten", phone.store.getWord("user_1.json", cat.getId()).getEnglish());
+        assertEquals("Thú cưng", phone.store.getUserVocabularySets().get(0).getTitle());
+        assertEquals(0, phone.client.pendingCount());
+    }
+
+    @Test
+    public void concurrentEditsSettleTheSameEverywhere() throws IOException {
+        Device phone = new Device();
+        Device tablet = new Device();
+        Word word = new Word("Apple", "Quả táo", "");
+        phone.store.addWordToSet("a.json", word);
+        phone.sync();
+        tablet.sync();
+
+        phone.store.updateWordInSet("a.json", word.getId(), new Word("Apple", "Táo (phone)", ""));
+        tablet.store.updateWordInSet("a.json", word.getId(), new Word("Apple", "Táo (tablet)", ""));
+        tablet.store.updateWordInSet("a.json", word.getId(), new Word("Apple", "Táo (tablet 2)", ""));
+        phone.sync();
+        tablet.sync();
+        phone.sync();
+
+        String onPhone = phone.store.getWord("a.json", word.getId()).getVietnamese();
+        assertEquals(onPhone, tablet.store.getWord("a.json", word.getId()).getVietnamese());
+        // The tablet's second edit has the higher clock.
+        assertEquals("Táo (tablet 2)", onPhone);
+    }
+
+    @Test
+    public void droppedSetKeepsOnlyLaterWords() throws IOException {
+        Device phone = new Device();
+        Device tablet = new Device();
+        phone.store.addVocabularySet(new VocabularySet("Tạm", "user_9.json", 0));
+        phone.store.addWordToSet("user_9.json", new Word("One", "Một", ""));
+        phone.sync();
+        tablet.sync();
+
+        tablet.store.deleteVocabularySet("user_9.json");
+        tablet.sync();
+        phone.sync();
+        assertTrue(phone.store.getUserVocabularySets().isEmpty());
+        assertTrue(phone.store.getWordsForSet("user_9.json").isEmpty());
+    }
+
+    @Test
+    public void outboxSurvivesRestart() throws IOException {
+        Device phone = new Device();
+        Device tablet = new Device();
+        phone.sync();
+        phone.store.addWordToSet("a.json", new Word("Offline", "Ngoại tuyến", ""));
+
+        Device restarted = new Device(phone.dir);
+        assertEquals(1, restarted.client.pendingCount());
+        restarted.sync();
+        tablet.sync();
+        assertEquals("Offline", tablet.store.getWordsForSet("a.json").get(0).getEnglish());
+    }
+
+    @Test
+    public void deltaBytesFollowEditsNotCorpus() throws IOException {
+        long[] small = measureDelta(5_000);
+        long[] large = measureDelta(50_000);
+        // The same ten edits: only the digits of the longer word IDs may differ.
+        assertEquals(small[0], large[0], 10 * 8);
+        assertEquals(small[1], large[1], 10 * 8);
+        assertTrue(large[0] * 100 < large[2]);
+    }
+
+    private long[] measureDelta(int corpus) throws IOException {
+        SyncServer local = new SyncServer();
+        Device phone = new Device();
+        Device tablet = new Device();
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < corpus; i++) {
+            words.add(new Word("word" + i, "nghĩa " + i, "/wɜːd/", "Example sentence " + i + ".", ""));
+        }
+        phone.store.saveWordsForSet("big.json", words);
+        long initial = phone.client.sync(local::handle).getBytesSent();
+        tablet.client.sync(local::handle);
+
+        for (int i = 0; i < 10; i++) {
+            Word word = words.get(i * (corpus / 10));
+            phone.store.updateWordInSet("big.json", word.getId(), new Word("edited" + i, "đã sửa " + i, ""));
+        }
+        long sent = phone.client.sync(local::handle).getBytesSent();
+        long received = tablet.client.sync(local::handle).getBytesReceived();
+        assertEquals("edited0", tablet.store.getWord("big.json", words.get(0).getId()).getEnglish());
+        return new long[]{sent, received, initial};
+    }
+
+    private final class Device {
+        final File dir;
+        final VocabularyStore store;
+        final SyncClient client;
+
+        Device() throws IOException {
+            this(Files.createTempDirectory("sync").toFile());
+            dirs.add(dir);
+        }
+
+        Device(File dir) throws IOException {
+            this.dir = dir;
+            store = new VocabularyStore(new DeckStorage(new File(dir, "decks")));
+            client = new SyncClient(store, new File(dir, "sync"));
+            store.addSnapshotListener(client);
+        }
+
+        SyncClient.Result sync() throws IOException {
+            return client.sync(transport);
+        }
+    }
+
+    private static String post(String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        if (connection.getResponseCode() != 200) {
+            throw new IOException("Sync failed: " + connection.getResponseCode());
+        }
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.flashcard.util;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reference server for the {@link SyncClient} protocol, kept in memory. Each set has its own
+ * sequence; the server keeps only the winning op per word and per set title, so a pull sends
+ * each changed word once however often it was edited.
+ */
+class SyncServer {
+
+    private static final class SetState {
+        long seq;
+        final Map<String, SyncOp> words = new HashMap<>();
+        SyncOp title;
+        SyncOp drop;
+    }
+
+    private final Map<String, SetState> sets = new LinkedHashMap<>();
+    private long clock;
+    private HttpServer http;
+
+    /** Serves POST /sync on a free local port and returns its URL. */
+    String start() throws IOException {
+        http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        http.createContext("/sync", exchange -> {
+            byte[] response;
+            int status = 200;
+            try (InputStream in = exchange.getRequestBody()) {
+                response = handle(new String(readAll(in), StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            } catch (IOException | RuntimeException e) {
+                response = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                status = 400;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        http.start();
+        return "http://127.0.0.1:" + http.getAddress().getPort() + "/sync";
+    }
+
+    void stop() {
+        if (http != null) {
+            http.stop(0);
+        }
+    }
+
+    synchronized String handle(String request) throws IOException {
+        Map<String, Long> since = new HashMap<>();
+        List<SyncOp> ops = new ArrayList<>();
+        JsonReader json = new JsonReader(new StringReader(request));
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "clock":
+                    clock = Math.max(clock, json.nextLong());
+                    break;
+                case "since":
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        since.put(json.nextName(), json.nextLong());
+                    }
+                    json.endObject();
+                    break;
+                case "ops":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        ops.add(SyncOp.read(json));
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+
+        Set<SyncOp> accepted = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<SyncOp> replies = new ArrayList<>();
+        for (SyncOp op : ops) {
+            clock = Math.max(clock, op.getClock());
+            SetState set = sets.computeIfAbsent(op.getSet(), name -> new SetState());
+            if (op.isWordOp()) {
+                SyncOp winner = set.words.get(op.getWordId());
+                if (set.drop != null && !op.beats(set.drop)) {
+                    // Written before the set was dropped: it stays deleted.
+                    replies.add(SyncOp.delete(op.getSet(), op.getWordId(), set.drop.getClock(), set.drop.getDevice()));
+                } else if (!op.beats(winner)) {
+                    replies.add(winner);
+                } else {
+                    op.setSeq(++set.seq);
+                    set.words.put(op.getWordId(), op);
+                    accepted.add(op);
+                }
+            } else if (!op.beats(set.title)) {
+                replies.add(set.title);
+            } else {
+                op.setSeq(++set.seq);
+                set.title = op;
+                accepted.add(op);
+                if (SyncOp.DROP.equals(op.getType())) {
+                    set.drop = op;
+                    // Clients delete the whole set on a drop, so newer words are sent again after it.
+                    for (Iterator<SyncOp> it = set.words.values().iterator(); it.hasNext(); ) {
+                        SyncOp word = it.next();
+                        if (op.beats(word)) {
+                            it.remove();
+                        } else {
+                            word.setSeq(++set.seq);
+                        }
+                    }
+                }
+            }
+        }
+
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("clock").value(clock);
+        writer.name("heads").beginObject();
+        for (Map.Entry<String, SetState> entry : sets.entrySet()) {
+            writer.name(entry.getKey()).value(entry.getValue().seq);
+        }
+        writer.endObject();
+        writer.name("ops").beginArray();
+        for (Map.Entry<String, SetState> entry : sets.entrySet()) {
+            long after = since.getOrDefault(entry.getKey(), 0L);
+            List<SyncOp> changed = new ArrayList<>();
+            SetState set = entry.getValue();
+            if (set.title != null && set.title.getSeq() > after && !accepted.contains(set.title)) {
+                changed.add(set.title);
+            }
+            for (SyncOp word : set.words.values()) {
+                if (word.getSeq() > after && !accepted.contains(word)) {
+                    changed.add(word);
+                }
+            }
+            changed.sort(Comparator.comparingLong(SyncOp::getSeq));
+            for (SyncOp op : changed) {
+                op.write(writer);
+            }
+        }
+        for (SyncOp reply : replies) {
+            reply.write(writer);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+        return out.toString();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+}
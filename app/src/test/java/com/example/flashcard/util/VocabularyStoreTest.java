@@ -0,0 +1,314 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.DeckMetadata;
+import com.example.flashcard.model.SetChange;
+import com.example.flashcard.model.VocabularySet;
+import com.example.flashcard.model.Word;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VocabularyStoreTest {
+
+    private File dir;
+    private VocabularyStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("store").toFile();
+        store = new VocabularyStore(new DeckStorage(dir));
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void concurrentWritersNeverLoseUpdates() throws Exception {
+        int threads = 8;
+        int editsPerThread = 50;
+        String shared = "shared.json";
+        List<Word> seed = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            seed.add(new Word("seed" + i, "gốc" + i, ""));
+        }
+        store.saveWordsForSet(shared, seed);
+        long startVersion = store.getSnapshot(shared).getVersion();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            results.add(pool.submit(() -> {
+                start.await();
+                String own = "own_" + thread + ".json";
+                for (int i = 0; i < editsPerThread; i++) {
+                    store.addWordToSet(shared, new Word("t" + thread + "w" + i, "từ", ""));
+                    store.addWordToSet(own, new Word("w" + i, "từ", ""));
+                    store.updateWordInSet(shared, seed.get(thread).getId(),
+                            new Word("seed" + thread, "sửa" + i, ""));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        DeckSnapshot snapshot = store.getSnapshot(shared);
+        assertEquals(threads + threads * editsPerThread, snapshot.size());
+        assertEquals(startVersion + 2L * threads * editsPerThread, snapshot.getVersion());
+        for (int t = 0; t < threads; t++) {
+            assertEquals("sửa" + (editsPerThread - 1), snapshot.getWord(seed.get(t).getId()).getVietnamese());
+            assertEquals(editsPerThread, store.getSnapshot("own_" + t + ".json").size());
+        }
+
+        // What reached disk matches what the readers saw.
+        VocabularyStore reopened = new VocabularyStore(new DeckStorage(dir));
+        List<Word> persisted = reopened.getWordsForSet(shared);
+        assertEquals(snapshot.size(), persisted.size());
+        Set<String> ids = new HashSet<>();
+        for (Word word : persisted) {
+            ids.add(word.getId());
+        }
+        for (Word word : snapshot.getWords()) {
+            assertTrue(ids.contains(word.getId()));
+        }
+        DeckMetadata metadata = reopened.getMetadata(shared);
+        assertEquals(snapshot.size(), metadata.getWordCount());
+        assertEquals(snapshot.getVersion(), metadata.getVersion());
+    }
+
+    @Test
+    public void compareAndSetRejectsStaleVersion() throws IOException {
+        String set = "cas.json";
+        store.saveWordsForSet(set, new ArrayList<>());
+        long version = store.getSnapshot(set).getVersion();
+
+        List<Word> first = new ArrayList<>();
+        first.add(new Word("one", "một", ""));
+        assertTrue(store.compareAndSetWords(set, version, first));
+
+        List<Word> second = new ArrayList<>();
+        second.add(new Word("two", "hai", ""));
+        assertFalse(store.compareAndSetWords(set, version, second));
+
+        assertEquals(1, store.getSnapshot(set).size());
+        assertEquals("one", store.getWordsForSet(set).get(0).getEnglish());
+        assertEquals(version + 1, store.getSnapshot(set).getVersion());
+    }
+
+    @Test
+    public void snapshotsDoNotChangeUnderReaders() throws IOException {
+        String set = "reader.json";
+        store.addWordToSet(set, new Word("one", "một", ""));
+        DeckSnapshot before = store.getSnapshot(set);
+
+        store.addWordToSet(set, new Word("two", "hai", ""));
+
+        assertEquals(1, before.size());
+        assertEquals(2, store.getSnapshot(set).size());
+        try {
+            before.getWords().clear();
+            fail("snapshot words should be read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        // Neither the caller's word nor one read back is the store's own.
+        Word three = new Word("three", "ba", "");
+        store.addWordToSet(set, three);
+        three.setExample("changed");
+        store.getWord(set, three.getId()).setMemoryTip("changed");
+        assertEquals("", store.getWord(set, three.getId()).getExample());
+        assertEquals("", store.getWord(set, three.getId()).getMemoryTip());
+
+        store.deleteWordFromSet(set, three.getId());
+        DeckSnapshot after = store.getSnapshot(set);
+        assertEquals(Collections.singletonList(three.getId()), new ArrayList<>(after.changedIds()));
+        assertEquals(2, after.size());
+        assertEquals(1, before.size());
+    }
+
+    @Test
+    public void deletedSetKeepsCountingVersions() throws IOException {
+        String set = "deleted.json";
+        store.addWordToSet(set, new Word("one", "một", ""));
+        long version = store.getSnapshot(set).getVersion();
+
+        store.deleteVocabularySet(set);
+        assertEquals(0, store.getSnapshot(set).size());
+        assertTrue(store.getSnapshot(set).getVersion() > version);
+        assertFalse(store.compareAndSetWords(set, version, new ArrayList<>()));
+    }
+
+    @Test
+    public void setChangesArriveInVersionOrderAndRebuildTheList() throws IOException {
+        store.getUserVocabularySets();
+        List<SetChange> changes = new ArrayList<>();
+        store.addChangeListener(changes::add);
+
+        store.addVocabularySet(new VocabularySet("Động vật", "user_1.json"));
+        store.saveWordsForSet("user_1.json", Arrays.asList(new Word("cat", "mèo", ""), new Word("dog", "chó", "")));
+        store.updateVocabularySet(new VocabularySet("Thú cưng", "user_1.json"));
+        store.addWordToSet("user_1.json", new Word("fish", "cá", ""));
+        // Words added to a bundled deck change its count too.
+        store.addWordToSet("house.json", new Word("roof", "mái nhà", ""));
+        store.deleteVocabularySet("user_1.json");
+
+        List<SetChange.Type> types = new ArrayList<>();
+        for (int i = 0; i < changes.size(); i++) {
+            types.add(changes.get(i).getType());
+            assertEquals(i + 1, changes.get(i).getVersion());
+        }
+        assertEquals(Arrays.asList(SetChange.Type.SET_ADDED, SetChange.Type.WORD_COUNT_CHANGED,
+                SetChange.Type.SET_RENAMED, SetChange.Type.WORD_COUNT_CHANGED, SetChange.Type.WORD_COUNT_CHANGED,
+                SetChange.Type.SET_REMOVED), types);
+        assertEquals("house.json", changes.get(4).getJsonFileName());
+        assertEquals(1, changes.get(4).getWordCount());
+        assertEquals(changes.size(), store.getChangeVersion());
+
+        List<VocabularySet> sets = new ArrayList<>();
+        for (SetChange change : changes.subList(0, 4)) {
+            assertTrue(change.applyTo(sets));
+            // Applying the same change again, as after a reload, is harmless.
+            assertFalse(change.applyTo(sets));
+        }
+        assertEquals("Thú cưng", sets.get(0).getTitle());
+        assertEquals(3, sets.get(0).getWordCount());
+        changes.get(5).applyTo(sets);
+        assertTrue(sets.isEmpty());
+    }
+
+    @Test
+    public void batchAppliesEveryChangeWithOneVersionPerSet() throws IOException {
+        store.addVocabularySet(new VocabularySet("A", "a.json"));
+        store.addVocabularySet(new VocabularySet("B", "b.json"));
+        store.addVocabularySet(new VocabularySet("C", "c.json"));
+        List<Word> a = words("a", 5);
+        store.saveWordsForSet("a.json", a);
+        store.saveWordsForSet("c.json", words("c", 3));
+        long aVersion = store.getSnapshot("a.json").getVersion();
+        long bVersion = store.getSnapshot("b.json").getVersion();
+
+        store.commit(new WordBatch()
+                .addWords("b.json", words("b", 4))
+                .deleteWords("a.json", Collections.singletonList(a.get(0).getId()))
+                .moveWords("a.json", "b.json", Arrays.asList(a.get(1).getId(), a.get(2).getId(), "missing"))
+                .deleteSets(Collections.singletonList("c.json")));
+
+        assertEquals(2, store.getSnapshot("a.json").size());
+        assertEquals(6, store.getSnapshot("b.json").size());
+        assertEquals(aVersion + 1, store.getSnapshot("a.json").getVersion());
+        assertEquals(bVersion + 1, store.getSnapshot("b.json").getVersion());
+        assertEquals(a.get(1).getContent(), store.getWord("b.json", a.get(1).getId()).getContent());
+        assertFalse(store.isUserCreatedSet("c.json"));
+
+        VocabularyStore reopened = new VocabularyStore(new DeckStorage(dir));
+        assertEquals(2, reopened.getWordsForSet("a.json").size());
+        assertEquals(6, reopened.getWordsForSet("b.json").size());
+        assertEquals(6, reopened.getMetadata("b.json").getWordCount());
+        assertEquals(0, reopened.getWordsForSet("c.json").size());
+        assertEquals(2, reopened.getUserVocabularySets().size());
+    }
+
+    @Test
+    public void interruptedBatchIsFinishedOnRecovery() throws IOException {
+        List<Word> a = words("a", 4);
+        store.saveWordsForSet("a.json", a);
+        store.saveWordsForSet("b.json", words("b", 1));
+
+        // Resolve the batch against the current sets, write its intent and apply it to
+        // only one of the two sets, as if the process died in between.
+        WordBatch batch = new WordBatch().moveWords("a.json", "b.json", Arrays.asList(a.get(0).getId(), a.get(1).getId()));
+        Map<String, LinkedHashMap<String, Word>> sets = new LinkedHashMap<>();
+        for (String name : Arrays.asList("a.json", "b.json")) {
+            LinkedHashMap<String, Word> words = new LinkedHashMap<>();
+            for (Word word : store.getWordsForSet(name)) {
+                words.put(word.getId(), word);
+            }
+            sets.put(name, words);
+        }
+        WordBatch resolved = batch.apply(sets, new HashSet<>());
+        try (JsonWriter json = new JsonWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(dir, "batch.json")), StandardCharsets.UTF_8))) {
+            resolved.write(json);
+        }
+        DeckStorage storage = new DeckStorage(dir);
+        storage.writeWords("a.json", new ArrayList<>(sets.get("a.json").values()));
+
+        storage.recoverBatch();
+
+        VocabularyStore reopened = new VocabularyStore(storage);
+        assertEquals(2, reopened.getWordsForSet("a.json").size());
+        assertEquals(3, reopened.getWordsForSet("b.json").size());
+        assertNotNull(reopened.getWord("b.json", a.get(0).getId()));
+        assertFalse(new File(dir, "batch.json").exists());
+    }
+
+    // Counted rather than timed: each fsync is what makes a per-word loop slow on a phone.
+    @Test
+    public void batchOfThousandSyncsLikeASingleWord() throws IOException {
+        int count = 1_000;
+
+        long before = DeckStorage.syncCount();
+        store.commit(new WordBatch().addWords("single.json", words("single", 1)));
+        long single = DeckStorage.syncCount() - before;
+
+        before = DeckStorage.syncCount();
+        store.commit(new WordBatch().addWords("batch.json", words("batch", count)));
+        long batch = DeckStorage.syncCount() - before;
+
+        // Last, as the loop's journals may be folded back on the compactor meanwhile.
+        before = DeckStorage.syncCount();
+        for (Word word : words("loop", count)) {
+            store.addWordToSet("loop.json", word);
+        }
+        long loop = DeckStorage.syncCount() - before;
+
+        assertEquals(count, store.getSnapshot("batch.json").size());
+        assertTrue("loop " + loop + " syncs", loop >= count);
+        assertEquals(single, batch);
+    }
+
+    private static List<Word> words(String prefix, int count) {
+        List<Word> words = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            words.add(new Word(prefix + i, "từ" + i, ""));
+        }
+        return words;
+    }
+}
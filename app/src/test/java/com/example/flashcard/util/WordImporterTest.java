@@ -0,0 +1,195 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WordImporterTest {
+
+    private final List<Word> written = new ArrayList<>();
+    private final List<Integer> chunkSizes = new ArrayList<>();
+    private final List<Long> progress = new ArrayList<>();
+
+    @Test
+    public void readsQuotedCsvWithHeader() throws IOException {
+        String csv = "﻿Vietnamese,English,Example\r\n"
+                + "Quả táo,Apple,\"An apple, a day.\"\r\n"
+                + "\"Con mèo\",Cat,\"She said \"\"meow\"\"\nand left.\"\r\n"
+                + ",Orphan,\r\n"
+                + "\r\n";
+        WordImporter.Result result = run(WordImporter.Format.CSV, csv, Collections.emptyList());
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getSkipped());
+        assertEquals("Apple", written.get(0).getEnglish());
+        assertEquals("Quả táo", written.get(0).getVietnamese());
+        assertEquals("An apple, a day.", written.get(0).getExample());
+        assertEquals("She said \"meow\"\nand left.", written.get(1).getExample());
+    }
+
+    @Test
+    public void firstRowIsDataUnlessEveryCellIsAColumnName() throws IOException {
+        run(WordImporter.Format.TSV, "word\ttừ\nbook\tquyển sách\t/bʊk/\n", Collections.emptyList());
+        assertEquals(2, written.size());
+        assertEquals("word", written.get(0).getEnglish());
+        assertEquals("/bʊk/", written.get(1).getPronunciation());
+    }
+
+    @Test
+    public void followsAnkiHeaders() throws IOException {
+        String anki = "#separator:Semicolon\n"
+                + "#html:true\n"
+                + "#deck column:1\n"
+                + "Default;<b>Dog</b>;\"Con&nbsp;chó<br>(vật nuôi)\"\n"
+                + "Default;Dog;Con chó (vật nuôi)\n";
+        WordImporter.Result result = run(WordImporter.Format.ANKI, anki, Collections.emptyList());
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getDuplicates());
+        assertEquals("Dog", written.get(0).getEnglish());
+        assertEquals("Con chó (vật nuôi)", written.get(0).getVietnamese());
+
+        written.clear();
+        run(WordImporter.Format.ANKI, "#separator:tab\n#columns:Tags\tBack\tFront\nx\tCon gà\tChicken\n",
+                Collections.emptyList());
+        assertEquals("Chicken", written.get(0).getEnglish());
+        assertEquals("Con gà", written.get(0).getVietnamese());
+    }
+
+    @Test
+    public void skipsWordsAlreadyInTheDeck() throws IOException {
+        WordImporter.Result result = run(WordImporter.Format.CSV, "APPLE, quả táo\nPear,Quả lê\n",
+                Collections.singletonList(new Word("Apple", "Quả táo", "")));
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getDuplicates());
+        assertEquals("Pear", written.get(0).getEnglish());
+    }
+
+    @Test
+    public void writesInChunksAndReportsProgress() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        int rows = WordImporter.CHUNK_SIZE * 2 + 5;
+        for (int i = 0; i < rows; i++) {
+            csv.append("word").append(i).append(",từ ").append(i).append('\n');
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        WordImporter.Result result = run(WordImporter.Format.CSV, csv.toString(), Collections.emptyList());
+
+        assertEquals(rows, result.getImported());
+        assertEquals(3, chunkSizes.size());
+        assertEquals(WordImporter.CHUNK_SIZE, (int) chunkSizes.get(0));
+        assertEquals(5, (int) chunkSizes.get(2));
+        assertEquals(bytes.length, (long) progress.get(progress.size() - 1));
+    }
+
+    @Test
+    public void feedsAStoreThroughJournalAppends() throws IOException {
+        java.io.File dir = java.nio.file.Files.createTempDirectory("import").toFile();
+        try {
+            VocabularyStore store = new VocabularyStore(new DeckStorage(dir));
+            store.addWordToSet("a.json", new Word("Apple", "Quả táo", ""));
+            WordImporter importer = new WordImporter(WordImporter.Format.CSV, store.getWordsForSet("a.json"));
+            WordImporter.Result result = importer.importFrom(stream("Apple,Quả táo\nPear,Quả lê\nPlum,Quả mận\n"),
+                    -1, chunk -> store.addWordsToSet("a.json", chunk), (read, total, imported) -> { });
+
+            assertEquals(2, result.getImported());
+            assertEquals(3, new VocabularyStore(new DeckStorage(dir)).getWordsForSet("a.json").size());
+        } finally {
+            java.io.File[] files = dir.listFiles();
+            if (files != null) {
+                for (java.io.File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void streamsLargeFilesInBoundedChunks() throws IOException {
+        int rows = 100_000;
+        byte[] bytes = syntheticCsv(rows);
+        long[] consumed = {0};
+        List<Long> consumedAtChunk = new ArrayList<>();
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                consumed[0] += Math.max(n, 0);
+                return n;
+            }
+        };
+
+        WordImporter.Result result = new WordImporter(WordImporter.Format.CSV, Collections.emptyList())
+                .importFrom(in, bytes.length, chunk -> {
+                    chunkSizes.add(chunk.size());
+                    consumedAtChunk.add(consumed[0]);
+                }, (read, total, imported) -> { });
+
+        assertEquals(rows, result.getImported());
+        assertEquals(rows / WordImporter.CHUNK_SIZE, chunkSizes.size());
+        for (int size : chunkSizes) {
+            assertTrue(size <= WordImporter.CHUNK_SIZE);
+        }
+        // Each chunk is handed over after reading little more than its own rows, never the whole file.
+        long perChunk = bytes.length / chunkSizes.size();
+        for (int i = 0; i < consumedAtChunk.size(); i++) {
+            assertTrue(consumedAtChunk.get(i) <= (i + 1) * perChunk + 64 * 1024);
+        }
+    }
+
+    // Not a strict gate: prints throughput and the heap retained while streaming 100k rows.
+    @Test
+    @Category(Benchmark.class)
+    public void reportsThroughputAtScale() throws IOException {
+        int rows = 100_000;
+        byte[] bytes = syntheticCsv(rows);
+        long[] peak = {0};
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long base = runtime.totalMemory() - runtime.freeMemory();
+
+        long start = System.nanoTime();
+        WordImporter.Result result = new WordImporter(WordImporter.Format.CSV, Collections.emptyList())
+                .importFrom(new ByteArrayInputStream(bytes), bytes.length, chunk -> { },
+                        (read, total, imported) -> peak[0] = Math.max(peak[0],
+                                runtime.totalMemory() - runtime.freeMemory() - base));
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(rows, result.getImported());
+        System.out.println("imported " + rows + " rows (" + bytes.length / 1024 + " KiB) in " + elapsed / 1_000_000
+                + "ms; heap above baseline at chunk boundaries <= " + peak[0] / 1024 + " KiB");
+    }
+
+    private static byte[] syntheticCsv(int rows) {
+        StringBuilder csv = new StringBuilder("english,vietnamese,example\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("word").append(i).append(",\"nghĩa, số ").append(i)
+                    .append("\",The word number ").append(i).append(" in a sentence.\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private WordImporter.Result run(WordImporter.Format format, String text, List<Word> existing) throws IOException {
+        return new WordImporter(format, existing).importFrom(stream(text), text.length(), chunk -> {
+            chunkSizes.add(chunk.size());
+            written.addAll(chunk);
+        }, (read, total, imported) -> progress.add(read));
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WordMapTest {
+
+    @Test
+    public void matchesALinkedHashMapThroughRandomEdits() {
+        Random random = new Random(7);
+        LinkedHashMap<String, Word> expected = new LinkedHashMap<>();
+        List<Word> initial = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Word word = new Word("w" + random.nextInt(100_000), "word" + i, "", "", "", "");
+            if (expected.put(word.getId(), word) == null) {
+                initial.add(word);
+            }
+        }
+        WordMap map = WordMap.of(initial);
+
+        for (int step = 0; step < 5000; step++) {
+            String id = "w" + random.nextInt(100_000);
+            if (random.nextInt(3) == 0 && !expected.isEmpty()) {
+                id = new ArrayList<>(expected.keySet()).get(random.nextInt(expected.size()));
+                expected.remove(id);
+                map = map.without(id);
+            } else {
+                Word word = new Word(id, "step" + step, "", "", "", "");
+                expected.put(id, word);
+                map = map.with(word);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+        List<String> ids = new ArrayList<>(expected.keySet());
+        for (int i = 0; i < ids.size(); i += 37) {
+            assertEquals(i, map.indexOf(ids.get(i)));
+            assertSame(expected.get(ids.get(i)), map.wordAt(i));
+            assertSame(expected.get(ids.get(i)), map.get(ids.get(i)));
+        }
+        assertEquals(-1, map.indexOf("absent"));
+    }
+
+    @Test
+    public void editsLeaveEarlierMapsAsTheyWere() {
+        Word one = new Word("1", "one", "một", "", "", "");
+        Word two = new Word("2", "two", "hai", "", "", "");
+        WordMap before = WordMap.of(Arrays.asList(one, two));
+
+        WordMap after = before.without("1").with(new Word("2", "two!", "hai", "", "", ""))
+                .with(new Word("3", "three", "ba", "", "", ""));
+
+        assertEquals(Arrays.asList("1", "2"), new ArrayList<>(before.keySet()));
+        assertSame(two, before.get("2"));
+        assertEquals(Arrays.asList("2", "3"), new ArrayList<>(after.keySet()));
+        assertEquals("two!", after.get("2").getEnglish());
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.flashcard.util;
+
+import com.example.flashcard.model.Word;
+import com.example.flashcard.model.WordContent;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WordTableTest {
+
+    private File dir;
+    private VocabularyStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("table").toFile();
+        store = new VocabularyStore(new DeckStorage(dir));
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void identicalEntriesShareOneContent() throws IOException {
+        store.addWordToSet("health.json", new Word("Doctor", "Bác sĩ", "/ˈdɒk.tər/"));
+        store.addWordToSet("jobs.json", new Word("Doctor", "Bác sĩ", "/ˈdɒk.tər/"));
+        store.addWordToSet("jobs.json", new Word("Doctor", "Tiến sĩ", "/ˈdɒk.tər/"));
+
+        Word health = store.getWordsForSet("health.json").get(0);
+        Word jobs = store.getWordsForSet("jobs.json").get(0);
+        assertNotEquals(health.getId(), jobs.getId());
+        assertSame(health.getContent(), jobs.getContent());
+        assertNotSame(jobs.getContent(), store.getWordsForSet("jobs.json").get(1).getContent());
+    }
+
+    @Test
+    public void editingOneDeckLeavesTheOtherAlone() throws IOException {
+        store.addWordToSet("health.json", new Word("Dentist", "Nha sĩ", "/ˈden.tɪst/"));
+        store.addWordToSet("jobs.json", new Word("Dentist", "Nha sĩ", "/ˈden.tɪst/"));
+        Word jobs = store.getWordsForSet("jobs.json").get(0);
+
+        Word edited = new Word("Dentist", "Nha sĩ", "/ˈden.tɪst/");
+        edited.setMemoryTip("Dent - răng");
+        store.updateWordInSet("jobs.json", jobs.getId(), edited);
+
+        assertEquals("", store.getWordsForSet("health.json").get(0).getMemoryTip());
+        assertEquals("Dent - răng", store.getWordsForSet("jobs.json").get(0).getMemoryTip());
+    }
+
+    @Test
+    public void setterCopiesInsteadOfChangingSharedContent() {
+        WordTable table = new WordTable();
+        Word first = table.intern(new Word("Nurse", "Y tá", "/nɜːs/"));
+        Word second = table.intern(new Word("Nurse", "Y tá", "/nɜːs/"));
+        WordContent shared = first.getContent();
+
+        second.setExample("The nurse is kind.");
+
+        assertSame(shared, first.getContent());
+        assertEquals("", first.getExample());
+        assertEquals("The nurse is kind.", second.getExample());
+    }
+
+    // 200 decks of 60 words; 45 of each are drawn from a shared pool of 3,000 common entries.
+    @Test
+    public void sharesContentsOnSyntheticCorpus() throws IOException {
+        Random random = new Random(42);
+        int decks = 200;
+        Map<String, List<Word>> corpus = new LinkedHashMap<>();
+        for (int d = 0; d < decks; d++) {
+            List<Word> words = new ArrayList<>();
+            for (int i = 0; i < 45; i++) {
+                int common = random.nextInt(3_000);
+                words.add(new Word("common" + common, "phổ biến " + common, "/ˈkɒm.ən/",
+                        "Example sentence number " + common + ".", ""));
+            }
+            for (int i = 0; i < 15; i++) {
+                words.add(new Word("deck" + d + "word" + i, "riêng " + d + "-" + i, "/ˈwɜːd/", "", ""));
+            }
+            corpus.put("deck" + d + ".json", words);
+        }
+
+        long bytesBefore = estimatedBytes(corpus);
+        WordTable table = new WordTable();
+        for (List<Word> words : corpus.values()) {
+            for (Word word : words) {
+                table.intern(word);
+            }
+        }
+        long bytesAfter = estimatedBytes(corpus);
+
+        long perDeckJson = 0;
+        Map<String, List<String[]>> packDecks = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Word>> deck : corpus.entrySet()) {
+            StringWriter out = new StringWriter();
+            JsonCodecs.writeList(new JsonWriter(out), deck.getValue(), JsonCodecs.WORD);
+            perDeckJson += out.toString().getBytes(StandardCharsets.UTF_8).length;
+            List<String[]> rows = new ArrayList<>();
+            for (Word word : deck.getValue()) {
+                rows.add(new String[]{word.getEnglish(), word.getVietnamese(), word.getPronunciation(),
+                        word.getExample(), word.getMemoryTip()});
+            }
+            packDecks.put(deck.getKey(), rows);
+        }
+        long pack = AssetPackTest.pack(packDecks).length;
+
+        assertTrue(table.size() < decks * 60);
+        // Three in four words repeat across decks, so sharing about halves what they keep alive.
+        assertTrue("estimated " + bytesBefore / 1024 + " KB -> " + bytesAfter / 1024 + " KB",
+                bytesAfter * 10 < bytesBefore * 6);
+        assertTrue("pack " + pack / 1024 + " KB, per-deck JSON " + perDeckJson / 1024 + " KB",
+                pack * 10 < perDeckJson * 4);
+    }
+
+    // What the decks keep alive, estimated from object counts with compact-oops sizes rather
+    // than measured on the heap: each Word, each distinct content and each distinct string.
+    private static long estimatedBytes(Map<String, List<Word>> corpus) {
+        IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<>();
+        long bytes = 0;
+        for (List<Word> words : corpus.values()) {
+            for (Word word : words) {
+                bytes += 16;
+                WordContent content = word.getContent();
+                if (seen.put(content, Boolean.TRUE) != null) {
+                    continue;
+                }
+                bytes += 32;
+                String[] fields = {content.getEnglish(), content.getVietnamese(), content.getPronunciation(),
+                        content.getExample(), content.getMemoryTip()};
+                for (String field : fields) {
+                    if (seen.put(field, Boolean.TRUE) == null) {
+                        bytes += 24 + 16 + field.length() * 2L;
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+}